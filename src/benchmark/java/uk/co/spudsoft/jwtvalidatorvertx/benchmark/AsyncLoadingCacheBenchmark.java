@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import io.vertx.core.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache;
+
+/**
+ * Benchmark of the hit and miss paths of {@link AsyncLoadingCache}.
+ * <p>
+ * The miss path uses a loader that completes immediately with an entry that has already expired, 
+ * so every call is a miss and the cost of the loader itself is negligible.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AsyncLoadingCacheBenchmark {
+  
+  private AsyncLoadingCache<String, String> cache;
+  private Callable<Future<TimedObject<String>>> hitLoader;
+  private Callable<Future<TimedObject<String>>> missLoader;
+  
+  /**
+   * Create the cache and populate the entry for the hit path.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    cache = new AsyncLoadingCache<>();
+    cache.put("hit", cache.entry("value", Long.MAX_VALUE));
+    hitLoader = () -> Future.failedFuture(new IllegalStateException("Loader should not be called for a cache hit"));
+    missLoader = () -> Future.succeededFuture(cache.entry("value", 0));
+  }
+  
+  /**
+   * Get a value that is in the cache.
+   * @return The value.
+   * @throws Exception if the get fails.
+   */
+  @Benchmark
+  public String hit() throws Exception {
+    return BenchmarkSupport.await(cache.get("hit", hitLoader));
+  }
+  
+  /**
+   * Get a value that has expired from the cache.
+   * @return The value.
+   * @throws Exception if the get fails.
+   */
+  @Benchmark
+  public String miss() throws Exception {
+    return BenchmarkSupport.await(cache.get("miss", missLoader));
+  }
+  
+}
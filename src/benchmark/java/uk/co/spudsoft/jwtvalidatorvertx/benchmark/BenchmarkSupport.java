@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+
+/**
+ * Helpers shared by the benchmarks.
+ * 
+ * @author jtalbut
+ */
+final class BenchmarkSupport {
+  
+  /**
+   * The issuer of every token built by the benchmarks.
+   */
+  static final String ISSUER = "http://localhost/";
+  
+  /**
+   * The audience of every token built by the benchmarks.
+   */
+  static final String AUDIENCE = "aud";
+  
+  private BenchmarkSupport() {
+  }
+  
+  /**
+   * Get the result of a Future, waiting for it if it has not already completed.
+   * 
+   * With warm caches the validation pipeline completes synchronously, so this does not usually block.
+   * 
+   * @param <T> The type of the result.
+   * @param future The Future.
+   * @return The result of the Future.
+   * @throws Exception if the Future failed.
+   */
+  static <T> T await(Future<T> future) throws Exception {
+    if (!future.isComplete()) {
+      return future.toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+    if (future.failed()) {
+      throw new IllegalStateException("Benchmark operation failed", future.cause());
+    }
+    return future.result();
+  }
+  
+  /**
+   * Get the JWK that can verify tokens built by a {@link JdkTokenBuilder}.
+   * @param builder The token builder.
+   * @param keyCache The key cache used by the token builder.
+   * @param algorithm The algorithm of the token.
+   * @param kid The kid of the token.
+   * @return The JWK that can verify the token.
+   * @throws Exception if the JWK cannot be built.
+   */
+  static JWK jwkFor(JdkTokenBuilder builder, Cache<String, AlgorithmAndKeyPair> keyCache, JsonWebAlgorithm algorithm, String kid) throws Exception {
+    if ("HMAC".equals(algorithm.getFamilyName())) {
+      return JsonWebKeySetStaticKeysHandler.sharedSecret(kid, algorithm, builder.getSharedSecret(kid, algorithm));
+    }
+    AlgorithmAndKeyPair akp = keyCache.getIfPresent(kid);
+    if (akp == null) {
+      throw new IllegalStateException("No key has been generated for " + kid);
+    }
+    PublicKey publicKey = akp.getKeyPair().getPublic();
+    JsonObject json = JwkBuilder.get(publicKey).toJson(kid, algorithm.getName(), publicKey);
+    return new JWK(json);
+  }
+  
+}
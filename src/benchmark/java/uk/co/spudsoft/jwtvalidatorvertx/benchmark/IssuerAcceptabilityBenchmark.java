@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+
+/**
+ * Benchmark of {@link IssuerAcceptabilityHandler#isAcceptable(java.lang.String)} for issuers that match the first regex, a later regex and no regex.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IssuerAcceptabilityBenchmark {
+  
+  /**
+   * The issuer to check.
+   */
+  @Param({"http://localhost/", "https://login.example.com/tenant-1/v2.0", "https://unknown.example.net/"})
+  public String issuer;
+  
+  private IssuerAcceptabilityHandler handler;
+  
+  /**
+   * Create the handler.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    handler = IssuerAcceptabilityHandler.create(Arrays.asList(
+            "http://localhost/"
+            , "https://accounts\\.example\\.org/"
+            , "https://login\\.example\\.com/[a-z0-9-]+/v2\\.0"
+    ), null, Duration.ofMinutes(1));
+  }
+  
+  /**
+   * Check whether the issuer is acceptable.
+   * @return true if the issuer is acceptable.
+   */
+  @Benchmark
+  public boolean isAcceptable() {
+    return handler.isAcceptable(issuer);
+  }
+  
+}
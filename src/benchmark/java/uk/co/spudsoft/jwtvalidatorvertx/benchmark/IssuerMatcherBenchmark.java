@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.IssuerMatcher;
+
+/**
+ * Benchmark of checking issuers against a growing number of regular expressions, 
+ * comparing a linear search of the patterns with an {@link IssuerMatcher} (with and without its memo).
+ * <p>
+ * Each invocation checks a single issuer, cycling through a mix of issuers that match literal patterns, 
+ * issuers that match patterns with a literal prefix and issuers that match nothing.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IssuerMatcherBenchmark {
+  
+  /**
+   * The number of acceptable issuer regular expressions.
+   */
+  @Param({"10", "50", "200", "1000"})
+  public int patternCount;
+  
+  private List<Pattern> patterns;
+  private String[] issuers;
+  private IssuerMatcher unmemoised;
+  private IssuerMatcher memoised;
+  private int index;
+  
+  /**
+   * Create the patterns, the issuers to check and the matchers.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    patterns = new ArrayList<>();
+    for (int i = 0; i < patternCount; ++i) {
+      switch (i % 3) {
+        case 0:
+          patterns.add(Pattern.compile("https://login\\.tenant" + i + "\\.example\\.com/"));
+          break;
+        case 1:
+          patterns.add(Pattern.compile("https://idp" + i + "\\.example\\.com/realms/[a-z]+"));
+          break;
+        default:
+          patterns.add(Pattern.compile("https://sso\\.example\\.com/t" + i + "/.*"));
+          break;
+      }
+    }
+    List<String> issuerList = new ArrayList<>();
+    for (int i = 0; i < patternCount; i += 7) {
+      issuerList.add("https://login.tenant" + i + ".example.com/");
+      issuerList.add("https://idp" + i + ".example.com/realms/bob");
+      issuerList.add("https://sso.example.com/t" + i + "/x");
+      issuerList.add("https://unknown" + i + ".example.com/");
+    }
+    issuers = issuerList.toArray(new String[0]);
+    unmemoised = IssuerMatcher.compile(patterns, 0);
+    memoised = IssuerMatcher.compile(patterns, IssuerMatcher.DEFAULT_MEMO_SIZE);
+  }
+  
+  private String nextIssuer() {
+    String issuer = issuers[index];
+    index = (index + 1) % issuers.length;
+    return issuer;
+  }
+  
+  /**
+   * Check an issuer against each pattern in turn.
+   * @return true if the issuer matches any pattern.
+   */
+  @Benchmark
+  public boolean linear() {
+    String issuer = nextIssuer();
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(issuer).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Check an issuer using an IssuerMatcher without a memo.
+   * @return true if the issuer matches any pattern.
+   */
+  @Benchmark
+  public boolean trie() {
+    return unmemoised.matches(nextIssuer());
+  }
+  
+  /**
+   * Check an issuer using an IssuerMatcher with the default memo.
+   * @return true if the issuer matches any pattern.
+   */
+  @Benchmark
+  public boolean memoised() {
+    return memoised.matches(nextIssuer());
+  }
+  
+}
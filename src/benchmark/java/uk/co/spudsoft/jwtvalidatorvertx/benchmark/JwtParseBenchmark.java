@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+
+/**
+ * Benchmark of {@link Jwt#parseJws(java.lang.String)} across payload sizes.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtParseBenchmark {
+  
+  /**
+   * The number of claims added to the payload, in addition to the registered claims.
+   */
+  @Param({"0", "10", "100", "1000"})
+  public int extraClaims;
+  
+  private String token;
+  
+  /**
+   * Build the token to be parsed.
+   * @throws Exception if the token cannot be built.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Map<String, Object> claims = new HashMap<>();
+    for (int i = 0; i < extraClaims; ++i) {
+      claims.put("claim" + i, "value" + i);
+    }
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    token = new JdkTokenBuilder(AlgorithmAndKeyPair.createCache(Duration.ofHours(1)))
+            .buildToken(JsonWebAlgorithm.ES256, "parse", BenchmarkSupport.ISSUER, "sub"
+                    , Collections.singletonList(BenchmarkSupport.AUDIENCE), nowSeconds, nowSeconds + 86400, claims);
+  }
+  
+  /**
+   * Parse the token.
+   * @return The parsed token.
+   */
+  @Benchmark
+  public Jwt parseJws() {
+    return Jwt.parseJws(token);
+  }
+  
+}
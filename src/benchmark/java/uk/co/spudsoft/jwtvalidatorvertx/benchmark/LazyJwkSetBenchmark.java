@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.LazyJwkSet;
+
+/**
+ * Benchmark of finding a single key in a large JWK Set, comparing parsing every key eagerly (as was done previously)
+ * with scanning the set using {@link LazyJwkSet} and building just the key that is required.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyJwkSetBenchmark {
+  
+  /**
+   * The number of keys in the JWK Set.
+   */
+  @Param({"10", "500"})
+  public int keys;
+  
+  private Buffer body;
+  private String kid;
+  
+  /**
+   * Generate the JWK Set.
+   * @throws Exception if the keys cannot be generated.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    JsonArray jwks = new JsonArray();
+    for (int i = 0; i < keys; ++i) {
+      KeyPair keyPair = generator.generateKeyPair();
+      jwks.add(JwkBuilder.get(keyPair.getPublic()).toJson("kid-" + i, "ES256", keyPair.getPublic()));
+    }
+    body = new JsonObject().put("keys", jwks).toBuffer();
+    kid = "kid-" + (keys / 2);
+  }
+  
+  /**
+   * Parse every key in the JWK Set and then find the one required.
+   * @return the JWK.
+   */
+  @Benchmark
+  public JWK eager() {
+    JsonObject jo = new JsonObject(body);
+    Map<String, JWK> all = new HashMap<>();
+    for (Object key : jo.getJsonArray("keys")) {
+      JWK jwk = new JWK((JsonObject) key);
+      all.put(jwk.getId(), jwk);
+    }
+    return all.get(kid);
+  }
+  
+  /**
+   * Scan the JWK Set and build only the key required.
+   * @return the JWK.
+   */
+  @Benchmark
+  public JWK lazy() {
+    return LazyJwkSet.parse(body).getJwk(kid);
+  }
+  
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.RevocationList;
+
+/**
+ * Benchmark of {@link RevocationList#isRevoked(java.lang.String, java.lang.String, java.lang.String, java.lang.Long)} 
+ * for tokens that have not been revoked (the common case), and of adding revocations.
+ * <p>
+ * The check is expected to take well under a microsecond, even with many revocations.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RevocationListBenchmark {
+  
+  private static final String ISSUER = "https://issuer.example.com/";
+  private static final int TOKEN_COUNT = 1024;
+  
+  /**
+   * The number of revoked jtis, and the number of revoked subjects.
+   */
+  @Param({"1000", "100000"})
+  public int revoked;
+  
+  private RevocationList list;
+  private String[] jtis;
+  private String[] subjects;
+  private int index;
+  private long updates;
+  
+  /**
+   * Populate the revocation list and create the token values to check.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    list = RevocationList.create(revoked, 0.01);
+    for (int i = 0; i < revoked; ++i) {
+      list.revokeJti(ISSUER, UUID.randomUUID().toString());
+      list.revokeIssuedBefore(ISSUER, "user" + i, 1000);
+    }
+    jtis = new String[TOKEN_COUNT];
+    subjects = new String[TOKEN_COUNT];
+    for (int i = 0; i < TOKEN_COUNT; ++i) {
+      jtis[i] = UUID.randomUUID().toString();
+      subjects[i] = "user" + (i * 2);
+    }
+  }
+  
+  /**
+   * Check a token that has not been revoked, for a subject whose older tokens have been revoked.
+   * @return true if the token has been revoked.
+   */
+  @Benchmark
+  public boolean isRevoked() {
+    int i = index++ & (TOKEN_COUNT - 1);
+    return list.isRevoked(ISSUER, jtis[i], subjects[i], 2000L);
+  }
+  
+  /**
+   * Add a revocation for a subject.
+   */
+  @Benchmark
+  public void revokeIssuedBefore() {
+    list.revokeIssuedBefore(ISSUER, "updated" + (updates++ & 0xFFFF), updates);
+  }
+  
+}
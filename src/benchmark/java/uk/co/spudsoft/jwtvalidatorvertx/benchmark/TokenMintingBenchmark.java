@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import com.google.common.cache.Cache;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenMinter;
+
+/**
+ * Benchmark of {@link JdkTokenBuilder#buildToken} against {@link JdkTokenMinter#mint(java.lang.String, java.lang.Long, java.lang.Long, java.lang.String)}.
+ * <p>
+ * Run with "-t max" to see how each scales across cores.
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenMintingBenchmark {
+  
+  /**
+   * The algorithm used to sign the token.
+   */
+  @Param({"RS256", "ES256", "EdDSA"})
+  public String algorithm;
+  
+  private JsonWebAlgorithm jwa;
+  private JdkTokenBuilder builder;
+  private JdkTokenMinter minter;
+  private List<String> aud;
+  private long nowSeconds;
+  
+  /**
+   * Create the builder and minter, generating the key.
+   * @throws Exception if the setup fails.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    jwa = ValidationPolicy.algorithmForName(algorithm);
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    builder = new JdkTokenBuilder(keyCache);
+    aud = Collections.singletonList(BenchmarkSupport.AUDIENCE);
+    minter = builder.minter(jwa, algorithm, BenchmarkSupport.ISSUER, aud, null);
+    nowSeconds = System.currentTimeMillis() / 1000;
+  }
+  
+  /**
+   * Build a token with the general purpose token builder.
+   * @return The token.
+   * @throws Exception if the token cannot be built.
+   */
+  @Benchmark
+  public String buildToken() throws Exception {
+    return builder.buildToken(jwa, algorithm, BenchmarkSupport.ISSUER, "sub", aud, nowSeconds, nowSeconds + 3600, Collections.emptyMap());
+  }
+  
+  /**
+   * Mint a token.
+   * @return The token.
+   * @throws Exception if the token cannot be minted.
+   */
+  @Benchmark
+  public String mint() throws Exception {
+    return minter.mint("sub", nowSeconds, nowSeconds + 3600, null);
+  }
+  
+}
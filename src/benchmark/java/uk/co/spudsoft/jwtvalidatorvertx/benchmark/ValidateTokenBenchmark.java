@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.benchmark;
+
+import com.google.common.cache.Cache;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.AudienceMatcher;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+
+/**
+ * Benchmark of {@link JwtValidator#validateTokenForAudiences(java.lang.String, java.lang.String, uk.co.spudsoft.jwtvalidatorvertx.AudienceMatcher, boolean)}
+ * with the key already available, so that the cost measured is that of parsing, signature verification and claim checks.
+ * <p>
+ * ES256K is supported by the library but is not in the default parameters because secp256k1 was removed from the JDK in Java 16,
+ * it can be run on older JDKs with "-p algorithm=ES256K".
+ * 
+ * @author jtalbut
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidateTokenBenchmark {
+  
+  /**
+   * The algorithm used to sign the token.
+   */
+  @Param({"RS256", "RS384", "RS512", "PS256", "PS384", "PS512", "ES256", "ES384", "ES512", "EdDSA", "HS256", "HS384", "HS512"})
+  public String algorithm;
+  
+  private JwtValidator validator;
+  private AudienceMatcher audience;
+  private String token;
+  
+  /**
+   * Build the token and the validator, and validate the token once to warm up the key.
+   * @throws Exception if the setup fails.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    JsonWebAlgorithm jwa = ValidationPolicy.algorithmForName(algorithm);
+    if (jwa == null) {
+      throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+    }
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    token = builder.buildToken(jwa, algorithm, BenchmarkSupport.ISSUER, "sub"
+                    , Collections.singletonList(BenchmarkSupport.AUDIENCE), nowSeconds, nowSeconds + 86400, Collections.emptyMap());
+    
+    validator = JwtValidator.create(
+            JsonWebKeySetStaticKeysHandler.create(Collections.singletonList(BenchmarkSupport.jwkFor(builder, keyCache, jwa, algorithm)))
+            , IssuerAcceptabilityHandler.create(Collections.singletonList(BenchmarkSupport.ISSUER), null, Duration.ofMinutes(1))
+    );
+    validator.setPolicy(ValidationPolicy.builder().setPermittedAlgorithms(ValidationPolicy.SUPPORTED_ALGORITHMS).build());
+    audience = AudienceMatcher.create(BenchmarkSupport.AUDIENCE);
+    
+    BenchmarkSupport.await(validator.validateTokenForAudiences(null, token, audience, false));
+  }
+  
+  /**
+   * Validate the token.
+   * @return The validated token.
+   * @throws Exception if the token is not valid.
+   */
+  @Benchmark
+  public Jwt validateToken() throws Exception {
+    return BenchmarkSupport.await(validator.validateTokenForAudiences(null, token, audience, false));
+  }
+  
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.loadtest;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.vertx.VertxJwksHandler;
+
+/**
+ * A stand-in identity provider, serving OpenID discovery and JWKS for a number of issuers using {@link VertxJwksHandler}.
+ * <p>
+ * Also serves every key as PEM at {@link #getElbBaseUrl()} + kid, in the style of an AWS ELB, and counts every request it receives.
+ * <p>
+ * The responses may be made slow or unreliable by an {@link IdpChaos}, which is applied to every request.
+ * 
+ * @author jtalbut
+ */
+final class FakeIdp {
+  
+  private static final Base64.Encoder PEM_ENCODER = Base64.getMimeEncoder(64, new byte[] {'\n'});
+  
+  /**
+   * A single issuer served by the FakeIdp.
+   */
+  static final class Issuer {
+    
+    private final String baseUrl;
+    private final Cache<String, AlgorithmAndKeyPair> keyCache;
+
+    private Issuer(String baseUrl, Cache<String, AlgorithmAndKeyPair> keyCache) {
+      this.baseUrl = baseUrl;
+      this.keyCache = keyCache;
+    }
+
+    /**
+     * Get the URL of the issuer, as used in the iss claim.
+     * @return the URL of the issuer.
+     */
+    String getBaseUrl() {
+      return baseUrl;
+    }
+
+    /**
+     * Get the URL of the JWKS for this issuer.
+     * @return the URL of the JWKS for this issuer.
+     */
+    String getJwksUrl() {
+      return baseUrl + "/jwks";
+    }
+
+    /**
+     * Get the cache of keys published by this issuer, which is also the cache used to create the keys when signing tokens.
+     * @return the cache of keys published by this issuer.
+     */
+    Cache<String, AlgorithmAndKeyPair> getKeyCache() {
+      return keyCache;
+    }
+  }
+  
+  private final Vertx vertx;
+  private final HttpServer httpServer;
+  private final int port;
+  private final List<Issuer> issuers;
+  
+  private final LongAdder discoveryRequests = new LongAdder();
+  private final LongAdder jwksRequests = new LongAdder();
+  private final LongAdder elbRequests = new LongAdder();
+  private final LongAdder injectedFailures = new LongAdder();
+  private final Map<String, LongAdder> requestsByEndpoint = new ConcurrentHashMap<>();
+  
+  private final IdpChaos chaos;
+
+  private FakeIdp(Vertx vertx, HttpServer httpServer, int port, List<Issuer> issuers, IdpChaos chaos) {
+    this.vertx = vertx;
+    this.httpServer = httpServer;
+    this.port = port;
+    this.issuers = issuers;
+    this.chaos = chaos;
+  }
+  
+  /**
+   * A VertxJwksHandler that sends its responses using the {@link IdpChaos}, so that they can be dripped out slowly.
+   */
+  private static final class ChaosJwksHandler extends VertxJwksHandler {
+    
+    private final IdpChaos chaos;
+
+    ChaosJwksHandler(int port, String basePath, IdpChaos chaos) {
+      super(null, null, "localhost", port, basePath, false);
+      this.chaos = chaos;
+    }
+
+    @Override
+    protected void sendResponse(RoutingContext exchange, int responseCode, String contentType, Buffer body) {
+      exchange.response()
+              .setStatusCode(responseCode)
+              .putHeader("Content-Type", contentType);
+      chaos.send(exchange, body);
+    }
+  }
+  
+  /**
+   * Create and start a FakeIdp on a random port, using a dedicated Vertx instance.
+   * @param issuerCount The number of issuers to serve.
+   * @param chaos The faults to inject into responses, {@link IdpChaos#NONE} for a well behaved IdP.
+   * @return A Future that will be completed when the FakeIdp is listening.
+   * @throws IOException if no port is available.
+   */
+  static Future<FakeIdp> start(int issuerCount, IdpChaos chaos) throws IOException {
+    int port;
+    try (ServerSocket s = new ServerSocket(0)) {
+      port = s.getLocalPort();
+    }
+    
+    Vertx vertx = Vertx.vertx();
+    HttpServer httpServer = vertx.createHttpServer();
+    Router router = Router.router(vertx);
+    
+    List<Issuer> issuers = new ArrayList<>();
+    for (int i = 0; i < issuerCount; ++i) {
+      String basePath = "/issuer" + i;
+      VertxJwksHandler handler = new ChaosJwksHandler(port, basePath, chaos);
+      Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofDays(1));
+      handler.setKeyCache(keyCache);
+      issuers.add(new Issuer(handler.getBaseUrl(), keyCache));
+      router.route(basePath + "/*").handler(handler);
+    }
+    
+    FakeIdp idp = new FakeIdp(vertx, httpServer, port, Collections.unmodifiableList(issuers), chaos);
+    router.route().order(-2).handler(idp::count);
+    if (chaos.isEnabled()) {
+      router.route().order(-1).handler(idp::injectChaos);
+    }
+    router.get("/elb/:kid").handler(idp::handleElbRequest);
+    httpServer.requestHandler(router);
+    return httpServer.listen(port).map(server -> idp);
+  }
+  
+  /**
+   * Stop the FakeIdp.
+   * @return A Future that will be completed when the FakeIdp has stopped.
+   */
+  Future<Void> close() {
+    return httpServer.close().compose(v -> vertx.close());
+  }
+  
+  /**
+   * Get the issuers served by this FakeIdp.
+   * @return the issuers served by this FakeIdp.
+   */
+  List<Issuer> getIssuers() {
+    return issuers;
+  }
+  
+  /**
+   * Get the base URL for AWS ELB style PEM keys.
+   * @return the base URL for AWS ELB style PEM keys.
+   */
+  String getElbBaseUrl() {
+    return "http://localhost:" + port + "/elb/";
+  }
+  
+  /**
+   * Get a regular expression that matches the URLs of all the issuers.
+   * @return a regular expression that matches the URLs of all the issuers.
+   */
+  String getIssuerRegex() {
+    return "http://localhost:" + port + "/issuer[0-9]+";
+  }
+  
+  /**
+   * Get the number of OpenID discovery requests received.
+   * @return the number of OpenID discovery requests received.
+   */
+  long getDiscoveryRequests() {
+    return discoveryRequests.sum();
+  }
+
+  /**
+   * Get the number of JWKS requests received.
+   * @return the number of JWKS requests received.
+   */
+  long getJwksRequests() {
+    return jwksRequests.sum();
+  }
+
+  /**
+   * Get the number of AWS ELB key requests received.
+   * @return the number of AWS ELB key requests received.
+   */
+  long getElbRequests() {
+    return elbRequests.sum();
+  }
+  
+  /**
+   * Get the number of requests that were failed by the {@link IdpChaos}.
+   * @return the number of requests that were failed by the {@link IdpChaos}.
+   */
+  long getInjectedFailures() {
+    return injectedFailures.sum();
+  }
+  
+  /**
+   * Get the number of requests received for each endpoint.
+   * All the AWS ELB key requests are counted together.
+   * @return the number of requests received for each endpoint, sorted by path.
+   */
+  Map<String, Long> getRequestsByEndpoint() {
+    Map<String, Long> result = new TreeMap<>();
+    requestsByEndpoint.forEach((path, count) -> result.put(path, count.sum()));
+    return result;
+  }
+  
+  private void count(RoutingContext ctx) {
+    String path = ctx.request().path();
+    if (path.startsWith("/elb/")) {
+      elbRequests.increment();
+      path = "/elb/{kid}";
+    } else if (path.endsWith("/.well-known/openid-configuration")) {
+      discoveryRequests.increment();
+    } else if (path.endsWith("/jwks")) {
+      jwksRequests.increment();
+    }
+    requestsByEndpoint.computeIfAbsent(path, p -> new LongAdder()).increment();
+    ctx.next();
+  }
+  
+  private void injectChaos(RoutingContext ctx) {
+    ctx.addHeadersEndHandler(v -> chaos.applyCacheControl(ctx.response()));
+    boolean fail = chaos.nextFailure();
+    Handler<Long> proceed = id -> {
+      if (fail) {
+        injectedFailures.increment();
+        ctx.response().setStatusCode(503).end("Injected failure");
+      } else {
+        ctx.next();
+      }
+    };
+    long delay = chaos.nextLatencyMillis();
+    if (delay > 0) {
+      vertx.setTimer(delay, proceed);
+    } else {
+      proceed.handle(0L);
+    }
+  }
+  
+  private void handleElbRequest(RoutingContext ctx) {
+    String kid = ctx.pathParam("kid");
+    for (Issuer issuer : issuers) {
+      AlgorithmAndKeyPair akp = issuer.keyCache.getIfPresent(kid);
+      if (akp != null) {
+        String pem = "-----BEGIN PUBLIC KEY-----\n"
+                + PEM_ENCODER.encodeToString(akp.getKeyPair().getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+        ctx.response().putHeader("Content-Type", "application/x-pem-file");
+        chaos.send(ctx, Buffer.buffer(pem));
+        return;
+      }
+    }
+    ctx.response().setStatusCode(404).end("Not found");
+  }
+  
+}
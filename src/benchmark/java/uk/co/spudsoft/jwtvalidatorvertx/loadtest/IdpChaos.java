@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.loadtest;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The faults that a {@link FakeIdp} injects into its responses, so that the behaviour of the validator's caches can be measured
+ * when the identity provider is slow or unreliable.
+ * <p>
+ * Every request to the FakeIdp may be delayed (according to a latency distribution), failed with a 503,
+ * given a different Cache-Control header and have its body sent a few bytes at a time.
+ * 
+ * @author jtalbut
+ */
+final class IdpChaos {
+  
+  /**
+   * The value in a list of Cache-Control variations that causes the header to be removed.
+   */
+  static final String NO_CACHE_CONTROL = "none";
+  
+  /**
+   * An IdpChaos that does not change the behaviour of the FakeIdp at all.
+   */
+  static final IdpChaos NONE = new IdpChaos("none", r -> 0, 0, 0, 0, Collections.emptyList());
+
+  /**
+   * A distribution of latencies.
+   */
+  private interface Latency {
+    double nextMillis(ThreadLocalRandom random);
+  }
+  
+  private final String latencySpec;
+  private final Latency latency;
+  private final double errorPercent;
+  private final int dripBytes;
+  private final int dripMillis;
+  private final List<String> cacheControls;
+
+  private IdpChaos(String latencySpec, Latency latency, double errorPercent, int dripBytes, int dripMillis, List<String> cacheControls) {
+    this.latencySpec = latencySpec;
+    this.latency = latency;
+    this.errorPercent = errorPercent;
+    this.dripBytes = dripBytes;
+    this.dripMillis = dripMillis;
+    this.cacheControls = cacheControls;
+  }
+  
+  /**
+   * Parse the chaos options.
+   * @param latency The latency distribution, as "none", "fixed:MS", "uniform:MIN:MAX", "exponential:MEAN" or "lognormal:MEDIAN:SIGMA".
+   * @param errors The percentage of requests that should fail with a 503.
+   * @param drip The rate at which to send bodies, as "BYTES:MS", or "none" to send them all at once.
+   * @param cacheControl The Cache-Control headers to choose from, separated by "|"; "none" removes the header.
+   *        If null the headers set by the handlers are left alone.
+   * @return The IdpChaos.
+   * @throws IllegalArgumentException if any of the values are not valid.
+   */
+  static IdpChaos parse(String latency, String errors, String drip, String cacheControl) throws IllegalArgumentException {
+    double errorPercent = Double.parseDouble(errors);
+    if (errorPercent < 0 || errorPercent > 100) {
+      throw new IllegalArgumentException("The IdP error percentage must be between 0 and 100");
+    }
+    int dripBytes = 0;
+    int dripMillis = 0;
+    if (!"none".equals(drip)) {
+      String[] parts = drip.split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("The IdP drip rate must be \"BYTES:MS\"");
+      }
+      dripBytes = Integer.parseInt(parts[0]);
+      dripMillis = Integer.parseInt(parts[1]);
+      if (dripBytes < 1 || dripMillis < 1) {
+        throw new IllegalArgumentException("The IdP drip bytes and interval must both be at least 1");
+      }
+    }
+    List<String> cacheControls = new ArrayList<>();
+    if (cacheControl != null) {
+      for (String value : cacheControl.split("\\|")) {
+        cacheControls.add(value.trim());
+      }
+    }
+    return new IdpChaos(latency, latency(latency), errorPercent, dripBytes, dripMillis, Collections.unmodifiableList(cacheControls));
+  }
+  
+  private static Latency latency(String spec) {
+    String[] parts = spec.split(":");
+    switch (parts[0]) {
+      case "none":
+        checkParameters(spec, parts, 0);
+        return r -> 0;
+      case "fixed":
+        checkParameters(spec, parts, 1);
+        double fixed = millis(parts[1]);
+        return r -> fixed;
+      case "uniform":
+        checkParameters(spec, parts, 2);
+        double min = millis(parts[1]);
+        double max = millis(parts[2]);
+        if (max < min) {
+          throw new IllegalArgumentException("The maximum of a uniform latency distribution must not be less than the minimum");
+        }
+        return r -> min + r.nextDouble() * (max - min);
+      case "exponential":
+        checkParameters(spec, parts, 1);
+        double mean = millis(parts[1]);
+        return r -> -mean * Math.log(1.0 - r.nextDouble());
+      case "lognormal":
+        checkParameters(spec, parts, 2);
+        double median = millis(parts[1]);
+        double sigma = Double.parseDouble(parts[2]);
+        return r -> median * Math.exp(sigma * r.nextGaussian());
+      default:
+        throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+    }
+  }
+  
+  private static void checkParameters(String spec, String[] parts, int count) {
+    if (parts.length != count + 1) {
+      throw new IllegalArgumentException("The latency distribution " + spec + " should have " + count + " parameter(s)");
+    }
+  }
+  
+  private static double millis(String value) {
+    double result = Double.parseDouble(value);
+    if (result < 0) {
+      throw new IllegalArgumentException("Latencies must not be negative");
+    }
+    return result;
+  }
+
+  /**
+   * Return true if this IdpChaos changes the behaviour of the FakeIdp in any way.
+   * @return true if this IdpChaos changes the behaviour of the FakeIdp in any way.
+   */
+  boolean isEnabled() {
+    return !"none".equals(latencySpec) || errorPercent > 0 || dripBytes > 0 || !cacheControls.isEmpty();
+  }
+  
+  /**
+   * Choose the delay before the next response.
+   * @return the delay before the next response, in milliseconds.
+   */
+  long nextLatencyMillis() {
+    return Math.round(latency.nextMillis(ThreadLocalRandom.current()));
+  }
+  
+  /**
+   * Choose whether the next response should fail.
+   * @return true if the next response should fail.
+   */
+  boolean nextFailure() {
+    return errorPercent > 0 && ThreadLocalRandom.current().nextDouble() * 100 < errorPercent;
+  }
+  
+  /**
+   * Replace the Cache-Control header of a response with one of the configured variations.
+   * This must be called after the handler has set its own headers, i.e. from a headers end handler.
+   * @param response The response being sent.
+   */
+  void applyCacheControl(HttpServerResponse response) {
+    if (cacheControls.isEmpty()) {
+      return;
+    }
+    String value = cacheControls.get(ThreadLocalRandom.current().nextInt(cacheControls.size()));
+    if (NO_CACHE_CONTROL.equals(value)) {
+      response.headers().remove("cache-control");
+    } else {
+      response.headers().set("cache-control", value);
+    }
+  }
+  
+  /**
+   * End the response with the given body, a few bytes at a time if a drip rate has been configured.
+   * The status code and any headers must already have been set.
+   * @param ctx The context of the request being responded to.
+   * @param body The body of the response.
+   */
+  void send(RoutingContext ctx, Buffer body) {
+    HttpServerResponse response = ctx.response();
+    if (dripBytes <= 0 || body.length() <= dripBytes) {
+      response.end(body);
+    } else {
+      response.putHeader("Content-Length", Integer.toString(body.length()));
+      drip(ctx, body, 0);
+    }
+  }
+  
+  private void drip(RoutingContext ctx, Buffer body, int offset) {
+    HttpServerResponse response = ctx.response();
+    if (response.closed()) {
+      return;
+    }
+    int end = Math.min(body.length(), offset + dripBytes);
+    if (end == body.length()) {
+      response.end(body.getBuffer(offset, end));
+    } else {
+      response.write(body.getBuffer(offset, end));
+      ctx.vertx().setTimer(dripMillis, id -> drip(ctx, body, end));
+    }
+  }
+
+  @Override
+  public String toString() {
+    if (!isEnabled()) {
+      return "none";
+    }
+    return "latency=" + latencySpec
+            + ", errors=" + errorPercent + "%"
+            + ", drip=" + (dripBytes == 0 ? "none" : dripBytes + " bytes every " + dripMillis + "ms")
+            + ", cache-control=" + (cacheControls.isEmpty() ? "unchanged" : String.join("|", cacheControls));
+  }
+  
+}
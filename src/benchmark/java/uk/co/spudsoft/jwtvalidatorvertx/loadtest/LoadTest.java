@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.loadtest;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.client.WebClient;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.AudienceMatcher;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenMinter;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.KeyPairPool;
+
+/**
+ * Offline load test of the JwtValidator against a {@link FakeIdp}.
+ * <p>
+ * A fixed number of worker threads each keep one validation in flight, optionally paced to achieve a target rate.
+ * When a rate is set latencies are measured from the time at which each validation should have started, 
+ * so that stalls are not hidden by coordinated omission.
+ * <p>
+ * The allocation rate covers every thread in the JVM, including the FakeIdp and the workers themselves, 
+ * so it is only useful for comparing runs with the same options.
+ * <p>
+ * Run with:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec@loadtest -Dloadtest.args="--mode dynamic --rate 2000 --rotation 10"
+ * </pre>
+ * 
+ * @author jtalbut
+ */
+public final class LoadTest {
+  
+  private static final String AUDIENCE = "load-test";
+  private static final long TIMEOUT_SECONDS = 30;
+  
+  private final LoadTestOptions options;
+  private final FakeIdp idp;
+  private final JwtValidator validator;
+  private final KeyPairPool keyPairPool;
+  private final AudienceMatcher audience = AudienceMatcher.create(AUDIENCE);
+  private final Recorder recorder = new Recorder(TimeUnit.SECONDS.toMicros(TIMEOUT_SECONDS), 3);
+  
+  private final List<Deque<String>> activeKids = new ArrayList<>();
+  private final List<String> retiringKids = new ArrayList<>();
+  private final Map<String, JsonWebAlgorithm> kidAlgorithms = new ConcurrentHashMap<>();
+  private final AtomicInteger rotations = new AtomicInteger();
+  private final AtomicReference<TokenEntry[][]> tokens = new AtomicReference<>();
+  
+  private final LongAdder acceptedValid = new LongAdder();
+  private final LongAdder rejectedInvalid = new LongAdder();
+  private final LongAdder rejectedValid = new LongAdder();
+  private final LongAdder acceptedInvalid = new LongAdder();
+  private final AtomicReference<Throwable> firstUnexpectedFailure = new AtomicReference<>();
+  
+  /**
+   * A token to be validated, along with the issuer that should be passed to the validator and whether or not it should be accepted.
+   */
+  private static final class TokenEntry {
+    private final String issuer;
+    private final String token;
+    private final boolean valid;
+
+    TokenEntry(String issuer, String token, boolean valid) {
+      this.issuer = issuer;
+      this.token = token;
+      this.valid = valid;
+    }
+  }
+
+  private LoadTest(LoadTestOptions options, FakeIdp idp, JwtValidator validator, KeyPairPool keyPairPool) {
+    this.options = options;
+    this.idp = idp;
+    this.validator = validator;
+    this.keyPairPool = keyPairPool;
+  }
+  
+  /**
+   * Run the load test.
+   * @param args Command line arguments, see {@link LoadTestOptions#USAGE}.
+   * @throws Exception if the load test cannot be run.
+   */
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options;
+    try {
+      options = LoadTestOptions.parse(args);
+    } catch (IllegalArgumentException ex) {
+      System.err.println(ex.getMessage());
+      System.err.println(LoadTestOptions.USAGE);
+      System.exit(1);
+      return;
+    }
+    System.out.println("Load test: " + options);
+    
+    FakeIdp idp = FakeIdp.start(options.issuers, options.chaos).toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    Vertx vertx = Vertx.vertx();
+    // Each rotation needs a new key for every issuer
+    KeyPairPool keyPairPool = new KeyPairPool(options.issuers, Math.max(1, Runtime.getRuntime().availableProcessors() / 4), options.algorithms);
+    try {
+      LoadTest loadTest = new LoadTest(options, idp, createValidator(options, idp, WebClient.create(vertx)), keyPairPool);
+      loadTest.run();
+    } finally {
+      keyPairPool.close();
+      vertx.close().toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      idp.close().toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+  }
+  
+  private static JwtValidator createValidator(LoadTestOptions options, FakeIdp idp, WebClient webClient) {
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Collections.singletonList(idp.getIssuerRegex()), null, Duration.ofMinutes(1));
+    JwtValidator validator;
+    switch (options.mode) {
+      case STATIC:
+        List<String> jwksUrls = idp.getIssuers().stream().map(FakeIdp.Issuer::getJwksUrl).collect(Collectors.toList());
+        validator = JwtValidator.createStatic(webClient, jwksUrls, Duration.ofMinutes(1), iah);
+        break;
+      case ELB:
+        validator = JwtValidator.createAwsElb(webClient, Collections.singletonList(idp.getElbBaseUrl()), Duration.ofMinutes(1), iah);
+        break;
+      default:
+        validator = JwtValidator.createDynamic(webClient, iah, Duration.ofMinutes(1));
+        break;
+    }
+    validator.setPolicy(ValidationPolicy.builder().setPermittedAlgorithms(options.algorithms).build());
+    return validator;
+  }
+  
+  private void run() throws Exception {
+    for (int i = 0; i < options.issuers; ++i) {
+      activeKids.add(new ArrayDeque<>());
+      retiringKids.add(null);
+    }
+    for (int k = 0; k < options.kidsPerIssuer; ++k) {
+      addKeys();
+    }
+    mintTokens();
+    
+    ScheduledExecutorService rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "load-test-rotator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (options.rotationSeconds > 0) {
+      rotator.scheduleAtFixedRate(this::rotate, options.rotationSeconds, options.rotationSeconds, TimeUnit.SECONDS);
+    }
+    
+    long startNanos = System.nanoTime();
+    long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+    long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < options.concurrency; ++i) {
+      int index = i;
+      Thread worker = new Thread(() -> runWorker(index, startNanos, endNanos), "load-test-worker-" + i);
+      worker.setDaemon(true);
+      workers.add(worker);
+      worker.start();
+    }
+
+    try {
+      report(measureStartNanos, endNanos);
+    } finally {
+      rotator.shutdownNow();
+      for (Thread worker : workers) {
+        worker.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+      }
+    }
+  }
+  
+  /**
+   * Add a new key to each issuer, retiring the oldest key if there are already enough.
+   * Retired keys are only removed from the JWKS at the following rotation, so that tokens already handed to workers remain valid.
+   */
+  private void addKeys() {
+    int rotation = rotations.getAndIncrement();
+    JsonWebAlgorithm algorithm = options.algorithms.get(rotation % options.algorithms.size());
+    for (int i = 0; i < options.issuers; ++i) {
+      Cache<String, AlgorithmAndKeyPair> keyCache = idp.getIssuers().get(i).getKeyCache();
+      String retiring = retiringKids.get(i);
+      if (retiring != null) {
+        synchronized (keyCache) {
+          keyCache.invalidate(retiring);
+        }
+        kidAlgorithms.remove(retiring);
+        retiringKids.set(i, null);
+      }
+      Deque<String> kids = activeKids.get(i);
+      // The key itself is taken from the key pair pool by the token builder when the first token is signed with it.
+      String kid = UUID.randomUUID().toString();
+      kidAlgorithms.put(kid, algorithm);
+      kids.addLast(kid);
+      if (kids.size() > options.kidsPerIssuer) {
+        retiringKids.set(i, kids.removeFirst());
+      }
+    }
+  }
+  
+  private void rotate() {
+    try {
+      addKeys();
+      mintTokens();
+    } catch (Throwable ex) {
+      System.err.println("Failed to rotate keys: " + ex);
+    }
+  }
+  
+  /**
+   * Mint the tokens for the currently active keys.
+   * Element 0 of the result contains the valid tokens, element 1 contains the invalid ones.
+   */
+  private void mintTokens() throws Exception {
+    List<TokenEntry> valid = new ArrayList<>();
+    List<TokenEntry> invalid = new ArrayList<>();
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    long exp = nowSeconds + options.warmupSeconds + options.durationSeconds + 3600;
+    List<String> aud = Collections.singletonList(AUDIENCE);
+    
+    for (int i = 0; i < options.issuers; ++i) {
+      FakeIdp.Issuer issuer = idp.getIssuers().get(i);
+      String requestIssuer = options.mode == LoadTestOptions.Mode.DYNAMIC ? issuer.getBaseUrl() : null;
+      JdkTokenBuilder builder = new JdkTokenBuilder(issuer.getKeyCache(), keyPairPool);
+      JdkTokenBuilder badSignatureBuilder = new JdkTokenBuilder(issuer.getKeyCache());
+      badSignatureBuilder.setSignatureNotValidHash(true);
+      
+      for (String kid : activeKids.get(i)) {
+        JsonWebAlgorithm algorithm = kidAlgorithms.get(kid);
+        JdkTokenMinter minter = builder.minter(algorithm, kid, issuer.getBaseUrl(), aud, null);
+        for (int t = 0; t < options.tokensPerKid; ++t) {
+          valid.add(new TokenEntry(requestIssuer
+                  , minter.mint("sub-" + t, nowSeconds, exp, null)
+                  , true
+          ));
+        }
+        invalid.add(new TokenEntry(requestIssuer
+                , badSignatureBuilder.buildToken(algorithm, kid, issuer.getBaseUrl(), "sub", aud, nowSeconds, exp, Collections.emptyMap())
+                , false
+        ));
+        invalid.add(new TokenEntry(requestIssuer
+                , builder.buildToken(algorithm, kid, issuer.getBaseUrl(), "sub", aud, nowSeconds - 7200, nowSeconds - 3600, Collections.emptyMap())
+                , false
+        ));
+        invalid.add(new TokenEntry(requestIssuer
+                , builder.buildToken(algorithm, kid, issuer.getBaseUrl(), "sub", Collections.singletonList("other"), nowSeconds, exp, Collections.emptyMap())
+                , false
+        ));
+      }
+    }
+    tokens.set(new TokenEntry[][] {valid.toArray(new TokenEntry[0]), invalid.toArray(new TokenEntry[0])});
+  }
+  
+  private void runWorker(int index, long startNanos, long endNanos) {
+    long intervalNanos = options.rate > 0 ? TimeUnit.SECONDS.toNanos(options.concurrency) / options.rate : 0;
+    // Stagger the workers so that paced requests are spread evenly
+    long next = startNanos + intervalNanos * index / options.concurrency;
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    
+    while (!Thread.currentThread().isInterrupted()) {
+      long intended;
+      if (intervalNanos > 0) {
+        long now;
+        while ((now = System.nanoTime()) < next) {
+          LockSupport.parkNanos(next - now);
+        }
+        intended = next;
+        next += intervalNanos;
+      } else {
+        intended = System.nanoTime();
+      }
+      if (intended >= endNanos) {
+        return;
+      }
+      
+      TokenEntry[][] current = tokens.get();
+      boolean useInvalid = random.nextDouble() * 100 < options.invalidPercent;
+      TokenEntry[] candidates = current[useInvalid ? 1 : 0];
+      TokenEntry entry = candidates[random.nextInt(candidates.length)];
+      
+      Throwable failure = null;
+      try {
+        validator.validateTokenForAudiences(entry.issuer, entry.token, audience, false)
+                .toCompletionStage().toCompletableFuture().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (ExecutionException ex) {
+        failure = ex.getCause();
+      } catch (TimeoutException ex) {
+        failure = ex;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      recorder.recordValue(Math.min(Math.max(1, (System.nanoTime() - intended) / 1000), TimeUnit.SECONDS.toMicros(TIMEOUT_SECONDS)));
+      
+      if (entry.valid) {
+        if (failure == null) {
+          acceptedValid.increment();
+        } else {
+          rejectedValid.increment();
+          firstUnexpectedFailure.compareAndSet(null, failure);
+        }
+      } else {
+        if (failure == null) {
+          acceptedInvalid.increment();
+        } else {
+          rejectedInvalid.increment();
+        }
+      }
+    }
+  }
+  
+  /**
+   * Snapshot of the counters, so that the change over an interval can be reported.
+   */
+  private final class Snapshot {
+    private final long nanos = System.nanoTime();
+    private final long acceptedValid = LoadTest.this.acceptedValid.sum();
+    private final long rejectedInvalid = LoadTest.this.rejectedInvalid.sum();
+    private final long rejectedValid = LoadTest.this.rejectedValid.sum();
+    private final long acceptedInvalid = LoadTest.this.acceptedInvalid.sum();
+    private final long validations = acceptedValid + rejectedInvalid + rejectedValid + acceptedInvalid;
+    private final long unexpected = rejectedValid + acceptedInvalid;
+    private final long discovery = idp.getDiscoveryRequests();
+    private final long jwks = idp.getJwksRequests();
+    private final long elb = idp.getElbRequests();
+    private final long allocated = allocatedBytes();
+  }
+  
+  private void report(long measureStartNanos, long endNanos) throws InterruptedException {
+    sleepUntil(measureStartNanos);
+    recorder.getIntervalHistogram();
+    Snapshot start = new Snapshot();
+    Snapshot previous = start;
+    Histogram total = null;
+    Histogram interval = null;
+    
+    System.out.println();
+    System.out.println(String.format("%8s %10s %10s %10s %10s %10s %10s %8s %8s %10s"
+            , "elapsed", "valid/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "idp req", "errors", "alloc MB/s"));
+    
+    long reportNanos = TimeUnit.SECONDS.toNanos(options.reportSeconds);
+    for (long next = measureStartNanos + reportNanos; previous.nanos < endNanos; next += reportNanos) {
+      sleepUntil(Math.min(next, endNanos));
+      interval = recorder.getIntervalHistogram(interval);
+      Snapshot current = new Snapshot();
+      if (total == null) {
+        total = interval.copy();
+      } else {
+        total.add(interval);
+      }
+      double seconds = (current.nanos - previous.nanos) / 1e9;
+      System.out.println(String.format("%8.1f %10.0f %10.3f %10.3f %10.3f %10.3f %10.3f %8d %8d %10.1f"
+              , (current.nanos - measureStartNanos) / 1e9
+              , (current.validations - previous.validations) / seconds
+              , millis(interval, 50.0)
+              , millis(interval, 90.0)
+              , millis(interval, 99.0)
+              , millis(interval, 99.9)
+              , interval.getMaxValue() / 1000.0
+              , (current.discovery + current.jwks + current.elb) - (previous.discovery + previous.jwks + previous.elb)
+              , current.unexpected - previous.unexpected
+              , (current.allocated - previous.allocated) / seconds / (1024 * 1024)
+      ));
+      previous = current;
+    }
+    
+    summarise(start, previous, total);
+  }
+  
+  private void summarise(Snapshot start, Snapshot end, Histogram total) {
+    double seconds = (end.nanos - start.nanos) / 1e9;
+    long validations = end.validations - start.validations;
+    System.out.println();
+    System.out.println(String.format("Validations:         %d in %.1fs (%.0f/s)", validations, seconds, validations / seconds));
+    System.out.println(String.format("Valid accepted:      %d", end.acceptedValid - start.acceptedValid));
+    System.out.println(String.format("Invalid rejected:    %d", end.rejectedInvalid - start.rejectedInvalid));
+    System.out.println(String.format("Valid rejected:      %d", end.rejectedValid - start.rejectedValid));
+    System.out.println(String.format("Invalid accepted:    %d", end.acceptedInvalid - start.acceptedInvalid));
+    System.out.println(String.format("Key rotations:       %d", Math.max(0, rotations.get() - options.kidsPerIssuer)));
+    System.out.println(String.format("Key pool misses:     %d", keyPairPool.getMisses()));
+    System.out.println(String.format("IdP requests:        discovery %d, jwks %d, elb %d"
+            , end.discovery - start.discovery, end.jwks - start.jwks, end.elb - start.elb));
+    if (options.chaos.isEnabled()) {
+      System.out.println(String.format("IdP failures:        %d injected (whole run)", idp.getInjectedFailures()));
+    }
+    System.out.println("IdP requests by endpoint (whole run):");
+    idp.getRequestsByEndpoint().forEach((path, count) -> System.out.println(String.format("  %8d  %s", count, path)));
+    if (end.allocated >= 0 && validations > 0) {
+      System.out.println(String.format("Allocation:          %.1f MB/s, %.0f bytes per validation (whole JVM)"
+              , (end.allocated - start.allocated) / seconds / (1024 * 1024)
+              , (end.allocated - start.allocated) / (double) validations));
+    }
+    if (total != null) {
+      System.out.println("Latency (ms):");
+      for (double percentile : new double[] {50.0, 75.0, 90.0, 99.0, 99.9, 99.99}) {
+        System.out.println(String.format("  %6s%%  %10.3f", percentile, millis(total, percentile)));
+      }
+      System.out.println(String.format("  %7s  %10.3f", "max", total.getMaxValue() / 1000.0));
+    }
+    Throwable failure = firstUnexpectedFailure.get();
+    if (failure != null) {
+      System.out.println("First unexpected failure: " + failure);
+    }
+  }
+  
+  private static double millis(Histogram histogram, double percentile) {
+    return histogram.getValueAtPercentile(percentile) / 1000.0;
+  }
+  
+  private static void sleepUntil(long nanos) throws InterruptedException {
+    long now;
+    while ((now = System.nanoTime()) < nanos) {
+      TimeUnit.NANOSECONDS.sleep(nanos - now);
+    }
+  }
+  
+  /**
+   * Get the total number of bytes allocated by all live threads, or -1 if this is not supported by the JVM.
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    long total = 0;
+    for (long bytes : sunBean.getThreadAllocatedBytes(sunBean.getAllThreadIds())) {
+      if (bytes > 0) {
+        total += bytes;
+      }
+    }
+    return total;
+  }
+  
+}
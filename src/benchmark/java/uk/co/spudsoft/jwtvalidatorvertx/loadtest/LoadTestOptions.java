@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+
+/**
+ * Configuration of a {@link LoadTest} run, parsed from "--name value" command line arguments.
+ * 
+ * @author jtalbut
+ */
+final class LoadTestOptions {
+  
+  /**
+   * The way in which the JwtValidator locates keys.
+   */
+  enum Mode {
+    /**
+     * {@link uk.co.spudsoft.jwtvalidatorvertx.JwtValidator#createDynamic}, using OpenID discovery for each issuer.
+     */
+    DYNAMIC,
+    /**
+     * {@link uk.co.spudsoft.jwtvalidatorvertx.JwtValidator#createStatic}, with the JWKS URL of every issuer configured.
+     */
+    STATIC,
+    /**
+     * {@link uk.co.spudsoft.jwtvalidatorvertx.JwtValidator#createAwsElb}, fetching individual PEM keys (ES256 only).
+     */
+    ELB
+  }
+  
+  static final String USAGE = "Options (all optional):\n"
+          + "  --mode dynamic|static|elb   How the validator finds keys (default dynamic)\n"
+          + "  --rate N                    Target validations per second, 0 for as fast as possible (default 0)\n"
+          + "  --concurrency N             Number of validations in flight (default 16)\n"
+          + "  --duration S                Seconds to measure for (default 30)\n"
+          + "  --warmup S                  Seconds to run before measuring (default 5)\n"
+          + "  --report S                  Seconds between interval reports (default 5)\n"
+          + "  --issuers N                 Number of issuers served by the fake IdP (default 2)\n"
+          + "  --kids N                    Number of active keys per issuer (default 2)\n"
+          + "  --algorithms A,B            Algorithms used for the keys, in rotation (default RS256,ES256, ES256 for elb)\n"
+          + "  --invalid P                 Percentage of tokens that are invalid (default 5)\n"
+          + "  --rotation S                Seconds between key rotations, 0 for no rotation (default 0)\n"
+          + "  --tokens N                  Number of distinct valid tokens minted per key (default 16)\n"
+          + "  --idp-latency D             Delay before each IdP response: none, fixed:MS, uniform:MIN:MAX,\n"
+          + "                              exponential:MEAN or lognormal:MEDIAN:SIGMA (default none)\n"
+          + "  --idp-errors P              Percentage of IdP requests that fail with a 503 (default 0)\n"
+          + "  --idp-drip B:MS             Send IdP response bodies B bytes every MS milliseconds (default none)\n"
+          + "  --idp-cache-control V|V     Cache-Control headers for IdP responses, chosen at random, \"none\" removes it\n"
+          + "                              (default unchanged)\n";
+  
+  final Mode mode;
+  final int rate;
+  final int concurrency;
+  final int durationSeconds;
+  final int warmupSeconds;
+  final int reportSeconds;
+  final int issuers;
+  final int kidsPerIssuer;
+  final List<JsonWebAlgorithm> algorithms;
+  final double invalidPercent;
+  final int rotationSeconds;
+  final int tokensPerKid;
+  final IdpChaos chaos;
+  
+  private LoadTestOptions(Map<String, String> values) {
+    this.mode = Mode.valueOf(values.getOrDefault("mode", "dynamic").toUpperCase(Locale.ROOT));
+    this.rate = intValue(values, "rate", 0, 0);
+    this.concurrency = intValue(values, "concurrency", 16, 1);
+    this.durationSeconds = intValue(values, "duration", 30, 1);
+    this.warmupSeconds = intValue(values, "warmup", 5, 0);
+    this.reportSeconds = intValue(values, "report", 5, 1);
+    this.issuers = intValue(values, "issuers", 2, 1);
+    this.kidsPerIssuer = intValue(values, "kids", 2, 1);
+    this.algorithms = algorithms(values.get("algorithms"), mode);
+    this.invalidPercent = Double.parseDouble(values.getOrDefault("invalid", "5"));
+    if (invalidPercent < 0 || invalidPercent > 100) {
+      throw new IllegalArgumentException("The invalid percentage must be between 0 and 100");
+    }
+    this.rotationSeconds = intValue(values, "rotation", 0, 0);
+    this.tokensPerKid = intValue(values, "tokens", 16, 1);
+    this.chaos = IdpChaos.parse(values.getOrDefault("idp-latency", "none")
+            , values.getOrDefault("idp-errors", "0")
+            , values.getOrDefault("idp-drip", "none")
+            , values.get("idp-cache-control"));
+  }
+  
+  /**
+   * Parse the command line arguments.
+   * @param args The command line arguments, as "--name value" pairs.
+   * @return The options.
+   * @throws IllegalArgumentException if the arguments are not valid.
+   */
+  static LoadTestOptions parse(String[] args) throws IllegalArgumentException {
+    Map<String, String> values = new HashMap<>();
+    for (int i = 0; i < args.length; i += 2) {
+      if (!args[i].startsWith("--") || i + 1 >= args.length) {
+        throw new IllegalArgumentException("Arguments must be \"--name value\" pairs, not \"" + args[i] + "\"");
+      }
+      values.put(args[i].substring(2), args[i + 1]);
+    }
+    return new LoadTestOptions(values);
+  }
+  
+  private static int intValue(Map<String, String> values, String name, int defaultValue, int minimum) {
+    String value = values.get(name);
+    int result = value == null ? defaultValue : Integer.parseInt(value);
+    if (result < minimum) {
+      throw new IllegalArgumentException("The value of " + name + " must be at least " + minimum);
+    }
+    return result;
+  }
+  
+  private static List<JsonWebAlgorithm> algorithms(String value, Mode mode) {
+    if (value == null) {
+      return mode == Mode.ELB 
+              ? Collections.singletonList(JsonWebAlgorithm.ES256) 
+              : Arrays.asList(JsonWebAlgorithm.RS256, JsonWebAlgorithm.ES256);
+    }
+    List<JsonWebAlgorithm> result = new ArrayList<>();
+    for (String name : value.split(",")) {
+      JsonWebAlgorithm algorithm = ValidationPolicy.algorithmForName(name.trim());
+      if (algorithm == null || !ValidationPolicy.SUPPORTED_ALGORITHMS.contains(algorithm)) {
+        throw new IllegalArgumentException("Algorithm " + name + " is not supported");
+      }
+      if ("HMAC".equals(algorithm.getFamilyName())) {
+        throw new IllegalArgumentException("The fake IdP cannot publish shared secrets, so " + name + " cannot be used");
+      }
+      if (mode == Mode.ELB && algorithm != JsonWebAlgorithm.ES256) {
+        throw new IllegalArgumentException("AWS ELB keys are always ES256");
+      }
+      result.add(algorithm);
+    }
+    return Collections.unmodifiableList(result);
+  }
+  
+  @Override
+  public String toString() {
+    return "mode=" + mode
+            + ", rate=" + (rate == 0 ? "unlimited" : rate + "/s")
+            + ", concurrency=" + concurrency
+            + ", duration=" + durationSeconds + "s"
+            + ", warmup=" + warmupSeconds + "s"
+            + ", issuers=" + issuers
+            + ", kids=" + kidsPerIssuer
+            + ", algorithms=" + algorithms
+            + ", invalid=" + invalidPercent + "%"
+            + ", rotation=" + (rotationSeconds == 0 ? "none" : rotationSeconds + "s")
+            + ", tokens=" + tokensPerKid
+            + ", idp chaos=" + chaos;
+  }
+  
+}
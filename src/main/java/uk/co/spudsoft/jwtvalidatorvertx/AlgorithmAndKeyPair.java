@@ -20,6 +20,7 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import java.security.KeyPair;
 import java.time.Duration;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.VersionedCache;
 
 /**
  * Associated the algorithm with a {@link java.security.KeyPair}. The keys for some algorithms (like RSA) can be used for
@@ -33,13 +34,15 @@ public class AlgorithmAndKeyPair {
 
   /**
    * Create a guava cache with a configured key lifetime.
+   * <p>
+   * The cache counts the changes made to it, so that a {@link uk.co.spudsoft.jwtvalidatorvertx.JwksHandler} can tell when its JWKS must be rebuilt.
    * @param keyLifetime The value to use for the expireAfterWrite setting.
    * @return a guava cache with a configured key lifetime.
    */
   public static Cache<String, AlgorithmAndKeyPair> createCache(Duration keyLifetime) {
-    return CacheBuilder.newBuilder()
+    return new VersionedCache<>(CacheBuilder.newBuilder()
             .expireAfterWrite(keyLifetime)
-            .build();
+    );
   }
     
   /**
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import io.vertx.core.json.JsonArray;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Precompiled set of acceptable audiences, for checking the aud claim of a JWT.
+ * <p>
+ * A token is accepted if any value in its aud claim is in the set.
+ * The check is a hash lookup for each value in the aud claim, and does not create any intermediate collections.
+ * <p>
+ * AudienceMatchers are immutable and thread safe, they are intended to be created once (e.g. per route) and reused for every token.
+ * When a large number of matchers are created with overlapping audiences the audience strings can be interned, so that each distinct 
+ * audience is only held in memory once.
+ * 
+ * @author jtalbut
+ */
+public final class AudienceMatcher {
+  
+  private static final Interner<String> INTERNER = Interners.newWeakInterner();
+  
+  private final Set<String> audiences;
+
+  private AudienceMatcher(Set<String> audiences) {
+    this.audiences = audiences;
+  }
+  
+  /**
+   * Create an AudienceMatcher.
+   * @param audiences The acceptable audiences.
+   * @return a newly created AudienceMatcher.
+   */
+  public static AudienceMatcher create(String... audiences) {
+    return create(Arrays.asList(audiences), false);
+  }
+  
+  /**
+   * Create an AudienceMatcher.
+   * @param audiences The acceptable audiences.
+   * @return a newly created AudienceMatcher.
+   */
+  public static AudienceMatcher create(Collection<String> audiences) {
+    return create(audiences, false);
+  }
+  
+  /**
+   * Create an AudienceMatcher.
+   * @param audiences The acceptable audiences, null values are ignored.
+   * @param intern If true the audience strings will be replaced with canonical instances shared with all other interned AudienceMatchers.
+   * @return a newly created AudienceMatcher.
+   */
+  public static AudienceMatcher create(Collection<String> audiences, boolean intern) {
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (String audience : audiences) {
+      if (audience != null) {
+        builder.add(intern ? INTERNER.intern(audience) : audience);
+      }
+    }
+    return new AudienceMatcher(builder.build());
+  }
+  
+  /**
+   * Get the acceptable audiences.
+   * @return the acceptable audiences.
+   */
+  public Set<String> getAudiences() {
+    return audiences;
+  }
+  
+  /**
+   * Return true if there are no acceptable audiences.
+   * @return true if there are no acceptable audiences.
+   */
+  public boolean isEmpty() {
+    return audiences.isEmpty();
+  }
+  
+  /**
+   * Return true if the given audience is acceptable.
+   * @param audience The audience to check.
+   * @return true if the given audience is acceptable.
+   */
+  public boolean contains(String audience) {
+    return audience != null && audiences.contains(audience);
+  }
+  
+  /**
+   * Return true if any of the values in the aud claim of the JWT is acceptable.
+   * @param jwt The JWT.
+   * @return true if any of the values in the aud claim of the JWT is acceptable.
+   */
+  public boolean matches(Jwt jwt) {
+    return matchesClaim(jwt.getClaim("aud"));
+  }
+  
+  private boolean matchesItem(Object item) {
+    if (item instanceof String) {
+      return audiences.contains(item);
+    } else if (item != null) {
+      return audiences.contains(item.toString());
+    }
+    return false;
+  }
+  
+  private boolean matchesClaim(Object value) {
+    if (value instanceof String) {
+      return audiences.contains(value);
+    } else if (value instanceof JsonArray) {
+      JsonArray array = (JsonArray) value;
+      for (int i = 0; i < array.size(); ++i) {
+        if (matchesItem(array.getValue(i))) {
+          return true;
+        }
+      }
+    } else if (value instanceof List<?>) {
+      List<?> list = (List<?>) value;
+      for (int i = 0; i < list.size(); ++i) {
+        if (matchesItem(list.get(i))) {
+          return true;
+        }
+      }
+    } else if (value instanceof Iterable<?>) {
+      for (Object item : (Iterable<?>) value) {
+        if (matchesItem(item)) {
+          return true;
+        }
+      }
+    } else if (value instanceof Object[]) {
+      for (Object item : (Object[]) value) {
+        if (matchesItem(item)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return audiences.toString();
+  }
+  
+}
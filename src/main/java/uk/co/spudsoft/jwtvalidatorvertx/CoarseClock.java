@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.Vertx;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A {@link Clock} that only reads the system time periodically, driven by a Vert.x timer.
+ * <p>
+ * Reading the time from a CoarseClock is a single volatile read.
+ * The time returned may be up to one resolution period behind the system clock, which is irrelevant for JWT validation
+ * (where claims are specified in whole seconds) and for cache expiry.
+ * <p>
+ * Every component in this library that needs the time accepts a Clock, so either a single CoarseClock can be shared by all of them
+ * or a test can supply a Clock that it controls.
+ * 
+ * @author jtalbut
+ */
+public final class CoarseClock extends Clock {
+  
+  private final Vertx vertx;
+  private final long timerId;
+  private volatile long millis;
+
+  private CoarseClock(Vertx vertx, long resolutionMs) {
+    this.vertx = vertx;
+    this.millis = System.currentTimeMillis();
+    this.timerId = vertx.setPeriodic(resolutionMs, id -> {
+      millis = System.currentTimeMillis();
+    });
+  }
+  
+  /**
+   * Create a CoarseClock.
+   * @param vertx The Vert.x instance whose timer will be used to update the clock.
+   * @param resolution The period between updates of the clock, must be at least 1ms.
+   * @return a newly created CoarseClock.
+   */
+  public static CoarseClock create(Vertx vertx, Duration resolution) {
+    long resolutionMs = resolution.toMillis();
+    if (resolutionMs < 1) {
+      throw new IllegalArgumentException("The resolution of a CoarseClock must be at least 1ms");
+    }
+    return new CoarseClock(vertx, resolutionMs);
+  }
+  
+  /**
+   * Stop updating the clock.
+   * <p>
+   * After this call the clock will always return the time of its last update.
+   */
+  public void close() {
+    vertx.cancelTimer(timerId);
+  }
+
+  @Override
+  public long millis() {
+    return millis;
+  }
+
+  @Override
+  public Instant instant() {
+    return Instant.ofEpochMilli(millis);
+  }
+
+  @Override
+  public ZoneId getZone() {
+    return ZoneOffset.UTC;
+  }
+
+  @Override
+  public Clock withZone(ZoneId zone) {
+    if (ZoneOffset.UTC.equals(zone)) {
+      return this;
+    }
+    CoarseClock source = this;
+    return new Clock() {
+      @Override
+      public ZoneId getZone() {
+        return zone;
+      }
+
+      @Override
+      public Clock withZone(ZoneId newZone) {
+        return source.withZone(newZone);
+      }
+
+      @Override
+      public long millis() {
+        return source.millis();
+      }
+
+      @Override
+      public Instant instant() {
+        return source.instant();
+      }
+    };
+  }
+  
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.http.PoolOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.FetchServiceImpl;
+
+/**
+ * Service for making the outbound HTTP requests needed to find JWKs (OpenID Discovery documents and JWK Sets).
+ * <p>
+ * A single FetchService may be shared by any number of {@link JsonWebKeySetHandler} instances (and thus any number of {@link JwtValidator} instances),
+ * for example when there is one JwtValidator per verticle.
+ * Responses are cached (according to their Cache-Control max-age header) and shared between all the users of the service, and concurrent requests for
+ * the same URL are coalesced into a single HTTP request.
+ * <p>
+ * Connection pool, timeout and HTTP version settings are all configured in one place, via the {@link Builder}.
+ * 
+ * @author jtalbut
+ */
+public interface FetchService {
+  
+  /**
+   * Create a FetchService that uses an existing WebClient.
+   * 
+   * The WebClient will not be closed by the FetchService.
+   * 
+   * @param webClient The Vertx WebClient instance that will be used for making HTTP requests.
+   * @param defaultCacheDuration Time to keep responses in cache if no cache-control: max-age header is found.
+   * @return a newly created FetchService.
+   */
+  static FetchService create(WebClient webClient, Duration defaultCacheDuration) {
+    return create(webClient, defaultCacheDuration, Clock.systemUTC());
+  }
+  
+  /**
+   * Create a FetchService that uses an existing WebClient.
+   * 
+   * The WebClient will not be closed by the FetchService.
+   * 
+   * @param webClient The Vertx WebClient instance that will be used for making HTTP requests.
+   * @param defaultCacheDuration Time to keep responses in cache if no cache-control: max-age header is found.
+   * @param clock The clock used to calculate and check the expiry time of responses.
+   * @return a newly created FetchService.
+   */
+  static FetchService create(WebClient webClient, Duration defaultCacheDuration, Clock clock) {
+    return new FetchServiceImpl(webClient, false, defaultCacheDuration, null, clock, null);
+  }
+  
+  /**
+   * Create a new {@link Builder} for configuring a FetchService with its own WebClient.
+   * @return a new {@link Builder} for configuring a FetchService with its own WebClient.
+   */
+  static Builder builder() {
+    return new Builder();
+  }
+  
+  /**
+   * Builder for configuring a FetchService with its own WebClient.
+   */
+  class Builder {
+    
+    private Duration defaultCacheDuration = Duration.ofMinutes(1);
+    private Duration connectTimeout;
+    private Duration requestTimeout;
+    private int maxPoolSize;
+    private boolean http2;
+    private String userAgent;
+    private Clock clock = Clock.systemUTC();
+    private ValidationListener validationListener;
+
+    private Builder() {
+    }
+    
+    /**
+     * Set the time to keep responses in cache if no cache-control: max-age header is found.
+     * @param defaultCacheDuration the time to keep responses in cache if no cache-control: max-age header is found.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setDefaultCacheDuration(Duration defaultCacheDuration) {
+      this.defaultCacheDuration = defaultCacheDuration;
+      return this;
+    }
+
+    /**
+     * Set the maximum time to wait for a connection to be established.
+     * @param connectTimeout the maximum time to wait for a connection to be established, null for the Vert.x default.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setConnectTimeout(Duration connectTimeout) {
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    /**
+     * Set the maximum time that a request may wait for data from the server.
+     * @param requestTimeout the maximum time that a request may wait for data from the server, null for no timeout.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setRequestTimeout(Duration requestTimeout) {
+      this.requestTimeout = requestTimeout;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of connections to each server.
+     * @param maxPoolSize the maximum number of connections to each server, zero for the Vert.x default.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setMaxPoolSize(int maxPoolSize) {
+      this.maxPoolSize = maxPoolSize;
+      return this;
+    }
+
+    /**
+     * Set to true to use HTTP/2 (negotiated with ALPN, or h2c upgrade for http URLs).
+     * @param http2 true to use HTTP/2.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setHttp2(boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    /**
+     * Set the User-Agent header to send with requests.
+     * @param userAgent the User-Agent header to send with requests, null for the Vert.x default.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setUserAgent(String userAgent) {
+      this.userAgent = userAgent;
+      return this;
+    }
+    
+    /**
+     * Set the clock used to calculate and check the expiry time of responses.
+     * @param clock the clock used to calculate and check the expiry time of responses.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setClock(Clock clock) {
+      this.clock = clock;
+      return this;
+    }
+    
+    /**
+     * Set the listener that is told how long each HTTP request takes.
+     * @param validationListener the listener that is told how long each HTTP request takes, null to disable timing.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setValidationListener(ValidationListener validationListener) {
+      this.validationListener = validationListener;
+      return this;
+    }
+    
+    /**
+     * Construct the FetchService, which will own (and close) its WebClient.
+     * @param vertx The Vert.x instance to use for creating the WebClient.
+     * @return a newly created FetchService.
+     */
+    public FetchService build(Vertx vertx) {
+      if (maxPoolSize < 0) {
+        throw new IllegalArgumentException("The maxPoolSize may not be negative");
+      }
+      WebClientOptions options = new WebClientOptions();
+      if (connectTimeout != null) {
+        options.setConnectTimeout((int) connectTimeout.toMillis());
+      }
+      if (http2) {
+        options.setProtocolVersion(HttpVersion.HTTP_2);
+        options.setUseAlpn(true);
+        options.setAlpnVersions(Arrays.asList(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1));
+      }
+      if (userAgent != null) {
+        options.setUserAgent(userAgent);
+      }
+      PoolOptions poolOptions = new PoolOptions();
+      if (maxPoolSize > 0) {
+        poolOptions.setHttp1MaxSize(maxPoolSize);
+        poolOptions.setHttp2MaxSize(maxPoolSize);
+      }
+      WebClient webClient = WebClient.create(vertx, options, poolOptions);
+      return new FetchServiceImpl(webClient, true, defaultCacheDuration, requestTimeout, clock, validationListener);
+    }
+  }
+  
+  /**
+   * Get a JsonObject from a URL.
+   * <p>
+   * If there is an unexpired response in the cache it will be returned without making a request.
+   * 
+   * @param url The URL to be got.
+   * @return A TimedObject containing JSON from the URL and an expiry time based on the Cache-Control max-age header.
+   */
+  Future<TimedObject<JsonObject>> getJson(String url);
+  
+  /**
+   * Get a JWK Set from a URL.
+   * <p>
+   * If there is an unexpired response in the cache that contains the kid it will be returned without making a request.
+   * If the cached response does not contain the kid the JWK Set will be requested again, in case the keys have been rotated.
+   * 
+   * @param url The URL to be got.
+   * @param kid The key ID that the caller requires, or null if any JWK Set will do.
+   * @return A TimedObject containing the JWK Set from the URL and an expiry time based on the Cache-Control max-age header.
+   */
+  Future<TimedObject<LazyJwkSet>> getJwkSet(String url, String kid);
+  
+  /**
+   * Close the FetchService, closing the WebClient if it was created by the FetchService.
+   */
+  void close();
+  
+}
@@ -16,6 +16,7 @@
  */
 package uk.co.spudsoft.jwtvalidatorvertx;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
 import uk.co.spudsoft.jwtvalidatorvertx.impl.IssuerAcceptabilityHandlerImpl;
@@ -37,7 +38,8 @@ public interface IssuerAcceptabilityHandler {
    * Construct an instance of the implementation class.
    * @param acceptableIssuerRegexes The List of regular expressions (as Strings) that are acceptable.
    * @param acceptableIssuersFile   The path to a file that contains valid issuers, one per line.
-   * @param pollPeriod              The time period between file checks (the check just looks at the last modified time, so make this about a minute).
+   * @param pollPeriod              The minimum age of a change to the file before it is loaded (the file is watched for changes, 
+   *                                but only loaded once its last modified time is at least this old, so make this a few seconds).
    * 
    * It is vital for the security of any system using OpenID Connect Discovery that it is only used with trusted issuers
    * (otherwise any key that has an RFC compliant discovery endpoint will be accepted).
@@ -49,6 +51,18 @@ public interface IssuerAcceptabilityHandler {
     return new IssuerAcceptabilityHandlerImpl(acceptableIssuerRegexes, acceptableIssuersFile, pollPeriod);
   }
   
+  /**
+   * Construct an instance of the implementation class with a specific clock.
+   * @param acceptableIssuerRegexes The List of regular expressions (as Strings) that are acceptable.
+   * @param acceptableIssuersFile   The path to a file that contains valid issuers, one per line.
+   * @param pollPeriod              The minimum age of a change to the file before it is loaded.
+   * @param clock                   The clock that the last modified time of the file is compared with.
+   * @return a newly created instance of the implementation class.
+   */
+  static IssuerAcceptabilityHandler create(List<String> acceptableIssuerRegexes, String acceptableIssuersFile, Duration pollPeriod, Clock clock) {
+    return new IssuerAcceptabilityHandlerImpl(acceptableIssuerRegexes, acceptableIssuersFile, pollPeriod, clock);
+  }
+  
   
   /**
    * Validate the configuration.
@@ -64,4 +78,12 @@ public interface IssuerAcceptabilityHandler {
    */
   boolean isAcceptable(String issuer);
   
+  /**
+   * Release any resources held by the handler, such as the background thread that watches the acceptable issuers file.
+   * <p>
+   * The default implementation does nothing.
+   */
+  default void close() {
+  }
+  
 }
@@ -69,6 +69,12 @@ public enum JsonWebAlgorithm {
    * ECDSA using P-521 and SHA-512.
    */
   ES512("ES512", "ECDSA using P-521 and SHA-512", "ECDSA", "SHA512withECDSAinP1363Format", 512, 521, "secp521r1", null),
+  /**
+   * ECDSA using secp256k1 and SHA-256.
+   * 
+   * Defined in RFC8812, the JDK no longer includes an implementation of this curve so a third party security provider is required.
+   */
+  ES256K("ES256K", "ECDSA using secp256k1 and SHA-256", "ECDSA", "SHA256withECDSAinP1363Format", 256, 256, "secp256k1", null),
   
   /**
    * RSASSA-PSS using SHA-256 and MGF1 with SHA-256.
@@ -16,7 +16,9 @@
  */
 package uk.co.spudsoft.jwtvalidatorvertx;
 
+import io.vertx.core.Vertx;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Collection;
 import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSAwsElbHandlerImpl;
@@ -56,4 +58,42 @@ public interface JsonWebKeySetAwsElbHandler extends JsonWebKeySetHandler {
     return new JWKSAwsElbHandlerImpl(webClient, keyBaseUrls, defaultJwkCacheDuration);
   }
   
+  /**
+   * Construct an instance of the implementation class that uses hedged requests rather than querying all URLs in parallel.
+   * 
+   * When a KID is requested and cannot be found the URLs are tried one at a time.
+   * The first URL to be tried is the one that matches the AWS region found in the signer header of the token (if there is one),
+   * otherwise it is the first URL in keyBaseUrls.
+   * If no response has been received after hedgeDelay the next URL will be tried (without abandoning the first),
+   * if a request fails the next URL will be tried immediately.
+   * The first successful response wins.
+   * 
+   * This keeps the tail latency low whilst only making one request per cache miss in the usual case.
+   * 
+   * @param vertx Vertx instance, used for the hedge timers.
+   * @param webClient Vertx WebClient instance, that will be used for querying the JWKS URLs.
+   * @param keyBaseUrls Static set of URLs that will be used for obtaining JWKs, in order of preference.
+   * @param defaultJwkCacheDuration Time to keep JWKs in cache if no cache-control: max-age header is found.
+   * @param hedgeDelay Time to wait for a response before sending a request to the next URL.
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetAwsElbHandler create(Vertx vertx, WebClient webClient, Collection<String> keyBaseUrls, Duration defaultJwkCacheDuration, Duration hedgeDelay) {
+    return new JWKSAwsElbHandlerImpl(vertx, webClient, keyBaseUrls, defaultJwkCacheDuration, hedgeDelay);
+  }
+  
+  /**
+   * Construct an instance of the implementation class with a specific clock.
+   *
+   * @param vertx Vertx instance, used for the hedge timers (may only be null if hedgeDelay is null).
+   * @param webClient Vertx WebClient instance, that will be used for querying the JWKS URLs.
+   * @param keyBaseUrls Static set of base URLs that will be used for constructing the URLs to the AWS keys, in order of preference.
+   * @param defaultJwkCacheDuration Time to keep JWKs in cache.
+   * @param hedgeDelay Time to wait for a response from one URL before sending a request to the next one, or null to query all URLs in parallel.
+   * @param clock The clock used to calculate and check the expiry time of cached JWKs.
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetAwsElbHandler create(Vertx vertx, WebClient webClient, Collection<String> keyBaseUrls, Duration defaultJwkCacheDuration, Duration hedgeDelay, Clock clock) {
+    return new JWKSAwsElbHandlerImpl(vertx, webClient, keyBaseUrls, defaultJwkCacheDuration, hedgeDelay, clock);
+  }
+  
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSFileHandlerImpl;
+
+/**
+ * Manage JWKs that are distributed as local files (or classpath resources) rather than being downloaded.
+ * <p>
+ * Each path may be:
+ * <ul>
+ * <li>A file containing a JWK set (a JSON object with a "keys" array) or a single JWK.
+ * <li>A PEM file containing a single public key.
+ * The kid of the key is taken from the file name: either "kid.pem", in which case the key is used with ES256 (as for AWS ELB keys),
+ * or "kid.ALG.pem" where ALG is the name of a {@link JsonWebAlgorithm}.
+ * <li>A directory, in which case every *.json, *.jwks and *.pem file in it is loaded (subdirectories are not scanned).
+ * <li>A classpath resource, specified as "classpath:" followed by the resource name (classpath resources are only loaded once).
+ * </ul>
+ * <p>
+ * All the keys are held in a single immutable index that is replaced atomically whenever any of the watched files change,
+ * so key lookups never block and never go over the network.
+ * As with {@link JsonWebKeySetKnownJwksHandler} each kid must be globally unique across all of the files.
+ * <p>
+ * It is recommended that files be updated atomically (e.g. by writing to a temporary file and renaming it, or by changing a soft link).
+ * 
+ * @author jtalbut
+ */
+public interface JsonWebKeySetFileHandler extends JsonWebKeySetHandler, Closeable {
+  
+  /**
+   * Construct an instance of the implementation class.
+   * 
+   * @param paths The files, directories and classpath resources to load keys from.
+   * @param watch If true the files and directories will be watched (using a {@link java.nio.file.WatchService}) and reloaded when they change.
+   * @return a newly created instance of the implementation class.
+   * @throws IOException if the file system cannot be watched.
+   */
+  static JsonWebKeySetFileHandler create(Collection<String> paths, boolean watch) throws IOException {
+    return new JWKSFileHandlerImpl(paths, watch);
+  }
+  
+  /**
+   * Reload all the keys from the configured paths.
+   * <p>
+   * This happens automatically when the files change if the handler is watching them, but may be called explicitly at any time.
+   */
+  void reload();
+  
+}
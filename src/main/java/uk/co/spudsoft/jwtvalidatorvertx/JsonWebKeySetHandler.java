@@ -18,6 +18,8 @@ package uk.co.spudsoft.jwtvalidatorvertx;
 
 import io.vertx.core.Future;
 import io.vertx.ext.auth.impl.jose.JWK;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Perform OpenID Connect discovery as per <a href="https://openid.net/specs/openid-connect-discovery-1_0.html">openid-connect-discovery-1_0</a>.
@@ -49,5 +51,39 @@ public interface JsonWebKeySetHandler {
    * @return A Future that will be completed with a JWK.
    */
   Future<JWK> findJwk(String issuer, String kid);
-  
+
+  /**
+   * Find a JWK for the given issuer and token.
+   *
+   * This is the method called by the {@link JwtValidator}, it gives handlers access to the header of the token being validated
+   * in case there is anything other than the kid that can help in locating the key.
+   *
+   * The default implementation simply calls {@link #findJwk(java.lang.String, java.lang.String)} with the kid from the token.
+   *
+   * @param issuer the issuer of the JWT (and JWK).
+   * @param jwt The JWT whose key is being sought, only values from the header of the JWT should be used.
+   * @return A Future that will be completed with a JWK.
+   */
+  default Future<JWK> findJwk(String issuer, Jwt jwt) {
+    return findJwk(issuer, jwt.getKid());
+  }
+
+  /**
+   * Find the JWKs that could have been used to sign a token that does not have a kid.
+   *
+   * This is called by the {@link JwtValidator} instead of {@link #findJwk(java.lang.String, uk.co.spudsoft.jwtvalidatorvertx.Jwt)}
+   * when the token has no kid, the validator will try each of the candidates until one of them verifies the signature.
+   * Handlers should return as few candidates as possible, selecting them based on the algorithm and x5t#S256 thumbprint in the header of the token.
+   *
+   * The default implementation returns the single JWK found by {@link #findJwk(java.lang.String, uk.co.spudsoft.jwtvalidatorvertx.Jwt)},
+   * which for most handlers will fail.
+   *
+   * @param issuer the issuer of the JWT (and JWK).
+   * @param jwt The JWT whose key is being sought, only values from the header of the JWT should be used.
+   * @return A Future that will be completed with the candidate JWKs.
+   */
+  default Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+    return findJwk(issuer, jwt).map(Collections::singletonList);
+  }
+
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSIssuerRoutingHandlerImpl;
+
+/**
+ * JsonWebKeySetHandler that passes each request on to one of a number of other JsonWebKeySetHandlers based on the issuer.
+ * <p>
+ * This makes it possible for a single {@link JwtValidator} to accept tokens from sources that need different approaches to 
+ * finding keys (e.g. OpenID Discovery for one issuer, fixed JWKS URLs for another and AWS ELB keys for a third).
+ * Each delegate handler retains its own caches.
+ * <p>
+ * Routes are evaluated in the following order:
+ * <ol>
+ * <li>Exact issuer matches (a single hash lookup).
+ * <li>Issuer prefixes (matched at a path boundary), longest prefix first.
+ * <li>Issuer regular expressions, in the order in which they were added.
+ * <li>The default handler, if one has been set.
+ * </ol>
+ * <p>
+ * If the caller of {@link JwtValidator#validateToken} passes in an issuer that issuer is used for routing, otherwise the iss claim
+ * from the token is used.
+ * Using the unverified iss claim to choose a handler does not weaken security: the signature must still verify against a key
+ * obtained by the chosen handler and the issuer is still checked by the {@link IssuerAcceptabilityHandler} after verification.
+ * The issuer used for routing is passed on to the delegate.
+ * 
+ * @author jtalbut
+ */
+public interface JsonWebKeySetIssuerRoutingHandler extends JsonWebKeySetHandler {
+  
+  /**
+   * Create a new {@link Builder} for configuring a JsonWebKeySetIssuerRoutingHandler.
+   * @return a new {@link Builder} for configuring a JsonWebKeySetIssuerRoutingHandler.
+   */
+  static Builder builder() {
+    return new Builder();
+  }
+  
+  /**
+   * Builder for configuring a JsonWebKeySetIssuerRoutingHandler.
+   */
+  class Builder {
+    
+    private final Map<String, JsonWebKeySetHandler> exact = new LinkedHashMap<>();
+    private final Map<String, JsonWebKeySetHandler> prefixes = new LinkedHashMap<>();
+    private final List<Map.Entry<Pattern, JsonWebKeySetHandler>> patterns = new ArrayList<>();
+    private JsonWebKeySetHandler defaultHandler;
+
+    private Builder() {
+    }
+    
+    /**
+     * Route tokens from a single issuer to a handler.
+     * @param issuer The issuer, which must match exactly.
+     * @param handler The handler that will be asked to find keys for the issuer.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder addIssuer(String issuer, JsonWebKeySetHandler handler) {
+      exact.put(issuer, handler);
+      return this;
+    }
+    
+    /**
+     * Route tokens from any issuer that starts with a given prefix to a handler.
+     * <p>
+     * The prefix only matches at a path boundary: either the prefix ends with a '/' or the next character of the issuer must be a '/'.
+     * This prevents a prefix of "https://idp.example.com" matching "https://idp.example.com.attacker.net/".
+     * @param issuerPrefix The prefix that the issuer must start with.
+     * @param handler The handler that will be asked to find keys for matching issuers.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder addIssuerPrefix(String issuerPrefix, JsonWebKeySetHandler handler) {
+      prefixes.put(issuerPrefix, handler);
+      return this;
+    }
+    
+    /**
+     * Route tokens from any issuer that matches a regular expression to a handler.
+     * @param issuerRegex The regular expression that the issuer must match (in its entirety).
+     * @param handler The handler that will be asked to find keys for matching issuers.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder addIssuerPattern(String issuerRegex, JsonWebKeySetHandler handler) {
+      patterns.add(Map.entry(Pattern.compile(issuerRegex), handler));
+      return this;
+    }
+    
+    /**
+     * Set the handler to use when no other route matches (or there is no issuer).
+     * @param handler The handler to use when no other route matches.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setDefaultHandler(JsonWebKeySetHandler handler) {
+      this.defaultHandler = handler;
+      return this;
+    }
+    
+    /**
+     * Construct the JsonWebKeySetIssuerRoutingHandler.
+     * @return a newly created JsonWebKeySetIssuerRoutingHandler.
+     */
+    public JsonWebKeySetIssuerRoutingHandler build() {
+      return new JWKSIssuerRoutingHandlerImpl(exact, prefixes, patterns, defaultHandler);
+    }
+  }
+  
+  /**
+   * Find the handler that will be used for a given issuer.
+   * @param issuer The issuer.
+   * @return The handler that will be used to find keys for the issuer, or null if there is no suitable handler.
+   */
+  JsonWebKeySetHandler route(String issuer);
+  
+}
@@ -17,6 +17,7 @@
 package uk.co.spudsoft.jwtvalidatorvertx;
 
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Collection;
 import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSStaticSetHandlerImpl;
@@ -55,4 +56,29 @@ public interface JsonWebKeySetKnownJwksHandler extends JsonWebKeySetHandler {
     return new JWKSStaticSetHandlerImpl(webClient, jwksUrls, defaultJwkCacheDuration);
   }
   
+  /**
+   * Construct an instance of the implementation class that uses a (possibly shared) {@link FetchService}.
+   * 
+   * Each JWKs endpoint must use KIDs that are globally unique.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param jwksUrls Static set of URLs that will be used for obtaining JWKs.
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetKnownJwksHandler create(FetchService fetchService, Collection<String> jwksUrls) {
+    return new JWKSStaticSetHandlerImpl(fetchService, jwksUrls);
+  }
+  
+  /**
+   * Construct an instance of the implementation class that uses a (possibly shared) {@link FetchService} and a specific clock.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param jwksUrls Static set of URLs that will be used for obtaining JWKs.
+   * @param clock The clock used to determine whether cached JWKs have expired.
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetKnownJwksHandler create(FetchService fetchService, Collection<String> jwksUrls, Clock clock) {
+    return new JWKSStaticSetHandlerImpl(fetchService, jwksUrls, clock);
+  }
+  
 }
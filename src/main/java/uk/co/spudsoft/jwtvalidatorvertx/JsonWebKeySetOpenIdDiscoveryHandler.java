@@ -19,6 +19,7 @@ package uk.co.spudsoft.jwtvalidatorvertx;
 import io.vertx.core.Future;
 import io.vertx.ext.auth.impl.jose.JWK;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSOpenIdDiscoveryHandlerImpl;
 
@@ -47,6 +48,32 @@ public interface JsonWebKeySetOpenIdDiscoveryHandler extends JsonWebKeySetHandle
     return new JWKSOpenIdDiscoveryHandlerImpl(webClient, issuerAcceptabilityHandler, defaultJwkCacheDuration);
   }
   
+  /**
+   * Construct an instance of the implementation class that uses a (possibly shared) {@link FetchService}.
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param issuerAcceptabilityHandler Object used to determine the acceptability of the JWT issuer.
+   * 
+   * It is vital for the security of any system using OpenID Connect Discovery that it is only used with trusted issuers
+   * (otherwise any key that has an RFC compliant discovery endpoint will be accepted).
+   * Equally the acceptable issuers must be accessed via https for the environment to offer any security.
+   * 
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetOpenIdDiscoveryHandler create(FetchService fetchService, IssuerAcceptabilityHandler issuerAcceptabilityHandler) {
+    return new JWKSOpenIdDiscoveryHandlerImpl(fetchService, issuerAcceptabilityHandler);
+  }
+  
+  /**
+   * Construct an instance of the implementation class that uses a (possibly shared) {@link FetchService} and a specific clock.
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param issuerAcceptabilityHandler Object used to determine the acceptability of the JWT issuer.
+   * @param clock The clock used to determine whether cached discovery data and JWKs have expired.
+   * @return a newly created instance of the implementation class.
+   */
+  static JsonWebKeySetOpenIdDiscoveryHandler create(FetchService fetchService, IssuerAcceptabilityHandler issuerAcceptabilityHandler, Clock clock) {
+    return new JWKSOpenIdDiscoveryHandlerImpl(fetchService, issuerAcceptabilityHandler, clock);
+  }
+  
   /**
    * Find a JWK using the jwks_uri value from the Discovery Data.
    * 
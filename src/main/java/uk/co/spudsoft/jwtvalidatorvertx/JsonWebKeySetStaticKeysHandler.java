@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Collection;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.HmacVerifier;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JWKSStaticKeysHandlerImpl;
+
+/**
+ * JsonWebKeySetHandler that uses a fixed set of keys configured in code.
+ * <p>
+ * This is primarily intended for shared secrets (HS256, HS384 and HS512) used for service-to-service tokens,
+ * which cannot be published in a JWKS.
+ * Remember that the HMAC algorithms must be explicitly permitted on the {@link JwtValidator}.
+ * 
+ * @author jtalbut
+ */
+public interface JsonWebKeySetStaticKeysHandler extends JsonWebKeySetHandler {
+  
+  /**
+   * Construct an instance of the implementation class.
+   * @param keys The keys, each of which must have a unique kid.
+   * @return a newly created instance of the implementation class.
+   * @throws IllegalArgumentException if any of the keys does not have a kid, or if kids are duplicated.
+   */
+  static JsonWebKeySetStaticKeysHandler create(Collection<JWK> keys) throws IllegalArgumentException {
+    return new JWKSStaticKeysHandlerImpl(keys);
+  }
+  
+  /**
+   * Create a JWK for a shared secret.
+   * @param kid The key ID.
+   * @param algorithm The HMAC algorithm that the secret is used with.
+   * @param secret The secret, which must be at least as long as the output of the hash function (as required by RFC 7518).
+   * @return a newly created JWK with kty "oct".
+   * @throws IllegalArgumentException if the algorithm is not an HMAC algorithm or the secret is too short.
+   */
+  static JWK sharedSecret(String kid, JsonWebAlgorithm algorithm, byte[] secret) throws IllegalArgumentException {
+    if (algorithm == null || !"HMAC".equals(algorithm.getFamilyName())) {
+      throw new IllegalArgumentException("Algorithm " + algorithm + " is not an HMAC algorithm");
+    }
+    if (secret == null || secret.length * 8 < algorithm.getMinKeyLength()) {
+      throw new IllegalArgumentException("The secret for " + algorithm.getName() + " must be at least " + algorithm.getMinKeyLength() / 8 + " bytes");
+    }
+    try {
+      return HmacVerifier.createJwk(new JsonObject()
+              .put("kty", "oct")
+              .put("kid", kid)
+              .put("alg", algorithm.getName())
+              .put("use", "sig")
+              .put("k", Base64.getUrlEncoder().withoutPadding().encodeToString(secret))
+      );
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalArgumentException("Failed to create JWK for " + kid, ex);
+    }
+  }
+  
+}
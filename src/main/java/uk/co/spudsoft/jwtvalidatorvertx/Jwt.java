@@ -215,6 +215,15 @@ public class Jwt {
     }
   }
   
+  /**
+   * Get a single header value by name.
+   * @param name The name of the header value to return.
+   * @return the header value with the given name.
+   */
+  public Object getHeaderValue(String name) {
+    return header.getValue(name);
+  }
+
   /**
    * Get the key ID specified in the JWT header.
    * @return the key ID specified in the JWT header.
@@ -223,6 +232,14 @@ public class Jwt {
     return header.getString("kid");
   }
   
+  /**
+   * Get the X.509 certificate SHA-256 thumbprint (x5t#S256) specified in the JWT header.
+   * @return the X.509 certificate SHA-256 thumbprint specified in the JWT header.
+   */
+  public String getX5tS256() {
+    return header.getString("x5t#S256");
+  }
+  
   /**
    * Get the token subject specified in the JWT payload.
    * @return the token subject specified in the JWT payload.
@@ -239,6 +256,14 @@ public class Jwt {
     return payload.getString("iss");
   }
   
+  /**
+   * Get the token ID specified in the JWT payload.
+   * @return the token ID specified in the JWT payload.
+   */
+  public String getJwtId() {
+    return payload.getString("jti");
+  }
+  
   /**
    * Get the token audience specified in the JWT payload.
    * The audience can be specified as either a single value or a JSON array, this method normalizes the result to an array of strings.
@@ -388,6 +413,18 @@ public class Jwt {
     }
   }
 
+  /**
+   * Get the issued-at timestamp specified in the JWT payload.
+   * 
+   * The issued-at timestamp is defined as seconds since epoch (1970-01-01T00:00:00Z UTC), see <a href="https://datatracker.ietf.org/doc/html/rfc7519#section-4.1.6">RFC 7519 Section 4.1.6</a>.
+   * 
+   * @return the issued-at timestamp specified in the JWT payload.
+   */
+  public Long getIssuedAt() {
+    // Seconds since epoch
+    return payload.getLong("iat");    
+  }
+
   /**
    * Get the payload as a JSON string.
    * @return the payload as a JSON string.
@@ -19,7 +19,9 @@ package uk.co.spudsoft.jwtvalidatorvertx;
 import io.vertx.core.Future;
 import io.vertx.ext.web.client.WebClient;
 import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -55,6 +57,8 @@ import uk.co.spudsoft.jwtvalidatorvertx.impl.JwtValidatorVertxImpl;
  * When the OpenIdDiscoveryHandler is used to find JWKs the key IDs are specific to the issuer, but the static configuration requires all key IDs to be globally unique.
  * <p>
  * The WebClient passed in to create the JwtValidator does not have to be dedicated to it.
+ * When there are multiple JwtValidators in a single process (such as one per verticle) they should be created with a shared {@link FetchService}
+ * so that discovery documents and JWK Sets are only downloaded once.
  * 
  * @author jtalbut
  */
@@ -73,6 +77,20 @@ public interface JwtValidator {
     return create(openIdDiscoveryHandler, issuerAcceptabilityHandler);
   }
   
+  /**
+   * Create a JwtValidatorVertx that will use an OpenIdDiscoveryHandler to find JWKs from any acceptable issuer.
+   * 
+   * The FetchService may be shared between multiple JwtValidators, in which case discovery documents and JWK Sets will only be downloaded once.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param issuerAcceptabilityHandler The object used to determine the acceptability of issuers.
+   * @return A newly created JwtValidatorVertx.
+   */
+  static JwtValidator createDynamic(FetchService fetchService, IssuerAcceptabilityHandler issuerAcceptabilityHandler) {
+    JsonWebKeySetHandler openIdDiscoveryHandler = JsonWebKeySetOpenIdDiscoveryHandler.create(fetchService, issuerAcceptabilityHandler);
+    return create(openIdDiscoveryHandler, issuerAcceptabilityHandler);
+  }
+  
   /**
    * Create a JwtValidatorVertx that will use a fixed set of URLs for downloading JWKs.
    * 
@@ -87,6 +105,21 @@ public interface JwtValidator {
     return create(staticHandler, issuerAcceptabilityHandler);
   }
   
+  /**
+   * Create a JwtValidatorVertx that will use a fixed set of URLs for downloading JWKs.
+   * 
+   * The FetchService may be shared between multiple JwtValidators, in which case JWK Sets will only be downloaded once.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests.
+   * @param jwksEndpoints The URLs to be queried for JWK sets.
+   * @param issuerAcceptabilityHandler The object used to determine the acceptability of issuers.
+   * @return A newly created JwtValidatorVertx.
+   */
+  static JwtValidator createStatic(FetchService fetchService, Collection<String> jwksEndpoints, IssuerAcceptabilityHandler issuerAcceptabilityHandler) {
+    JsonWebKeySetHandler staticHandler = JsonWebKeySetKnownJwksHandler.create(fetchService, jwksEndpoints);
+    return create(staticHandler, issuerAcceptabilityHandler);
+  }
+  
   /**
    * Create a JwtValidatorVertx that will use a fixed set of URLs for downloading keys from AWS ELBs.
    * 
@@ -116,6 +149,47 @@ public interface JwtValidator {
     return new JwtValidatorVertxImpl(jsonWebKeySetHandler, issuerAcceptabilityHandler);
   }
 
+  /**
+   * Create a JwtValidatorVertx with a specific clock.
+   * 
+   * The clock is only used for checking the exp and nbf claims, the handlers should be created with the same clock.
+   * 
+   * @param jsonWebKeySetHandler The JsonWebKeySet handler used for OpenID discovery and JWK Set discovery.
+   * @param issuerAcceptabilityHandler The object used to determine the acceptability of issuers.
+   * @param clock The clock that the exp and nbf claims are compared with, such as a {@link CoarseClock}.
+   * @return A newly created JwtValidatorVertx.
+   */
+  static JwtValidator create(JsonWebKeySetHandler jsonWebKeySetHandler, IssuerAcceptabilityHandler issuerAcceptabilityHandler, Clock clock) {
+    jsonWebKeySetHandler.optimize();
+    return new JwtValidatorVertxImpl(jsonWebKeySetHandler, issuerAcceptabilityHandler, clock);
+  }
+
+  /**
+   * Get the current validation policy.
+   * <p>
+   * The default implementation throws UnsupportedOperationException, for implementations written before policies were introduced.
+   * @return the current validation policy.
+   * @throws UnsupportedOperationException if the implementation does not support validation policies.
+   */
+  default ValidationPolicy getPolicy() {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support validation policies");
+  }
+  
+  /**
+   * Replace the current validation policy.
+   * <p>
+   * The change takes effect atomically, validations that are already in progress will complete using the policy that they started with.
+   * This is the preferred way to change the configuration of a JwtValidator that is in use.
+   * <p>
+   * The default implementation throws UnsupportedOperationException, for implementations written before policies were introduced.
+   * @param policy The new validation policy.
+   * @return this for fluent configuration.
+   * @throws UnsupportedOperationException if the implementation does not support validation policies.
+   */
+  default JwtValidator setPolicy(ValidationPolicy policy) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support validation policies");
+  }
+  
   /**
    * Get a copy of the current set of permitted algorithms.
    * @return a copy of the current set of permitted algorithms.
@@ -161,6 +235,49 @@ public interface JwtValidator {
    */
   JwtValidator setTimeLeeway(Duration timeLeeway);
 
+  /**
+   * Set the guard used to reject tokens that have already been validated.
+   * <p>
+   * When a ReplayGuard is set every token must have a jti claim, and the (iss, jti) pair of a token is recorded as the final step of validation.
+   * A second validation of the same token (or of any other token with the same iss and jti) will fail until the original token has expired.
+   * <p>
+   * The default implementation throws UnsupportedOperationException, rather than silently permitting replayed tokens.
+   * @param replayGuard The guard used to reject tokens that have already been validated, or null to permit tokens to be used more than once.
+   * @return this for fluent configuration.
+   * @throws UnsupportedOperationException if the implementation does not support replay guards.
+   */
+  default JwtValidator setReplayGuard(ReplayGuard replayGuard) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support replay guards");
+  }
+
+  /**
+   * Set the list of revoked tokens.
+   * <p>
+   * When a RevocationList is set every token that is otherwise valid is checked against it.
+   * <p>
+   * The default implementation throws UnsupportedOperationException, rather than silently accepting revoked tokens.
+   * @param revocationList The list of revoked tokens, or null to disable revocation checks.
+   * @return this for fluent configuration.
+   * @throws UnsupportedOperationException if the implementation does not support revocation lists.
+   */
+  default JwtValidator setRevocationList(RevocationList revocationList) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support revocation lists");
+  }
+
+  /**
+   * Set the listener that is told how long each stage of validation takes.
+   * <p>
+   * There is no cost to validation when no listener is set.
+   * <p>
+   * The default implementation throws UnsupportedOperationException, for implementations written before listeners were introduced.
+   * @param listener The listener that is told how long each stage of validation takes, or null to disable timing.
+   * @return this for fluent configuration.
+   * @throws UnsupportedOperationException if the implementation does not support validation listeners.
+   */
+  default JwtValidator setValidationListener(ValidationListener listener) {
+    throw new UnsupportedOperationException(getClass().getName() + " does not support validation listeners");
+  }
+
   /**
    * Validate the token and either return a failed Future or return a Future containing the JWT's constituent parts.
    * 
@@ -180,4 +297,24 @@ public interface JwtValidator {
    */
   Future<Jwt> validateToken(String issuer, String token, List<String> requiredAudList, boolean ignoreRequiredAud);
 
+  /**
+   * Validate the token and either return a failed Future or return a Future containing the JWT's constituent parts.
+   * 
+   * This is the same as {@link #validateToken(java.lang.String, java.lang.String, java.util.List, boolean)} but uses a precompiled
+   * {@link AudienceMatcher}, which should be created once and reused for every token.
+   * It has a distinct name so that existing calls passing a null audience list remain unambiguous.
+   * <p>
+   * The default implementation converts the matcher back to a list and calls 
+   * {@link #validateToken(java.lang.String, java.lang.String, java.util.List, boolean)}.
+   * 
+   * @param issuer            The token issuer.
+   * @param token             The token.
+   * @param requiredAudiences The audiences, at least one of which must be claimed by the token. 
+   * @param ignoreRequiredAud Do not check for required audiences.
+   * @return The token's parts.
+   */
+  default Future<Jwt> validateTokenForAudiences(String issuer, String token, AudienceMatcher requiredAudiences, boolean ignoreRequiredAud) {
+    return validateToken(issuer, token, requiredAudiences == null ? null : new ArrayList<>(requiredAudiences.getAudiences()), ignoreRequiredAud);
+  }
+
 }
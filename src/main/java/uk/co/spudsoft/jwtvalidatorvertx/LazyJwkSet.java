@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.HmacVerifier;
+
+/**
+ * A JWK Set that is indexed by kid without parsing the individual keys.
+ * <p>
+ * The JWKS document is scanned once with a streaming parser, recording the kid and the location of each key in the original bytes.
+ * A key is only converted to a JsonObject and a JWK when it is first requested, after which the JWK is retained.
+ * For JWK sets with hundreds of keys, of which only a few are ever used, this avoids a lot of work and a lot of garbage.
+ * <p>
+ * The same scan also builds an index of every key (including those without a kid) by key type and curve, 
+ * which is used to find the candidate keys for tokens that do not specify a kid.
+ * <p>
+ * Instances are immutable apart from the memo of built JWKs, which is thread safe.
+ * 
+ * @author jtalbut
+ */
+public class LazyJwkSet {
+  
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(LazyJwkSet.class);
+  
+  private static final JsonFactory FACTORY = new JsonFactory();
+  
+  /**
+   * The location of a single key within the JWKS document, and the members of the key needed to select it.
+   */
+  private static final class Entry {
+    private final int start;
+    private final int end;
+    private final String kid;
+    private final String kty;
+    private final String typeKey;
+    private final String alg;
+    private final String use;
+    private final String x5tS256;
+
+    Entry(int start, int end, String kid, String kty, String crv, String alg, String use, String x5tS256) {
+      this.start = start;
+      this.end = end;
+      this.kid = kid;
+      this.kty = kty;
+      this.typeKey = typeKey(kty, crv);
+      this.alg = alg;
+      this.use = use;
+      this.x5tS256 = x5tS256;
+    }
+    
+    boolean usableFor(JsonWebAlgorithm algorithm) {
+      return (alg == null || alg.equals(algorithm.getName()))
+              && (use == null || "sig".equals(use));
+    }
+  }
+  
+  private final byte[] data;
+  private final Map<String, Entry> entries;
+  private final Map<String, List<Entry>> byType;
+  private final Map<Entry, JWK> built = new ConcurrentHashMap<>();
+
+  private LazyJwkSet(byte[] data, Map<String, Entry> entries, Map<String, List<Entry>> byType) {
+    this.data = data;
+    this.entries = entries;
+    this.byType = byType;
+  }
+
+  /**
+   * Scan a JWKS document.
+   * 
+   * Keys that do not have a kid are only available via {@link #candidates(uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm, java.lang.String)}.
+   * 
+   * @param body The JWKS document.
+   * @return A newly created LazyJwkSet.
+   * @throws IllegalArgumentException if the body is not a JSON object containing a keys array.
+   */
+  public static LazyJwkSet parse(Buffer body) throws IllegalArgumentException {
+    if (body == null) {
+      throw new IllegalArgumentException("No JWKS document");
+    }
+    return parse(body.getBytes());
+  }
+  
+  /**
+   * Scan a JWKS document.
+   * 
+   * Keys that do not have a kid are only available via {@link #candidates(uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm, java.lang.String)}.
+   * 
+   * @param data The JWKS document.
+   * @return A newly created LazyJwkSet.
+   * @throws IllegalArgumentException if the body is not a JSON object containing a keys array.
+   */
+  public static LazyJwkSet parse(byte[] data) throws IllegalArgumentException {
+    Map<String, Entry> entries = null;
+    Map<String, List<Entry>> byType = null;
+    try (JsonParser parser = FACTORY.createParser(data)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("JWKS is not a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("keys".equals(field) && value == JsonToken.START_ARRAY) {
+          entries = new LinkedHashMap<>();
+          byType = new LinkedHashMap<>();
+          scanKeys(parser, entries, byType);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    } catch (IOException ex) {
+      throw new IllegalArgumentException("JWKS is not valid JSON", ex);
+    }
+    if (entries == null) {
+      throw new IllegalArgumentException("JWKS does not contain a keys array");
+    }
+    ImmutableMap.Builder<String, List<Entry>> typeIndex = ImmutableMap.builder();
+    byType.forEach((k, v) -> typeIndex.put(k, ImmutableList.copyOf(v)));
+    return new LazyJwkSet(data, ImmutableMap.copyOf(entries), typeIndex.build());
+  }
+  
+  private static void scanKeys(JsonParser parser, Map<String, Entry> entries, Map<String, List<Entry>> byType) throws IOException {
+    JsonToken token;
+    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+      if (token == null) {
+        throw new IllegalArgumentException("JWKS is truncated");
+      }
+      if (token != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+      int start = (int) parser.currentTokenLocation().getByteOffset();
+      String kid = null;
+      String kty = null;
+      String crv = null;
+      String alg = null;
+      String use = null;
+      String x5tS256 = null;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if (value == JsonToken.VALUE_STRING) {
+          switch (field) {
+            case "kid":
+              kid = parser.getText();
+              break;
+            case "kty":
+              kty = parser.getText();
+              break;
+            case "crv":
+              crv = parser.getText();
+              break;
+            case "alg":
+              alg = parser.getText();
+              break;
+            case "use":
+              use = parser.getText();
+              break;
+            case "x5t#S256":
+              x5tS256 = parser.getText();
+              break;
+            default:
+              break;
+          }
+        } else {
+          parser.skipChildren();
+        }
+      }
+      int end = (int) parser.currentLocation().getByteOffset();
+      Entry entry = new Entry(start, end, kid, kty, crv, alg, use, x5tS256);
+      if (kid != null) {
+        entries.put(kid, entry);
+      }
+      if (kty != null) {
+        byType.computeIfAbsent(entry.typeKey, k -> new ArrayList<>()).add(entry);
+      }
+    }
+  }
+  
+  private static String typeKey(String kty, String crv) {
+    return crv == null ? kty : kty + "/" + crv;
+  }
+  
+  /**
+   * Get the index keys (kty, or kty/crv) of the JWKs that can be used with an algorithm.
+   */
+  private static List<String> typeKeysFor(JsonWebAlgorithm algorithm) {
+    switch (algorithm) {
+      case RS256:
+      case RS384:
+      case RS512:
+      case PS256:
+      case PS384:
+      case PS512:
+        return Collections.singletonList("RSA");
+      case ES256:
+        return Collections.singletonList("EC/P-256");
+      case ES384:
+        return Collections.singletonList("EC/P-384");
+      case ES512:
+        return Collections.singletonList("EC/P-521");
+      case ES256K:
+        return Collections.singletonList("EC/secp256k1");
+      case EdDSA:
+        return Arrays.asList("OKP/Ed25519", "OKP/Ed448");
+      case HS256:
+      case HS384:
+      case HS512:
+        return Collections.singletonList("oct");
+      default:
+        return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Get the number of keys (with kids) in the set.
+   * @return the number of keys (with kids) in the set.
+   */
+  public int size() {
+    return entries.size();
+  }
+  
+  /**
+   * Get the kids of all the keys in the set.
+   * @return the kids of all the keys in the set.
+   */
+  public Set<String> kids() {
+    return entries.keySet();
+  }
+  
+  /**
+   * Return true if the set contains a key with the given kid.
+   * @param kid The key ID being sought.
+   * @return true if the set contains a key with the given kid.
+   */
+  public boolean contains(String kid) {
+    return kid != null && entries.containsKey(kid);
+  }
+  
+  /**
+   * Get the JSON for a single key.
+   * @param kid The key ID being sought.
+   * @return The JSON for the key, or null if the set does not contain the kid.
+   */
+  public JsonObject getJson(String kid) {
+    Entry entry = kid == null ? null : entries.get(kid);
+    if (entry == null) {
+      return null;
+    }
+    return getJson(entry);
+  }
+  
+  /**
+   * Get the key type (kty) of a single key.
+   * <p>
+   * This is safe to log, unlike the JSON for the key, which may be a shared secret.
+   * @param kid The key ID being sought.
+   * @return The key type of the key, or null if the set does not contain the kid or the key has no kty.
+   */
+  public String getKeyType(String kid) {
+    Entry entry = kid == null ? null : entries.get(kid);
+    return entry == null ? null : entry.kty;
+  }
+  
+  private JsonObject getJson(Entry entry) {
+    return new JsonObject(Buffer.buffer(Arrays.copyOfRange(data, entry.start, entry.end)));
+  }
+  
+  private JWK getJwk(Entry entry) {
+    return built.computeIfAbsent(entry, e -> {
+      try {
+        return HmacVerifier.createJwk(getJson(e));
+      } catch (GeneralSecurityException ex) {
+        throw new IllegalArgumentException("Failed to create JWK for " + e.kid, ex);
+      }
+    });
+  }
+  
+  /**
+   * Get the keys that could have been used to sign a token that does not specify a kid.
+   * <p>
+   * The candidates are the keys whose kty (and crv) match the algorithm, whose alg (if present) is the algorithm
+   * and whose use (if present) is "sig".
+   * If the token specifies an x5t#S256 thumbprint and any of the candidates have a matching thumbprint only those candidates are returned.
+   * <p>
+   * Keys that cannot be parsed as JWKs are omitted.
+   * 
+   * @param algorithm The algorithm from the header of the token.
+   * @param x5tS256 The x5t#S256 thumbprint from the header of the token, may be null.
+   * @return The candidate keys, in the order in which they appear in the JWKS.
+   */
+  public List<JWK> candidates(JsonWebAlgorithm algorithm, String x5tS256) {
+    if (algorithm == null) {
+      return Collections.emptyList();
+    }
+    List<Entry> matching = new ArrayList<>();
+    boolean thumbprintMatched = false;
+    for (String typeKey : typeKeysFor(algorithm)) {
+      for (Entry entry : byType.getOrDefault(typeKey, Collections.emptyList())) {
+        if (!entry.usableFor(algorithm)) {
+          continue;
+        }
+        boolean thumbprintMatches = x5tS256 != null && x5tS256.equals(entry.x5tS256);
+        if (thumbprintMatches && !thumbprintMatched) {
+          matching.clear();
+          thumbprintMatched = true;
+        }
+        if (thumbprintMatches || !thumbprintMatched) {
+          matching.add(entry);
+        }
+      }
+    }
+    List<JWK> result = new ArrayList<>(matching.size());
+    for (Entry entry : matching) {
+      try {
+        result.add(getJwk(entry));
+      } catch (Throwable ex) {
+        // Not fatal, there may be other candidates
+        logger.debug("Failed to parse candidate key {} as a JWK: ", entry.kid, ex);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * Get a single key as a JWK, building the JWK if this is the first request for it.
+   * @param kid The key ID being sought.
+   * @return The JWK, or null if the set does not contain the kid.
+   * @throws IllegalArgumentException if the JSON for the key is not a valid JWK.
+   */
+  public JWK getJwk(String kid) throws IllegalArgumentException {
+    if (!contains(kid)) {
+      return null;
+    }
+    return getJwk(entries.get(kid));
+  }
+  
+}
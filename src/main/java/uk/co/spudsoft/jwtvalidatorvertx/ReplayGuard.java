@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import java.time.Clock;
+import java.time.Duration;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.ReplayGuardImpl;
+
+/**
+ * Record the (iss, jti) pairs of tokens that have been validated so that a token can only be used once.
+ * <p>
+ * Entries are kept until the token that they record expires, after which the token would be rejected anyway.
+ * Expired entries are removed in bulk from expiry-ordered buckets, so the cost of eviction is proportional to the number of expired tokens
+ * rather than to the total number of tokens being tracked.
+ * <p>
+ * A ReplayGuard is thread safe and may be shared between multiple {@link JwtValidator} instances,
+ * it should be set on a JwtValidator with {@link JwtValidator#setReplayGuard(uk.co.spudsoft.jwtvalidatorvertx.ReplayGuard)}.
+ * <p>
+ * Note that the state of a ReplayGuard is local to the process, it does not prevent a token being replayed against a different instance of a service.
+ * 
+ * @author jtalbut
+ */
+public interface ReplayGuard {
+  
+  /**
+   * The default width of each expiry bucket.
+   */
+  Duration DEFAULT_BUCKET_WIDTH = Duration.ofSeconds(1);
+  
+  /**
+   * The default length of time to remember tokens that do not have an exp claim.
+   */
+  Duration DEFAULT_MAX_RETENTION = Duration.ofHours(1);
+  
+  /**
+   * Create a ReplayGuard with default bucket width and retention.
+   * @param clock The clock used to determine when entries have expired, this should be the same clock as used by the JwtValidator.
+   * @return a newly created ReplayGuard.
+   */
+  static ReplayGuard create(Clock clock) {
+    return new ReplayGuardImpl(clock, DEFAULT_BUCKET_WIDTH, DEFAULT_MAX_RETENTION);
+  }
+  
+  /**
+   * Create a ReplayGuard.
+   * @param clock The clock used to determine when entries have expired, this should be the same clock as used by the JwtValidator.
+   * @param bucketWidth The range of expiry times grouped into a single bucket, entries may be kept for up to this long after they have expired.
+   * @param maxRetention The length of time to remember tokens that do not have an exp claim.
+   * @return a newly created ReplayGuard.
+   */
+  static ReplayGuard create(Clock clock, Duration bucketWidth, Duration maxRetention) {
+    return new ReplayGuardImpl(clock, bucketWidth, maxRetention);
+  }
+  
+  /**
+   * Record a token, returning false if it has been seen before.
+   * <p>
+   * If multiple threads call this method concurrently with the same issuer and jti exactly one of them will receive true.
+   * 
+   * @param issuer The issuer of the token.
+   * @param jti The ID of the token.
+   * @param expiryMs The time (ms since epoch) after which the token will no longer be accepted, or null if it does not expire.
+   * @return true if this is the first time that this token has been seen, false if it is a replay.
+   */
+  boolean checkAndRecord(String issuer, String jti, Long expiryMs);
+  
+  /**
+   * Get the number of tokens currently being tracked.
+   * @return the number of tokens currently being tracked.
+   */
+  int size();
+  
+}
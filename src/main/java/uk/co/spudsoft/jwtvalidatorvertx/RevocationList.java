@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.RevocationListImpl;
+
+/**
+ * An in-memory list of revoked tokens, checked by the {@link JwtValidator} for every token that is otherwise valid.
+ * <p>
+ * Tokens may be revoked by:
+ * <ul>
+ * <li>jti - a single token is revoked.
+ * <li>sub - every token for the subject is revoked.
+ * <li>sub and time - every token for the subject that was issued before the time is revoked (typically used when a user logs out everywhere).
+ * </ul>
+ * <p>
+ * Every revocation is scoped to an issuer, a revocation only affects tokens whose iss claim matches the issuer exactly.
+ * The same jti or sub from a different issuer is not revoked.
+ * <p>
+ * The list can be populated in bulk from a file, using {@link #load(java.nio.file.Path)}, and updated incrementally.
+ * Bulk loading replaces the whole list atomically.
+ * <p>
+ * The file format is one entry per line, blank lines and lines beginning with '#' are ignored:
+ * <pre>
+ * jti &lt;issuer&gt; &lt;jti&gt;
+ * sub &lt;issuer&gt; &lt;subject&gt;
+ * sub &lt;issuer&gt; &lt;subject&gt; &lt;issued before, as seconds since epoch&gt;
+ * </pre>
+ * <p>
+ * A RevocationList should be set on a JwtValidator with {@link JwtValidator#setRevocationList(uk.co.spudsoft.jwtvalidatorvertx.RevocationList)}.
+ * 
+ * @author jtalbut
+ */
+public interface RevocationList {
+  
+  /**
+   * Create a RevocationList sized for a typical number of revoked jtis.
+   * @return a newly created RevocationList.
+   */
+  static RevocationList create() {
+    return new RevocationListImpl(RevocationListImpl.DEFAULT_EXPECTED_JTIS, RevocationListImpl.DEFAULT_FALSE_POSITIVE_PROBABILITY);
+  }
+  
+  /**
+   * Create a RevocationList.
+   * <p>
+   * The list will grow beyond the expected number of jtis if necessary, but this requires the Bloom filter to be rebuilt.
+   * @param expectedJtis The number of revoked jtis that the Bloom filter should be sized for.
+   * @param falsePositiveProbability The target false positive probability of the Bloom filter, false positives are resolved by an exact lookup.
+   * @return a newly created RevocationList.
+   */
+  static RevocationList create(int expectedJtis, double falsePositiveProbability) {
+    return new RevocationListImpl(expectedJtis, falsePositiveProbability);
+  }
+  
+  /**
+   * Replace the entire contents of the list with the entries from a file.
+   * @param file The file to read.
+   * @throws IOException if the file cannot be read.
+   * @throws IllegalArgumentException if the file contains an invalid line, in which case the list is not changed.
+   */
+  void load(Path file) throws IOException, IllegalArgumentException;
+  
+  /**
+   * Revoke a single token.
+   * @param issuer The issuer of the token to revoke.
+   * @param jti The ID of the token to revoke.
+   */
+  void revokeJti(String issuer, String jti);
+  
+  /**
+   * Revoke every token for a subject.
+   * @param issuer The issuer of the tokens to revoke.
+   * @param subject The subject whose tokens are to be revoked.
+   */
+  void revokeSubject(String issuer, String subject);
+  
+  /**
+   * Revoke every token for a subject that was issued before a given time.
+   * <p>
+   * If the subject already has an issued-before time the later of the two times is used.
+   * @param issuer The issuer of the tokens to revoke.
+   * @param subject The subject whose tokens are to be revoked.
+   * @param issuedBeforeEpochSeconds Tokens issued before this time (seconds since epoch) will be revoked.
+   */
+  void revokeIssuedBefore(String issuer, String subject, long issuedBeforeEpochSeconds);
+  
+  /**
+   * Check whether a token has been revoked.
+   * @param issuer The issuer of the token, if null the token is not considered to be revoked.
+   * @param jti The ID of the token, may be null.
+   * @param subject The subject of the token, may be null.
+   * @param issuedAtEpochSeconds The time at which the token was issued, may be null in which case any issued-before revocation for the subject applies.
+   * @return true if the token has been revoked.
+   */
+  boolean isRevoked(String issuer, String jti, String subject, Long issuedAtEpochSeconds);
+  
+  /**
+   * Check whether a token has been revoked.
+   * <p>
+   * If the token does not have an iat claim the nbf claim is used instead.
+   * @param jwt The token to check.
+   * @return true if the token has been revoked.
+   */
+  default boolean isRevoked(Jwt jwt) {
+    Long issuedAt = jwt.getIssuedAt();
+    return isRevoked(jwt.getIssuer(), jwt.getJwtId(), jwt.getSubject(), issuedAt == null ? jwt.getNotBefore() : issuedAt);
+  }
+  
+  /**
+   * Get the number of revoked jtis.
+   * @return the number of revoked jtis.
+   */
+  int getRevokedJtiCount();
+  
+  /**
+   * Get the number of subjects with revocations, counting the same subject from different issuers separately.
+   * @return the number of subjects with revocations.
+   */
+  int getRevokedSubjectCount();
+  
+}
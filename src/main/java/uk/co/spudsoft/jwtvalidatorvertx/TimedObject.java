@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+/**
+ * Class for returning an expiry value along with a (possibly cached) value.
+ * @param <U> The type of object being stored.
+ *
+ * @author jtalbut
+ */
+public class TimedObject<U> {
+  private final U value;
+  private final long expiryMs;
+
+  /**
+   * Constructor.
+   * 
+   * Note that expiryMs is an absolute time (ms since epoch) and not an offset.
+   * 
+   * @param value The value being held.
+   * @param expiryMS The time that the value should be held.
+   */
+  public TimedObject(U value, long expiryMS) {
+    this.value = value;
+    this.expiryMs = expiryMS;
+  }
+
+  /**
+   * Get the value.
+   * @return the value. 
+   */
+  public U getValue() {
+    return value;
+  }
+
+  /**
+   * Get the expiry time, in ms since epoch.
+   * @return the xpiry time, in ms since epoch.
+   */
+  public long getExpiryMs() {
+    return expiryMs;
+  }
+  
+  /**
+   * Return true if the value has expired.
+   * @param nowMs The time now, in ms since epoch.
+   * @return true if the value has expired.
+   */
+  public boolean expiredBefore(long nowMs) {
+    return expiryMs < nowMs;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+/**
+ * Listener that is told how long each stage of token validation takes, and whether it succeeded.
+ * <p>
+ * A ValidationListener is set on a {@link JwtValidator} with {@link JwtValidator#setValidationListener(uk.co.spudsoft.jwtvalidatorvertx.ValidationListener)},
+ * fetch timings are only available from a {@link FetchService} created with {@link FetchService.Builder#setValidationListener(uk.co.spudsoft.jwtvalidatorvertx.ValidationListener)}.
+ * When no listener is set the validator does not read the clock or allocate anything on its behalf.
+ * <p>
+ * The methods are called on the thread that is performing the validation (usually a Vert.x event loop), so implementations must be thread safe
+ * and fast, and should not throw exceptions (any exceptions thrown are logged and ignored).
+ * <p>
+ * The issuer and algorithm passed to the listener are only set once the signature of the token has been verified, 
+ * until then (and for any token whose signature does not verify) they are null.
+ * The issuer is the iss claim from the token, but only if that issuer is also acceptable to the {@link IssuerAcceptabilityHandler}.
+ * This means that the issuer can be used to tag metrics without the risk of an attacker creating an unbounded number of tags
+ * (acceptable issuers may be regular expressions, so an unsigned token could otherwise claim any number of distinct acceptable issuers).
+ * 
+ * @author jtalbut
+ */
+public interface ValidationListener {
+  
+  /**
+   * The stages of token validation.
+   */
+  enum Stage {
+    /**
+     * Parsing the token and checking that its algorithm is permitted.
+     */
+    PARSE,
+    /**
+     * Finding the JWK used to sign the token, including any discovery and JWKS requests.
+     * For tokens without a kid this also includes verifying the signature with each of the candidate keys.
+     */
+    KEY_LOOKUP,
+    /**
+     * Requesting an OpenID Discovery document, reported by a {@link FetchService}.
+     */
+    DISCOVERY,
+    /**
+     * Requesting a JWK Set, reported by a {@link FetchService}.
+     */
+    JWKS_FETCH,
+    /**
+     * Verifying the signature of the token.
+     */
+    SIGNATURE,
+    /**
+     * Checking that the issuer of the token is acceptable.
+     */
+    ISSUER,
+    /**
+     * Checking the time based claims, the audience, the subject, revocation and replay.
+     */
+    CLAIMS
+  }
+  
+  /**
+   * Called when a stage of the validation of a token completes.
+   * @param stage The stage that has completed.
+   * @param issuer The acceptable issuer of the token, or null if the signature has not been verified or the issuer is not acceptable.
+   * @param algorithm The algorithm of the token, or null if the signature has not been verified.
+   * @param durationNanos The time taken by the stage, in nanoseconds.
+   * @param succeeded True if the stage succeeded, if a stage fails it is the last stage reported for the token.
+   */
+  default void stageCompleted(Stage stage, String issuer, JsonWebAlgorithm algorithm, long durationNanos, boolean succeeded) {
+  }
+  
+  /**
+   * Called when the validation of a token completes, after the final call to {@link #stageCompleted}.
+   * @param issuer The acceptable issuer of the token, or null if the signature was not verified or the issuer is not acceptable.
+   * @param algorithm The algorithm of the token, or null if the signature was not verified.
+   * @param durationNanos The total time taken to validate the token, in nanoseconds.
+   * @param failedStage The stage at which validation failed, or null if the token is valid.
+   */
+  default void validationCompleted(String issuer, JsonWebAlgorithm algorithm, long durationNanos, Stage failedStage) {
+  }
+  
+  /**
+   * Called when a {@link FetchService} completes an HTTP request.
+   * <p>
+   * Requests satisfied from the cache of the FetchService, or coalesced with a request that is already in flight, are not reported.
+   * @param stage Either {@link Stage#DISCOVERY} or {@link Stage#JWKS_FETCH}.
+   * @param url The URL that was requested.
+   * @param durationNanos The time taken by the request, in nanoseconds.
+   * @param succeeded True if the request succeeded.
+   */
+  default void fetchCompleted(Stage stage, String url, long durationNanos, boolean succeeded) {
+  }
+  
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the settings used by a {@link JwtValidator} when validating a token.
+ * <p>
+ * A JwtValidator holds a single ValidationPolicy that is replaced atomically, so the policy can be changed whilst tokens are being validated.
+ * Each validation uses a single policy from start to finish.
+ * <p>
+ * Instances are created with a {@link Builder}, an existing policy can be modified by calling {@link #toBuilder()}.
+ * 
+ * @author jtalbut
+ */
+public final class ValidationPolicy {
+  
+  /**
+   * The algorithms that are permitted by default.
+   * 
+   * These are all the asymmetric algorithms, the HMAC algorithms must be explicitly permitted.
+   */
+  public static final Set<JsonWebAlgorithm> DEFAULT_PERMITTED_ALGORITHMS = Collections.unmodifiableSet(EnumSet.of(
+          JsonWebAlgorithm.EdDSA
+          
+          , JsonWebAlgorithm.ES256
+          , JsonWebAlgorithm.ES384
+          , JsonWebAlgorithm.ES512
+          
+          , JsonWebAlgorithm.PS256
+          , JsonWebAlgorithm.PS384
+          , JsonWebAlgorithm.PS512
+          
+          , JsonWebAlgorithm.ES256K
+          
+          , JsonWebAlgorithm.RS256
+          , JsonWebAlgorithm.RS384
+          , JsonWebAlgorithm.RS512
+  ));
+  
+  /**
+   * The algorithms that may be used to sign tokens.
+   * 
+   * "none" is not supported.
+   * The HMAC algorithms are supported but are not in the {@link #DEFAULT_PERMITTED_ALGORITHMS}, 
+   * they should only be permitted when the keys for the issuers are shared secrets (kty "oct").
+   */
+  public static final Set<JsonWebAlgorithm> SUPPORTED_ALGORITHMS = Collections.unmodifiableSet(EnumSet.complementOf(EnumSet.of(JsonWebAlgorithm.none)));
+  
+  private static final ImmutableMap<String, JsonWebAlgorithm> ALGORITHMS_BY_NAME = buildAlgorithmsByName();
+  
+  /**
+   * The default policy.
+   * 
+   * The {@link #DEFAULT_PERMITTED_ALGORITHMS} are permitted, exp and nbf claims are required and there is no leeway.
+   */
+  public static final ValidationPolicy DEFAULT = builder().build();
+  
+  private final EnumSet<JsonWebAlgorithm> permittedAlgorithms;
+  private final boolean requireExp;
+  private final boolean requireNbf;
+  private final long timeLeewayMilliseconds;
+
+  private static ImmutableMap<String, JsonWebAlgorithm> buildAlgorithmsByName() {
+    ImmutableMap.Builder<String, JsonWebAlgorithm> builder = ImmutableMap.builder();
+    for (JsonWebAlgorithm alg : JsonWebAlgorithm.values()) {
+      builder.put(alg.getName(), alg);
+    }
+    return builder.build();
+  }
+  
+  private ValidationPolicy(Builder builder) {
+    this.permittedAlgorithms = EnumSet.copyOf(builder.permittedAlgorithms);
+    this.requireExp = builder.requireExp;
+    this.requireNbf = builder.requireNbf;
+    this.timeLeewayMilliseconds = builder.timeLeewayMilliseconds;
+  }
+  
+  /**
+   * Find the JsonWebAlgorithm with the given JWT name.
+   * @param name The name of the algorithm, as used in the alg header of a JWT.
+   * @return The JsonWebAlgorithm, or null if the name is not recognised.
+   */
+  public static JsonWebAlgorithm algorithmForName(String name) {
+    return name == null ? null : ALGORITHMS_BY_NAME.get(name);
+  }
+  
+  /**
+   * Create a new {@link Builder} initialized with the default settings.
+   * @return a new {@link Builder} initialized with the default settings.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+  
+  /**
+   * Create a new {@link Builder} initialized with the settings from this policy.
+   * @return a new {@link Builder} initialized with the settings from this policy.
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.permittedAlgorithms = EnumSet.copyOf(permittedAlgorithms);
+    builder.requireExp = requireExp;
+    builder.requireNbf = requireNbf;
+    builder.timeLeewayMilliseconds = timeLeewayMilliseconds;
+    return builder;
+  }
+  
+  /**
+   * Builder for ValidationPolicy instances.
+   */
+  public static final class Builder {
+    
+    private EnumSet<JsonWebAlgorithm> permittedAlgorithms = EnumSet.copyOf(DEFAULT_PERMITTED_ALGORITHMS);
+    private boolean requireExp = true;
+    private boolean requireNbf = true;
+    private long timeLeewayMilliseconds;
+
+    private Builder() {
+    }
+    
+    private static JsonWebAlgorithm checkSupported(JsonWebAlgorithm algorithm) {
+      if (algorithm == null || !SUPPORTED_ALGORITHMS.contains(algorithm)) {
+        throw new IllegalArgumentException("The algorithm " + algorithm + " is not supported");
+      }
+      return algorithm;
+    }
+
+    /**
+     * Replace the set of permitted algorithms.
+     * @param algorithms The algorithms that may be used to sign tokens.
+     * @return this, so that the method may be used in a fluent manner.
+     * @throws IllegalArgumentException if any of the algorithms is not in {@link ValidationPolicy#SUPPORTED_ALGORITHMS}.
+     */
+    public Builder setPermittedAlgorithms(Collection<JsonWebAlgorithm> algorithms) throws IllegalArgumentException {
+      EnumSet<JsonWebAlgorithm> copy = EnumSet.noneOf(JsonWebAlgorithm.class);
+      for (JsonWebAlgorithm algorithm : algorithms) {
+        copy.add(checkSupported(algorithm));
+      }
+      this.permittedAlgorithms = copy;
+      return this;
+    }
+
+    /**
+     * Add a single algorithm to the set of permitted algorithms.
+     * @param algorithm An algorithm that may be used to sign tokens.
+     * @return this, so that the method may be used in a fluent manner.
+     * @throws IllegalArgumentException if the algorithm is not in {@link ValidationPolicy#SUPPORTED_ALGORITHMS}.
+     */
+    public Builder addPermittedAlgorithm(JsonWebAlgorithm algorithm) throws IllegalArgumentException {
+      this.permittedAlgorithms.add(checkSupported(algorithm));
+      return this;
+    }
+
+    /**
+     * Set to true if the token is required to have an exp claim.
+     * @param requireExp true if the token is required to have an exp claim.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setRequireExp(boolean requireExp) {
+      this.requireExp = requireExp;
+      return this;
+    }
+
+    /**
+     * Set to true if the token is required to have an nbf claim.
+     * @param requireNbf true if the token is required to have an nbf claim.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setRequireNbf(boolean requireNbf) {
+      this.requireNbf = requireNbf;
+      return this;
+    }
+
+    /**
+     * Set the maximum amount of time that can pass between the exp and now (or between now and the nbf).
+     * @param timeLeeway the maximum amount of time that can pass between the exp and now.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setTimeLeeway(Duration timeLeeway) {
+      this.timeLeewayMilliseconds = timeLeeway == null ? 0 : timeLeeway.toMillis();
+      return this;
+    }
+    
+    /**
+     * Construct the ValidationPolicy.
+     * @return a newly created ValidationPolicy.
+     */
+    public ValidationPolicy build() {
+      return new ValidationPolicy(this);
+    }
+  }
+
+  /**
+   * Get the algorithms that may be used to sign tokens.
+   * @return an unmodifiable view of the algorithms that may be used to sign tokens.
+   */
+  public Set<JsonWebAlgorithm> getPermittedAlgorithms() {
+    return Collections.unmodifiableSet(permittedAlgorithms);
+  }
+  
+  /**
+   * Return true if the algorithm with the given JWT name is permitted.
+   * @param algorithm The name of the algorithm, as used in the alg header of a JWT.
+   * @return true if the algorithm with the given JWT name is permitted.
+   */
+  public boolean isPermitted(String algorithm) {
+    JsonWebAlgorithm alg = algorithmForName(algorithm);
+    return alg != null && permittedAlgorithms.contains(alg);
+  }
+
+  /**
+   * Get the requirement for the token to have an exp claim.
+   * @return true if the token is required to have an exp claim.
+   */
+  public boolean isRequireExp() {
+    return requireExp;
+  }
+
+  /**
+   * Get the requirement for the token to have an nbf claim.
+   * @return true if the token is required to have an nbf claim.
+   */
+  public boolean isRequireNbf() {
+    return requireNbf;
+  }
+
+  /**
+   * Get the maximum amount of time that can pass between the exp and now (or between now and the nbf), in milliseconds.
+   * @return the maximum amount of time that can pass between the exp and now, in milliseconds.
+   */
+  public long getTimeLeewayMilliseconds() {
+    return timeLeewayMilliseconds;
+  }
+
+  @Override
+  public String toString() {
+    return "ValidationPolicy{" + "permittedAlgorithms=" + permittedAlgorithms + ", requireExp=" + requireExp + ", requireNbf=" + requireNbf + ", timeLeewayMilliseconds=" + timeLeewayMilliseconds + '}';
+  }
+  
+}
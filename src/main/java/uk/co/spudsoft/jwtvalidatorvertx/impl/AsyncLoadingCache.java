@@ -14,9 +14,12 @@ import io.vertx.core.Promise;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.time.Clock;
 import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.CacheLoadEvent;
 
 /**
  * Class backed by a Guava Cache that returns a Future for all elements whilst
@@ -30,53 +33,6 @@ public class AsyncLoadingCache<K, V> {
   @SuppressWarnings("constantname")
   private static final Logger logger = LoggerFactory.getLogger(AsyncLoadingCache.class);
  
-  /**
-   * Class for returned an expiry value along with the cache value.
-   * @param <U> The type of object being stored.
-   */
-  public static class TimedObject<U> {
-    private final U value;
-    private final long expiryMs;
-
-    /**
-     * Constructor.
-     * 
-     * Note that expiryMs is an absolute time (ms since epoch) and not an offset.
-     * 
-     * @param value The value being held.
-     * @param expiryMS The time that the value should be held.
-     */
-    public TimedObject(U value, long expiryMS) {
-      this.value = value;
-      this.expiryMs = expiryMS;
-    }
-
-    /**
-     * Get the value.
-     * @return the value. 
-     */
-    public U getValue() {
-      return value;
-    }
-
-    /**
-     * Get the expiry time, in ms since epoch.
-     * @return the xpiry time, in ms since epoch.
-     */
-    public long getExpiryMs() {
-      return expiryMs;
-    }
-    
-    /**
-     * Return true if the value has expired.
-     * @param nowMs The time now, in ms since epoch.
-     * @return true if the value has expired.
-     */
-    public boolean expiredBefore(long nowMs) {
-      return expiryMs < nowMs;
-    }
-  }
-  
   /**
    * Factory method for cache entries.
    * @param value The value to store in the cache.
@@ -107,20 +63,30 @@ public class AsyncLoadingCache<K, V> {
       this.completed = true;
       this.succeeded = succeeded;
       if (succeeded) {
-        this.expiry = value.expiryMs;
-        this.result = value.value;
+        this.expiry = value.getExpiryMs();
+        this.result = value.getValue();
       }
     }
   }
   
   private final Object lock = new Object();
   private final Cache<K, Data> backing = CacheBuilder.newBuilder().build();
+  private final Clock clock;
 
   /**
    * Constructor.
    */
   @SuppressWarnings("unchecked")
   public AsyncLoadingCache() {
+    this(Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   * @param clock The clock used to determine whether entries have expired.
+   */
+  public AsyncLoadingCache(Clock clock) {
+    this.clock = clock;
   }
 
   /**
@@ -159,7 +125,7 @@ public class AsyncLoadingCache<K, V> {
     Data data;
     synchronized (lock) {
       data = backing.getIfPresent(key);
-      if (data != null && (data.expiry > System.currentTimeMillis())) {
+      if (data != null && (data.expiry > clock.millis())) {
         if (data.completed) {
           if (data.succeeded) {
             return Future.succeededFuture(data.result);
@@ -179,10 +145,16 @@ public class AsyncLoadingCache<K, V> {
       }
     }
     Data finalData = data;
+    CacheLoadEvent event = new CacheLoadEvent();
+    event.begin();
     try {
-      loader.call().onComplete(ar -> handleAfterLoaderCall(ar, finalData));
+      loader.call().onComplete(ar -> handleAfterLoaderCall(ar, finalData, key, event));
     } catch (Throwable ex) {
       logger.error("Failed to call loader: ", ex);
+      if (event.shouldCommit()) {
+        event.setKey(String.valueOf(key));
+        event.commit();
+      }
       return Future.failedFuture(ex);
     }
     return promise.future();
@@ -202,7 +174,7 @@ public class AsyncLoadingCache<K, V> {
     return promise;
   }
 
-  private void handleAfterLoaderCall(AsyncResult<TimedObject<V>> asyncResult, Data data) {
+  private void handleAfterLoaderCall(AsyncResult<TimedObject<V>> asyncResult, Data data, K key, CacheLoadEvent event) {
     boolean succeeded = asyncResult.succeeded();
     TimedObject<V> result = asyncResult.result();
     List<Promise<V>> initialPromises;
@@ -210,9 +182,18 @@ public class AsyncLoadingCache<K, V> {
       initialPromises = data.initialPromises;
       data.update(succeeded, result);
     }
+    if (event.shouldCommit()) {
+      event.setKey(String.valueOf(key));
+      event.setSucceeded(succeeded);
+      event.setWaiters(initialPromises.size());
+      if (succeeded) {
+        event.setExpiry(result.getExpiryMs());
+      }
+      event.commit();
+    }
     if (succeeded) {
       for (Promise<V> initialPromise : initialPromises) {
-        initialPromise.complete(result.value);
+        initialPromise.complete(result.getValue());
       }
     } else {
       for (Promise<V> initialPromise : initialPromises) {
@@ -17,9 +17,7 @@
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
 import com.google.common.collect.ImmutableSet;
-import com.google.common.primitives.Bytes;
 import io.vertx.core.json.JsonObject;
-import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.interfaces.EdECPublicKey;
@@ -42,6 +40,9 @@ public class EdECJwkBuilder extends JwkBuilder {
           .build();
   
   private static final String KTY = "OKP";
+  
+  private static final int ED25519_KEY_BYTES = 32;
+  private static final int ED448_KEY_BYTES = 57;
 
   /**
    * Constructor.
@@ -73,12 +74,15 @@ public class EdECJwkBuilder extends JwkBuilder {
     json.put("kty", KTY);
     json.put("crv", key.getParams().getName());
     
-    BigInteger y = key.getPoint().getY();
-    byte[] arr = y.toByteArray();
-    Bytes.reverse(arr, 0, arr.length);
-//    if (key.getPoint().isXOdd()) {
-//      arr[arr.length - 1] |= 0x8;
-//    }
+    // RFC 8032: the little endian encoding of y, padded to the size of the curve, with the parity of x in the top bit of the last byte
+    byte[] y = key.getPoint().getY().toByteArray();
+    byte[] arr = new byte["Ed448".equals(key.getParams().getName()) ? ED448_KEY_BYTES : ED25519_KEY_BYTES];
+    for (int i = 0; i < y.length && i < arr.length; ++i) {
+      arr[i] = y[y.length - 1 - i];
+    }
+    if (key.getPoint().isXOdd()) {
+      arr[arr.length - 1] |= (byte) 0x80;
+    }
     json.put("x", B64ENCODER.encodeToString(arr));
     return json;
   }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.FetchService;
+import uk.co.spudsoft.jwtvalidatorvertx.LazyJwkSet;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener;
+
+/**
+ * Implementation of {@link FetchService} that coalesces concurrent requests for the same URL and caches the results in HashMaps.
+ * 
+ * @author jtalbut
+ */
+public class FetchServiceImpl implements FetchService {
+  
+  private static final Logger logger = LoggerFactory.getLogger(FetchServiceImpl.class);
+
+  /**
+   * The cache and in-flight requests for a single type of response.
+   * 
+   * @param <T> The type of the parsed response.
+   */
+  private static class Coalescer<T> {
+    
+    private final Map<String, TimedObject<T>> cache = new HashMap<>();
+    private final Map<String, Future<TimedObject<T>>> inFlight = new HashMap<>();
+    private final Function<String, Future<TimedObject<T>>> loader;
+    private final Clock clock;
+
+    Coalescer(Function<String, Future<TimedObject<T>>> loader, Clock clock) {
+      this.loader = loader;
+      this.clock = clock;
+    }
+    
+    Future<TimedObject<T>> get(String url, Predicate<T> usable) {
+      Promise<TimedObject<T>> promise;
+      synchronized (this) {
+        TimedObject<T> cached = cache.get(url);
+        if (cached != null) {
+          if (cached.expiredBefore(clock.millis())) {
+            cache.remove(url);
+          } else if (usable.test(cached.getValue())) {
+            return Future.succeededFuture(cached);
+          }
+        }
+        Future<TimedObject<T>> current = inFlight.get(url);
+        if (current != null) {
+          logger.trace("Joining existing request for {}", url);
+          return current;
+        }
+        promise = Promise.promise();
+        inFlight.put(url, promise.future());
+      }
+      Future<TimedObject<T>> request;
+      try {
+        request = loader.apply(url);
+      } catch (Throwable ex) {
+        request = Future.failedFuture(ex);
+      }
+      request.onComplete(ar -> {
+        synchronized (this) {
+          inFlight.remove(url);
+          if (ar.succeeded()) {
+            cache.put(url, ar.result());
+          }
+        }
+        if (ar.succeeded()) {
+          promise.complete(ar.result());
+        } else {
+          promise.fail(ar.cause());
+        }
+      });
+      return promise.future();
+    }
+  }
+  
+  private final WebClient webClient;
+  private final boolean ownsWebClient;
+  private final Coalescer<JsonObject> json;
+  private final Coalescer<LazyJwkSet> jwkSets;
+
+  /**
+   * Constructor.
+   * @param webClient The Vertx WebClient instance that will be used for making HTTP requests.
+   * @param ownsWebClient If true the WebClient will be closed when this FetchService is closed.
+   * @param defaultCacheDuration Time to keep responses in cache if no cache-control: max-age header is found.
+   * @param requestTimeout The maximum time that a request may wait for data from the server, null for no timeout.
+   * @param clock The clock used to calculate and check the expiry time of responses.
+   */
+  public FetchServiceImpl(WebClient webClient, boolean ownsWebClient, Duration defaultCacheDuration, Duration requestTimeout, Clock clock) {
+    this(webClient, ownsWebClient, defaultCacheDuration, requestTimeout, clock, null);
+  }
+
+  /**
+   * Constructor.
+   * @param webClient The Vertx WebClient instance that will be used for making HTTP requests.
+   * @param ownsWebClient If true the WebClient will be closed when this FetchService is closed.
+   * @param defaultCacheDuration Time to keep responses in cache if no cache-control: max-age header is found.
+   * @param requestTimeout The maximum time that a request may wait for data from the server, null for no timeout.
+   * @param clock The clock used to calculate and check the expiry time of responses.
+   * @param validationListener Listener to be told how long each HTTP request takes, may be null.
+   */
+  public FetchServiceImpl(WebClient webClient, boolean ownsWebClient, Duration defaultCacheDuration, Duration requestTimeout, Clock clock, ValidationListener validationListener) {
+    this.webClient = webClient;
+    this.ownsWebClient = ownsWebClient;
+    OpenIdHelper openIdHelper = new OpenIdHelper(webClient, defaultCacheDuration.toSeconds(), requestTimeout == null ? 0 : requestTimeout.toMillis(), clock);
+    this.json = new Coalescer<>(timed(openIdHelper::get, ValidationListener.Stage.DISCOVERY, validationListener), clock);
+    this.jwkSets = new Coalescer<>(timed(openIdHelper::getJwkSet, ValidationListener.Stage.JWKS_FETCH, validationListener), clock);
+  }
+  
+  private static <T> Function<String, Future<TimedObject<T>>> timed(Function<String, Future<TimedObject<T>>> loader, ValidationListener.Stage stage, ValidationListener listener) {
+    if (listener == null) {
+      return loader;
+    }
+    return url -> {
+      long start = System.nanoTime();
+      return loader.apply(url)
+              .andThen(ar -> {
+                try {
+                  listener.fetchCompleted(stage, url, System.nanoTime() - start, ar.succeeded());
+                } catch (Throwable ex) {
+                  logger.warn("ValidationListener failed: ", ex);
+                }
+              });
+    };
+  }
+
+  @Override
+  public Future<TimedObject<JsonObject>> getJson(String url) {
+    return json.get(url, jo -> true);
+  }
+
+  @Override
+  public Future<TimedObject<LazyJwkSet>> getJwkSet(String url, String kid) {
+    return jwkSets.get(url, jwks -> kid == null || jwks.contains(kid));
+  }
+
+  @Override
+  public void close() {
+    if (ownsWebClient) {
+      webClient.close();
+    }
+  }
+  
+}
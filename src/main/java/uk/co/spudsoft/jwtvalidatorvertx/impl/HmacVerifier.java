@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+
+/**
+ * Verify HMAC (HS256, HS384 and HS512) signatures.
+ * <p>
+ * Each verifier holds a Mac that has been initialised with the secret key, and a pool of clones of it.
+ * A token is verified by taking a clone from the pool (cloning the template if the pool is empty), so no Mac is ever created or keyed per token.
+ * The computed MAC is compared with the signature in constant time.
+ * 
+ * @author jtalbut
+ */
+public final class HmacVerifier {
+  
+  /**
+   * Verifiers for JWKs, the JWKs are weakly referenced (and compared by identity) so verifiers disappear along with their keys.
+   */
+  private static final Cache<JWK, HmacVerifier> JWK_VERIFIERS = CacheBuilder.newBuilder().weakKeys().build();
+  
+  private final JsonWebAlgorithm algorithm;
+  private final Mac template;
+  private final Queue<Mac> pool = new ConcurrentLinkedQueue<>();
+
+  private HmacVerifier(JsonWebAlgorithm algorithm, Mac template) {
+    this.algorithm = algorithm;
+    this.template = template;
+  }
+  
+  private static void checkAlgorithm(JsonWebAlgorithm algorithm) {
+    if (algorithm == null || !"HMAC".equals(algorithm.getFamilyName())) {
+      throw new IllegalArgumentException("Algorithm " + algorithm + " is not an HMAC algorithm");
+    }
+  }
+  
+  /**
+   * Create a verifier for a shared secret.
+   * @param algorithm The HMAC algorithm.
+   * @param secret The shared secret, which must be at least as long as the output of the hash function (as required by RFC 7518).
+   * @return a newly created HmacVerifier.
+   * @throws IllegalArgumentException if the algorithm is not an HMAC algorithm or the secret is too short.
+   * @throws GeneralSecurityException if the JDK cannot create the Mac.
+   */
+  public static HmacVerifier create(JsonWebAlgorithm algorithm, byte[] secret) throws IllegalArgumentException, GeneralSecurityException {
+    checkAlgorithm(algorithm);
+    if (secret == null || secret.length * 8 < algorithm.getMinKeyLength()) {
+      throw new IllegalArgumentException("The secret for " + algorithm.getName() + " must be at least " + algorithm.getMinKeyLength() / 8 + " bytes");
+    }
+    Mac mac = Mac.getInstance(algorithm.getJdkAlgName());
+    mac.init(new SecretKeySpec(secret, algorithm.getJdkAlgName()));
+    return new HmacVerifier(algorithm, mac);
+  }
+  
+  /**
+   * Create a JWK from its JSON representation.
+   * <p>
+   * Shared secret (kty "oct") keys must specify an HMAC alg and have a secret that is at least as long as the output of the hash function
+   * (vert.x would otherwise treat a key without an alg as HS256, and accepts secrets of any length).
+   * The verifier for a shared secret is created from the secret and alg in the JSON and recorded against the JWK, 
+   * {@link #forJwk(io.vertx.ext.auth.impl.jose.JWK, uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm)} will only verify with JWKs created by this method.
+   * <p>
+   * Other keys are passed straight to the JWK constructor.
+   * @param json The JSON representation of the JWK.
+   * @return a newly created JWK.
+   * @throws IllegalArgumentException if the JWK is a shared secret without a valid alg, or if the secret is too short.
+   * @throws GeneralSecurityException if the JDK cannot create the Mac.
+   */
+  public static JWK createJwk(JsonObject json) throws IllegalArgumentException, GeneralSecurityException {
+    if (!"oct".equals(json.getString("kty"))) {
+      return new JWK(json);
+    }
+    String alg = json.getString("alg");
+    if (alg == null) {
+      throw new IllegalArgumentException("Shared secret " + json.getString("kid") + " does not specify an alg");
+    }
+    JsonWebAlgorithm algorithm = ValidationPolicy.algorithmForName(alg);
+    if (algorithm == null) {
+      throw new IllegalArgumentException("Shared secret " + json.getString("kid") + " has unrecognised alg " + alg);
+    }
+    String k = json.getString("k");
+    HmacVerifier verifier = create(algorithm, k == null ? null : Base64.getUrlDecoder().decode(k));
+    JWK jwk = new JWK(json);
+    JWK_VERIFIERS.put(jwk, verifier);
+    return jwk;
+  }
+  
+  /**
+   * Get the verifier for a JWK with kty "oct".
+   * <p>
+   * The algorithm is that of the JWK, the algorithm in the header of the token must be the same.
+   * Only JWKs created by {@link #createJwk(io.vertx.core.json.JsonObject)} can be used, because the alg and the length of the secret
+   * are checked there (the secret cannot be recovered from the JWK itself).
+   * @param jwk The JWK.
+   * @param algorithm The algorithm specified in the header of the token.
+   * @return the HmacVerifier for the JWK.
+   * @throws IllegalArgumentException if the algorithm is not an HMAC algorithm, the JWK was not created as a valid shared secret, 
+   * or the algorithm of the JWK is not the algorithm of the token.
+   */
+  public static HmacVerifier forJwk(JWK jwk, JsonWebAlgorithm algorithm) throws IllegalArgumentException {
+    checkAlgorithm(algorithm);
+    HmacVerifier verifier = JWK_VERIFIERS.getIfPresent(jwk);
+    if (verifier == null) {
+      throw new IllegalArgumentException("Key " + jwk.getId() + " is not a valid shared secret");
+    }
+    if (verifier.algorithm != algorithm) {
+      throw new IllegalArgumentException("Key " + jwk.getId() + " is for " + verifier.algorithm.getName() + " not " + algorithm.getName());
+    }
+    return verifier;
+  }
+  
+  /**
+   * Get the algorithm that this verifier is for.
+   * @return the algorithm that this verifier is for.
+   */
+  public JsonWebAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+  
+  /**
+   * Verify a signature.
+   * @param signature The signature, after base64 decoding.
+   * @param signingInput The bytes that were signed (the base64 header and payload, separated by a dot).
+   * @return true if the signature is valid.
+   * @throws GeneralSecurityException if the Mac cannot be cloned.
+   */
+  public boolean verify(byte[] signature, byte[] signingInput) throws GeneralSecurityException {
+    Mac mac = pool.poll();
+    if (mac == null) {
+      try {
+        mac = (Mac) template.clone();
+      } catch (CloneNotSupportedException ex) {
+        throw new GeneralSecurityException("The Mac for " + algorithm.getName() + " cannot be cloned", ex);
+      }
+    }
+    try {
+      byte[] expected = mac.doFinal(signingInput);
+      return MessageDigest.isEqual(expected, signature);
+    } finally {
+      // doFinal leaves the Mac reset and ready for reuse
+      pool.offer(mac);
+    }
+  }
+  
+}
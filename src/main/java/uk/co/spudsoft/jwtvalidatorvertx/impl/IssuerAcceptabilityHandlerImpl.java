@@ -17,17 +17,26 @@
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
@@ -40,8 +49,13 @@ import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
  * <li> A list of acceptable issuers can be provided in a file.
  * The file can be changed whilst the system is up, but the path to the file is fixed.
  * It is recommended that the file be updated atomically (e.g. by changing a soft link).
+ * The file is loaded before the constructor returns, and its directory is then watched (using a {@link WatchService}) by a background thread;
+ * changes are only loaded once the last modified time of the file is at least one poll period old.
+ * The background thread stops when the handler is closed.
+ * The thread calling {@link #isAcceptable(java.lang.String)} never touches the file system or takes a lock.
  * <li> A list of regular expressions can be provided.
- * Each regular expression will be checked, one at a time.
+ * The regular expressions are compiled into an {@link IssuerMatcher}, so only those that could match a given issuer are evaluated 
+ * and recent decisions are remembered.
  * </ol>
  * 
  * The use of a file is generally more secure, but there are some situations in which a small number of regular expressions can be useful.
@@ -56,13 +70,28 @@ public class IssuerAcceptabilityHandlerImpl implements IssuerAcceptabilityHandle
   private static final Logger logger = LoggerFactory.getLogger(IssuerAcceptabilityHandlerImpl.class);
   
   private final List<Pattern> acceptableIssuerRegexes;
+  private final IssuerMatcher issuerMatcher;
   private final File acceptableIssuersFile;
   private final long pollPeriodMs;
+  private final Clock clock;
   
-  private final Object lock = new Object();
-  private long lastFileCheck = 0;
-  private Set<String> acceptableIssuers = Collections.emptySet();
+  /**
+   * Time to wait after a file system event for any further events before checking the file.
+   */
+  private static final long SETTLE_MILLIS = 50;
+  
+  /**
+   * Immutable set of issuers from the file, replaced in its entirety each time the file is loaded.
+   */
+  private volatile Set<String> acceptableIssuers = Collections.emptySet();
+  
+  /**
+   * The last modified time of the file when it was last loaded, only accessed by the constructor and then by the watch thread.
+   */
   private long fileLastModified = 0;
+  
+  private final WatchService watchService;
+  private final Thread watchThread;
 
   @Override
   public void validate() throws IllegalArgumentException {
@@ -75,9 +104,21 @@ public class IssuerAcceptabilityHandlerImpl implements IssuerAcceptabilityHandle
    * Constructor.
    * @param acceptableIssuerRegexes The List of regular expressions (as Strings) that are acceptable.
    * @param acceptableIssuersFile   The path to a file that contains valid issuers, one per line.
-   * @param pollPeriod              The time period between file checks (the check just looks at the last modified time, so make this about a minute).
+   * @param pollPeriod              The minimum age of a change to the file before it is loaded.
    */
   public IssuerAcceptabilityHandlerImpl(List<String> acceptableIssuerRegexes, String acceptableIssuersFile, Duration pollPeriod) {
+    this(acceptableIssuerRegexes, acceptableIssuersFile, pollPeriod, Clock.systemUTC());
+  }
+  
+  /**
+   * Constructor.
+   * @param acceptableIssuerRegexes The List of regular expressions (as Strings) that are acceptable.
+   * @param acceptableIssuersFile   The path to a file that contains valid issuers, one per line.
+   * @param pollPeriod              The minimum age of a change to the file before it is loaded.
+   * @param clock                   The clock that the last modified time of the file is compared with.
+   */
+  public IssuerAcceptabilityHandlerImpl(List<String> acceptableIssuerRegexes, String acceptableIssuersFile, Duration pollPeriod, Clock clock) {
+    this.clock = clock;
     this.acceptableIssuerRegexes = acceptableIssuerRegexes == null ? Collections.emptyList() : acceptableIssuerRegexes.stream()
                     .map(re -> {
                       if (re == null || re.isBlank()) {
@@ -95,82 +136,137 @@ public class IssuerAcceptabilityHandlerImpl implements IssuerAcceptabilityHandle
                     })
                     .filter(Objects::nonNull)
                     .collect(Collectors.toList());
+    this.issuerMatcher = IssuerMatcher.compile(this.acceptableIssuerRegexes, IssuerMatcher.DEFAULT_MEMO_SIZE);
     this.acceptableIssuersFile = Strings.isNullOrEmpty(acceptableIssuersFile) ? null : new File(acceptableIssuersFile);
     this.pollPeriodMs = pollPeriod == null ? 60000 : pollPeriod.toMillis();
+    WatchService newWatchService = null;
+    Thread newWatchThread = null;
+    if (this.acceptableIssuersFile != null) {
+      // Load the file now, so that the handler is usable as soon as it has been constructed
+      checkFile(clock.millis(), true);
+      newWatchService = createWatchService(this.acceptableIssuersFile);
+      if (newWatchService != null) {
+        newWatchThread = new Thread(this::watch, "issuer-file-watcher");
+        newWatchThread.setDaemon(true);
+      }
+    }
+    this.watchService = newWatchService;
+    this.watchThread = newWatchThread;
+    if (this.watchThread != null) {
+      this.watchThread.start();
+    }
+  }
+  
+  private static WatchService createWatchService(File file) {
+    Path dir = file.toPath().toAbsolutePath().getParent();
+    if (dir == null || !Files.isDirectory(dir)) {
+      logger.warn("Unable to watch {} because its parent is not a directory, changes to it will not be loaded", file);
+      return null;
+    }
+    WatchService result = null;
+    try {
+      result = FileSystems.getDefault().newWatchService();
+      logger.debug("Watching {} for changes to {}", dir, file);
+      dir.register(result
+              , StandardWatchEventKinds.ENTRY_CREATE
+              , StandardWatchEventKinds.ENTRY_MODIFY
+              , StandardWatchEventKinds.ENTRY_DELETE
+      );
+      return result;
+    } catch (Throwable ex) {
+      logger.error("Unable to watch {}, changes to it will not be loaded: ", file, ex);
+      closeQuietly(result);
+      return null;
+    }
+  }
+  
+  private static void closeQuietly(WatchService watchService) {
+    if (watchService != null) {
+      try {
+        watchService.close();
+      } catch (IOException ex) {
+        logger.warn("Failed to close watch service: ", ex);
+      }
+    }
+  }
+  
+  /**
+   * Stop watching the acceptable issuers file.
+   * <p>
+   * The issuers already loaded from the file remain acceptable.
+   */
+  @Override
+  public void close() {
+    closeQuietly(watchService);
   }
   
 
   @Override
   public boolean isAcceptable(String issuer) {
-    Set<String> localAcceptableIssuers;
-    boolean shouldUpdate = false;
-    long now;
     if (Strings.isNullOrEmpty(issuer)) {
       logger.warn("Invalid issuer: {}", (issuer == null ? "<null>" : "<blank>"));
       return false;
     }
-    if (acceptableIssuersFile != null) {
-      synchronized (lock) {
-        now = System.currentTimeMillis();
-        if (lastFileCheck + pollPeriodMs < now) {
-          lastFileCheck = now;
-          shouldUpdate = true;
-        } 
-        localAcceptableIssuers = acceptableIssuers;
-      }
-      if (shouldUpdate) {
-        checkFile(now);
-        synchronized (lock) {
-          localAcceptableIssuers = acceptableIssuers;
-        }
-      }
-      if (localAcceptableIssuers.contains(issuer)) {
-        return true;
-      }
+    if (acceptableIssuers.contains(issuer)) {
+      return true;
     }
-    for (Pattern acceptableIssuer : acceptableIssuerRegexes) {
-      if (acceptableIssuer.matcher(issuer).matches()) {
-        return true;
+    return issuerMatcher.matches(issuer);
+  }
+  
+  private void watch() {
+    try {
+      long delay = -1;
+      while (true) {
+        WatchKey key = delay < 0 ? watchService.take() : watchService.poll(delay, TimeUnit.MILLISECONDS);
+        // Let any related events (e.g. the multiple events of an atomic replace) arrive before checking the file.
+        while (key != null) {
+          key.pollEvents();
+          key.reset();
+          key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        delay = checkFile(clock.millis(), false);
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException ex) {
+      logger.debug("Acceptable issuers file watcher closed");
     }
-    return false;
   }
   
-  private void checkFile(long now) {
-    if (acceptableIssuersFile == null) {
-      return ;
-    }
+  /**
+   * Load the file if it has changed.
+   * @param now The current time, in milliseconds since the epoch.
+   * @param initial If true the file is loaded however recently it was modified, otherwise it is only loaded once it is at least one poll period old.
+   * @return The number of milliseconds until a change that is too recent to load should be checked again, or -1 if there is no such change.
+   */
+  private long checkFile(long now, boolean initial) {
     try {
       if (acceptableIssuersFile.isFile()) {
         long lastModNew = acceptableIssuersFile.lastModified();
-        if (lastModNew != fileLastModified && lastModNew + pollPeriodMs < now) {
+        if (lastModNew != fileLastModified) {
+          if (!initial && lastModNew + pollPeriodMs >= now) {
+            return lastModNew + pollPeriodMs - now + 1;
+          }
           fileLastModified = lastModNew;
           
-          Set<String> newSet = new HashSet<>();
-          try (Stream<String> stream = Files.lines(acceptableIssuersFile.toPath())) {
-            stream
-                    .forEach(l -> {
-                      if (l != null) {
-                        l = l.trim();
-                        if (!l.isEmpty()) {
-                          newSet.add(l);
-                        }
-                      }
-                    })
-                    ;
-          }
-          synchronized (lock) {
-            acceptableIssuers = newSet;
+          ImmutableSet.Builder<String> newSet = ImmutableSet.builder();
+          for (String l : Files.readAllLines(acceptableIssuersFile.toPath(), StandardCharsets.UTF_8)) {
+            l = l.trim();
+            if (!l.isEmpty()) {
+              newSet.add(l);
+            }
           }
+          acceptableIssuers = newSet.build();
+          logger.debug("Loaded {} acceptable issuers from {}", acceptableIssuers.size(), acceptableIssuersFile);
         }
       } else {
-        synchronized (lock) {
-          acceptableIssuers = Collections.emptySet();
-        }
+        fileLastModified = 0;
+        acceptableIssuers = Collections.emptySet();
       }
     } catch (Throwable ex) {
       logger.error("Error loading acceptable issuers file: ", ex);
     }
+    return -1;
   }
   
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A set of regular expressions compiled into a structure that avoids testing every expression against every issuer.
+ * <p>
+ * Each regular expression is analysed to find its literal prefix (the characters that any matching string must start with):
+ * <ul>
+ * <li>Expressions that are entirely literal are placed in a hash set.
+ * <li>Other expressions are placed in a prefix trie, keyed by their literal prefix.
+ * Only expressions found on the path through the trie for a given issuer can possibly match it, so only those are evaluated.
+ * </ul>
+ * The results of recent evaluations are kept in a bounded memo, so that repeated checks of the same issuer (which is the norm) are a single hash lookup.
+ * <p>
+ * Instances of this class are immutable (apart from the memo) and thread safe.
+ * 
+ * @author jtalbut
+ */
+public class IssuerMatcher {
+  
+  private static final Logger logger = LoggerFactory.getLogger(IssuerMatcher.class);
+  
+  /**
+   * The default number of issuer decisions to retain.
+   */
+  public static final int DEFAULT_MEMO_SIZE = 1000;
+  
+  private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+  
+  /**
+   * Node in the prefix trie.
+   */
+  private static final class Node {
+    private final Map<Character, Node> children = new HashMap<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    
+    Node child(char c) {
+      return children.computeIfAbsent(c, k -> new Node());
+    }
+  }
+  
+  private final Set<String> literals;
+  private final Node root;
+  private final int patternCount;
+  private final Cache<String, Boolean> memo;
+
+  private IssuerMatcher(Set<String> literals, Node root, int patternCount, int memoSize) {
+    this.literals = literals;
+    this.root = root;
+    this.patternCount = patternCount;
+    this.memo = memoSize > 0 ? CacheBuilder.newBuilder().maximumSize(memoSize).build() : null;
+  }
+  
+  /**
+   * Compile a collection of regular expressions into an IssuerMatcher.
+   * @param patterns The regular expressions, any one of which must match the entire issuer.
+   * @param memoSize The maximum number of issuer decisions to retain, zero to disable the memo.
+   * @return A newly created IssuerMatcher.
+   */
+  public static IssuerMatcher compile(Collection<Pattern> patterns, int memoSize) {
+    ImmutableSet.Builder<String> literals = ImmutableSet.builder();
+    Node root = new Node();
+    int count = 0;
+    for (Pattern pattern : patterns) {
+      StringBuilder prefix = new StringBuilder();
+      if (literalPrefix(pattern, prefix)) {
+        literals.add(prefix.toString());
+      } else {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); ++i) {
+          node = node.child(prefix.charAt(i));
+        }
+        node.patterns.add(pattern);
+        ++count;
+      }
+      logger.trace("Compiled acceptable issuer regex {} with literal prefix \"{}\"", pattern.pattern(), prefix);
+    }
+    return new IssuerMatcher(literals.build(), root, count, memoSize);
+  }
+  
+  /**
+   * Find the literal prefix of a regular expression.
+   * 
+   * The prefix is conservative: it may be shorter than the true literal prefix, but every string that the pattern matches (in its entirety) will start with it.
+   * 
+   * @param pattern The regular expression.
+   * @param prefix StringBuilder that the prefix will be appended to.
+   * @return true if the entire pattern is a literal (and so only matches exactly the prefix).
+   */
+  static boolean literalPrefix(Pattern pattern, StringBuilder prefix) {
+    String re = pattern.pattern();
+    if (pattern.flags() != 0 || re.contains("\\Q") || hasTopLevelAlternation(re)) {
+      return false;
+    }
+    int i = re.startsWith("^") ? 1 : 0;
+    while (i < re.length()) {
+      char c = re.charAt(i);
+      if (c == '\\') {
+        if (i + 1 < re.length() && !Character.isLetterOrDigit(re.charAt(i + 1))) {
+          c = re.charAt(i + 1);
+          i += 2;
+        } else {
+          return false;
+        }
+      } else if (METACHARACTERS.indexOf(c) >= 0) {
+        return false;
+      } else {
+        ++i;
+      }
+      if (i < re.length() && "?*{".indexOf(re.charAt(i)) >= 0) {
+        // The character just read is optional (or repeatable zero times), so it is not part of the prefix
+        return false;
+      }
+      prefix.append(c);
+    }
+    return true;
+  }
+  
+  /**
+   * Return true if the regular expression contains a '|' that is not escaped, in a character class or in a group.
+   * @param re The regular expression.
+   * @return true if the regular expression contains a '|' that is not escaped, in a character class or in a group.
+   */
+  static boolean hasTopLevelAlternation(String re) {
+    int depth = 0;
+    boolean inClass = false;
+    for (int i = 0; i < re.length(); ++i) {
+      char c = re.charAt(i);
+      if (c == '\\') {
+        ++i;
+      } else if (inClass) {
+        if (c == ']') {
+          inClass = false;
+        }
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == '(') {
+        ++depth;
+      } else if (c == ')') {
+        --depth;
+      } else if (c == '|' && depth == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Get the number of regular expressions that are not simple literals.
+   * @return the number of regular expressions that are not simple literals.
+   */
+  public int getPatternCount() {
+    return patternCount;
+  }
+  
+  /**
+   * Return true if any of the regular expressions matches the entire issuer.
+   * @param issuer The issuer to test.
+   * @return true if any of the regular expressions matches the entire issuer.
+   */
+  public boolean matches(String issuer) {
+    if (issuer == null) {
+      return false;
+    }
+    if (literals.contains(issuer)) {
+      return true;
+    }
+    if (patternCount == 0) {
+      return false;
+    }
+    if (memo == null) {
+      return evaluate(issuer);
+    }
+    Boolean result = memo.getIfPresent(issuer);
+    if (result == null) {
+      result = evaluate(issuer);
+      memo.put(issuer, result);
+    }
+    return result;
+  }
+  
+  private boolean evaluate(String issuer) {
+    Node node = root;
+    int i = 0;
+    while (node != null) {
+      for (Pattern pattern : node.patterns) {
+        if (pattern.matcher(issuer).matches()) {
+          return true;
+        }
+      }
+      if (i >= issuer.length()) {
+        break;
+      }
+      node = node.children.get(issuer.charAt(i++));
+    }
+    return false;
+  }
+  
+}
@@ -19,20 +19,26 @@ package uk.co.spudsoft.jwtvalidatorvertx.impl;
 import com.google.common.collect.ImmutableList;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.auth.PubSecKeyOptions;
 import io.vertx.ext.auth.impl.jose.JWK;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetAwsElbHandler;
-import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
 
 /**
  * Implementation of {@link JsonWebKeySetAwsElbHandler} that stores JWKs in a HashMap.
@@ -43,9 +49,14 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
 
   private static final Logger logger = LoggerFactory.getLogger(JWKSOpenIdDiscoveryHandlerImpl.class);
 
+  private static final Pattern VALID_KID = Pattern.compile("^[A-Za-z0-9._~-]*$");
+
   private final List<String> keyBaseUrls;
+  private final Vertx vertx;
+  private final Clock clock;
   private final WebClient webClient;
   private final long cacheDurationMillis;
+  private final long hedgeDelayMillis;
   private final Map<String, TimedObject<JWK>> keys = new HashMap<>();
 
   /**
@@ -70,8 +81,45 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
    * @see <a href="https://docs.aws.amazon.com/elasticloadbalancing/latest/application/listener-authenticate-users.html#user-claims-encoding">listener-authenticate-users.html#user-claims-encoding</a>
    */
   public JWKSAwsElbHandlerImpl(WebClient webClient, Collection<String> keyBaseUrls, Duration defaultJwkCacheDuration) {
+    this(null, webClient, keyBaseUrls, defaultJwkCacheDuration, null);
+  }
+
+  /**
+   * Constructor.
+   *
+   * If hedgeDelay is not null the URLs will be queried one at a time (starting with the one for the region of the signer)
+   * with a request being sent to the next URL if there has been no response after hedgeDelay.
+   * If hedgeDelay is null all the URLs will be queried in parallel.
+   *
+   * @param vertx Vertx instance, used for the hedge timers (may only be null if hedgeDelay is null).
+   * @param webClient Vertx WebClient instance, that will be used for querying the JWKS URLs.
+   * @param keyBaseUrls Static set of base URLs that will be used for constructing the URLs to the AWS keys, in order of preference.
+   * @param defaultJwkCacheDuration Time to keep JWKs in cache if no cache-control: max-age header is found.
+   * @param hedgeDelay Time to wait for a response from one URL before sending a request to the next one, or null to query all URLs in parallel.
+   */
+  public JWKSAwsElbHandlerImpl(Vertx vertx, WebClient webClient, Collection<String> keyBaseUrls, Duration defaultJwkCacheDuration, Duration hedgeDelay) {
+    this(vertx, webClient, keyBaseUrls, defaultJwkCacheDuration, hedgeDelay, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param vertx Vertx instance, used for the hedge timers (may only be null if hedgeDelay is null).
+   * @param webClient Vertx WebClient instance, that will be used for querying the JWKS URLs.
+   * @param keyBaseUrls Static set of base URLs that will be used for constructing the URLs to the AWS keys, in order of preference.
+   * @param defaultJwkCacheDuration Time to keep JWKs in cache if no cache-control: max-age header is found.
+   * @param hedgeDelay Time to wait for a response from one URL before sending a request to the next one, or null to query all URLs in parallel.
+   * @param clock The clock used to calculate and check the expiry time of cached JWKs.
+   */
+  public JWKSAwsElbHandlerImpl(Vertx vertx, WebClient webClient, Collection<String> keyBaseUrls, Duration defaultJwkCacheDuration, Duration hedgeDelay, Clock clock) {
+    if (hedgeDelay != null && vertx == null) {
+      throw new IllegalArgumentException("A Vertx instance is required for hedged requests");
+    }
+    this.vertx = vertx;
     this.webClient = webClient;
+    this.clock = clock;
     this.cacheDurationMillis = defaultJwkCacheDuration.toMillis();
+    this.hedgeDelayMillis = hedgeDelay == null ? -1 : Math.max(1, hedgeDelay.toMillis());
     this.keyBaseUrls = keyBaseUrls.stream().map(url -> url.endsWith("/") ? url : url + "/").collect(ImmutableList.toImmutableList());
   }
 
@@ -82,7 +130,7 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
   private JWK findJwk(String kid) {
     synchronized (keys) {
       TimedObject<JWK> jwk = keys.get(kid);
-      long now = System.currentTimeMillis();
+      long now = clock.millis();
       if (null != jwk) {
         if (jwk.expiredBefore(now)) {
           keys.remove(kid);
@@ -96,8 +144,18 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
 
   @Override
   public Future<JWK> findJwk(String issuer, String kid) {
+    return findJwkForSigner(kid, null);
+  }
+
+  @Override
+  public Future<JWK> findJwk(String issuer, Jwt jwt) {
+    Object signer = jwt.getHeaderValue("signer");
+    return findJwkForSigner(jwt.getKid(), signer instanceof String ? (String) signer : null);
+  }
+
+  private Future<JWK> findJwkForSigner(String kid, String signer) {
 
-    if (!kid.matches("^[A-Za-z0-9._~-]*$")) {
+    if (kid == null || !VALID_KID.matcher(kid).matches()) {
       logger.error("The kid \"{}\" is not a valid AWS ELB kid", kid);
       throw new IllegalArgumentException("The kid is not a valid AWS ELB kid.");
     }
@@ -107,40 +165,26 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
       return Future.succeededFuture(foundJwk);
     }
 
+    if (hedgeDelayMillis < 0) {
+      return findJwkParallel(kid);
+    } else {
+      return findJwkHedged(kid, orderForRegion(keyBaseUrls, regionFromSigner(signer)));
+    }
+  }
+
+  private Future<JWK> findJwkParallel(String kid) {
     Promise<JWK> resultPromise = Promise.promise();
-    List<Future<Void>> trackingFutures = new ArrayList<>();
+    List<Future<JWK>> trackingFutures = new ArrayList<>();
 
     for (String baseUrl : this.keyBaseUrls) {
-      String awsKeyUrl = baseUrl + kid;
-
-      Future<Void> future = webClient.getAbs(awsKeyUrl)
-              .send()
-              .compose(response -> {
-                if (response.statusCode() >= 200 && response.statusCode() < 300) {
-                  JWK jwk;
-                  Buffer body = response.body();
-                  try {
-                    jwk = pemToJwk(kid, body);
-                  } catch (Throwable ex) {
-                    logger.warn("From {} failed to parse body ({}) as JWKRequest: ", awsKeyUrl, body, response.body());
-                    return Future.<Void>succeededFuture();
-                  }
-                  synchronized (keys) {
-                    keys.put(kid, new TimedObject<>(jwk, System.currentTimeMillis() + cacheDurationMillis));
-                  }
-
-                  resultPromise.tryComplete(jwk);
-                } else {
-                  logger.warn("Request to {} returned {}: {}", awsKeyUrl, response.statusCode(), response.body());
-                }
-                return Future.<Void>succeededFuture();
-              })
-              .recover(ex -> {
-                logger.warn("Failed request to {}: ", awsKeyUrl, ex);
-                return Future.<Void>succeededFuture();
-              });
-
-      trackingFutures.add(future);
+      trackingFutures.add(
+              requestJwk(baseUrl, kid)
+                      .andThen(ar -> {
+                        if (ar.result() != null) {
+                          resultPromise.tryComplete(ar.result());
+                        }
+                      })
+      );
     }
 
     // After all requests finish, fail the promise if none succeeded
@@ -153,9 +197,168 @@ public class JWKSAwsElbHandlerImpl implements JsonWebKeySetAwsElbHandler {
     return resultPromise.future();
   }
 
+  private Future<JWK> findJwkHedged(String kid, List<String> orderedBaseUrls) {
+    Promise<JWK> resultPromise = Promise.promise();
+    startHedgedRequest(kid, orderedBaseUrls, new AtomicInteger(), new AtomicInteger(), resultPromise);
+    return resultPromise.future();
+  }
+
+  /**
+   * Send a request to the next URL in the list and arrange for the one after that to be tried if this one is slow or fails.
+   *
+   * The outstanding count is incremented before the next index is claimed so that a request that completes whilst
+   * another is being started cannot conclude that all the URLs have been exhausted.
+   */
+  private void startHedgedRequest(String kid, List<String> baseUrls, AtomicInteger next, AtomicInteger outstanding, Promise<JWK> resultPromise) {
+    outstanding.incrementAndGet();
+    int index = next.getAndIncrement();
+    if (index >= baseUrls.size() || resultPromise.future().isComplete()) {
+      checkHedgedExhausted(baseUrls, next, outstanding.decrementAndGet(), resultPromise);
+      return;
+    }
+
+    AtomicBoolean advanced = new AtomicBoolean();
+    long timerId = -1;
+    if (index + 1 < baseUrls.size()) {
+      timerId = vertx.setTimer(hedgeDelayMillis, id -> {
+        if (advanced.compareAndSet(false, true) && !resultPromise.future().isComplete()) {
+          logger.debug("No response from {} after {}ms, hedging to {}", baseUrls.get(index), hedgeDelayMillis, baseUrls.get(index + 1));
+          startHedgedRequest(kid, baseUrls, next, outstanding, resultPromise);
+        }
+      });
+    }
+    long finalTimerId = timerId;
+
+    requestJwk(baseUrls.get(index), kid)
+            .onComplete(ar -> {
+              if (ar.result() != null) {
+                if (finalTimerId >= 0) {
+                  vertx.cancelTimer(finalTimerId);
+                }
+                resultPromise.tryComplete(ar.result());
+                outstanding.decrementAndGet();
+              } else {
+                // No point waiting for the hedge timer if this URL has already failed
+                if (advanced.compareAndSet(false, true)) {
+                  if (finalTimerId >= 0) {
+                    vertx.cancelTimer(finalTimerId);
+                  }
+                  startHedgedRequest(kid, baseUrls, next, outstanding, resultPromise);
+                }
+                checkHedgedExhausted(baseUrls, next, outstanding.decrementAndGet(), resultPromise);
+              }
+            });
+  }
+
+  private static void checkHedgedExhausted(List<String> baseUrls, AtomicInteger next, int outstanding, Promise<JWK> resultPromise) {
+    if (outstanding == 0 && next.get() >= baseUrls.size()) {
+      resultPromise.tryFail("No valid response found");
+    }
+  }
+
+  /**
+   * Request a single key from a single URL.
+   *
+   * @param baseUrl The base URL to get the key from.
+   * @param kid The ID of the key.
+   * @return A Future that will always succeed, with either the JWK or with null if the request failed.
+   */
+  private Future<JWK> requestJwk(String baseUrl, String kid) {
+    String awsKeyUrl = baseUrl + kid;
+
+    return webClient.getAbs(awsKeyUrl)
+            .send()
+            .compose(response -> {
+              if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                JWK jwk;
+                Buffer body = response.body();
+                try {
+                  jwk = pemToJwk(kid, body);
+                } catch (Throwable ex) {
+                  logger.warn("From {} failed to parse body ({}) as JWKRequest: ", awsKeyUrl, body, ex);
+                  return Future.<JWK>succeededFuture();
+                }
+                synchronized (keys) {
+                  keys.put(kid, new TimedObject<>(jwk, clock.millis() + cacheDurationMillis));
+                }
+                return Future.succeededFuture(jwk);
+              } else {
+                logger.warn("Request to {} returned {}: {}", awsKeyUrl, response.statusCode(), response.body());
+              }
+              return Future.<JWK>succeededFuture();
+            })
+            .recover(ex -> {
+              logger.warn("Failed request to {}: ", awsKeyUrl, ex);
+              return Future.<JWK>succeededFuture();
+            });
+  }
+
+  /**
+   * Extract the AWS region from the signer header of an ALB token.
+   *
+   * The signer is the ARN of the load balancer, in the form arn:aws:elasticloadbalancing:region-code:account-id:loadbalancer/app/name/id.
+   *
+   * @param signer The signer header from the token, may be null.
+   * @return The region from the ARN, or null if it cannot be determined.
+   */
+  static String regionFromSigner(String signer) {
+    if (signer == null) {
+      return null;
+    }
+    String[] parts = signer.split(":", 6);
+    if (parts.length < 5 || !"arn".equals(parts[0]) || parts[3].isEmpty()) {
+      return null;
+    }
+    return parts[3];
+  }
+
+  /**
+   * Reorder the base URLs so that the first one that refers to the region is at the front.
+   *
+   * A URL is considered to refer to the region if the region appears in it delimited by characters that cannot be part of a region
+   * (so https://public-keys.auth.elb.eu-west-2.amazonaws.com/ and http://localhost/eu-west-2/ both refer to eu-west-2).
+   *
+   * @param baseUrls The configured base URLs.
+   * @param region The region to favour, may be null.
+   * @return The base URLs with the primary one first.
+   */
+  static List<String> orderForRegion(List<String> baseUrls, String region) {
+    if (region == null || baseUrls.size() < 2) {
+      return baseUrls;
+    }
+    Pattern regionPattern = Pattern.compile("(^|[^A-Za-z0-9-])" + Pattern.quote(region) + "([^A-Za-z0-9-]|$)");
+    for (int i = 0; i < baseUrls.size(); ++i) {
+      if (regionPattern.matcher(baseUrls.get(i)).find()) {
+        if (i == 0) {
+          return baseUrls;
+        }
+        List<String> result = new ArrayList<>(baseUrls.size());
+        result.add(baseUrls.get(i));
+        for (int j = 0; j < baseUrls.size(); ++j) {
+          if (j != i) {
+            result.add(baseUrls.get(j));
+          }
+        }
+        return result;
+      }
+    }
+    return baseUrls;
+  }
+
   private static JWK pemToJwk(String kid, Buffer pem) {
+    return pemToJwk(kid, "ES256", pem);
+  }
+
+  /**
+   * Convert a PEM encoded public key into a JWK.
+   * @param kid The ID to give the key.
+   * @param algorithm The JWS algorithm that the key is to be used with.
+   * @param pem The PEM encoded public key.
+   * @return A newly created JWK.
+   */
+  static JWK pemToJwk(String kid, String algorithm, Buffer pem) {
     PubSecKeyOptions keyOptions = new PubSecKeyOptions()
-      .setAlgorithm("ES256")
+      .setAlgorithm(algorithm)
       .setBuffer(pem)
       .setId(kid);
     return new JWK(keyOptions);
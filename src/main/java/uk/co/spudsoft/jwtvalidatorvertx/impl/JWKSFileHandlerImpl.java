@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetFileHandler;
+
+/**
+ * Implementation of {@link JsonWebKeySetFileHandler} that holds all keys in an immutable map that is replaced on reload.
+ * 
+ * @author jtalbut
+ */
+public class JWKSFileHandlerImpl implements JsonWebKeySetFileHandler {
+  
+  private static final Logger logger = LoggerFactory.getLogger(JWKSFileHandlerImpl.class);
+  
+  private static final String CLASSPATH_PREFIX = "classpath:";
+  
+  /**
+   * Time to wait after a file system event for any further events before reloading.
+   */
+  private static final long SETTLE_MILLIS = 50;
+  
+  private final List<String> paths;
+  private final WatchService watchService;
+  private final Thread watchThread;
+  
+  private volatile Map<String, JWK> keys = ImmutableMap.of();
+  
+  /**
+   * The keys loaded from each file (or classpath resource), so that they can be retained if the file cannot be reloaded.
+   * Only accessed by reload, which is synchronized because it may be called explicitly as well as by the watch thread.
+   */
+  private Map<String, Map<String, JWK>> keysByFile = ImmutableMap.of();
+
+  /**
+   * Constructor.
+   * 
+   * All the keys are loaded synchronously before the constructor returns.
+   * 
+   * @param paths The files, directories and classpath resources to load keys from.
+   * @param watch If true the files and directories will be watched and reloaded when they change.
+   * @throws IOException if the file system cannot be watched.
+   */
+  public JWKSFileHandlerImpl(Collection<String> paths, boolean watch) throws IOException {
+    this.paths = ImmutableList.copyOf(paths);
+    reload();
+    if (watch) {
+      this.watchService = FileSystems.getDefault().newWatchService();
+      for (Path dir : directoriesToWatch(this.paths)) {
+        logger.debug("Watching {} for changes to JWKs", dir);
+        dir.register(watchService
+                , StandardWatchEventKinds.ENTRY_CREATE
+                , StandardWatchEventKinds.ENTRY_MODIFY
+                , StandardWatchEventKinds.ENTRY_DELETE
+        );
+      }
+      this.watchThread = new Thread(this::watch, "jwks-file-watcher");
+      this.watchThread.setDaemon(true);
+      this.watchThread.start();
+    } else {
+      this.watchService = null;
+      this.watchThread = null;
+    }
+  }
+
+  @Override
+  public void optimize() {
+    // All keys are loaded by the constructor.
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (watchService != null) {
+      watchService.close();
+    }
+  }
+
+  @Override
+  public Future<JWK> findJwk(String issuer, String kid) {
+    JWK jwk = kid == null ? null : keys.get(kid);
+    if (jwk == null) {
+      return Future.failedFuture(new IllegalArgumentException("The key \"" + kid + "\" cannot be found."));
+    }
+    return Future.succeededFuture(jwk);
+  }
+  
+  /**
+   * Load the keys from a single file or resource into the map passed in.
+   */
+  private interface KeySource {
+    void load(Map<String, JWK> fileKeys) throws IOException;
+  }
+  
+  /**
+   * Reload all the keys.
+   * <p>
+   * Each file is loaded independently, if one file cannot be read or parsed (for example, because it is being rewritten)
+   * the keys previously loaded from that file are retained and the other files are still reloaded.
+   */
+  @Override
+  public final synchronized void reload() {
+    Map<String, Map<String, JWK>> previous = keysByFile;
+    Map<String, Map<String, JWK>> loaded = new LinkedHashMap<>();
+    for (String path : paths) {
+      if (path.startsWith(CLASSPATH_PREFIX)) {
+        loadSource(path, fileKeys -> loadResource(path.substring(CLASSPATH_PREFIX.length()), fileKeys), previous, loaded);
+      } else {
+        Path file = Paths.get(path);
+        if (Files.isDirectory(file)) {
+          try (DirectoryStream<Path> stream = Files.newDirectoryStream(file, "*.{json,jwks,pem}")) {
+            for (Path child : stream) {
+              loadSource(child.toString(), fileKeys -> loadFile(child, fileKeys), previous, loaded);
+            }
+          } catch (IOException | DirectoryIteratorException ex) {
+            logger.warn("Failed to list JWKs in {}, keeping the keys previously loaded from it: ", path, ex);
+            previous.forEach((source, fileKeys) -> {
+              if (!source.startsWith(CLASSPATH_PREFIX) && file.equals(Paths.get(source).getParent())) {
+                loaded.putIfAbsent(source, fileKeys);
+              }
+            });
+          }
+        } else if (Files.isRegularFile(file)) {
+          loadSource(path, fileKeys -> loadFile(file, fileKeys), previous, loaded);
+        } else {
+          logger.warn("JWK path {} does not exist", path);
+        }
+      }
+    }
+    Map<String, JWK> newKeys = new HashMap<>();
+    loaded.values().forEach(newKeys::putAll);
+    logger.debug("Loaded {} JWKs from {}", newKeys.size(), paths);
+    keysByFile = loaded;
+    keys = ImmutableMap.copyOf(newKeys);
+  }
+  
+  private static void loadSource(String source, KeySource keySource, Map<String, Map<String, JWK>> previous, Map<String, Map<String, JWK>> loaded) {
+    Map<String, JWK> fileKeys = new HashMap<>();
+    try {
+      keySource.load(fileKeys);
+      loaded.put(source, ImmutableMap.copyOf(fileKeys));
+    } catch (Throwable ex) {
+      Map<String, JWK> previousKeys = previous.get(source);
+      if (previousKeys == null) {
+        logger.warn("Failed to load JWKs from {}: ", source, ex);
+      } else {
+        logger.warn("Failed to load JWKs from {}, keeping the {} keys previously loaded from it: ", source, previousKeys.size(), ex);
+        loaded.put(source, previousKeys);
+      }
+    }
+  }
+  
+  static Set<Path> directoriesToWatch(List<String> paths) {
+    Set<Path> dirs = new LinkedHashSet<>();
+    for (String path : paths) {
+      if (!path.startsWith(CLASSPATH_PREFIX)) {
+        Path file = Paths.get(path).toAbsolutePath();
+        if (Files.isDirectory(file)) {
+          dirs.add(file);
+        } else if (file.getParent() != null && Files.isDirectory(file.getParent())) {
+          dirs.add(file.getParent());
+        } else {
+          logger.warn("Unable to watch {} because neither it nor its parent is a directory", path);
+        }
+      }
+    }
+    return dirs;
+  }
+  
+  private void watch() {
+    try {
+      while (true) {
+        WatchKey key = watchService.take();
+        // Let any related events (e.g. the multiple events of an atomic replace) arrive before reloading.
+        do {
+          key.pollEvents();
+          key.reset();
+          key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        reload();
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException ex) {
+      logger.debug("JWK file watcher closed");
+    }
+  }
+  
+  private void loadResource(String resource, Map<String, JWK> newKeys) throws IOException {
+    ClassLoader loader = Thread.currentThread().getContextClassLoader();
+    if (loader == null) {
+      loader = JWKSFileHandlerImpl.class.getClassLoader();
+    }
+    String name = resource.startsWith("/") ? resource.substring(1) : resource;
+    try (InputStream stream = loader.getResourceAsStream(name)) {
+      if (stream == null) {
+        logger.warn("JWK resource {} does not exist", resource);
+        return;
+      }
+      loadBytes(name.substring(name.lastIndexOf('/') + 1), stream.readAllBytes(), newKeys);
+    }
+  }
+  
+  private void loadFile(Path file, Map<String, JWK> newKeys) throws IOException {
+    loadBytes(file.getFileName().toString(), Files.readAllBytes(file), newKeys);
+  }
+  
+  static void loadBytes(String fileName, byte[] data, Map<String, JWK> newKeys) {
+    if (fileName.endsWith(".pem")) {
+      String kid = fileName.substring(0, fileName.length() - 4);
+      String alg = "ES256";
+      int dot = kid.lastIndexOf('.');
+      if (dot > 0) {
+        try {
+          alg = JsonWebAlgorithm.valueOf(kid.substring(dot + 1)).getName();
+          kid = kid.substring(0, dot);
+        } catch (IllegalArgumentException ex) {
+          // Not an algorithm, so the dot is part of the kid
+        }
+      }
+      newKeys.put(kid, JWKSAwsElbHandlerImpl.pemToJwk(kid, alg, Buffer.buffer(data)));
+    } else {
+      JsonObject json = new JsonObject(Buffer.buffer(data));
+      Object keysObject = json.getValue("keys");
+      if (keysObject instanceof JsonArray) {
+        for (Object keyData : (JsonArray) keysObject) {
+          if (keyData instanceof JsonObject) {
+            addJwk(fileName, (JsonObject) keyData, newKeys);
+          }
+        }
+      } else {
+        addJwk(fileName, json, newKeys);
+      }
+    }
+  }
+
+  private static void addJwk(String fileName, JsonObject jo, Map<String, JWK> newKeys) {
+    // Only the kid and kty are logged, the JSON may be a shared secret
+    String kid = jo.getValue("kid") instanceof String ? jo.getString("kid") : null;
+    String kty = jo.getValue("kty") instanceof String ? jo.getString("kty") : null;
+    try {
+      if (kid == null) {
+        logger.warn("JWK (kty {}) from {} has no kid", kty, fileName);
+      } else {
+        newKeys.put(kid, HmacVerifier.createJwk(jo));
+      }
+    } catch (Throwable ex) {
+      logger.warn("Failed to parse key {} (kty {}) from {} as a JWK: ", kid, kty, fileName, ex);
+    }
+  }
+  
+}
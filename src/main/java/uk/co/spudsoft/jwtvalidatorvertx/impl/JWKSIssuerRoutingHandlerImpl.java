@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.Future;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetIssuerRoutingHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+
+/**
+ * Implementation of {@link JsonWebKeySetIssuerRoutingHandler}.
+ * 
+ * All the routing data is immutable once constructed, so no locking is required.
+ * 
+ * @author jtalbut
+ */
+public class JWKSIssuerRoutingHandlerImpl implements JsonWebKeySetIssuerRoutingHandler {
+  
+  private static final Logger logger = LoggerFactory.getLogger(JWKSIssuerRoutingHandlerImpl.class);
+  
+  private final Map<String, JsonWebKeySetHandler> exact;
+  private final List<Map.Entry<String, JsonWebKeySetHandler>> prefixes;
+  private final List<Map.Entry<Pattern, JsonWebKeySetHandler>> patterns;
+  private final JsonWebKeySetHandler defaultHandler;
+
+  /**
+   * Constructor.
+   * 
+   * Usually this should be called via the {@link JsonWebKeySetIssuerRoutingHandler#builder()}.
+   * 
+   * @param exact Map of issuers to the handlers for them.
+   * @param prefixes Map of issuer prefixes to the handlers for them.
+   * @param patterns List of issuer regular expressions and the handlers for them.
+   * @param defaultHandler The handler to use when no route matches, may be null.
+   */
+  public JWKSIssuerRoutingHandlerImpl(Map<String, JsonWebKeySetHandler> exact
+          , Map<String, JsonWebKeySetHandler> prefixes
+          , List<Map.Entry<Pattern, JsonWebKeySetHandler>> patterns
+          , JsonWebKeySetHandler defaultHandler
+  ) {
+    this.exact = ImmutableMap.copyOf(exact);
+    this.prefixes = prefixes.entrySet().stream()
+            .sorted((a, b) -> Integer.compare(b.getKey().length(), a.getKey().length()))
+            .map(e -> Map.entry(e.getKey(), e.getValue()))
+            .collect(ImmutableList.toImmutableList());
+    this.patterns = ImmutableList.copyOf(patterns);
+    this.defaultHandler = defaultHandler;
+    if (this.exact.isEmpty() && this.prefixes.isEmpty() && this.patterns.isEmpty() && defaultHandler == null) {
+      throw new IllegalArgumentException("No routes configured");
+    }
+  }
+
+  @Override
+  public void optimize() {
+    Set<JsonWebKeySetHandler> handlers = Collections.newSetFromMap(new IdentityHashMap<>());
+    handlers.addAll(exact.values());
+    prefixes.forEach(e -> handlers.add(e.getValue()));
+    patterns.forEach(e -> handlers.add(e.getValue()));
+    if (defaultHandler != null) {
+      handlers.add(defaultHandler);
+    }
+    for (JsonWebKeySetHandler handler : handlers) {
+      handler.optimize();
+    }
+  }
+
+  /**
+   * Return true if the issuer starts with the prefix at a path boundary.
+   * <p>
+   * The prefix must either end with a '/' or be followed in the issuer by a '/', 
+   * so that the prefix "https://idp.example.com" does not match "https://idp.example.com.attacker.net/".
+   * 
+   * @param issuer The issuer from the token.
+   * @param prefix The configured issuer prefix.
+   * @return true if the issuer starts with the prefix at a path boundary.
+   */
+  static boolean matchesPrefix(String issuer, String prefix) {
+    if (!issuer.startsWith(prefix)) {
+      return false;
+    }
+    return issuer.length() == prefix.length()
+            || prefix.endsWith("/")
+            || issuer.charAt(prefix.length()) == '/';
+  }
+
+  @Override
+  public JsonWebKeySetHandler route(String issuer) {
+    if (issuer != null) {
+      JsonWebKeySetHandler handler = exact.get(issuer);
+      if (handler != null) {
+        return handler;
+      }
+      for (Map.Entry<String, JsonWebKeySetHandler> prefix : prefixes) {
+        if (matchesPrefix(issuer, prefix.getKey())) {
+          return prefix.getValue();
+        }
+      }
+      for (Map.Entry<Pattern, JsonWebKeySetHandler> pattern : patterns) {
+        if (pattern.getKey().matcher(issuer).matches()) {
+          return pattern.getValue();
+        }
+      }
+    }
+    return defaultHandler;
+  }
+
+  @Override
+  public Future<JWK> findJwk(String issuer, String kid) {
+    JsonWebKeySetHandler handler = route(issuer);
+    if (handler == null) {
+      logger.warn("No JsonWebKeySetHandler configured for issuer {}", issuer);
+      return Future.failedFuture(new IllegalArgumentException("No JsonWebKeySetHandler configured for issuer"));
+    }
+    return handler.findJwk(issuer, kid);
+  }
+
+  @Override
+  public Future<JWK> findJwk(String issuer, Jwt jwt) {
+    String routingIssuer = issuer == null ? jwt.getIssuer() : issuer;
+    JsonWebKeySetHandler handler = route(routingIssuer);
+    if (handler == null) {
+      logger.warn("No JsonWebKeySetHandler configured for issuer {}", routingIssuer);
+      return Future.failedFuture(new IllegalArgumentException("No JsonWebKeySetHandler configured for issuer"));
+    }
+    return handler.findJwk(routingIssuer, jwt);
+  }
+
+  @Override
+  public Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+    String routingIssuer = issuer == null ? jwt.getIssuer() : issuer;
+    JsonWebKeySetHandler handler = route(routingIssuer);
+    if (handler == null) {
+      logger.warn("No JsonWebKeySetHandler configured for issuer {}", routingIssuer);
+      return Future.failedFuture(new IllegalArgumentException("No JsonWebKeySetHandler configured for issuer"));
+    }
+    return handler.findCandidateJwks(routingIssuer, jwt);
+  }
+  
+}
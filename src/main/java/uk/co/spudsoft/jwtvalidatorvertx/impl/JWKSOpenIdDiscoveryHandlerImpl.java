@@ -18,20 +18,22 @@ package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
 import com.google.common.base.Strings;
 import io.vertx.core.Future;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.impl.jose.JWK;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.DiscoveryData;
+import uk.co.spudsoft.jwtvalidatorvertx.FetchService;
 import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetOpenIdDiscoveryHandler;
-import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.LazyJwkSet;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
 
 /**
  * Default implementation of {@link uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler}.
@@ -53,7 +55,9 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
 
   private final IssuerAcceptabilityHandler issuerAcceptabilityHandler;
   
-  private final OpenIdHelper openIdHelper;
+  private final FetchService fetchService;
+  
+  private final Clock clock;
   
   /**
    * Constructor.
@@ -64,11 +68,35 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
    * It is vital for the security of any system using OpenID Connect Discovery that it is only used with trusted issuers.
    */
   public JWKSOpenIdDiscoveryHandlerImpl(WebClient webClient, IssuerAcceptabilityHandler issuerAcceptabilityHandler, Duration defaultJwkCacheDuration) {
+    this(FetchService.create(webClient, defaultJwkCacheDuration), issuerAcceptabilityHandler);
+  }
+
+  /**
+   * Constructor.
+   * @param fetchService Service for making (and caching) asynchronous web requests, which may be shared with other handlers.
+   * @param issuerAcceptabilityHandler Object used to determine the acceptability of JWT issuers.
+   * 
+   * It is vital for the security of any system using OpenID Connect Discovery that it is only used with trusted issuers.
+   */
+  public JWKSOpenIdDiscoveryHandlerImpl(FetchService fetchService, IssuerAcceptabilityHandler issuerAcceptabilityHandler) {
+    this(fetchService, issuerAcceptabilityHandler, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   * @param fetchService Service for making (and caching) asynchronous web requests, which may be shared with other handlers.
+   * @param issuerAcceptabilityHandler Object used to determine the acceptability of JWT issuers.
+   * @param clock The clock used to determine whether cached discovery data and JWKs have expired.
+   * 
+   * It is vital for the security of any system using OpenID Connect Discovery that it is only used with trusted issuers.
+   */
+  public JWKSOpenIdDiscoveryHandlerImpl(FetchService fetchService, IssuerAcceptabilityHandler issuerAcceptabilityHandler, Clock clock) {
     this.issuerAcceptabilityHandler = issuerAcceptabilityHandler;
     issuerAcceptabilityHandler.validate();    
-    this.discoveryDataCache = new AsyncLoadingCache<>();  
+    this.clock = clock;
+    this.discoveryDataCache = new AsyncLoadingCache<>(clock);  
     this.kidCache = new HashMap<>();
-    this.openIdHelper = new OpenIdHelper(webClient, defaultJwkCacheDuration.toSeconds());
+    this.fetchService = fetchService;
   }
 
   @Override
@@ -98,7 +126,7 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
 
     String discoveryUrl = issuer + (issuer.endsWith("/") ? "" : "/") + ".well-known/openid-configuration";
     return discoveryDataCache.get(issuer
-            , () -> openIdHelper.get(discoveryUrl)
+            , () -> fetchService.getJson(discoveryUrl)
                     .map(tjo -> discoveryDataCache.entry(new DiscoveryData(tjo.getValue()), tjo.getExpiryMs()))
     );
   }
@@ -115,15 +143,15 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
     synchronized (kidCache) {
       AsyncLoadingCache<String, JWK> jwkCache = kidCache.get(jwksUri);
       if (jwkCache == null) {
-        jwkCache = new AsyncLoadingCache<>();
+        jwkCache = new AsyncLoadingCache<>(clock);
         kidCache.put(jwksUri, jwkCache);
       }
       finalJwkCache = jwkCache;
     }
     
     return finalJwkCache.get(kid
-            , () -> openIdHelper.get(discoveryData.getJwksUri())
-                    .compose(tjo -> processJwkSet(discoveryData.getJwksUri(), finalJwkCache, tjo, kid))
+            , () -> fetchService.getJwkSet(jwksUri, kid)
+                    .compose(tjs -> processJwkSet(jwksUri, tjs, kid))
     );
   }
 
@@ -132,44 +160,26 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
     return performOpenIdDiscovery(issuer)
             .compose(dd -> findJwk(dd, kid));
   }
+
+  @Override
+  public Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+    return performOpenIdDiscovery(issuer)
+            .compose(dd -> {
+              String jwksUri = dd.getJwksUri();
+              if (Strings.isNullOrEmpty(jwksUri)) {
+                return Future.failedFuture("Discovery data does not contain jwks_uri");
+              }
+              return fetchService.getJwkSet(jwksUri, null)
+                      .map(tjs -> tjs.getValue().candidates(jwt.getJsonWebAlgorithm(), jwt.getX5tS256()));
+            });
+  }
   
-  static Future<TimedObject<JWK>> processJwkSet(String sourceUrl, AsyncLoadingCache<String, JWK> jwkCache, TimedObject<JsonObject> data, String kid) {
-    long expiry = data.getExpiryMs();
-    JWK result = null;
-    JsonObject foundKey = null;
-    
+  static Future<TimedObject<JWK>> processJwkSet(String sourceUrl, TimedObject<LazyJwkSet> data, String kid) {
+    JWK result;
     try {
-      Object keysObject = data.getValue().getValue("keys");
-      if (keysObject instanceof JsonArray) {
-        JsonArray ja = (JsonArray) keysObject;
-        for (Iterator<Object> iter = ja.iterator(); iter.hasNext();) {
-          Object keyData = iter.next();
-          try {
-            if (keyData instanceof JsonObject) {
-              JsonObject jo = (JsonObject) keyData;
-              String keyId = jo.getString("kid");
-              if (kid.equals(keyId)) {
-                result = new JWK(jo);
-                foundKey = jo;
-              } else {
-                JWK other = new JWK(jo);
-                jwkCache.put(keyId, jwkCache.entry(other, expiry));
-              }
-            }
-          } catch (Throwable ex) {
-            logger.warn("Failed to parse {} from {} as a JWK: ", keyData, sourceUrl, ex);
-          }
-        }
-      } else {
-        logger.error("Failed to get key {} from JWKS from {}", kid, data.getValue());
-        return Future.failedFuture(
-                new IllegalArgumentException("Parse of signed JWT failed",
-                         new IllegalArgumentException("Failed to get public key for " + kid)
-                )
-        );
-      }
+      result = data.getValue().getJwk(kid);
     } catch (Throwable ex) {
-      logger.error("Failed to get public key for {} from {}", kid, data.getValue());
+      logger.error("Failed to parse key {} from {} as a JWK: ", kid, sourceUrl, ex);
       return Future.failedFuture(
               new IllegalArgumentException("Parse of signed JWT failed",
                        new IllegalArgumentException("Failed to get public key for " + kid)
@@ -177,7 +187,7 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
       );
     }
     if (result == null) {
-      logger.error("Failed to find key {} from JWKS from {}", kid, data.getValue());
+      logger.error("Failed to find key {} in JWKS from {} (which contains {})", kid, sourceUrl, data.getValue().kids());
       return Future.failedFuture(
               new IllegalArgumentException("Parse of signed JWT failed",
                        new IllegalArgumentException("Failed to find key " + kid)
@@ -185,11 +195,11 @@ public class JWKSOpenIdDiscoveryHandlerImpl implements JsonWebKeySetOpenIdDiscov
       );
     } else {
       if (logger.isDebugEnabled()) {
-        logger.debug("Got new {} public key with id {}: {}", result.getAlgorithm(), kid, foundKey);
+        logger.debug("Got new {} public key with id {} (kty {}) from {}", result.getAlgorithm(), kid, data.getValue().getKeyType(kid), sourceUrl);
       } else {
         logger.info("Got new public key with id {}", kid);
       }
-      return Future.succeededFuture(jwkCache.entry(result, expiry));
+      return Future.succeededFuture(new TimedObject<>(result, data.getExpiryMs()));
     }
   }
- }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.vertx.core.Future;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+
+/**
+ * Implementation of {@link JsonWebKeySetStaticKeysHandler}.
+ * 
+ * @author jtalbut
+ */
+public class JWKSStaticKeysHandlerImpl implements JsonWebKeySetStaticKeysHandler {
+  
+  private final Map<String, JWK> keys;
+  private final List<JWK> allKeys;
+
+  /**
+   * Constructor.
+   * @param keys The keys, each of which must have a unique kid.
+   * @throws IllegalArgumentException if any of the keys does not have a kid, or if kids are duplicated.
+   */
+  public JWKSStaticKeysHandlerImpl(Collection<JWK> keys) throws IllegalArgumentException {
+    Map<String, JWK> byKid = new HashMap<>();
+    for (JWK jwk : keys) {
+      if (jwk.getId() == null) {
+        throw new IllegalArgumentException("Static keys must have a kid");
+      }
+      if (byKid.put(jwk.getId(), jwk) != null) {
+        throw new IllegalArgumentException("The kid " + jwk.getId() + " is used by more than one key");
+      }
+    }
+    this.keys = ImmutableMap.copyOf(byKid);
+    this.allKeys = ImmutableList.copyOf(keys);
+  }
+
+  @Override
+  public void optimize() {
+    // All keys are already in memory
+  }
+
+  @Override
+  public Future<JWK> findJwk(String issuer, String kid) {
+    JWK jwk = kid == null ? null : keys.get(kid);
+    if (jwk == null) {
+      return Future.failedFuture(new IllegalArgumentException("The key \"" + kid + "\" cannot be found."));
+    }
+    return Future.succeededFuture(jwk);
+  }
+
+  @Override
+  public Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+    JsonWebAlgorithm algorithm = jwt.getJsonWebAlgorithm();
+    List<JWK> result = new ArrayList<>();
+    for (JWK jwk : allKeys) {
+      if (algorithm != null && algorithm.getName().equals(jwk.getAlgorithm())) {
+        result.add(jwk);
+      }
+    }
+    return Future.succeededFuture(result);
+  }
+  
+}
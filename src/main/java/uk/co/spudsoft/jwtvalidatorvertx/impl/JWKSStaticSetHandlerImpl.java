@@ -19,22 +19,23 @@ package uk.co.spudsoft.jwtvalidatorvertx.impl;
 import com.google.common.collect.ImmutableList;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import io.vertx.ext.auth.impl.jose.JWK;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.FetchService;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetKnownJwksHandler;
-import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.LazyJwkSet;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
 
 /**
  * Implementation of {@link JsonWebKeySetKnownJwksHandler} that stores JWKs in a HashMap.
@@ -46,10 +47,18 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
   private static final Logger logger = LoggerFactory.getLogger(JWKSOpenIdDiscoveryHandlerImpl.class);
   
   private final List<String> jwksUrls;
-  private final Map<String, TimedObject<JWK>> keys = new HashMap<>();
+  /**
+   * Map from kid to the JWK Set that contains it, the JWK itself is only built when it is first requested.
+   */
+  private final Map<String, TimedObject<LazyJwkSet>> keys = new HashMap<>();
+  /**
+   * Map from kid to the URL of the JWK Set that contains it, for logging.
+   */
+  private final Map<String, String> keySources = new HashMap<>();
   private final AtomicReference<Future<Void>> refreshFuture = new AtomicReference<>(null);
   
-  private final OpenIdHelper openIdHelper;
+  private final FetchService fetchService;
+  private final Clock clock;
 
   /**
    * Constructor.
@@ -72,8 +81,30 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
    * 
    */
   public JWKSStaticSetHandlerImpl(WebClient webClient, Collection<String> jwksUrls, Duration defaultJwkCacheDuration) {
+    this(FetchService.create(webClient, defaultJwkCacheDuration), jwksUrls);
+  }
+  
+  /**
+   * Constructor.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests, which may be shared with other handlers.
+   * @param jwksUrls Static set of URLs that will be used for obtaining JWKs.
+   */
+  public JWKSStaticSetHandlerImpl(FetchService fetchService, Collection<String> jwksUrls) {
+    this(fetchService, jwksUrls, Clock.systemUTC());
+  }
+  
+  /**
+   * Constructor.
+   * 
+   * @param fetchService Service for making (and caching) asynchronous web requests, which may be shared with other handlers.
+   * @param jwksUrls Static set of URLs that will be used for obtaining JWKs.
+   * @param clock The clock used to determine whether cached JWKs have expired.
+   */
+  public JWKSStaticSetHandlerImpl(FetchService fetchService, Collection<String> jwksUrls, Clock clock) {
     this.jwksUrls = ImmutableList.copyOf(jwksUrls);
-    this.openIdHelper = new OpenIdHelper(webClient, defaultJwkCacheDuration.toSeconds());
+    this.fetchService = fetchService;
+    this.clock = clock;
   }
   
   @Override
@@ -82,13 +113,21 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
   }
   
   private JWK findJwk(String kid) {
-    TimedObject<JWK> jwk = keys.get(kid);
-    long now = System.currentTimeMillis();
-    if (null != jwk) {
-      if (jwk.expiredBefore(now)) {
+    TimedObject<LazyJwkSet> jwks = keys.get(kid);
+    long now = clock.millis();
+    if (null != jwks) {
+      if (jwks.expiredBefore(now)) {
         keys.remove(kid);
+        keySources.remove(kid);
       } else {
-        return jwk.getValue();
+        try {
+          return jwks.getValue().getJwk(kid);
+        } catch (Throwable ex) {
+          // Only the kid and kty are logged, the JSON may be a shared secret
+          logger.warn("Failed to parse key {} (kty {}) from {} as a JWK: ", kid, jwks.getValue().getKeyType(kid), keySources.get(kid), ex);
+          keys.remove(kid);
+          keySources.remove(kid);
+        }
       }
     }
     return null;
@@ -106,7 +145,7 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
       Future<Void> newRefreshFuture = refreshPromise.future();
       Future<Void> result = refreshFuture.compareAndExchange(null, newRefreshFuture);
       if (result == null) {
-        result = updateCache()
+        result = updateCache(kid)
                 .compose(newkeys -> {
                   synchronized (keys) {
                     keys.putAll(newkeys);
@@ -128,7 +167,35 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
     }
   }
   
-  private Future<Map<String, TimedObject<JWK>>> updateCache() {
+  @Override
+  public Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+    if (jwksUrls.isEmpty()) {
+      return Future.failedFuture(new IllegalStateException("Unable to validate any JWKs because no jwksUrls have been configured"));
+    }
+    List<Future<List<JWK>>> futures = new ArrayList<>(jwksUrls.size());
+    for (String jwksUrl : jwksUrls) {
+      futures.add(
+              fetchService.getJwkSet(jwksUrl, null)
+                      .map(tjs -> tjs.getValue().candidates(jwt.getJsonWebAlgorithm(), jwt.getX5tS256()))
+                      .onFailure(ex -> {
+                        logger.warn("Failed to get JWKS from {}: ", jwksUrl, ex);
+                      })
+      );
+    }
+    return Future.join(futures)
+            .recover(ex -> Future.succeededFuture())
+            .map(v -> {
+              List<JWK> result = new ArrayList<>();
+              for (Future<List<JWK>> future : futures) {
+                if (future.succeeded()) {
+                  result.addAll(future.result());
+                }
+              }
+              return result;
+            });
+  }
+  
+  private Future<Map<String, TimedObject<LazyJwkSet>>> updateCache(String kid) {
     
     if (jwksUrls.isEmpty()) {
       logger.error("Unable to validate any JWKs because no jwksUrls have been configured");
@@ -136,12 +203,12 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
       return Future.failedFuture(ex);
     }
     
-    Map<String, TimedObject<JWK>> result = new HashMap<>();
+    Map<String, TimedObject<LazyJwkSet>> result = new HashMap<>();
     List<Future<Void>> futures = new ArrayList<>();
     
     for (String jwksUrl : jwksUrls) {
       futures.add(
-              openIdHelper.get(jwksUrl)
+              fetchService.getJwkSet(jwksUrl, kid)
                       .compose(tjo -> {
                         return addKeysToCache(jwksUrl, tjo, result);
                       })
@@ -161,34 +228,18 @@ public class JWKSStaticSetHandlerImpl implements JsonWebKeySetKnownJwksHandler {
             });
   }
   
-  private Future<Void> addKeysToCache(String url, TimedObject<JsonObject> data, Map<String, TimedObject<JWK>> result) {
-    try {
-      Object keysObject = data.getValue().getValue("keys");
-      if (keysObject instanceof JsonArray) {
-        JsonArray ja = (JsonArray) keysObject;
-        for (Iterator<Object> iter = ja.iterator(); iter.hasNext();) {
-          Object keyData = iter.next();
-          try {
-            if (keyData instanceof JsonObject) {
-              JsonObject jo = (JsonObject) keyData;
-              String keyId = jo.getString("kid");
-              JWK jwk = new JWK(jo);
-              synchronized (result) {
-                result.put(keyId, new TimedObject<>(jwk, data.getExpiryMs()));
-              }
-            }
-          } catch (Throwable ex) {
-            logger.warn("Failed to parse {} from {} as a JWK: ", keyData, url, ex);
-          }
-        }
-      } else {
-        logger.error("Failed to get JWKS from {} (returned value does not contain a keys array: {}))", url, data.getValue());
-        return Future.failedFuture(new IllegalArgumentException("Failed to parse JWKS from " + url));
+  private Future<Void> addKeysToCache(String url, TimedObject<LazyJwkSet> data, Map<String, TimedObject<LazyJwkSet>> result) {
+    synchronized (result) {
+      for (String kid : data.getValue().kids()) {
+        result.put(kid, data);
+      }
+    }
+    synchronized (keys) {
+      for (String kid : data.getValue().kids()) {
+        keySources.put(kid, url);
       }
-    } catch (Throwable ex) {
-      logger.error("Failed to get process JWKS from {} ({}): ", url, data.getValue(), ex);
-      return Future.failedFuture(new IllegalArgumentException("Failed to process JWKS from " + url));
     }
+    logger.debug("Found {} keys in JWKS from {}", data.getValue().size(), url);
     return Future.succeededFuture();
   }
   
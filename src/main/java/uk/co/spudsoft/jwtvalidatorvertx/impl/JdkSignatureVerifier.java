@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.EnumMap;
+import java.util.Map;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ * Verify JWS signatures directly with the JDK {@link Signature} classes.
+ * <p>
+ * Creating a Signature instance involves a provider lookup, so each thread keeps one instance per algorithm and re-initialises it with the key for each token.
+ * The algorithm names and parameters come from {@link JsonWebAlgorithm}:
+ * <ul>
+ * <li>ES* use the P1363 signature format, which is the raw R || S format used by JWS.
+ * <li>PS* use RSASSA-PSS with the PSSParameterSpec of the algorithm.
+ * <li>EdDSA uses the generic EdDSA signature so that both Ed25519 and Ed448 keys are supported.
+ * </ul>
+ * 
+ * @author jtalbut
+ */
+public final class JdkSignatureVerifier {
+  
+  private static final Map<JsonWebAlgorithm, ThreadLocal<Signature>> SIGNATURES = createSignatures();
+  
+  private JdkSignatureVerifier() {
+  }
+  
+  private static Map<JsonWebAlgorithm, ThreadLocal<Signature>> createSignatures() {
+    Map<JsonWebAlgorithm, ThreadLocal<Signature>> result = new EnumMap<>(JsonWebAlgorithm.class);
+    for (JsonWebAlgorithm algorithm : JsonWebAlgorithm.values()) {
+      String jdkName = jdkSignatureName(algorithm);
+      if (jdkName == null) {
+        continue;
+      }
+      try {
+        // Fail early if the JDK does not support the algorithm
+        Signature.getInstance(jdkName);
+      } catch (NoSuchAlgorithmException ex) {
+        continue;
+      }
+      result.put(algorithm, ThreadLocal.withInitial(() -> {
+        try {
+          return Signature.getInstance(jdkName);
+        } catch (NoSuchAlgorithmException ex) {
+          throw new IllegalStateException("Signature algorithm " + jdkName + " is no longer available", ex);
+        }
+      }));
+    }
+    return result;
+  }
+  
+  private static String jdkSignatureName(JsonWebAlgorithm algorithm) {
+    switch (algorithm) {
+      case HS256:
+      case HS384:
+      case HS512:
+      case none:
+        return null;
+      case EdDSA:
+        return "EdDSA";
+      default:
+        return algorithm.getJdkAlgName();
+    }
+  }
+  
+  /**
+   * Return true if this class can verify signatures made with the given algorithm.
+   * @param algorithm The algorithm.
+   * @return true if this class can verify signatures made with the given algorithm.
+   */
+  public static boolean supports(JsonWebAlgorithm algorithm) {
+    return algorithm != null && SIGNATURES.containsKey(algorithm);
+  }
+
+  /**
+   * Verify a signature.
+   * @param algorithm The algorithm specified in the JWS header.
+   * @param publicKey The public key to verify the signature with.
+   * @param signature The signature, after base64 decoding.
+   * @param signingInput The bytes that were signed (the base64 header and payload, separated by a dot).
+   * @return true if the signature is valid.
+   * @throws IllegalArgumentException if the algorithm is not supported.
+   * @throws GeneralSecurityException if the key cannot be used with the algorithm, or the signature is malformed.
+   */
+  public static boolean verify(JsonWebAlgorithm algorithm, PublicKey publicKey, byte[] signature, byte[] signingInput) throws IllegalArgumentException, GeneralSecurityException {
+    ThreadLocal<Signature> holder = algorithm == null ? null : SIGNATURES.get(algorithm);
+    if (holder == null) {
+      throw new IllegalArgumentException("Algorithm " + algorithm + " is not supported for signature verification");
+    }
+    if (publicKey == null) {
+      throw new IllegalArgumentException("No public key available for signature verification");
+    }
+    Signature verifier = holder.get();
+    verifier.initVerify(publicKey);
+    if (algorithm.getParameter() != null) {
+      verifier.setParameter(algorithm.getParameter());
+    }
+    verifier.update(signingInput);
+    return verifier.verify(signature);
+  }
+  
+}
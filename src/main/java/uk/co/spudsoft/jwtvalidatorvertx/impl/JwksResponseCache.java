@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+
+/**
+ * Cache of the serialized JWKS response for a {@link uk.co.spudsoft.jwtvalidatorvertx.JwksHandler}.
+ * <p>
+ * The JWKS is only rebuilt when the contents of the key cache change.
+ * Key caches created by {@link AlgorithmAndKeyPair#createCache(java.time.Duration)} are {@link VersionedCache}s, 
+ * so a change is detected by comparing a single version number, without locking or looking at the entries.
+ * For any other key cache the identity of the entries is compared with those used to build the current response.
+ * <p>
+ * No lock is held, two threads may occasionally both build the JWKS, but the response served is never older than the key cache
+ * was when the request started.
+ * <p>
+ * Each response carries a strong ETag derived from the body, so that clients can make conditional requests with If-None-Match.
+ *
+ * @param <T> The type used by the handler to represent the response body.
+ * @author jtalbut
+ */
+public final class JwksResponseCache<T> {
+
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(JwksResponseCache.class);
+
+  private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+
+  /**
+   * The serialized JWKS and its ETag.
+   * @param <T> The type used by the handler to represent the response body.
+   */
+  public static final class Response<T> {
+    private final Cache<String, AlgorithmAndKeyPair> source;
+    private final long version;
+    private final Map<String, AlgorithmAndKeyPair> keys;
+    private final T body;
+    private final String etag;
+
+    private Response(Cache<String, AlgorithmAndKeyPair> source, long version, Map<String, AlgorithmAndKeyPair> keys, T body, String etag) {
+      this.source = source;
+      this.version = version;
+      this.keys = keys;
+      this.body = body;
+      this.etag = etag;
+    }
+
+    /**
+     * Get the serialized JWKS.
+     * @return the serialized JWKS.
+     */
+    public T getBody() {
+      return body;
+    }
+
+    /**
+     * Get the ETag for the serialized JWKS, including the surrounding quotes.
+     * @return the ETag for the serialized JWKS.
+     */
+    public String getEtag() {
+      return etag;
+    }
+  }
+
+  private final Function<byte[], T> bodyFactory;
+  private volatile Response<T> current;
+
+  /**
+   * Constructor.
+   * @param bodyFactory Function to convert the UTF-8 bytes of the JWKS into the type used by the handler.
+   */
+  public JwksResponseCache(Function<byte[], T> bodyFactory) {
+    this.bodyFactory = bodyFactory;
+  }
+
+  /**
+   * Get the response for the current contents of the key cache, rebuilding it if the key cache has changed.
+   * @param keyCache The key cache to build the JWKS from.
+   * @return the response for the current contents of the key cache.
+   */
+  public Response<T> get(Cache<String, AlgorithmAndKeyPair> keyCache) {
+    Response<T> response = current;
+    if (keyCache instanceof VersionedCache) {
+      VersionedCache<String, AlgorithmAndKeyPair> versioned = (VersionedCache<String, AlgorithmAndKeyPair>) keyCache;
+      // Evict expired keys (which is cheap when there are none) so that they count as a change
+      versioned.cleanUp();
+      // Read the version before the entries, so that a change made while building is seen by the next request
+      long version = versioned.getVersion();
+      if (response != null && response.source == keyCache && response.version == version) {
+        return response;
+      }
+      response = build(keyCache, version);
+    } else {
+      if (response != null && response.source == keyCache && unchanged(response.keys, keyCache.asMap())) {
+        return response;
+      }
+      response = build(keyCache, 0);
+    }
+    current = response;
+    return response;
+  }
+
+  /**
+   * Discard the current response, so that the next call to {@link #get(com.google.common.cache.Cache)} will rebuild it.
+   */
+  public void invalidate() {
+    current = null;
+  }
+
+  private static boolean unchanged(Map<String, AlgorithmAndKeyPair> previous, Map<String, AlgorithmAndKeyPair> latest) {
+    if (previous.size() != latest.size()) {
+      return false;
+    }
+    for (Map.Entry<String, AlgorithmAndKeyPair> entry : latest.entrySet()) {
+      if (previous.get(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Response<T> build(Cache<String, AlgorithmAndKeyPair> keyCache, long version) {
+    Map<String, AlgorithmAndKeyPair> keys = new HashMap<>(keyCache.asMap());
+    JsonObject jwkSet = new JsonObject();
+    JsonArray jwks = new JsonArray();
+    jwkSet.put("keys", jwks);
+    keys.forEach((kid, akp) -> {
+      PublicKey key = akp.getKeyPair().getPublic();
+      try {
+        JsonObject json = JwkBuilder.get(key).toJson(kid, akp.getAlgorithm().getName(), key);
+        jwks.add(json);
+      } catch (Exception ex) {
+        logger.warn("Failed to add key {} to JWKS: ", kid, ex);
+      }
+    });
+    byte[] bytes = jwkSet.encode().getBytes(StandardCharsets.UTF_8);
+    logger.debug("Built JWKS of {} bytes for {} keys", bytes.length, keys.size());
+    return new Response<>(keyCache, version, keys, bodyFactory.apply(bytes), etag(bytes));
+  }
+
+  static String etag(byte[] body) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+      return "\"" + BASE64.encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 not available", ex);
+    }
+  }
+
+  /**
+   * Determine whether the value of an If-None-Match header matches an ETag.
+   * <p>
+   * As required by RFC 9110 this uses the weak comparison function, so W/ prefixes are ignored.
+   *
+   * @param ifNoneMatch The value of the If-None-Match header, may be null.
+   * @param etag The ETag of the current representation, including the surrounding quotes.
+   * @return true if the client already has the current representation.
+   */
+  public static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if ("*".equals(candidate)) {
+        return true;
+      }
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Format a Cache-Control header value for the given max-age.
+   * @param maxAgeSeconds The max-age, in seconds.
+   * @return a Cache-Control header value for the given max-age.
+   * @throws IllegalArgumentException if maxAgeSeconds is negative.
+   */
+  public static String cacheControl(int maxAgeSeconds) {
+    if (maxAgeSeconds < 0) {
+      throw new IllegalArgumentException("The max-age must not be negative");
+    }
+    return "max-age=" + maxAgeSeconds;
+  }
+}
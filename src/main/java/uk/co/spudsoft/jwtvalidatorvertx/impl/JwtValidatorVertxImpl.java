@@ -1,28 +1,46 @@
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import io.vertx.core.Context;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
 import io.vertx.ext.auth.impl.jose.JWK;
-import io.vertx.ext.auth.impl.jose.JWS;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
 import static java.util.Objects.requireNonNull;
+import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import jdk.jfr.EventType;
+import uk.co.spudsoft.jwtvalidatorvertx.AudienceMatcher;
 import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler;
 import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
 import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ReplayGuard;
+import uk.co.spudsoft.jwtvalidatorvertx.RevocationList;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener.Stage;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.TokenValidationEvent;
 
 /**
  * Token validation for vertx - implementation of {@link uk.co.spudsoft.jwtvalidatorvertx.JwtValidator}.
@@ -35,33 +53,37 @@ public class JwtValidatorVertxImpl implements JwtValidator {
 
   private static final Base64.Decoder B64DECODER = Base64.getUrlDecoder();
   
-  private static final Set<String> DEFAULT_PERMITTED_ALGS = ImmutableSet.of(
-          JWS.EdDSA
-
-          , JWS.ES256
-          , JWS.ES384
-          , JWS.ES512
-
-          , JWS.PS256
-          , JWS.PS384
-          , JWS.PS512
-
-          , JWS.ES256K
-
-          , JWS.RS256
-          , JWS.RS384
-          , JWS.RS512
-  );
+  /**
+   * Tokens without a kid that have more candidate keys than this will be verified against the candidates in parallel on worker threads,
+   * rather than blocking the event loop (when called without a Vert.x context they are always verified on the calling thread).
+   */
+  static final int BLOCKING_CANDIDATE_THRESHOLD = 4;
   
-  private Set<String> permittedAlgs;
+  /**
+   * The number of candidate keys verified by each worker task when candidates are verified in parallel.
+   */
+  static final int CANDIDATES_PER_TASK = 2;
   
-  private boolean requireExp = true;
-  private boolean requireNbf = true;
+  /**
+   * Tokens without a kid that have more candidate keys than this are rejected, so that a single token cannot require an unbounded
+   * number of signature verifications.
+   */
+  static final int MAX_CANDIDATES = 16;
   
-  private long timeLeewayMilliseconds = 0;
+  private final AtomicReference<ValidationPolicy> policy = new AtomicReference<>(ValidationPolicy.DEFAULT);
   
   private final JsonWebKeySetHandler jsonWebKeySetHandler;
   private final IssuerAcceptabilityHandler issuerAcceptabilityHandler;
+  private final Clock clock;
+  private volatile ReplayGuard replayGuard;
+  private volatile RevocationList revocationList;
+  private volatile ValidationListener validationListener;
+  
+  /**
+   * The key that last verified a token without a kid, keyed by the issuer, algorithm and thumbprint of the token.
+   * This only affects the order in which candidates are tried, the key must still be one of the candidates for the token.
+   */
+  private final Cache<String, JWK> keylessMemo = CacheBuilder.newBuilder().maximumSize(1000).build();
   
   /**
    * Constructor.
@@ -69,37 +91,63 @@ public class JwtValidatorVertxImpl implements JwtValidator {
    * @param issuerAcceptabilityHandler   Handler for validating issuers found in the JWT.
    */
   public JwtValidatorVertxImpl(JsonWebKeySetHandler jsonWebKeySetHandler, IssuerAcceptabilityHandler issuerAcceptabilityHandler) {
+    this(jsonWebKeySetHandler, issuerAcceptabilityHandler, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   * @param jsonWebKeySetHandler         Handler for obtaining JWKs
+   * @param issuerAcceptabilityHandler   Handler for validating issuers found in the JWT.
+   * @param clock                        The clock that the exp and nbf claims are compared with.
+   */
+  public JwtValidatorVertxImpl(JsonWebKeySetHandler jsonWebKeySetHandler, IssuerAcceptabilityHandler issuerAcceptabilityHandler, Clock clock) {
     this.jsonWebKeySetHandler = jsonWebKeySetHandler;
     this.issuerAcceptabilityHandler = issuerAcceptabilityHandler;
-    this.permittedAlgs = new HashSet<>(DEFAULT_PERMITTED_ALGS);
+    this.clock = clock;
+  }
+
+  @Override
+  public ValidationPolicy getPolicy() {
+    return policy.get();
+  }
+
+  @Override
+  public JwtValidator setPolicy(ValidationPolicy policy) {
+    this.policy.set(requireNonNull(policy, "ValidationPolicy may not be null"));
+    return this;
   }
 
   @Override
   public Set<String> getPermittedAlgorithms() {
-    return ImmutableSet.copyOf(permittedAlgs);
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    for (JsonWebAlgorithm alg : policy.get().getPermittedAlgorithms()) {
+      builder.add(alg.getName());
+    }
+    return builder.build();
+  }
+  
+  private static JsonWebAlgorithm supportedAlgorithm(String name) throws NoSuchAlgorithmException {
+    JsonWebAlgorithm alg = ValidationPolicy.algorithmForName(name);
+    if (alg == null || !ValidationPolicy.SUPPORTED_ALGORITHMS.contains(alg)) {
+      throw new NoSuchAlgorithmException();
+    }
+    return alg;
   }
 
   @Override
   public JwtValidator setPermittedAlgorithms(Set<String> algorithms) throws NoSuchAlgorithmException {
-    Set<String> copy = new HashSet<>();
+    EnumSet<JsonWebAlgorithm> copy = EnumSet.noneOf(JsonWebAlgorithm.class);
     for (String alg : algorithms) {
-      if (!DEFAULT_PERMITTED_ALGS.contains(alg)) {
-        throw new NoSuchAlgorithmException();
-      } else {
-        copy.add(alg);
-      }
+      copy.add(supportedAlgorithm(alg));
     }
-    this.permittedAlgs = copy;
+    policy.updateAndGet(p -> p.toBuilder().setPermittedAlgorithms(copy).build());
     return this;
   }
 
   @Override
   public JwtValidator addPermittedAlgorithm(String algorithm) throws NoSuchAlgorithmException {
-    if (!DEFAULT_PERMITTED_ALGS.contains(algorithm)) {
-      throw new NoSuchAlgorithmException();
-    } else {
-      permittedAlgs.add(algorithm);
-    }
+    JsonWebAlgorithm alg = supportedAlgorithm(algorithm);
+    policy.updateAndGet(p -> p.toBuilder().addPermittedAlgorithm(alg).build());
     return this;
   }
   
@@ -109,7 +157,7 @@ public class JwtValidatorVertxImpl implements JwtValidator {
    */
   @Override
   public JwtValidator setTimeLeeway(Duration timeLeeway) {
-    this.timeLeewayMilliseconds = timeLeeway.toMillis();
+    policy.updateAndGet(p -> p.toBuilder().setTimeLeeway(timeLeeway).build());
     return this;
   }
 
@@ -119,7 +167,7 @@ public class JwtValidatorVertxImpl implements JwtValidator {
    */
   @Override
   public JwtValidator setRequireExp(boolean requireExp) {
-    this.requireExp = requireExp;
+    policy.updateAndGet(p -> p.toBuilder().setRequireExp(requireExp).build());
     return this;
   }
 
@@ -129,10 +177,131 @@ public class JwtValidatorVertxImpl implements JwtValidator {
    */
   @Override
   public JwtValidator setRequireNbf(boolean requireNbf) {
-    this.requireNbf = requireNbf;
+    policy.updateAndGet(p -> p.toBuilder().setRequireNbf(requireNbf).build());
+    return this;
+  }
+  
+  @Override
+  public JwtValidator setReplayGuard(ReplayGuard replayGuard) {
+    this.replayGuard = replayGuard;
+    return this;
+  }
+
+  @Override
+  public JwtValidator setRevocationList(RevocationList revocationList) {
+    this.revocationList = revocationList;
+    return this;
+  }
+
+  @Override
+  public JwtValidator setValidationListener(ValidationListener validationListener) {
+    this.validationListener = validationListener;
     return this;
   }
   
+  /**
+   * Times the stages of a single validation for the {@link ValidationListener} and the {@link TokenValidationEvent}.
+   * <p>
+   * Only created when there is a listener or the {@link TokenValidationEvent} is enabled in a running recording,
+   * a validation moves through the stages in order (though not necessarily on the same thread).
+   * <p>
+   * The issuer and algorithm are only reported once the signature of the token has been verified, until then they are null.
+   */
+  private static final class StageTimer {
+    
+    /**
+     * The JFR event type, which knows whether any recording has enabled the event (it is disabled by default).
+     */
+    private static final EventType EVENT_TYPE = EventType.getEventType(TokenValidationEvent.class);
+    
+    private final ValidationListener listener;
+    private final TokenValidationEvent event;
+    private final long startNanos;
+    private long stageStartNanos;
+    private Stage stage = Stage.PARSE;
+    private String issuer;
+    private JsonWebAlgorithm algorithm;
+
+    StageTimer(ValidationListener listener, boolean recording) {
+      this.listener = listener;
+      if (recording) {
+        this.event = new TokenValidationEvent();
+        this.event.begin();
+      } else {
+        this.event = null;
+      }
+      this.startNanos = System.nanoTime();
+      this.stageStartNanos = startNanos;
+    }
+    
+    static StageTimer create(ValidationListener listener) {
+      boolean recording = EVENT_TYPE.isEnabled();
+      if (listener == null && !recording) {
+        return null;
+      }
+      return new StageTimer(listener, recording);
+    }
+    
+    void identify(String issuer, JsonWebAlgorithm algorithm) {
+      this.issuer = issuer;
+      this.algorithm = algorithm;
+    }
+    
+    void next(Stage next) {
+      long now = System.nanoTime();
+      if (listener != null) {
+        try {
+          listener.stageCompleted(stage, issuer, algorithm, now - stageStartNanos, true);
+        } catch (Throwable ex) {
+          logger.warn("ValidationListener failed: ", ex);
+        }
+      }
+      stage = next;
+      stageStartNanos = now;
+    }
+    
+    void succeeded() {
+      complete(true);
+    }
+    
+    void failed() {
+      complete(false);
+    }
+    
+    private void complete(boolean succeeded) {
+      long now = System.nanoTime();
+      if (listener != null) {
+        try {
+          listener.stageCompleted(stage, issuer, algorithm, now - stageStartNanos, succeeded);
+          listener.validationCompleted(issuer, algorithm, now - startNanos, succeeded ? null : stage);
+        } catch (Throwable ex) {
+          logger.warn("ValidationListener failed: ", ex);
+        }
+      }
+      if (event != null && event.shouldCommit()) {
+        event.setIssuer(issuer);
+        event.setAlgorithm(algorithm == null ? null : algorithm.getName());
+        event.setOutcome(succeeded ? "success" : "failure");
+        event.setFailedStage(succeeded ? null : stage.name());
+        event.commit();
+      }
+    }
+  }
+  
+  /**
+   * Get the issuer of the token to report to the {@link ValidationListener} and JFR, which must not be a value that an attacker could choose.
+   * <p>
+   * This must only be called once the signature of the token has been verified, 
+   * because an acceptable issuer may be any value that matches a regular expression.
+   */
+  private String reportableIssuer(Jwt jwt) {
+    String tokenIssuer = jwt.getIssuer();
+    if (Strings.isNullOrEmpty(tokenIssuer) || !issuerAcceptabilityHandler.isAcceptable(tokenIssuer)) {
+      return null;
+    }
+    return tokenIssuer;
+  }
+  
   /**
    * Validate the token and either throw an exception or return it's constituent parts.
    * @param token             The token.
@@ -147,11 +316,37 @@ public class JwtValidatorVertxImpl implements JwtValidator {
           , List<String> requiredAudList
           , boolean ignoreRequiredAud
   ) {
+    return validateTokenForAudiences(issuer, token, requiredAudList == null ? null : AudienceMatcher.create(requiredAudList), ignoreRequiredAud);
+  }
+  
+  /**
+   * Validate the token and either throw an exception or return it's constituent parts.
+   * @param token             The token.
+   * @param requiredAudiences The audiences, at least one of which must be claimed by the token. 
+   * @param ignoreRequiredAud Do not check for required audiences.
+   * @return The token's parts.
+   */
+  @Override
+  public Future<Jwt> validateTokenForAudiences(
+          String issuer
+          , String token
+          , AudienceMatcher requiredAudiences
+          , boolean ignoreRequiredAud
+  ) {
+    
+    ValidationPolicy currentPolicy = policy.get();
+    ReplayGuard currentReplayGuard = replayGuard;
+    RevocationList currentRevocationList = revocationList;
+    ValidationListener currentListener = validationListener;
+    StageTimer timer = StageTimer.create(currentListener);
     
     Jwt jwt;
     try {
       jwt = Jwt.parseJws(token);
     } catch (Throwable ex) {
+      if (timer != null) {
+        timer.failed();
+      }
       if (logger.isTraceEnabled()) {
         logger.error("Parse of JWT ({}) failed: ", token, ex);
       } else {
@@ -161,37 +356,73 @@ public class JwtValidatorVertxImpl implements JwtValidator {
     }
 
     try {
-      validateAlgorithm(jwt.getAlgorithm());
+      validateAlgorithm(currentPolicy, jwt.getAlgorithm());
       String kid = jwt.getKid();
 
       if (jwt.getPayloadSize() == 0) {
         logger.error("No payload claims found in JWT");
+        if (timer != null) {
+          timer.failed();
+        }
         return Future.failedFuture(new IllegalArgumentException("Parse of signed JWT failed"));
       }
 
-      return jsonWebKeySetHandler.findJwk(issuer, kid)
+      if (timer != null) {
+        timer.next(Stage.KEY_LOOKUP);
+      }
+      // Tokens without a kid have their signature verified as part of finding the key
+      boolean keyless = kid == null;
+      Future<JWK> jwkFuture = keyless ? findVerifyingCandidate(issuer, jwt) : jsonWebKeySetHandler.findJwk(issuer, jwt);
+      return jwkFuture
               .onFailure(ex -> {
                 logger.warn("Failed to find JWK for {} ({}): ", kid, issuer, ex);
+                if (timer != null) {
+                  timer.failed();
+                }
               })
               .compose(jwk -> {
                 try {
-                  verify(jwk, jwt);
-
-                  long now = System.currentTimeMillis();
+                  if (!keyless) {
+                    if (timer != null) {
+                      timer.next(Stage.SIGNATURE);
+                    }
+                    verify(jwk, jwt);
+                  }
+                  
+                  // Only now that the signature has been verified can the claims be used to tag metrics
+                  if (timer != null) {
+                    timer.identify(reportableIssuer(jwt), jwt.getJsonWebAlgorithm());
+                    timer.next(Stage.ISSUER);
+                  }
                   validateIssuer(jwt, issuer);
-                  validateNbf(jwt, now);
-                  validateExp(jwt, now);
-                  validateAud(jwt, requiredAudList, ignoreRequiredAud);
+                  if (timer != null) {
+                    timer.next(Stage.CLAIMS);
+                  }
+                  long now = clock.millis();
+                  validateNbf(currentPolicy, jwt, now);
+                  validateExp(currentPolicy, jwt, now);
+                  validateAud(jwt, requiredAudiences, ignoreRequiredAud);
                   validateSub(jwt);
+                  validateNotRevoked(currentRevocationList, jwt);
+                  validateJti(currentPolicy, currentReplayGuard, jwt);
 
+                  if (timer != null) {
+                    timer.succeeded();
+                  }
                   return Future.succeededFuture(jwt);
                 } catch (Throwable ex) {
                   logger.info("Validation of {} token failed: ", jwt.getAlgorithm(), ex);
+                  if (timer != null) {
+                    timer.failed();
+                  }
                   return Future.failedFuture(new IllegalArgumentException("Validation of " + jwt.getAlgorithm() + " signed JWT failed", ex));
                 }
               });
     } catch (Throwable ex) {
       logger.error("Failed to process token: ", ex);
+      if (timer != null) {
+        timer.failed();
+      }
       return Future.failedFuture(ex);
     }
   }
@@ -234,8 +465,7 @@ public class JwtValidatorVertxImpl implements JwtValidator {
     byte[] signingInput = jwt.getSignatureBase().getBytes(StandardCharsets.UTF_8);
 
     try {
-      JWS jws = new JWS(jwk);
-      if (!jws.verify(payloadInput, signingInput)) {
+      if (!verifySignature(jwk, jwt.getJsonWebAlgorithm(), payloadInput, signingInput)) {
         throw new IllegalArgumentException("Signature verification failed");
       }
     } catch (Throwable ex) {
@@ -244,67 +474,204 @@ public class JwtValidatorVertxImpl implements JwtValidator {
     }
   }
 
+  /**
+   * Verify a signature with the algorithm from the header of the token, which must match the algorithm of the key (if the key specifies one).
+   * HMAC tokens can only be verified with shared secret (kty "oct") keys, so a public key can never be misused as an HMAC secret.
+   */
+  private static boolean verifySignature(JWK jwk, JsonWebAlgorithm algorithm, byte[] signature, byte[] signingInput) throws GeneralSecurityException {
+    String keyAlgorithm = jwk.getAlgorithm();
+    if (keyAlgorithm != null && !keyAlgorithm.equals(algorithm.getName())) {
+      throw new IllegalArgumentException("Token algorithm (" + algorithm.getName() + ") does not match key algorithm (" + keyAlgorithm + ")");
+    }
+    if ("HMAC".equals(algorithm.getFamilyName())) {
+      return HmacVerifier.forJwk(jwk, algorithm).verify(signature, signingInput);
+    }
+    return JdkSignatureVerifier.verify(algorithm, jwk.publicKey(), signature, signingInput);
+  }
+
+  private Future<JWK> findVerifyingCandidate(String issuer, Jwt jwt) {
+    if (Strings.isNullOrEmpty(jwt.getSignature())) {
+      return Future.failedFuture(new IllegalStateException("No signature in token."));
+    }
+    byte[] signature = B64DECODER.decode(jwt.getSignature());
+    byte[] signingInput = jwt.getSignatureBase().getBytes(StandardCharsets.UTF_8);
+    JsonWebAlgorithm algorithm = jwt.getJsonWebAlgorithm();
+    String memoKey = jwt.getIssuer() + " " + jwt.getAlgorithm() + " " + jwt.getX5tS256();
+    
+    return jsonWebKeySetHandler.findCandidateJwks(issuer, jwt)
+            .compose(candidates -> {
+              if (candidates.isEmpty()) {
+                return Future.failedFuture(new IllegalArgumentException("No candidate keys found for token without kid"));
+              }
+              if (candidates.size() > MAX_CANDIDATES) {
+                logger.warn("Token without kid has {} candidate keys, which is more than the limit of {}", candidates.size(), MAX_CANDIDATES);
+                return Future.failedFuture(new IllegalArgumentException("Too many candidate keys found for token without kid"));
+              }
+              // Try the key that worked last time first, but only if it is still a candidate
+              JWK remembered = keylessMemo.getIfPresent(memoKey);
+              List<JWK> others = candidates;
+              if (remembered != null && candidates.contains(remembered)) {
+                if (signatureMatches(remembered, algorithm, signature, signingInput)) {
+                  return Future.succeededFuture(remembered);
+                }
+                others = new ArrayList<>(candidates);
+                others.remove(remembered);
+              }
+              return verifyCandidates(others, algorithm, signature, signingInput)
+                      .compose(jwk -> {
+                        if (jwk == null) {
+                          logger.warn("None of the {} candidate keys verified the token without kid", candidates.size());
+                          return Future.failedFuture(new IllegalArgumentException("Signature verification failed"));
+                        }
+                        keylessMemo.put(memoKey, jwk);
+                        return Future.succeededFuture(jwk);
+                      });
+            });
+  }
+  
+  private static Future<JWK> verifyCandidates(List<JWK> candidates, JsonWebAlgorithm algorithm, byte[] signature, byte[] signingInput) {
+    Context context = Vertx.currentContext();
+    if (context == null || candidates.size() <= BLOCKING_CANDIDATE_THRESHOLD) {
+      return Future.succeededFuture(firstVerifyingCandidate(candidates, algorithm, signature, signingInput));
+    }
+    // Verify small batches of candidates in parallel, the first key to verify the signature wins and the other batches stop early
+    AtomicBoolean found = new AtomicBoolean();
+    Promise<JWK> promise = Promise.promise();
+    List<Future<JWK>> batches = new ArrayList<>();
+    for (int i = 0; i < candidates.size(); i += CANDIDATES_PER_TASK) {
+      List<JWK> batch = candidates.subList(i, Math.min(i + CANDIDATES_PER_TASK, candidates.size()));
+      Future<JWK> future = context.executeBlocking(() -> firstVerifyingCandidate(batch, algorithm, signature, signingInput, found), false);
+      future.onSuccess(jwk -> {
+        if (jwk != null) {
+          promise.tryComplete(jwk);
+        }
+      });
+      batches.add(future);
+    }
+    // The listeners of the batches may run on different worker threads, so the winner may not have been passed on before the join completes
+    Future.join(batches).onComplete(ar -> {
+      JWK winner = null;
+      for (Future<JWK> batch : batches) {
+        if (batch.succeeded() && batch.result() != null) {
+          winner = batch.result();
+          break;
+        }
+      }
+      promise.tryComplete(winner);
+    });
+    return promise.future();
+  }
+  
+  private static JWK firstVerifyingCandidate(List<JWK> candidates, JsonWebAlgorithm algorithm, byte[] signature, byte[] signingInput) {
+    return firstVerifyingCandidate(candidates, algorithm, signature, signingInput, new AtomicBoolean());
+  }
+  
+  private static JWK firstVerifyingCandidate(List<JWK> candidates, JsonWebAlgorithm algorithm, byte[] signature, byte[] signingInput, AtomicBoolean found) {
+    for (JWK candidate : candidates) {
+      if (found.get()) {
+        return null;
+      }
+      if (signatureMatches(candidate, algorithm, signature, signingInput)) {
+        found.set(true);
+        return candidate;
+      }
+    }
+    return null;
+  }
+  
+  private static boolean signatureMatches(JWK jwk, JsonWebAlgorithm algorithm, byte[] signature, byte[] signingInput) {
+    if ("none".equals(jwk.getAlgorithm())) {
+      return false;
+    }
+    try {
+      return verifySignature(jwk, algorithm, signature, signingInput);
+    } catch (Throwable ex) {
+      logger.debug("Candidate key {} failed to verify token: ", jwk.getId(), ex);
+      return false;
+    }
+  }
+
   private void validateSub(Jwt jwt) throws IllegalArgumentException {
     if (Strings.isNullOrEmpty(jwt.getSubject())) {
       throw new IllegalArgumentException("No subject specified in token");
     }
   }
 
-  private void validateAud(Jwt jwt, List<String> requiredAudList, boolean ignoreRequiredAud) throws IllegalArgumentException {
-    if ((requiredAudList == null) || (!ignoreRequiredAud && requiredAudList.isEmpty())) {
+  private void validateAud(Jwt jwt, AudienceMatcher requiredAudiences, boolean ignoreRequiredAud) throws IllegalArgumentException {
+    if ((requiredAudiences == null) || (!ignoreRequiredAud && requiredAudiences.isEmpty())) {
       throw new IllegalStateException("Required audience not set");
     }
-    if (jwt.getAudience() == null) {
+    if (jwt.getClaim("aud") == null) {
       throw new IllegalArgumentException("Token does not include aud claim");
     }
-    for (String aud : jwt.getAudience()) {
-      for (String requiredAud : requiredAudList) {
-        if (requiredAud.equals(aud)) {
-          return;
-        }
-      }
+    if (requiredAudiences.matches(jwt)) {
+      return;
     }
     if (!ignoreRequiredAud) {
-      if (requiredAudList.size() == 1) {
-        logger.warn("Required audience ({}) not found in token aud claim: {}", requiredAudList.get(0), jwt.getAudience());
+      if (requiredAudiences.getAudiences().size() == 1) {
+        logger.warn("Required audience ({}) not found in token aud claim: {}", requiredAudiences.getAudiences().iterator().next(), jwt.getAudience());
       } else {
-        logger.warn("None of the required audiences ({}) found in token aud claim: {}", requiredAudList, jwt.getAudience());
+        logger.warn("None of the required audiences ({}) found in token aud claim: {}", requiredAudiences, jwt.getAudience());
       }
       throw new IllegalArgumentException("Required audience not found in token");
     }
   }
 
-  private void validateExp(Jwt jwt, long now) throws IllegalArgumentException {
+  private void validateNotRevoked(RevocationList currentRevocationList, Jwt jwt) throws IllegalArgumentException {
+    if (currentRevocationList != null && currentRevocationList.isRevoked(jwt)) {
+      logger.warn("Token with jti {} for {} has been revoked", jwt.getJwtId(), jwt.getSubject());
+      throw new IllegalArgumentException("Token has been revoked");
+    }
+  }
+
+  private void validateJti(ValidationPolicy currentPolicy, ReplayGuard currentReplayGuard, Jwt jwt) throws IllegalArgumentException {
+    if (currentReplayGuard == null) {
+      return;
+    }
+    String jti = jwt.getJwtId();
+    if (Strings.isNullOrEmpty(jti)) {
+      throw new IllegalArgumentException("No jti specified in token");
+    }
+    Long exp = jwt.getExpiration();
+    // Tokens are accepted until exp + leeway, so they must be remembered for that long
+    Long expiryMs = exp == null ? null : 1000 * exp + currentPolicy.getTimeLeewayMilliseconds();
+    if (!currentReplayGuard.checkAndRecord(jwt.getIssuer(), jti, expiryMs)) {
+      logger.warn("Token with jti {} from {} has already been used", jti, jwt.getIssuer());
+      throw new IllegalArgumentException("Token has already been used");
+    }
+  }
+
+  private void validateExp(ValidationPolicy currentPolicy, Jwt jwt, long now) throws IllegalArgumentException {
     if (jwt.getExpiration() != null) {
-      long targetMs = now - timeLeewayMilliseconds;
+      long targetMs = now - currentPolicy.getTimeLeewayMilliseconds();
       if (1000 * jwt.getExpiration() < targetMs) {
         logger.warn("Token exp = {} ({}), now = {} ({}), target = {} ({})", jwt.getExpiration(), jwt.getExpirationLocalDateTime(), now, LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC), targetMs, LocalDateTime.ofInstant(Instant.ofEpochMilli(targetMs), ZoneOffset.UTC));
         throw new IllegalArgumentException("Token is not valid after " + jwt.getExpirationLocalDateTime());
       }
-    } else if (requireExp) {
+    } else if (currentPolicy.isRequireExp()) {
       throw new IllegalArgumentException("Token does not specify exp");
     }
   }
 
-  private void validateNbf(Jwt jwt, long now) throws IllegalArgumentException {
+  private void validateNbf(ValidationPolicy currentPolicy, Jwt jwt, long now) throws IllegalArgumentException {
     if (jwt.getNotBefore() != null) {
-      long targetMs = now + timeLeewayMilliseconds;
+      long targetMs = now + currentPolicy.getTimeLeewayMilliseconds();
       if (1000 * jwt.getNotBefore() > targetMs) {
         logger.warn("Token nbf = {} ({}), now = {} ({}), target = {} ({})", jwt.getNotBefore(), jwt.getNotBeforeLocalDateTime(), now, LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC), targetMs, LocalDateTime.ofInstant(Instant.ofEpochMilli(targetMs), ZoneOffset.UTC));
         throw new IllegalArgumentException("Token is not valid until " + jwt.getNotBeforeLocalDateTime());
       }
-    } else if (requireNbf) {
+    } else if (currentPolicy.isRequireNbf()) {
       throw new IllegalArgumentException("Token does not specify nbf");
     }
   }
 
-  private void validateAlgorithm(String algorithm) throws IllegalArgumentException {
+  private void validateAlgorithm(ValidationPolicy currentPolicy, String algorithm) throws IllegalArgumentException {
     if (algorithm == null) {
       logger.warn("No signature algorithm in token.");
       throw new IllegalArgumentException("Parse of signed JWT failed");
     }
-    if (!permittedAlgs.contains(algorithm)) {
-      logger.warn("Failed to find algorithm \"{}\" in {}", algorithm, permittedAlgs);
+    if (!currentPolicy.isPermitted(algorithm)) {
+      logger.warn("Failed to find algorithm \"{}\" in {}", algorithm, currentPolicy.getPermittedAlgorithms());
       throw new IllegalArgumentException("Parse of signed JWT failed");
     }
   }
@@ -17,13 +17,19 @@
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
 import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
+import java.time.Clock;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.LazyJwkSet;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.HttpFetchEvent;
 
 /**
  * Helper class for performing OpenID Discovery and JWKS requests.
@@ -36,6 +42,8 @@ public class OpenIdHelper {
   
   private final WebClient webClient;
   private final long defaultCacheDurationS;
+  private final long requestTimeoutMs;
+  private final Clock clock;
 
   /**
    * Constructor.
@@ -43,8 +51,31 @@ public class OpenIdHelper {
    * @param defaultCacheDurationS The default time that the caller should cache results.
    */
   public OpenIdHelper(WebClient webClient, long defaultCacheDurationS) {
+    this(webClient, defaultCacheDurationS, 0);
+  }
+
+  /**
+   * Constructor.
+   * @param webClient The Vert.x WebClient to use for making HTTP requests.
+   * @param defaultCacheDurationS The default time that the caller should cache results.
+   * @param requestTimeoutMs The maximum time that a request may wait for data from the server, zero for no timeout.
+   */
+  public OpenIdHelper(WebClient webClient, long defaultCacheDurationS, long requestTimeoutMs) {
+    this(webClient, defaultCacheDurationS, requestTimeoutMs, Clock.systemUTC());
+  }
+
+  /**
+   * Constructor.
+   * @param webClient The Vert.x WebClient to use for making HTTP requests.
+   * @param defaultCacheDurationS The default time that the caller should cache results.
+   * @param requestTimeoutMs The maximum time that a request may wait for data from the server, zero for no timeout.
+   * @param clock The clock used to calculate the expiry time of results.
+   */
+  public OpenIdHelper(WebClient webClient, long defaultCacheDurationS, long requestTimeoutMs, Clock clock) {
     this.webClient = webClient;
     this.defaultCacheDurationS = defaultCacheDurationS;
+    this.requestTimeoutMs = requestTimeoutMs;
+    this.clock = clock;
   }
 
   private static boolean succeeded(int statusCode) {
@@ -83,26 +114,69 @@ public class OpenIdHelper {
    * @return A TimedObject containing JSON from the URL and an expiry time based on the Cache-Control max-age header.
    */
   public Future<TimedObject<JsonObject>> get(String url) {
+    return get(url, response -> new JsonObject(response.bodyAsString()));
+  }
+  
+  /**
+   * Get a JWKS from a URL and return it as Future with an expiry time.
+   * <p>
+   * The body of the response is scanned directly from the response Buffer, see {@link LazyJwkSet}.
+   * @param url The URL to be got.
+   * @return A TimedObject containing the JWKS from the URL and an expiry time based on the Cache-Control max-age header.
+   */
+  public Future<TimedObject<LazyJwkSet>> getJwkSet(String url) {
+    return get(url, response -> {
+      Buffer body = response.body();
+      if (body == null) {
+        String bodyString = response.bodyAsString();
+        body = bodyString == null ? null : Buffer.buffer(bodyString);
+      }
+      return LazyJwkSet.parse(body);
+    });
+  }
+  
+  private static void commit(HttpFetchEvent event, String url, Throwable failure) {
+    if (event.shouldCommit()) {
+      event.setUrl(url);
+      if (failure != null) {
+        event.setFailure(failure.getMessage());
+      }
+      event.commit();
+    }
+  }
+  
+  private <T> Future<TimedObject<T>> get(String url, Function<HttpResponse<Buffer>, T> parser) {
 
-    long requestTime = System.currentTimeMillis();
+    HttpFetchEvent event = new HttpFetchEvent();
+    event.begin();
+    long requestTime = clock.millis();
     try {
-      return webClient.getAbs(url)
+      HttpRequest<Buffer> request = webClient.getAbs(url);
+      if (requestTimeoutMs > 0) {
+        request.idleTimeout(requestTimeoutMs);
+      }
+      return request
               .send()
               .map(response -> {
+                event.setStatusCode(response.statusCode());
+                Buffer body = response.body();
+                event.setBytes(body == null ? 0 : body.length());
                 if (succeeded(response.statusCode())) {
-                  String body = response.bodyAsString();
-                  return new TimedObject<>(new JsonObject(body), calculateExpiry(requestTime, response));
+                  long expiry = calculateExpiry(requestTime, response);
+                  event.setExpiry(expiry);
+                  return new TimedObject<>(parser.apply(response), expiry);
                 } else {
                   logger.debug("Request to {} returned {}: {}", url, response.statusCode(), response.bodyAsString());
                   throw new IllegalStateException("Request to " + url + " returned " + response.statusCode());
                 }
-              });
+              })
+              .andThen(ar -> commit(event, url, ar.cause()));
     } catch (Exception ex) {
       logger.error("The JWKS URI ({}) is not a valid URL: ", url, ex);
+      commit(event, url, ex);
       return Future.failedFuture(new IllegalArgumentException("Parse of signed JWT failed", ex));
     }
 
   }
   
-  
 }
@@ -41,6 +41,9 @@ public class RSAJwkBuilder extends JwkBuilder {
           .add("RS256")
           .add("RS384")
           .add("RS512")
+          .add("PS256")
+          .add("PS384")
+          .add("PS512")
           .build();
   
   /**
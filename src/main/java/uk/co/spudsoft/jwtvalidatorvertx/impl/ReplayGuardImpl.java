@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.ReplayGuard;
+
+/**
+ * Implementation of {@link ReplayGuard}.
+ * <p>
+ * Seen tokens are held in a ConcurrentHashMap (which is internally striped), so recording a token never takes a global lock.
+ * Each token is also added to a bucket keyed by the end of the period that its expiry falls in.
+ * Whenever the clock passes the end of the oldest bucket one thread (chosen by a CAS) removes whole buckets and the entries in them,
+ * other threads carry on without waiting.
+ * 
+ * @author jtalbut
+ */
+public class ReplayGuardImpl implements ReplayGuard {
+
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(ReplayGuardImpl.class);
+  
+  private final Clock clock;
+  private final long bucketWidthMs;
+  private final long maxRetentionMs;
+  
+  private final Map<Key, Long> seen = new ConcurrentHashMap<>();
+  private final ConcurrentSkipListMap<Long, Queue<Key>> buckets = new ConcurrentSkipListMap<>();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private volatile long nextEvictionMs;
+
+  /**
+   * Key for the map of seen tokens.
+   * <p>
+   * The two parts are kept separate, rather than concatenated, so that no choice of separator can cause a collision.
+   * The expiry is not part of the identity of the key, it is carried so that eviction only removes the entry that was added to the bucket.
+   */
+  private static final class Key {
+    private final String issuer;
+    private final String jti;
+    private final int hash;
+    private final Long expiry;
+
+    Key(String issuer, String jti, Long expiry) {
+      this.issuer = issuer;
+      this.jti = jti;
+      this.expiry = expiry;
+      this.hash = 31 * Objects.hashCode(issuer) + jti.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && jti.equals(other.jti) && Objects.equals(issuer, other.issuer);
+    }
+  }
+  
+  /**
+   * Constructor.
+   * @param clock The clock used to determine when entries have expired.
+   * @param bucketWidth The range of expiry times grouped into a single bucket.
+   * @param maxRetention The length of time to remember tokens that do not have an exp claim.
+   */
+  public ReplayGuardImpl(Clock clock, Duration bucketWidth, Duration maxRetention) {
+    this.clock = Objects.requireNonNull(clock, "Clock may not be null");
+    this.bucketWidthMs = bucketWidth.toMillis();
+    this.maxRetentionMs = maxRetention.toMillis();
+    if (bucketWidthMs < 1) {
+      throw new IllegalArgumentException("The bucket width must be at least 1ms");
+    }
+    if (maxRetentionMs < 1) {
+      throw new IllegalArgumentException("The maximum retention must be at least 1ms");
+    }
+    this.nextEvictionMs = clock.millis() + bucketWidthMs;
+  }
+
+  @Override
+  public boolean checkAndRecord(String issuer, String jti, Long expiryMs) {
+    if (jti == null) {
+      throw new IllegalArgumentException("Token has no jti");
+    }
+    long now = clock.millis();
+    if (now >= nextEvictionMs) {
+      evict(now);
+    }
+    
+    Long expiry = expiryMs == null ? now + maxRetentionMs : expiryMs;
+    Key key = new Key(issuer, jti, expiry);
+    if (seen.putIfAbsent(key, expiry) != null) {
+      return false;
+    }
+    addToBucket(key);
+    return true;
+  }
+  
+  private void addToBucket(Key key) {
+    // Round up so that an entry is never evicted before it has expired
+    long bucketEnd = (Math.floorDiv(key.expiry, bucketWidthMs) + 1) * bucketWidthMs;
+    while (true) {
+      Queue<Key> bucket = buckets.computeIfAbsent(bucketEnd, k -> new ConcurrentLinkedQueue<>());
+      bucket.add(key);
+      if (buckets.get(bucketEnd) == bucket) {
+        return;
+      }
+      // The bucket was evicted between finding it and adding to it, the entry may not have been seen by the evictor so put it in a new bucket.
+    }
+  }
+  
+  private void evict(long now) {
+    if (!evicting.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      int count = 0;
+      Map.Entry<Long, Queue<Key>> oldest;
+      while ((oldest = buckets.firstEntry()) != null && oldest.getKey() <= now) {
+        if (buckets.remove(oldest.getKey(), oldest.getValue())) {
+          for (Key key : oldest.getValue()) {
+            seen.remove(key, key.expiry);
+            ++count;
+          }
+        }
+      }
+      // A later bucket may be created before the current oldest one, so never wait more than one bucket width
+      nextEvictionMs = oldest == null ? now + bucketWidthMs : Math.min(oldest.getKey(), now + bucketWidthMs);
+      logger.trace("Evicted {} entries, next eviction at {}", count, nextEvictionMs);
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  @Override
+  public int size() {
+    return seen.size();
+  }
+  
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.RevocationList;
+
+/**
+ * Implementation of {@link RevocationList}.
+ * <p>
+ * Revoked jtis are held in exact per-issuer sets with a Bloom filter (of the jti alone) in front of them, so the common case 
+ * (a token that has not been revoked) is answered without touching the exact sets.
+ * Subject revocations are held in per-issuer concurrent maps of subject to issued-before time, so each update is a single map operation.
+ * <p>
+ * Readers never lock, writers are serialized.
+ * 
+ * @author jtalbut
+ */
+public class RevocationListImpl implements RevocationList {
+
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(RevocationListImpl.class);
+  
+  /**
+   * The default number of jtis that the Bloom filter is sized for.
+   */
+  public static final int DEFAULT_EXPECTED_JTIS = 10000;
+  
+  /**
+   * The default false positive probability of the Bloom filter.
+   */
+  public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+  
+  private final double falsePositiveProbability;
+  private final Object writeLock = new Object();
+  private volatile JtiSet jtis;
+  private volatile Map<String, Map<String, Long>> subjects = new ConcurrentHashMap<>();
+  
+  /**
+   * A Bloom filter and the exact per-issuer sets that it guards.
+   */
+  private static final class JtiSet {
+    private final int capacity;
+    private final BloomFilter<CharSequence> bloom;
+    private final Map<String, Set<String>> exact = new ConcurrentHashMap<>();
+    private volatile int size;
+
+    JtiSet(int capacity, double falsePositiveProbability) {
+      this.capacity = capacity;
+      this.bloom = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), capacity, falsePositiveProbability);
+    }
+    
+    /**
+     * Add a jti, must only be called by one thread at a time.
+     */
+    void add(String issuer, String jti) {
+      // Add to the exact set first so that a reader that passes the Bloom filter will always find the jti
+      if (exact.computeIfAbsent(issuer, i -> ConcurrentHashMap.newKeySet()).add(jti)) {
+        bloom.put(jti);
+        size = size + 1;
+      }
+    }
+    
+    boolean contains(String issuer, String jti) {
+      if (!bloom.mightContain(jti)) {
+        return false;
+      }
+      Set<String> issuerJtis = exact.get(issuer);
+      return issuerJtis != null && issuerJtis.contains(jti);
+    }
+  }
+
+  /**
+   * Constructor.
+   * @param expectedJtis The number of revoked jtis that the Bloom filter should be sized for.
+   * @param falsePositiveProbability The target false positive probability of the Bloom filter.
+   */
+  public RevocationListImpl(int expectedJtis, double falsePositiveProbability) {
+    if (expectedJtis < 1) {
+      throw new IllegalArgumentException("The expected number of jtis must be at least 1");
+    }
+    if (!(falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0)) {
+      throw new IllegalArgumentException("The false positive probability must be between 0 and 1");
+    }
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.jtis = new JtiSet(expectedJtis, falsePositiveProbability);
+  }
+
+  @Override
+  public void load(Path file) throws IOException, IllegalArgumentException {
+    Map<String, Set<String>> loadedJtis = new ConcurrentHashMap<>();
+    int loadedJtiCount = 0;
+    Map<String, Map<String, Long>> loadedSubjects = new ConcurrentHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        ++lineNumber;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] parts = line.split("\\s+");
+        if ("jti".equals(parts[0]) && parts.length == 3) {
+          if (loadedJtis.computeIfAbsent(parts[1], i -> ConcurrentHashMap.newKeySet()).add(parts[2])) {
+            ++loadedJtiCount;
+          }
+        } else if ("sub".equals(parts[0]) && parts.length == 3) {
+          loadedSubjects.computeIfAbsent(parts[1], i -> new ConcurrentHashMap<>()).put(parts[2], Long.MAX_VALUE);
+        } else if ("sub".equals(parts[0]) && parts.length == 4) {
+          long issuedBefore;
+          try {
+            issuedBefore = Long.parseLong(parts[3]);
+          } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid time on line " + lineNumber + " of " + file, ex);
+          }
+          loadedSubjects.computeIfAbsent(parts[1], i -> new ConcurrentHashMap<>()).merge(parts[2], issuedBefore, Math::max);
+        } else {
+          throw new IllegalArgumentException("Invalid revocation on line " + lineNumber + " of " + file);
+        }
+      }
+    }
+    
+    JtiSet newJtis = new JtiSet(Math.max(jtis.capacity, loadedJtiCount * 2), falsePositiveProbability);
+    loadedJtis.forEach((issuer, issuerJtis) -> issuerJtis.forEach(jti -> newJtis.add(issuer, jti)));
+    synchronized (writeLock) {
+      jtis = newJtis;
+      subjects = loadedSubjects;
+    }
+    logger.info("Loaded {} revoked jtis and {} revoked subjects from {}", newJtis.size, countSubjects(loadedSubjects), file);
+  }
+  
+  private static void checkIssuer(String issuer) {
+    if (issuer == null) {
+      throw new IllegalArgumentException("Issuer may not be null");
+    }
+  }
+
+  @Override
+  public void revokeJti(String issuer, String jti) {
+    checkIssuer(issuer);
+    if (jti == null) {
+      throw new IllegalArgumentException("jti may not be null");
+    }
+    synchronized (writeLock) {
+      JtiSet current = jtis;
+      if (current.size >= current.capacity) {
+        // The Bloom filter is full, its false positive rate will climb unless it is rebuilt with more space
+        JtiSet larger = new JtiSet(current.capacity * 2, falsePositiveProbability);
+        current.exact.forEach((existingIssuer, issuerJtis) -> issuerJtis.forEach(existing -> larger.add(existingIssuer, existing)));
+        jtis = larger;
+        current = larger;
+      }
+      current.add(issuer, jti);
+    }
+  }
+
+  @Override
+  public void revokeSubject(String issuer, String subject) {
+    revokeIssuedBefore(issuer, subject, Long.MAX_VALUE);
+  }
+
+  @Override
+  public void revokeIssuedBefore(String issuer, String subject, long issuedBeforeEpochSeconds) {
+    checkIssuer(issuer);
+    if (subject == null) {
+      throw new IllegalArgumentException("Subject may not be null");
+    }
+    synchronized (writeLock) {
+      subjects.computeIfAbsent(issuer, i -> new ConcurrentHashMap<>()).merge(subject, issuedBeforeEpochSeconds, Math::max);
+    }
+  }
+
+  @Override
+  public boolean isRevoked(String issuer, String jti, String subject, Long issuedAtEpochSeconds) {
+    if (issuer == null) {
+      return false;
+    }
+    if (jti != null && jtis.contains(issuer, jti)) {
+      return true;
+    }
+    if (subject != null) {
+      Map<String, Long> issuerSubjects = subjects.get(issuer);
+      Long issuedBefore = issuerSubjects == null ? null : issuerSubjects.get(subject);
+      if (issuedBefore != null) {
+        return issuedAtEpochSeconds == null || issuedAtEpochSeconds < issuedBefore;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int getRevokedJtiCount() {
+    return jtis.size;
+  }
+
+  @Override
+  public int getRevokedSubjectCount() {
+    return countSubjects(subjects);
+  }
+  
+  private static int countSubjects(Map<String, Map<String, Long>> subjects) {
+    int count = 0;
+    for (Map<String, Long> issuerSubjects : subjects.values()) {
+      count += issuerSubjects.size();
+    }
+    return count;
+  }
+  
+}
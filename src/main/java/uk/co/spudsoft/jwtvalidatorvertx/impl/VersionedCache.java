@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.ForwardingCache;
+import com.google.common.collect.ForwardingConcurrentMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A guava Cache that counts the changes made to it.
+ * <p>
+ * Readers that derive something from the contents of the cache (such as the JWKS served by a {@link uk.co.spudsoft.jwtvalidatorvertx.JwksHandler})
+ * can record the version they used and only rebuild when it changes, without taking a lock or scanning the entries.
+ * <p>
+ * Removals (including expiry and replacement) are counted by a removal listener, so expired entries only change the version
+ * once guava evicts them; {@link #cleanUp()} can be called to evict them first.
+ * Additions are counted after the entry has been written, so a reader that sees a new version also sees the new entry.
+ *
+ * @param <K> The type of the keys in the cache.
+ * @param <V> The type of the values in the cache.
+ * @author jtalbut
+ */
+public final class VersionedCache<K, V> extends ForwardingCache<K, V> {
+
+  private final AtomicLong version = new AtomicLong();
+  private final Cache<K, V> delegate;
+  private final ConcurrentMap<K, V> map;
+
+  /**
+   * Constructor.
+   * @param builder The CacheBuilder used to build the underlying cache, this must not already have a removal listener.
+   */
+  public VersionedCache(CacheBuilder<Object, Object> builder) {
+    this.delegate = builder.<K, V>removalListener(notification -> version.incrementAndGet()).build();
+    this.map = new VersionedMap();
+  }
+
+  /**
+   * Get the current version of the cache, which changes whenever an entry is added, replaced or removed.
+   * @return the current version of the cache.
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  @Override
+  protected Cache<K, V> delegate() {
+    return delegate;
+  }
+
+  @Override
+  public V get(K key, Callable<? extends V> loader) throws ExecutionException {
+    boolean[] loaded = new boolean[1];
+    try {
+      return delegate.get(key, () -> {
+        loaded[0] = true;
+        return loader.call();
+      });
+    } finally {
+      if (loaded[0]) {
+        version.incrementAndGet();
+      }
+    }
+  }
+
+  @Override
+  public void put(K key, V value) {
+    delegate.put(key, value);
+    version.incrementAndGet();
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> m) {
+    delegate.putAll(m);
+    version.incrementAndGet();
+  }
+
+  @Override
+  public ConcurrentMap<K, V> asMap() {
+    return map;
+  }
+
+  private final class VersionedMap extends ForwardingConcurrentMap<K, V> {
+
+    @Override
+    protected ConcurrentMap<K, V> delegate() {
+      return delegate.asMap();
+    }
+
+    @Override
+    public V put(K key, V value) {
+      V result = delegate().put(key, value);
+      version.incrementAndGet();
+      return result;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+      delegate().putAll(m);
+      version.incrementAndGet();
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+      V result = delegate().putIfAbsent(key, value);
+      if (result == null) {
+        version.incrementAndGet();
+      }
+      return result;
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+      boolean result = delegate().replace(key, oldValue, newValue);
+      if (result) {
+        version.incrementAndGet();
+      }
+      return result;
+    }
+
+    @Override
+    public V replace(K key, V value) {
+      V result = delegate().replace(key, value);
+      if (result != null) {
+        version.incrementAndGet();
+      }
+      return result;
+    }
+  }
+}
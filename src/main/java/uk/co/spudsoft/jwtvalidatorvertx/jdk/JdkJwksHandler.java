@@ -12,22 +12,20 @@ import com.google.common.cache.Cache;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
-import io.vertx.core.json.JsonArray;
-import io.vertx.core.json.JsonObject;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.nio.charset.StandardCharsets;
-import java.security.PublicKey;
 import java.util.Base64;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
-import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JwksResponseCache;
 
 /**
  * An implementation of JwksHandler as a JDK HttpHandler.
@@ -44,48 +42,224 @@ public class JdkJwksHandler implements HttpHandler, Closeable, JwksHandler {
   private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
   
   private static final ObjectMapper MAPPER = new ObjectMapper();
-  private final String context = "/bob";
-  private final String configUrl = context + "/.well-known/openid-configuration";
-  private final String jwksUrl = context + "/jwks";
-
+  private final String host;
   private final int port;
+  private final String context;
+  private final String configUrl;
+  private final String jwksUrl;
 
   private final HttpServer server;
-  private final ExecutorService executor;
+  private final ExecutorService ownedExecutor;
+  
+  private final JwksResponseCache<byte[]> jwksCache = new JwksResponseCache<>(Function.identity());
   
   private Cache<String, AlgorithmAndKeyPair> keyCache;
+  private volatile String cacheControl = JwksResponseCache.cacheControl(100);
 
   @Override
   public void setKeyCache(Cache<String, AlgorithmAndKeyPair> keyCache) {
     this.keyCache = keyCache;
+    jwksCache.invalidate();
+  }
+
+  /**
+   * Set the max-age to use in the Cache-Control header of JWKS responses.
+   * The default is 100 seconds.
+   * @param maxAgeSeconds the max-age to use in the Cache-Control header of JWKS responses.
+   * @throws IllegalArgumentException if maxAgeSeconds is negative.
+   */
+  public void setMaxAgeSeconds(int maxAgeSeconds) {
+    this.cacheControl = JwksResponseCache.cacheControl(maxAgeSeconds);
   }
 
   @Override
   public String getBaseUrl() {
-    return "http://localhost:" + port + context;
+    return "http://" + host + ":" + port + context;
   }
   
   /**
    * Factory method to create a new JdkJwsHandler on a random port.
    * The {@link #start() } method must still be called on the returned object.
+   * <p>
+   * The handler created uses a pool of two threads and a backlog of two, use {@link #builder()} for anything more demanding.
    * @return A newly created (but not yet active) JdkJwsHandler.
    * @throws IOException If the server cannot be created or started.
    */
   public static JdkJwksHandler create() throws IOException {
-    int port;
-    try (ServerSocket s = new ServerSocket(0)) {
-      port = s.getLocalPort();
+    return builder()
+            .setThreadPoolSize(2)
+            .setBacklog(2)
+            .build();
+  }
+  
+  /**
+   * Create a new {@link Builder} for configuring a JdkJwksHandler.
+   * @return a new {@link Builder} for configuring a JdkJwksHandler.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+  
+  /**
+   * Builder for configuring a JdkJwksHandler.
+   * <p>
+   * By default the handler listens on a random port, with the system default backlog, using virtual threads if the JVM has them
+   * and an unbounded cached thread pool if it does not.
+   */
+  public static class Builder {
+    
+    private String host = "localhost";
+    private int port;
+    private String contextPath = "/bob";
+    private int backlog;
+    private int threadPoolSize;
+    private Executor executor;
+    
+    private Builder() {
+    }
+
+    /**
+     * Set the hostname to use in the URLs generated by the handler.
+     * The server always listens on all interfaces.
+     * @param host the hostname to use in the URLs generated by the handler.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setHost(String host) {
+      this.host = host;
+      return this;
+    }
+
+    /**
+     * Set the port to listen on.
+     * @param port the port to listen on, zero (the default) to choose a random available port.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setPort(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Set the context path that the handler will serve.
+     * @param contextPath the context path that the handler will serve, the default is "/bob".
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setContextPath(String contextPath) {
+      this.contextPath = contextPath;
+      return this;
+    }
+
+    /**
+     * Set the maximum number of queued incoming connections.
+     * @param backlog the maximum number of queued incoming connections, zero (the default) to use the system default.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setBacklog(int backlog) {
+      this.backlog = backlog;
+      return this;
+    }
+
+    /**
+     * Handle requests on a fixed size pool of platform threads that will be shut down when the handler is closed.
+     * @param threadPoolSize the number of threads in the pool.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setThreadPoolSize(int threadPoolSize) {
+      this.threadPoolSize = threadPoolSize;
+      this.executor = null;
+      return this;
+    }
+
+    /**
+     * Handle each request on a new virtual thread.
+     * <p>
+     * Virtual threads require Java 21, on earlier JVMs this falls back to an unbounded cached thread pool.
+     * This is the default.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder useVirtualThreads() {
+      this.threadPoolSize = 0;
+      this.executor = null;
+      return this;
+    }
+
+    /**
+     * Handle requests using an executor provided by the caller.
+     * The caller is responsible for the lifetime of the executor, it will not be shut down when the handler is closed.
+     * @param executor the executor to use to handle requests.
+     * @return this, so that the method may be used in a fluent manner.
+     */
+    public Builder setExecutor(Executor executor) {
+      this.threadPoolSize = 0;
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Construct the JdkJwksHandler.
+     * The {@link #start() } method must still be called on the returned object.
+     * @return A newly created (but not yet active) JdkJwsHandler.
+     * @throws IOException If the server cannot be created.
+     * @throws IllegalArgumentException if the port or thread pool size are not valid.
+     */
+    public JdkJwksHandler build() throws IOException {
+      if (port < 0 || port > 65535) {
+        throw new IllegalArgumentException("Port must be between 0 and 65535");
+      }
+      if (threadPoolSize < 0) {
+        throw new IllegalArgumentException("Thread pool size must not be negative");
+      }
+      ExecutorService owned = null;
+      if (executor == null) {
+        if (threadPoolSize > 0) {
+          owned = Executors.newFixedThreadPool(threadPoolSize);
+        } else {
+          owned = newVirtualThreadExecutor();
+          if (owned == null) {
+            logger.warn("Virtual threads are not available in this JVM, using a cached thread pool instead");
+            owned = Executors.newCachedThreadPool();
+          }
+        }
+      }
+      HttpServer server = HttpServer.create(new InetSocketAddress(port), backlog);
+      server.setExecutor(owned == null ? executor : owned);
+      return new JdkJwksHandler(host, server.getAddress().getPort(), checkPath(contextPath), server, owned);
     }
-    ExecutorService exeSvc = Executors.newFixedThreadPool(2);
-    HttpServer server = HttpServer.create(new InetSocketAddress(port), 2);
-    server.setExecutor(exeSvc);
-    return new JdkJwksHandler(port, server, exeSvc);
   }
   
-  private JdkJwksHandler(int port, HttpServer server, ExecutorService executor) {
+  /**
+   * Create an ExecutorService that starts a new virtual thread for each task.
+   * <p>
+   * This uses reflection so that this class can still be used with Java 11.
+   * @return An ExecutorService that starts a new virtual thread for each task, or null if virtual threads are not available.
+   */
+  static ExecutorService newVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException ex) {
+      logger.debug("Unable to create virtual thread executor: ", ex);
+      return null;
+    }
+  }
+  
+  static String checkPath(String path) {
+    if (!path.startsWith("/")) {
+      path = "/" + path;
+    }
+    if (path.endsWith("/")) {
+      path = path.substring(0, path.length() - 1);
+    }    
+    return path;
+  }
+  
+  private JdkJwksHandler(String host, int port, String context, HttpServer server, ExecutorService ownedExecutor) {
+    this.host = host;
     this.port = port;
+    this.context = context;
+    this.configUrl = context + "/.well-known/openid-configuration";
+    this.jwksUrl = context + "/jwks";
     this.server = server;
-    this.executor = executor;
+    this.ownedExecutor = ownedExecutor;
   }
   
   @Override
@@ -97,14 +271,16 @@ public class JdkJwksHandler implements HttpHandler, Closeable, JwksHandler {
   @Override
   public void close() throws IOException {
     server.stop(1);
-    executor.shutdownNow();
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdownNow();
+    }
   }
 
-  private void sendResponse(HttpExchange exchange, int responseCode, String body) throws IOException {
-    byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
-    exchange.sendResponseHeaders(responseCode, bodyBytes.length);
+  private void sendResponse(HttpExchange exchange, int responseCode, String contentType, byte[] body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", contentType);
+    exchange.sendResponseHeaders(responseCode, body.length);
     try (OutputStream os = exchange.getResponseBody()) {
-      os.write(bodyBytes);
+      os.write(body);
     }
   }
 
@@ -112,42 +288,32 @@ public class JdkJwksHandler implements HttpHandler, Closeable, JwksHandler {
   public void handle(HttpExchange exchange) throws IOException {
     logger.debug("handle {} {}", exchange.getRequestMethod(), exchange.getRequestURI());
 
-    switch (exchange.getRequestURI().getPath()) {
-      case configUrl:
-        handleConfigRequest(exchange);
-        break;
-      case jwksUrl:
-        handleJwksRequest(exchange);
-        break;
-      default:
-        sendResponse(exchange, 404, "Not found");
+    String path = exchange.getRequestURI().getPath();
+    if (configUrl.equals(path)) {
+      handleConfigRequest(exchange);
+    } else if (jwksUrl.equals(path)) {
+      handleJwksRequest(exchange);
+    } else {
+      sendResponse(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
     }
   }
 
   private void handleConfigRequest(HttpExchange exchange) throws IOException {
     ObjectNode config = MAPPER.createObjectNode();
-    config.put("jwks_uri", "http://localhost:" + port + jwksUrl);
-    sendResponse(exchange, 200, config.toString());
+    config.put("jwks_uri", getBaseUrl() + "/jwks");
+    sendResponse(exchange, 200, "application/json", config.toString().getBytes(StandardCharsets.UTF_8));
   }
 
   private void handleJwksRequest(HttpExchange exchange) throws IOException {
-
-    JsonObject jwkSet = new JsonObject();
-    JsonArray jwks = new JsonArray();
-    jwkSet.put("keys", jwks);
-    synchronized (keyCache) {
-      keyCache.asMap().forEach((kid, akp) -> {
-        PublicKey key = akp.getKeyPair().getPublic();
-        try {
-          JsonObject json = JwkBuilder.get(key).toJson(kid, akp.getAlgorithm().getName(), key);
-          jwks.add(json);
-        } catch (Exception ex) {
-          logger.warn("Failed to add key {} to JWKS: ", kid, ex);
-        }
-      });
+    JwksResponseCache.Response<byte[]> jwks = jwksCache.get(keyCache);
+    exchange.getResponseHeaders().add("cache-control", cacheControl);
+    exchange.getResponseHeaders().add("etag", jwks.getEtag());
+    if (JwksResponseCache.matches(exchange.getRequestHeaders().getFirst("if-none-match"), jwks.getEtag())) {
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return;
     }
-    exchange.getResponseHeaders().add("cache-control", "max-age=100");
-    sendResponse(exchange, 200, jwkSet.encode());
+    sendResponse(exchange, 200, "application/json", jwks.getBody());
   }
   
 }
@@ -8,10 +8,13 @@ package uk.co.spudsoft.jwtvalidatorvertx.jdk;
 import com.google.common.cache.Cache;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
 import java.security.PrivateKey;
 import java.security.Signature;
-import java.security.spec.ECGenParameterSpec;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
@@ -20,59 +23,136 @@ import uk.co.spudsoft.jwtvalidatorvertx.impl.AbstractTokenBuilder;
 
 /**
  * Implementation of TokenBuilder that uses the JDK {@link java.security.KeyPairGenerator} to generate key pairs.
+ * <p>
+ * Tokens can also be signed with the HMAC algorithms (HS256, HS384 and HS512), using a random shared secret for each kid.
+ * Shared secrets are not added to the key cache (so they are never published in a JWKS), 
+ * they must be passed to the validator explicitly, see {@link #getSharedSecret(java.lang.String, uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm)}.
  * @author jtalbut
  */
 public class JdkTokenBuilder extends AbstractTokenBuilder {
 
   @SuppressWarnings("constantname")
   private static final Logger logger = LoggerFactory.getLogger(JdkTokenBuilder.class);
+  
+  private final KeyPairPool keyPairPool;
+  
+  private final Map<String, byte[]> sharedSecrets = new ConcurrentHashMap<>();
 
   /**
    * Constructor.
    * @param keyCache The key cache to be filled with keys created by the token builder.
    */
   public JdkTokenBuilder(Cache<String, AlgorithmAndKeyPair> keyCache) {
+    this(keyCache, null);
+  }
+
+  /**
+   * Constructor.
+   * @param keyCache The key cache to be filled with keys created by the token builder.
+   * @param keyPairPool Pool of pre-generated key pairs to use for new kids, may be null in which case keys are generated when they are first needed.
+   */
+  public JdkTokenBuilder(Cache<String, AlgorithmAndKeyPair> keyCache, KeyPairPool keyPairPool) {
     super(keyCache);
+    this.keyPairPool = keyPairPool;
   }
 
   private KeyPair generateKey(String kid, JsonWebAlgorithm algorithm) throws Exception {
-
-    if ("RSA".equals(algorithm.getFamilyName())) {
-      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
-      keyGen.initialize(algorithm.getMinKeyLength());
-      return keyGen.genKeyPair();
+    if (keyPairPool != null) {
+      return keyPairPool.take(algorithm);
     }
+    return KeyPairPool.generate(algorithm);
+  }
 
-    if ("ECDSA".equals(algorithm.getFamilyName())) {
-      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
-      ECGenParameterSpec spec = new ECGenParameterSpec(algorithm.getSubName());
-      keyGen.initialize(spec);
-      return keyGen.genKeyPair();
-    }
-    
-    if ("EdDSA".equals(algorithm.getFamilyName())) {
-      KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algorithm.getJdkAlgName());
-      return keyGen.genKeyPair();
+  private AlgorithmAndKeyPair getKey(String kid, JsonWebAlgorithm algorithm) throws Exception {
+    // Only take the lock if the key has to be generated
+    AlgorithmAndKeyPair akp = keyCache.getIfPresent(kid);
+    if (akp == null) {
+      synchronized (keyCache) {
+        akp = keyCache.get(kid, () -> {
+          KeyPair kp = generateKey(kid, algorithm);
+          return new AlgorithmAndKeyPair(algorithm, kp);
+        });
+      }
     }
+    return akp;
+  }
 
-    if (algorithm == JsonWebAlgorithm.none) {
-      return null;
+  /**
+   * Get the shared secret used to sign tokens with the given kid using an HMAC algorithm, generating it if necessary.
+   * <p>
+   * A generated secret is random and as long as the minimum key length of the algorithm.
+   * The secret can be used to create the JWK that will verify the tokens, 
+   * see {@link uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler#sharedSecret(java.lang.String, uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm, byte[])}.
+   * 
+   * @param kid The kid of the tokens.
+   * @param algorithm The HMAC algorithm used to sign the tokens.
+   * @return The shared secret used to sign tokens with the given kid.
+   * @throws IllegalArgumentException if the algorithm is not an HMAC algorithm.
+   */
+  public byte[] getSharedSecret(String kid, JsonWebAlgorithm algorithm) throws IllegalArgumentException {
+    if (!"HMAC".equals(algorithm.getFamilyName())) {
+      throw new IllegalArgumentException("Shared secrets cannot be used with " + algorithm.getName());
     }
-
-    throw new IllegalArgumentException("Test harness does not support keys for " + algorithm.toString());
+    return sharedSecrets.computeIfAbsent(kid, k -> {
+      byte[] secret = new byte[algorithm.getMinKeyLength() / 8];
+      RANDOM.nextBytes(secret);
+      return secret;
+    }).clone();
   }
 
   @Override
   protected byte[] generateSignature(String kid, JsonWebAlgorithm algorithm, String headerBase64, String claimsBase64) throws Exception {
-    AlgorithmAndKeyPair akp;
-    synchronized (keyCache) {
-      akp = keyCache.get(kid, () -> {
-        KeyPair kp = generateKey(kid, algorithm);
-        return new AlgorithmAndKeyPair(algorithm, kp);
-      });
+    if ("HMAC".equals(algorithm.getFamilyName())) {
+      Mac mac = Mac.getInstance(algorithm.getJdkAlgName());
+      mac.init(new SecretKeySpec(getSharedSecret(kid, algorithm), algorithm.getJdkAlgName()));
+      return mac.doFinal((headerBase64 + "." + claimsBase64).getBytes(StandardCharsets.UTF_8));
     }
+    AlgorithmAndKeyPair akp = getKey(kid, algorithm);
     return generateSignature(akp.getKeyPair().getPrivate(), algorithm, headerBase64 + "." + claimsBase64);
   }
+  
+  /**
+   * Create a {@link JdkTokenMinter} that signs tokens with the key for the given kid, generating the key if it is not already in the key cache.
+   * <p>
+   * The minter is much faster than {@link #buildToken} for generating large numbers of tokens, see {@link JdkTokenMinter} for details.
+   * 
+   * @param algorithm The algorithm used to sign every token.
+   * @param kid The kid of the key.
+   * @param iss The iss claim for every token, may be null.
+   * @param aud The aud claim for every token, may be null.
+   * @param constantClaims Other claims for every token, may be null. These may not include the sub, nbf, exp or jti claims.
+   * @return A newly created JdkTokenMinter.
+   * @throws Exception if the key cannot be generated or used with the algorithm.
+   */
+  public JdkTokenMinter minter(JsonWebAlgorithm algorithm, String kid, String iss, List<String> aud, Map<String, Object> constantClaims) throws Exception {
+    AlgorithmAndKeyPair akp = getKey(kid, algorithm);
+    if (akp.getKeyPair() == null) {
+      throw new IllegalArgumentException("Tokens cannot be minted using " + algorithm.getName());
+    }
+    return new JdkTokenMinter(algorithm, kid, akp.getKeyPair().getPrivate(), iss, aud, constantClaims);
+  }
+  
+  /**
+   * Build many tokens in parallel using all available cores.
+   * <p>
+   * This is equivalent to calling {@link #buildToken} count times, except that each token has a distinct jti claim.
+   * 
+   * @param count The number of tokens to build.
+   * @param jwa The algorithm used to sign every token.
+   * @param kid The kid of the key.
+   * @param iss The iss claim for every token, may be null.
+   * @param sub The sub claim for every token, may be null.
+   * @param aud The aud claim for every token, may be null.
+   * @param nbf The nbf claim for every token, may be null.
+   * @param exp The exp claim for every token, may be null.
+   * @param otherClaims Other claims for every token, may be null. These may not include the sub, nbf, exp or jti claims.
+   * @return A list of count signed JWTs.
+   * @throws Exception if the key cannot be generated or the tokens cannot be signed.
+   */
+  public List<String> buildTokens(int count, JsonWebAlgorithm jwa, String kid, String iss, String sub, List<String> aud, Long nbf, Long exp, Map<String, Object> otherClaims) throws Exception {
+    JdkTokenMinter minter = minter(jwa, kid, iss, aud, otherClaims);
+    return minter.mint(count, sub, nbf, exp, Long.toHexString(RANDOM.nextLong()) + "-");
+  }
 
   /**
    * Generate a signature using the JDK security classes.
@@ -85,6 +165,9 @@ public class JdkTokenBuilder extends AbstractTokenBuilder {
   public static byte[] generateSignature(PrivateKey privateKey, JsonWebAlgorithm algorithm, String signingInput) throws Exception {
     Signature signer = Signature.getInstance(algorithm.getJdkAlgName());
     signer.initSign(privateKey);
+    if (algorithm.getParameter() != null) {
+      signer.setParameter(algorithm.getParameter());
+    }
     signer.update(signingInput.getBytes(StandardCharsets.UTF_8));
     return signer.sign();
   }
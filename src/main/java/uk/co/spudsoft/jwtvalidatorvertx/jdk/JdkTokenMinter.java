@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jdk;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.IntStream;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ * Generator of signed tokens that share a key, issuer, audience and set of other claims, for use in generating load.
+ * <p>
+ * Everything that is the same for every token is prepared when the minter is created:
+ * <ul>
+ * <li>The key pair is taken from (or generated into) the key cache once.
+ * <li>The header is encoded once.
+ * <li>The constant claims are encoded to JSON and base64 once, padded with whitespace to a multiple of three bytes so that the
+ * base64 encoding of the remaining claims can simply be appended to it.
+ * <li>Each thread has its own {@link Signature}, initialized with the private key.
+ * </ul>
+ * Minting a token then only requires the sub, nbf, exp and jti claims to be encoded and the token to be signed.
+ * <p>
+ * A minter is thread safe and holds no locks whilst minting.
+ * The key is resolved when the minter is created, if the key is removed from the key cache (and thus from the JWKS)
+ * a new minter should be created.
+ * <p>
+ * The flags on {@link JdkTokenBuilder} for generating broken tokens are ignored, a minter always produces well formed tokens.
+ * 
+ * @author jtalbut
+ */
+public final class JdkTokenMinter {
+  
+  private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+  
+  private static final List<String> VARIABLE_CLAIMS = Arrays.asList("sub", "nbf", "exp", "jti");
+  
+  private final JsonWebAlgorithm algorithm;
+  private final String kid;
+  private final String prefix;
+  private final byte[] prefixBytes;
+  private final boolean hasConstantClaims;
+  private final ThreadLocal<Signature> signers;
+
+  /**
+   * Constructor.
+   * <p>
+   * Use {@link JdkTokenBuilder#minter(uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm, java.lang.String, java.lang.String, java.util.List, java.util.Map)}
+   * to create a minter that uses (and maintains) the key cache of a token builder.
+   * 
+   * @param algorithm The algorithm used to sign every token.
+   * @param kid The kid of the key.
+   * @param privateKey The private key used to sign every token.
+   * @param iss The iss claim for every token, may be null.
+   * @param aud The aud claim for every token, may be null.
+   * @param constantClaims Other claims for every token, may be null. These may not include the sub, nbf, exp or jti claims.
+   * @throws IllegalArgumentException if the constant claims include one of the variable claims.
+   * @throws GeneralSecurityException if the private key cannot be used with the algorithm.
+   */
+  public JdkTokenMinter(JsonWebAlgorithm algorithm, String kid, PrivateKey privateKey, String iss, List<String> aud, Map<String, Object> constantClaims) throws IllegalArgumentException, GeneralSecurityException {
+    this.algorithm = algorithm;
+    this.kid = kid;
+    
+    JsonObject header = new JsonObject();
+    header.put("typ", "JWT");
+    header.put("kid", kid);
+    header.put("alg", algorithm.getName());
+    
+    JsonObject claims = new JsonObject();
+    if (iss != null) {
+      claims.put("iss", iss);
+    }
+    if (aud != null) {
+      if (aud.size() == 1) {
+        claims.put("aud", aud.get(0));
+      } else {
+        claims.put("aud", new JsonArray(new ArrayList<>(aud)));
+      }
+    }
+    if (constantClaims != null) {
+      for (Entry<String, Object> claim : constantClaims.entrySet()) {
+        if (VARIABLE_CLAIMS.contains(claim.getKey())) {
+          throw new IllegalArgumentException("The " + claim.getKey() + " claim is set for each token and cannot be a constant claim");
+        }
+        claims.put(claim.getKey(), claim.getValue());
+      }
+    }
+    this.hasConstantClaims = !claims.isEmpty();
+    
+    // Drop the closing brace, the variable claims will follow
+    String claimsJson = claims.encode();
+    StringBuilder constantJson = new StringBuilder(claimsJson.length() + 2);
+    constantJson.append(claimsJson, 0, claimsJson.length() - 1);
+    byte[] constantBytes = constantJson.toString().getBytes(StandardCharsets.UTF_8);
+    int padding = (3 - constantBytes.length % 3) % 3;
+    for (int i = 0; i < padding; ++i) {
+      constantJson.append(' ');
+    }
+    constantBytes = constantJson.toString().getBytes(StandardCharsets.UTF_8);
+    
+    this.prefix = BASE64.encodeToString(header.encode().getBytes(StandardCharsets.UTF_8)) + "." + BASE64.encodeToString(constantBytes);
+    this.prefixBytes = prefix.getBytes(StandardCharsets.US_ASCII);
+    
+    // Fail now rather than on the first token if the key is not usable
+    createSigner(algorithm, privateKey);
+    this.signers = ThreadLocal.withInitial(() -> {
+      try {
+        return createSigner(algorithm, privateKey);
+      } catch (GeneralSecurityException ex) {
+        throw new IllegalStateException("Failed to create signer for " + algorithm.getName(), ex);
+      }
+    });
+  }
+  
+  private static Signature createSigner(JsonWebAlgorithm algorithm, PrivateKey privateKey) throws GeneralSecurityException {
+    if (algorithm.getJdkAlgName() == null || "HMAC".equals(algorithm.getFamilyName())) {
+      throw new IllegalArgumentException("Tokens cannot be minted using " + algorithm.getName());
+    }
+    Signature signer = Signature.getInstance(algorithm.getJdkAlgName());
+    signer.initSign(privateKey);
+    if (algorithm.getParameter() != null) {
+      signer.setParameter(algorithm.getParameter());
+    }
+    return signer;
+  }
+
+  /**
+   * Get the algorithm used to sign tokens.
+   * @return the algorithm used to sign tokens.
+   */
+  public JsonWebAlgorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Get the kid of the key used to sign tokens.
+   * @return the kid of the key used to sign tokens.
+   */
+  public String getKid() {
+    return kid;
+  }
+  
+  /**
+   * Mint a single token.
+   * @param sub The sub claim, may be null.
+   * @param nbf The nbf claim, may be null.
+   * @param exp The exp claim, may be null.
+   * @param jti The jti claim, may be null.
+   * @return A signed JWT.
+   * @throws GeneralSecurityException if the token cannot be signed.
+   */
+  public String mint(String sub, Long nbf, Long exp, String jti) throws GeneralSecurityException {
+    StringBuilder variableJson = new StringBuilder(64);
+    boolean first = !hasConstantClaims;
+    if (sub != null) {
+      first = appendName(variableJson, first, "sub");
+      appendString(variableJson, sub);
+    }
+    if (nbf != null) {
+      first = appendName(variableJson, first, "nbf");
+      variableJson.append(nbf.longValue());
+    }
+    if (exp != null) {
+      first = appendName(variableJson, first, "exp");
+      variableJson.append(exp.longValue());
+    }
+    if (jti != null) {
+      appendName(variableJson, first, "jti");
+      appendString(variableJson, jti);
+    }
+    variableJson.append('}');
+    byte[] variableBase64 = BASE64.encode(variableJson.toString().getBytes(StandardCharsets.UTF_8));
+    
+    Signature signer = signers.get();
+    signer.update(prefixBytes);
+    signer.update(variableBase64);
+    byte[] signature = signer.sign();
+    
+    String signatureBase64 = BASE64.encodeToString(signature);
+    StringBuilder token = new StringBuilder(prefix.length() + variableBase64.length + signatureBase64.length() + 1);
+    token.append(prefix);
+    token.append(new String(variableBase64, StandardCharsets.US_ASCII));
+    token.append('.');
+    token.append(signatureBase64);
+    return token.toString();
+  }
+  
+  /**
+   * Mint many tokens in parallel, using the common fork join pool.
+   * <p>
+   * Every token has a different jti claim (the jtiPrefix followed by the index of the token) so that the tokens are all distinct.
+   * 
+   * @param count The number of tokens to mint.
+   * @param sub The sub claim, may be null.
+   * @param nbf The nbf claim, may be null.
+   * @param exp The exp claim, may be null.
+   * @param jtiPrefix The prefix for the jti claim of each token.
+   * @return A list of count signed JWTs.
+   * @throws GeneralSecurityException if the tokens cannot be signed.
+   */
+  public List<String> mint(int count, String sub, Long nbf, Long exp, String jtiPrefix) throws GeneralSecurityException {
+    if (count < 0) {
+      throw new IllegalArgumentException("Count may not be negative");
+    }
+    String[] tokens = new String[count];
+    try {
+      IntStream.range(0, count).parallel().forEach(i -> {
+        try {
+          tokens[i] = mint(sub, nbf, exp, jtiPrefix + i);
+        } catch (GeneralSecurityException ex) {
+          throw new IllegalStateException(ex);
+        }
+      });
+    } catch (IllegalStateException ex) {
+      if (ex.getCause() instanceof GeneralSecurityException) {
+        throw (GeneralSecurityException) ex.getCause();
+      }
+      throw ex;
+    }
+    return Arrays.asList(tokens);
+  }
+  
+  private static boolean appendName(StringBuilder json, boolean first, String name) {
+    if (!first) {
+      json.append(',');
+    }
+    json.append('"').append(name).append("\":");
+    return false;
+  }
+  
+  private static void appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+          break;
+      }
+    }
+    json.append('"');
+  }
+  
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jdk;
+
+import java.io.Closeable;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ * Pool of key pairs that are generated in the background, so that a token builder can start using a new kid without waiting for a key to be generated.
+ * <p>
+ * RSA key generation in particular can take hundreds of milliseconds, which is a problem for tests that rotate keys frequently.
+ * <p>
+ * Keys are pooled by key type rather than by algorithm, so (for example) RS256 and PS512 share a pool of 2048 bit RSA keys.
+ * Each pool is topped up to the target depth in the background whenever a key is taken from it.
+ * If a pool is empty when a key is needed the key is generated on the calling thread.
+ * <p>
+ * Every key is only handed out once.
+ * 
+ * @author jtalbut
+ */
+public final class KeyPairPool implements Closeable {
+  
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(KeyPairPool.class);
+  
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+  
+  private final int depth;
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, Reserve> reserves = new ConcurrentHashMap<>();
+  private final AtomicLong misses = new AtomicLong();
+  private volatile boolean closed;
+  
+  /**
+   * The keys of a single type that are ready for use.
+   */
+  private static final class Reserve {
+    private final JsonWebAlgorithm algorithm;
+    private final Queue<KeyPair> keys = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    Reserve(JsonWebAlgorithm algorithm) {
+      this.algorithm = algorithm;
+    }
+  }
+
+  /**
+   * Constructor.
+   * @param depth The number of keys of each type to keep ready.
+   * @param threads The number of threads used to generate keys.
+   * @param algorithms The algorithms for which keys should be generated immediately, may be null.
+   * Keys for other algorithms will be pooled from the first time one is requested.
+   */
+  public KeyPairPool(int depth, int threads, Collection<JsonWebAlgorithm> algorithms) {
+    if (depth < 1) {
+      throw new IllegalArgumentException("The depth of the pool must be at least 1");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("The pool must have at least 1 thread");
+    }
+    this.depth = depth;
+    int poolIndex = POOL_COUNT.incrementAndGet();
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread thread = new Thread(r, "key-pair-pool-" + poolIndex + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    });
+    if (algorithms != null) {
+      for (JsonWebAlgorithm algorithm : algorithms) {
+        refill(reserve(algorithm));
+      }
+    }
+  }
+  
+  /**
+   * Get the type of key needed for an algorithm.
+   * @param algorithm The algorithm.
+   * @return The type of key needed for the algorithm, or null if the algorithm does not use a key pair.
+   * @throws IllegalArgumentException if the algorithm is not supported.
+   */
+  static String keyType(JsonWebAlgorithm algorithm) {
+    switch (algorithm.getFamilyName()) {
+      case "RSA":
+        return "RSA-" + algorithm.getMinKeyLength();
+      case "ECDSA":
+        return "EC-" + algorithm.getSubName();
+      case "EdDSA":
+        return algorithm.getJdkAlgName();
+      case "None":
+        return null;
+      default:
+        throw new IllegalArgumentException("Test harness does not support keys for " + algorithm.toString());
+    }
+  }
+  
+  /**
+   * Generate a key pair suitable for an algorithm on the calling thread.
+   * @param algorithm The algorithm.
+   * @return A newly generated key pair, or null if the algorithm does not use a key pair.
+   * @throws GeneralSecurityException if the JDK cannot generate the key pair.
+   * @throws IllegalArgumentException if the algorithm is not supported.
+   */
+  public static KeyPair generate(JsonWebAlgorithm algorithm) throws GeneralSecurityException {
+    String keyType = keyType(algorithm);
+    if (keyType == null) {
+      return null;
+    }
+    if ("RSA".equals(algorithm.getFamilyName())) {
+      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+      keyGen.initialize(algorithm.getMinKeyLength());
+      return keyGen.genKeyPair();
+    }
+    if ("ECDSA".equals(algorithm.getFamilyName())) {
+      KeyPairGenerator keyGen = KeyPairGenerator.getInstance("EC");
+      keyGen.initialize(new ECGenParameterSpec(algorithm.getSubName()));
+      return keyGen.genKeyPair();
+    }
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algorithm.getJdkAlgName());
+    return keyGen.genKeyPair();
+  }
+  
+  private Reserve reserve(JsonWebAlgorithm algorithm) {
+    String keyType = keyType(algorithm);
+    if (keyType == null) {
+      return null;
+    }
+    return reserves.computeIfAbsent(keyType, k -> new Reserve(algorithm));
+  }
+  
+  private void refill(Reserve reserve) {
+    if (reserve == null) {
+      return;
+    }
+    while (!closed) {
+      int pending = reserve.pending.get();
+      if (reserve.available.get() + pending >= depth) {
+        return;
+      }
+      if (!reserve.pending.compareAndSet(pending, pending + 1)) {
+        continue;
+      }
+      try {
+        executor.execute(() -> generateInto(reserve));
+      } catch (RejectedExecutionException ex) {
+        reserve.pending.decrementAndGet();
+        return;
+      }
+    }
+  }
+  
+  private void generateInto(Reserve reserve) {
+    try {
+      KeyPair keyPair = generate(reserve.algorithm);
+      reserve.keys.add(keyPair);
+      reserve.available.incrementAndGet();
+    } catch (Throwable ex) {
+      logger.warn("Failed to generate key pair for {}: ", reserve.algorithm, ex);
+    } finally {
+      reserve.pending.decrementAndGet();
+    }
+  }
+  
+  /**
+   * Take a key pair suitable for an algorithm from the pool, generating one on the calling thread if the pool is empty.
+   * <p>
+   * The pool for the key type is topped up in the background.
+   * 
+   * @param algorithm The algorithm.
+   * @return A key pair that has not been handed out before, or null if the algorithm does not use a key pair.
+   * @throws GeneralSecurityException if the JDK cannot generate the key pair.
+   * @throws IllegalArgumentException if the algorithm is not supported.
+   */
+  public KeyPair take(JsonWebAlgorithm algorithm) throws GeneralSecurityException {
+    Reserve reserve = reserve(algorithm);
+    if (reserve == null) {
+      return null;
+    }
+    KeyPair keyPair = reserve.keys.poll();
+    if (keyPair != null) {
+      reserve.available.decrementAndGet();
+    }
+    refill(reserve);
+    if (keyPair == null) {
+      misses.incrementAndGet();
+      logger.debug("No {} key pair ready, generating one", algorithm);
+      keyPair = generate(algorithm);
+    }
+    return keyPair;
+  }
+  
+  /**
+   * Get the number of keys suitable for an algorithm that are ready to be taken.
+   * @param algorithm The algorithm.
+   * @return the number of keys suitable for an algorithm that are ready to be taken.
+   */
+  public int getAvailable(JsonWebAlgorithm algorithm) {
+    String keyType = keyType(algorithm);
+    Reserve reserve = keyType == null ? null : reserves.get(keyType);
+    return reserve == null ? 0 : reserve.available.get();
+  }
+  
+  /**
+   * Get the number of times that a key has been requested when none was ready.
+   * <p>
+   * If this keeps increasing the depth of the pool, or the number of threads, should be increased.
+   * @return the number of times that a key has been requested when none was ready.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Stop generating keys.
+   * Keys that are already in the pool can still be taken, but once they are used up keys will always be generated on the calling thread.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+  }
+  
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * Java Flight Recorder event for a single call to the loader of an {@link uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache}.
+ * <p>
+ * The event is disabled by default, it must be enabled (by name) in the JFR settings used for a recording.
+ * 
+ * @author jtalbut
+ */
+@Name(CacheLoadEvent.NAME)
+@Label("JWT Validator Cache Load")
+@Category({"SpudSoft", "JWT Validator"})
+@Description("The loading of a value into a cache of discovery data or JWKs")
+@Enabled(false)
+@StackTrace(false)
+public final class CacheLoadEvent extends Event {
+  
+  /**
+   * The name of the event, as used in JFR settings.
+   */
+  public static final String NAME = "uk.co.spudsoft.jwtvalidatorvertx.CacheLoad";
+  
+  @Label("Key")
+  private String key;
+  
+  @Label("Succeeded")
+  private boolean succeeded;
+  
+  @Label("Waiters")
+  @Description("The number of requests for the value that were waiting for the load to complete")
+  private int waiters;
+  
+  @Label("Expiry")
+  @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+  private long expiry;
+
+  /**
+   * Set the key of the value being loaded.
+   * @param key the key of the value being loaded.
+   */
+  public void setKey(String key) {
+    this.key = key;
+  }
+
+  /**
+   * Set whether or not the load succeeded.
+   * @param succeeded true if the load succeeded.
+   */
+  public void setSucceeded(boolean succeeded) {
+    this.succeeded = succeeded;
+  }
+
+  /**
+   * Set the number of requests that were waiting for the load to complete.
+   * @param waiters the number of requests that were waiting for the load to complete.
+   */
+  public void setWaiters(int waiters) {
+    this.waiters = waiters;
+  }
+
+  /**
+   * Set the time at which the loaded value expires.
+   * @param expiry the time at which the loaded value expires, in ms since the epoch.
+   */
+  public void setExpiry(long expiry) {
+    this.expiry = expiry;
+  }
+  
+}
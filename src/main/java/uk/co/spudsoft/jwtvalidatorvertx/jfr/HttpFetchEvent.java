@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timestamp;
+
+/**
+ * Java Flight Recorder event for a single HTTP request for an OpenID Discovery document or JWK Set.
+ * <p>
+ * The event is disabled by default, it must be enabled (by name) in the JFR settings used for a recording.
+ * 
+ * @author jtalbut
+ */
+@Name(HttpFetchEvent.NAME)
+@Label("JWT Validator HTTP Fetch")
+@Category({"SpudSoft", "JWT Validator"})
+@Description("An HTTP request for an OpenID Discovery document or JWK Set")
+@Enabled(false)
+@StackTrace(false)
+public final class HttpFetchEvent extends Event {
+  
+  /**
+   * The name of the event, as used in JFR settings.
+   */
+  public static final String NAME = "uk.co.spudsoft.jwtvalidatorvertx.HttpFetch";
+  
+  @Label("URL")
+  private String url;
+  
+  @Label("Status Code")
+  @Description("The HTTP status code of the response, zero if no response was received")
+  private int statusCode;
+  
+  @Label("Bytes")
+  @DataAmount
+  private long bytes;
+  
+  @Label("Cache Expiry")
+  @Description("The time until which the response may be cached, calculated from the Cache-Control header")
+  @Timestamp(Timestamp.MILLISECONDS_SINCE_EPOCH)
+  private long expiry;
+  
+  @Label("Failure")
+  private String failure;
+
+  /**
+   * Set the URL that was requested.
+   * @param url the URL that was requested.
+   */
+  public void setUrl(String url) {
+    this.url = url;
+  }
+
+  /**
+   * Set the HTTP status code of the response.
+   * @param statusCode the HTTP status code of the response.
+   */
+  public void setStatusCode(int statusCode) {
+    this.statusCode = statusCode;
+  }
+
+  /**
+   * Set the size of the body of the response.
+   * @param bytes the size of the body of the response.
+   */
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+
+  /**
+   * Set the time until which the response may be cached.
+   * @param expiry the time until which the response may be cached, in ms since the epoch.
+   */
+  public void setExpiry(long expiry) {
+    this.expiry = expiry;
+  }
+
+  /**
+   * Set the message of the exception that caused the request to fail.
+   * @param failure the message of the exception that caused the request to fail.
+   */
+  public void setFailure(String failure) {
+    this.failure = failure;
+  }
+  
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for a single call to {@link uk.co.spudsoft.jwtvalidatorvertx.JwtValidator#validateToken}.
+ * <p>
+ * The event is disabled by default, it must be enabled (by name) in the JFR settings used for a recording.
+ * The validator only creates these events once the Flight Recorder has been initialized, so there is no cost for processes that never record.
+ * <p>
+ * The issuer is only recorded if it is acceptable to the validator.
+ * 
+ * @author jtalbut
+ */
+@Name(TokenValidationEvent.NAME)
+@Label("JWT Validation")
+@Category({"SpudSoft", "JWT Validator"})
+@Description("The validation of a single JWT")
+@Enabled(false)
+@StackTrace(false)
+public final class TokenValidationEvent extends Event {
+  
+  /**
+   * The name of the event, as used in JFR settings.
+   */
+  public static final String NAME = "uk.co.spudsoft.jwtvalidatorvertx.TokenValidation";
+  
+  @Label("Issuer")
+  private String issuer;
+  
+  @Label("Algorithm")
+  private String algorithm;
+  
+  @Label("Outcome")
+  private String outcome;
+  
+  @Label("Failed Stage")
+  @Description("The stage of validation that failed, null for valid tokens")
+  private String failedStage;
+
+  /**
+   * Set the issuer of the token.
+   * @param issuer the issuer of the token, null if the issuer was not acceptable.
+   */
+  public void setIssuer(String issuer) {
+    this.issuer = issuer;
+  }
+
+  /**
+   * Set the algorithm of the token.
+   * @param algorithm the algorithm of the token.
+   */
+  public void setAlgorithm(String algorithm) {
+    this.algorithm = algorithm;
+  }
+
+  /**
+   * Set the outcome of the validation.
+   * @param outcome the outcome of the validation, either "success" or "failure".
+   */
+  public void setOutcome(String outcome) {
+    this.outcome = outcome;
+  }
+
+  /**
+   * Set the stage of validation that failed.
+   * @param failedStage the stage of validation that failed, null for valid tokens.
+   */
+  public void setFailedStage(String failedStage) {
+    this.failedStage = failedStage;
+  }
+  
+}
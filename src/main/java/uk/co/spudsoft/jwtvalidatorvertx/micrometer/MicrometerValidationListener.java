@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.micrometer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener;
+
+/**
+ * {@link ValidationListener} that records timings in a Micrometer {@link MeterRegistry}.
+ * <p>
+ * Micrometer is an optional dependency of this library, this class can only be used if micrometer-core is on the classpath.
+ * <p>
+ * Three timers are recorded:
+ * <ul>
+ * <li>jwt.validation, tagged with the issuer, algorithm, outcome and the stage that failed ("none" for valid tokens).
+ * <li>jwt.validation.stage, tagged with the stage, issuer, algorithm and outcome.
+ * <li>jwt.fetch, tagged with the stage (discovery or jwks_fetch) and outcome.
+ * </ul>
+ * The count of each timer provides the outcome counters.
+ * The issuer and algorithm are only known for tokens whose signature has been verified, and the issuer must also be acceptable, 
+ * otherwise they are tagged as "unknown".
+ * As a further safeguard no more than {@link #MAX_TIMERS} timers are created, 
+ * once that limit is reached timers for new issuers are recorded with the issuer tagged as "unknown".
+ * 
+ * @author jtalbut
+ */
+public class MicrometerValidationListener implements ValidationListener {
+  
+  /**
+   * The name of the timer for complete validations.
+   */
+  public static final String VALIDATION_TIMER = "jwt.validation";
+  
+  /**
+   * The name of the timer for each stage of validation.
+   */
+  public static final String STAGE_TIMER = "jwt.validation.stage";
+  
+  /**
+   * The name of the timer for HTTP requests made by a {@link uk.co.spudsoft.jwtvalidatorvertx.FetchService}.
+   */
+  public static final String FETCH_TIMER = "jwt.fetch";
+  
+  /**
+   * The maximum number of distinct timers that will be created before new issuers are recorded as "unknown".
+   */
+  public static final int MAX_TIMERS = 1000;
+  
+  private static final String UNKNOWN = "unknown";
+  
+  private final MeterRegistry registry;
+  private final ConcurrentMap<MeterKey, Timer> timers = new ConcurrentHashMap<>();
+
+  /**
+   * Key for the cache of timers, so that tags do not have to be built for every token.
+   */
+  static final class MeterKey {
+    private final String name;
+    private final Stage stage;
+    private final String issuer;
+    private final JsonWebAlgorithm algorithm;
+    private final boolean succeeded;
+    private final int hash;
+
+    MeterKey(String name, Stage stage, String issuer, JsonWebAlgorithm algorithm, boolean succeeded) {
+      this.name = name;
+      this.stage = stage;
+      this.issuer = issuer;
+      this.algorithm = algorithm;
+      this.succeeded = succeeded;
+      this.hash = Objects.hash(name, stage, issuer, algorithm, succeeded);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof MeterKey)) {
+        return false;
+      }
+      MeterKey other = (MeterKey) obj;
+      return hash == other.hash
+              && succeeded == other.succeeded
+              && stage == other.stage
+              && algorithm == other.algorithm
+              && name.equals(other.name)
+              && Objects.equals(issuer, other.issuer);
+    }
+  }
+  
+  /**
+   * Constructor.
+   * @param registry The registry in which the timers will be recorded.
+   */
+  public MicrometerValidationListener(MeterRegistry registry) {
+    this.registry = Objects.requireNonNull(registry, "MeterRegistry may not be null");
+  }
+
+  @Override
+  public void stageCompleted(Stage stage, String issuer, JsonWebAlgorithm algorithm, long durationNanos, boolean succeeded) {
+    timer(new MeterKey(STAGE_TIMER, stage, issuer, algorithm, succeeded))
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void validationCompleted(String issuer, JsonWebAlgorithm algorithm, long durationNanos, Stage failedStage) {
+    timer(new MeterKey(VALIDATION_TIMER, failedStage, issuer, algorithm, failedStage == null))
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void fetchCompleted(Stage stage, String url, long durationNanos, boolean succeeded) {
+    timer(new MeterKey(FETCH_TIMER, stage, null, null, succeeded))
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+  
+  /**
+   * Get the timer for a key, creating it if necessary.
+   * <p>
+   * Once there are {@link #MAX_TIMERS} timers new keys have their issuer replaced with null (recorded as "unknown"), 
+   * the number of keys without an issuer is bounded by the number of stages, algorithms and outcomes.
+   */
+  private Timer timer(MeterKey key) {
+    Timer timer = timers.get(key);
+    if (timer != null) {
+      return timer;
+    }
+    if (key.issuer != null && timers.size() >= MAX_TIMERS) {
+      key = new MeterKey(key.name, key.stage, null, key.algorithm, key.succeeded);
+    }
+    return timers.computeIfAbsent(key, this::createTimer);
+  }
+  
+  private static String tagValue(Stage stage) {
+    return stage == null ? "none" : stage.name().toLowerCase(Locale.ROOT);
+  }
+  
+  private Timer createTimer(MeterKey key) {
+    String outcome = key.succeeded ? "success" : "failure";
+    Timer.Builder builder;
+    switch (key.name) {
+      case VALIDATION_TIMER:
+        builder = Timer.builder(key.name)
+                .description("Time taken to validate a JWT")
+                .tag("issuer", key.issuer == null ? UNKNOWN : key.issuer)
+                .tag("algorithm", key.algorithm == null ? UNKNOWN : key.algorithm.getName())
+                .tag("outcome", outcome)
+                .tag("failed.stage", tagValue(key.stage));
+        break;
+      case STAGE_TIMER:
+        builder = Timer.builder(key.name)
+                .description("Time taken by each stage of JWT validation")
+                .tag("stage", tagValue(key.stage))
+                .tag("issuer", key.issuer == null ? UNKNOWN : key.issuer)
+                .tag("algorithm", key.algorithm == null ? UNKNOWN : key.algorithm.getName())
+                .tag("outcome", outcome);
+        break;
+      default:
+        builder = Timer.builder(key.name)
+                .description("Time taken by HTTP requests for OpenID Discovery documents and JWK Sets")
+                .tag("stage", tagValue(key.stage))
+                .tag("outcome", outcome);
+        break;
+    }
+    return builder.register(registry);
+  }
+  
+}
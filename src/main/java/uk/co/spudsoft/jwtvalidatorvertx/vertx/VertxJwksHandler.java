@@ -23,21 +23,19 @@ import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.security.PublicKey;
 import java.util.Base64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
-import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
 import uk.co.spudsoft.jwtvalidatorvertx.JwksHandler;
 import uk.co.spudsoft.jwtvalidatorvertx.TokenBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JwksResponseCache;
 import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkJwksHandler;
 import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
 
@@ -65,12 +63,16 @@ public class VertxJwksHandler implements Handler<RoutingContext>, JwksHandler {
   private final String tokenUrl;
   private final boolean withTokenBuilder;
   
+  private final JwksResponseCache<Buffer> jwksCache = new JwksResponseCache<>(Buffer::buffer);
+  
   private Cache<String, AlgorithmAndKeyPair> keyCache;
   private TokenBuilder tokenBuilder = null;
+  private volatile String cacheControl = JwksResponseCache.cacheControl(100);
   
   @Override
   public void setKeyCache(Cache<String, AlgorithmAndKeyPair> keyCache) {
     this.keyCache = keyCache;
+    jwksCache.invalidate();
     if (withTokenBuilder) {
       tokenBuilder = new JdkTokenBuilder(keyCache);
     }
@@ -81,6 +83,16 @@ public class VertxJwksHandler implements Handler<RoutingContext>, JwksHandler {
     return "http://localhost:" + port + basePath;
   }
 
+  /**
+   * Set the max-age to use in the Cache-Control header of JWKS responses.
+   * The default is 100 seconds.
+   * @param maxAgeSeconds the max-age to use in the Cache-Control header of JWKS responses.
+   * @throws IllegalArgumentException if maxAgeSeconds is negative.
+   */
+  public void setMaxAgeSeconds(int maxAgeSeconds) {
+    this.cacheControl = JwksResponseCache.cacheControl(maxAgeSeconds);
+  }
+
   /**
    * Get the port that the handler is listening on.
    * @return the port that the handler is listening on.
@@ -178,7 +190,17 @@ public class VertxJwksHandler implements Handler<RoutingContext>, JwksHandler {
   }
   
 
-  private void sendResponse(RoutingContext exchange, int responseCode, String contentType, Buffer body) {
+  /**
+   * Send a response to the client.
+   * <p>
+   * Subclasses may override this to change the way in which responses are sent, for example to simulate a slow network.
+   * 
+   * @param exchange The context of the request being responded to.
+   * @param responseCode The HTTP status code.
+   * @param contentType The value of the Content-Type header.
+   * @param body The body of the response.
+   */
+  protected void sendResponse(RoutingContext exchange, int responseCode, String contentType, Buffer body) {
     exchange.response()
             .setStatusCode(responseCode)
             .putHeader("Content-Type", contentType)
@@ -217,23 +239,15 @@ public class VertxJwksHandler implements Handler<RoutingContext>, JwksHandler {
   }
 
   private void handleJwksRequest(RoutingContext exchange) {
-
-    JsonObject jwkSet = new JsonObject();
-    JsonArray jwks = new JsonArray();
-    jwkSet.put("keys", jwks);
-    synchronized (keyCache) {
-      keyCache.asMap().forEach((kid, akp) -> {
-        PublicKey key = akp.getKeyPair().getPublic();
-        try {
-          JsonObject json = JwkBuilder.get(key).toJson(kid, akp.getAlgorithm().getName(), key);
-          jwks.add(json);
-        } catch (Exception ex) {
-          logger.warn("Failed to add key {} to JWKS: ", kid, ex);
-        }
-      });
+    JwksResponseCache.Response<Buffer> jwks = jwksCache.get(keyCache);
+    exchange.response()
+            .putHeader("cache-control", cacheControl)
+            .putHeader("etag", jwks.getEtag());
+    if (JwksResponseCache.matches(exchange.request().getHeader("if-none-match"), jwks.getEtag())) {
+      exchange.response().setStatusCode(304).end();
+    } else {
+      sendResponse(exchange, 200, "application/json", jwks.getBody());
     }
-    exchange.response().putHeader("cache-control", "max-age=100");
-    sendResponse(exchange, 200, "application/json", jwkSet.toBuffer());
   }
   
   private void handleTokenRequest(RoutingContext exchange) {
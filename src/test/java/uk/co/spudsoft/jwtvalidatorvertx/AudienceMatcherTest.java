@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class AudienceMatcherTest {
+  
+  private static Jwt jwt(Object aud) {
+    JsonObject payload = new JsonObject().put("sub", "bob");
+    if (aud != null) {
+      payload.put("aud", aud);
+    }
+    return new Jwt(new JsonObject(), payload, null, null);
+  }
+  
+  @Test
+  public void testMatches() {
+    List<String> audiences = new ArrayList<>();
+    for (int i = 0; i < 50; ++i) {
+      audiences.add("aud" + i);
+    }
+    AudienceMatcher matcher = AudienceMatcher.create(audiences);
+    assertThat(matcher.getAudiences(), hasSize(50));
+    assertFalse(matcher.isEmpty());
+    assertTrue(matcher.contains("aud7"));
+    assertFalse(matcher.contains("aud70"));
+    assertFalse(matcher.contains(null));
+    
+    assertTrue(matcher.matches(jwt("aud49")));
+    assertFalse(matcher.matches(jwt("aud50")));
+    assertTrue(matcher.matches(jwt(new JsonArray().add("other").add("aud3"))));
+    assertFalse(matcher.matches(jwt(new JsonArray().add("other").addNull().add("another"))));
+    assertTrue(matcher.matches(jwt(Arrays.asList("other", "aud4"))));
+    assertFalse(matcher.matches(jwt(Arrays.asList("other", null))));
+    assertFalse(matcher.matches(jwt(new JsonArray())));
+    assertFalse(matcher.matches(jwt(null)));
+    assertFalse(matcher.matches(jwt(17)));
+    
+    AudienceMatcher numeric = AudienceMatcher.create("17", "18");
+    assertTrue(numeric.matches(jwt(new JsonArray().add(18))));
+    assertThat(numeric.toString(), containsString("17"));
+  }
+  
+  @Test
+  public void testEmpty() {
+    AudienceMatcher matcher = AudienceMatcher.create(Arrays.asList((String) null));
+    assertTrue(matcher.isEmpty());
+    assertFalse(matcher.matches(jwt("aud")));
+  }
+  
+  @Test
+  public void testInterned() {
+    String first = new String("https://api.example.com/".toCharArray());
+    String second = new String("https://api.example.com/".toCharArray());
+    AudienceMatcher matcher1 = AudienceMatcher.create(Arrays.asList(first), true);
+    AudienceMatcher matcher2 = AudienceMatcher.create(Arrays.asList(second), true);
+    assertSame(matcher1.getAudiences().iterator().next(), matcher2.getAudiences().iterator().next());
+    assertTrue(matcher2.matches(jwt("https://api.example.com/")));
+  }
+  
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.Vertx;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class CoarseClockTest {
+  
+  @Test
+  public void testClock() throws Exception {
+    Vertx vertx = Vertx.vertx();
+    try {
+      assertThrows(IllegalArgumentException.class, () -> CoarseClock.create(vertx, Duration.ZERO));
+      
+      CoarseClock clock = CoarseClock.create(vertx, Duration.ofMillis(5));
+      long start = clock.millis();
+      assertTrue(Math.abs(System.currentTimeMillis() - start) < 1000);
+      assertEquals(start, clock.instant().toEpochMilli(), 5);
+      assertEquals(ZoneOffset.UTC, clock.getZone());
+      assertSame(clock, clock.withZone(ZoneOffset.UTC));
+      
+      Clock zoned = clock.withZone(ZoneId.of("Europe/London"));
+      assertEquals(ZoneId.of("Europe/London"), zoned.getZone());
+      assertEquals(clock.millis(), zoned.millis(), 5);
+      assertSame(clock, zoned.withZone(ZoneOffset.UTC));
+      
+      await().atMost(Duration.ofSeconds(5)).until(() -> clock.millis() > start + 20);
+      
+      clock.close();
+      // Allow any update that was already running when the timer was cancelled to finish
+      Thread.sleep(20);
+      long stopped = clock.millis();
+      Thread.sleep(50);
+      assertEquals(stopped, clock.millis());
+    } finally {
+      vertx.close();
+    }
+  }
+  
+}
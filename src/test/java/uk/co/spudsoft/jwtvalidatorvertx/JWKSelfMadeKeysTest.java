@@ -27,9 +27,11 @@ import java.security.interfaces.EdECPublicKey;
 import java.security.interfaces.RSAPublicKey;
 import java.security.spec.ECGenParameterSpec;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.impl.JdkSignatureVerifier;
 import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
 
 /**
@@ -230,6 +232,26 @@ public class JWKSelfMadeKeysTest {
     jws.verify(signature, signingInput.getBytes(StandardCharsets.UTF_8));
   }
   
+  @Test  
+  public void testRsaPssJwks() throws Throwable {    
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+    keyGen.initialize(2048);
+    KeyPair pair = keyGen.genKeyPair();
+    RSAPublicKey key = (RSAPublicKey) pair.getPublic();
+    
+    for (JsonWebAlgorithm algorithm : new JsonWebAlgorithm[] {JsonWebAlgorithm.PS256, JsonWebAlgorithm.PS384, JsonWebAlgorithm.PS512}) {
+      String kid = "testRsaPssJwks" + algorithm.getName();
+      JsonObject jo = JwkBuilder.get(key).toJson(kid, algorithm.getName(), key);
+      JWK jwk = new JWK(jo);
+      assertEquals(kid, jwk.getId());
+      assertEquals(algorithm.getName(), jwk.getAlgorithm());
+
+      String signingInput = "Signing input";
+      byte[] signature = JdkTokenBuilder.generateSignature(pair.getPrivate(), algorithm, signingInput);
+      assertTrue(JdkSignatureVerifier.verify(algorithm, jwk.publicKey(), signature, signingInput.getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+  
   @Test  
   public void testEdJwks() throws Throwable {    
     String kid = "testEdJwks";
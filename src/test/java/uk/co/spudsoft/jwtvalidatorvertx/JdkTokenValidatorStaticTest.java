@@ -15,6 +15,7 @@ import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
@@ -35,6 +36,7 @@ import org.slf4j.LoggerFactory;
 
 import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -577,6 +579,22 @@ public class JdkTokenValidatorStaticTest {
             .onComplete(testContext.failingThenComplete());
   }
 
+  @Test
+  @Order(15)
+  public void testNoAudInTokenRejectedWhenIgnoringRequiredAud(VertxTestContext testContext) throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    jwks.setKeyCache(keyCache);
+    
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+
+    String kid = UUID.randomUUID().toString();
+
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    defaultValidator.validateToken(jwks.getBaseUrl(), builder.buildToken(JsonWebAlgorithm.RS256, kid, jwks.getBaseUrl(), "sub",
+            null, nowSeconds, nowSeconds + 100, BORING_CLAIMS), Arrays.asList("aud"), true)
+            .onComplete(testContext.failingThenComplete());
+  }
+
   @Test
   @Order(16)
   public void testAudAcceptedAsSingleElementArray(VertxTestContext testContext) throws Throwable {
@@ -695,4 +713,62 @@ public class JdkTokenValidatorStaticTest {
             .onComplete(testContext.failingThenComplete());
   }
 
+  @Test
+  @Order(21)
+  public void testReplayRejected(VertxTestContext testContext) throws Throwable {
+
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    jwks.setKeyCache(keyCache);
+    
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost.*"), null, Duration.ofMillis(1000));
+    JwtValidator validator = JwtValidator.createStatic(WebClient.create(vertx), Arrays.asList(jwks.getBaseUrl() + "/jwks"), Duration.ofMinutes(1), iah);
+    validator.setReplayGuard(ReplayGuard.create(Clock.systemUTC()));
+
+    Map<String, Object> claimsWithJti = ImmutableMap.<String, Object>builder()
+            .put("jti", UUID.randomUUID().toString())
+            .put("email", "bob@")
+            .put("given_name", "tester")
+            .build();
+
+    String kid = UUID.randomUUID().toString();
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String token = builder.buildToken(JsonWebAlgorithm.RS256, kid, jwks.getBaseUrl(), "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, claimsWithJti);
+    String tokenWithoutJti = builder.buildToken(JsonWebAlgorithm.RS256, kid, jwks.getBaseUrl(), "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, BORING_CLAIMS);
+    validator.validateToken(jwks.getBaseUrl(), token, Arrays.asList("aud"), false)
+            .compose(jwt -> validator.validateToken(jwks.getBaseUrl(), token, Arrays.asList("aud"), false))
+            .recover(ex -> {
+              testContext.verify(() -> {
+                assertThat(ex.getCause().getMessage(), containsString("already been used"));
+              });
+              return validator.validateToken(jwks.getBaseUrl(), tokenWithoutJti, Arrays.asList("aud"), false);
+            })
+            .onComplete(testContext.failingThenComplete());
+  }
+
+  @Test
+  @Order(22)
+  public void testRevokedRejected(VertxTestContext testContext) throws Throwable {
+
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    jwks.setKeyCache(keyCache);
+    
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost.*"), null, Duration.ofMillis(1000));
+    JwtValidator validator = JwtValidator.createStatic(WebClient.create(vertx), Arrays.asList(jwks.getBaseUrl() + "/jwks"), Duration.ofMinutes(1), iah);
+    RevocationList revocationList = RevocationList.create();
+    revocationList.revokeSubject(jwks.getBaseUrl(), "revoked");
+    // Revocations for another issuer must not affect tokens from this one
+    revocationList.revokeSubject("http://other.example.com", "sub");
+    validator.setRevocationList(revocationList);
+
+    String kid = UUID.randomUUID().toString();
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String validToken = builder.buildToken(JsonWebAlgorithm.RS256, kid, jwks.getBaseUrl(), "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, BORING_CLAIMS);
+    String revokedToken = builder.buildToken(JsonWebAlgorithm.RS256, kid, jwks.getBaseUrl(), "revoked", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, BORING_CLAIMS);
+    validator.validateToken(jwks.getBaseUrl(), validToken, Arrays.asList("aud"), false)
+            .compose(jwt -> validator.validateToken(jwks.getBaseUrl(), revokedToken, Arrays.asList("aud"), false))
+            .onComplete(testContext.failingThenComplete());
+  }
+
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.Future;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Check that an implementation of JwtValidator that only implements the original methods still compiles and works.
+ *
+ * @author jtalbut
+ */
+public class JwtValidatorDefaultsTest {
+  
+  private static class LegacyValidator implements JwtValidator {
+    
+    private List<String> requiredAudList;
+    private boolean ignoreRequiredAud;
+
+    @Override
+    public Set<String> getPermittedAlgorithms() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public JwtValidator setPermittedAlgorithms(Set<String> algorithms) {
+      return this;
+    }
+
+    @Override
+    public JwtValidator addPermittedAlgorithm(String algorithm) {
+      return this;
+    }
+
+    @Override
+    public JwtValidator setRequireExp(boolean requireExp) {
+      return this;
+    }
+
+    @Override
+    public JwtValidator setRequireNbf(boolean requireNbf) {
+      return this;
+    }
+
+    @Override
+    public JwtValidator setTimeLeeway(Duration timeLeeway) {
+      return this;
+    }
+
+    @Override
+    public Future<Jwt> validateToken(String issuer, String token, List<String> requiredAudList, boolean ignoreRequiredAud) {
+      this.requiredAudList = requiredAudList;
+      this.ignoreRequiredAud = ignoreRequiredAud;
+      return Future.failedFuture(new IllegalArgumentException("Not a real validator"));
+    }
+    
+  }
+  
+  @Test
+  public void testValidateTokenForAudiences() {
+    LegacyValidator validator = new LegacyValidator();
+    
+    validator.validateTokenForAudiences("issuer", "token", AudienceMatcher.create("one", "two"), false);
+    assertThat(validator.requiredAudList, containsInAnyOrder("one", "two"));
+    assertFalse(validator.ignoreRequiredAud);
+    
+    validator.validateTokenForAudiences("issuer", "token", null, true);
+    assertNull(validator.requiredAudList);
+  }
+  
+  @Test
+  public void testUnsupported() {
+    LegacyValidator validator = new LegacyValidator();
+    
+    assertThrows(UnsupportedOperationException.class, () -> validator.getPolicy());
+    assertThrows(UnsupportedOperationException.class, () -> validator.setPolicy(ValidationPolicy.DEFAULT));
+    assertThrows(UnsupportedOperationException.class, () -> validator.setReplayGuard(null));
+    assertThrows(UnsupportedOperationException.class, () -> validator.setRevocationList(null));
+    assertThrows(UnsupportedOperationException.class, () -> validator.setValidationListener(null));
+  }
+  
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.List;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class LazyJwkSetTest {
+  
+  private static final Logger logger = LoggerFactory.getLogger(LazyJwkSetTest.class);
+  
+  private static JsonObject createJwks(int count) throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+    generator.initialize(new ECGenParameterSpec("secp256r1"));
+    JsonArray keys = new JsonArray();
+    for (int i = 0; i < count; ++i) {
+      KeyPair keyPair = generator.generateKeyPair();
+      keys.add(JwkBuilder.get(keyPair.getPublic()).toJson("kid-" + i, "ES256", keyPair.getPublic()));
+    }
+    return new JsonObject().put("keys", keys);
+  }
+  
+  @Test
+  public void testParse() throws Exception {
+    JsonObject jwks = createJwks(3);
+    jwks.getJsonArray("keys").add(new JsonObject().put("kty", "EC").put("note", new JsonObject().put("kid", "nested")));
+    jwks.getJsonArray("keys").add("not a key");
+    jwks.put("other", new JsonArray().add(new JsonObject().put("kid", "elsewhere")));
+    
+    LazyJwkSet set = LazyJwkSet.parse(jwks.toBuffer());
+    assertEquals(3, set.size());
+    assertThat(set.kids(), contains("kid-0", "kid-1", "kid-2"));
+    assertTrue(set.contains("kid-1"));
+    assertFalse(set.contains("nested"));
+    assertFalse(set.contains("elsewhere"));
+    assertFalse(set.contains(null));
+    
+    assertThat(set.getJson("kid-2"), equalTo(jwks.getJsonArray("keys").getJsonObject(2)));
+    assertNull(set.getJson("kid-3"));
+    assertNull(set.getJson(null));
+    
+    assertEquals("EC", set.getKeyType("kid-0"));
+    assertNull(set.getKeyType("kid-3"));
+    assertNull(set.getKeyType(null));
+    
+    JWK jwk = set.getJwk("kid-1");
+    assertNotNull(jwk);
+    assertEquals("kid-1", jwk.getId());
+    assertSame(jwk, set.getJwk("kid-1"));
+    assertNull(set.getJwk("kid-3"));
+  }
+  
+  @Test
+  public void testCandidates() throws Exception {
+    JsonObject jwks = createJwks(5);
+    JsonArray keys = jwks.getJsonArray("keys");
+    // 0: kid and alg, 1: no kid, 2: no kid and no alg, 3: wrong alg, 4: encryption key
+    keys.getJsonObject(1).remove("kid");
+    keys.getJsonObject(2).remove("kid");
+    keys.getJsonObject(2).remove("alg");
+    keys.getJsonObject(3).put("alg", "ES384");
+    keys.getJsonObject(4).put("use", "enc");
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(2048);
+    KeyPair rsa = generator.generateKeyPair();
+    keys.add(JwkBuilder.get(rsa.getPublic()).toJson(null, "RS256", rsa.getPublic()));
+    
+    LazyJwkSet set = LazyJwkSet.parse(jwks.toBuffer());
+    // Only keys with kids are counted, the keys without kids are only available as candidates
+    assertEquals(3, set.size());
+    assertThat(set.kids(), contains("kid-0", "kid-3", "kid-4"));
+    
+    List<JWK> es256 = set.candidates(JsonWebAlgorithm.ES256, null);
+    assertEquals(3, es256.size());
+    assertSame(set.getJwk("kid-0"), es256.get(0));
+    assertSame(es256.get(1), set.candidates(JsonWebAlgorithm.ES256, null).get(1));
+    
+    assertEquals(1, set.candidates(JsonWebAlgorithm.RS256, null).size());
+    assertEquals(0, set.candidates(JsonWebAlgorithm.PS256, null).size());
+    assertEquals(0, set.candidates(JsonWebAlgorithm.ES384, null).size());
+    assertEquals(0, set.candidates(JsonWebAlgorithm.EdDSA, null).size());
+    assertEquals(0, set.candidates(null, null).size());
+    
+    // A matching thumbprint restricts the candidates
+    keys.getJsonObject(2).put("x5t#S256", "thumb");
+    set = LazyJwkSet.parse(jwks.toBuffer());
+    assertEquals(1, set.candidates(JsonWebAlgorithm.ES256, "thumb").size());
+    assertEquals(3, set.candidates(JsonWebAlgorithm.ES256, "other").size());
+  }
+  
+  @Test
+  public void testParseBadKey() throws Exception {
+    JsonObject jwks = new JsonObject()
+            .put("keys", new JsonArray().add(new JsonObject().put("kid", "bad").put("kty", "nonsense")));
+    LazyJwkSet set = LazyJwkSet.parse(jwks.toBuffer());
+    assertTrue(set.contains("bad"));
+    assertThrows(Throwable.class, () -> set.getJwk("bad"));
+  }
+  
+  @Test
+  public void testParseInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse((Buffer) null));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("[]")));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("{\"keys\":{}}")));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("{\"other\":[]}")));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("{\"keys\":[{\"kid\":\"a\"}")));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("{\"keys\":[{\"kid\":")));
+    assertThrows(IllegalArgumentException.class, () -> LazyJwkSet.parse(Buffer.buffer("not json")));
+  }
+  
+  /**
+   * Check that a large JWK Set can be scanned and that any key in it can be built.
+   * <p>
+   * The performance of this, compared with parsing every key, is measured by LazyJwkSetBenchmark.
+   */
+  @Test
+  public void testLargeJwks() throws Exception {
+    JsonObject json = createJwks(500);
+    LazyJwkSet set = LazyJwkSet.parse(json.toBuffer());
+    assertEquals(500, set.size());
+    for (int i : new int[] {0, 250, 499}) {
+      JWK jwk = set.getJwk("kid-" + i);
+      assertNotNull(jwk);
+      assertEquals("kid-" + i, jwk.getId());
+      assertEquals(json.getJsonArray("keys").getJsonObject(i), set.getJson("kid-" + i));
+    }
+    assertNull(set.getJwk("kid-500"));
+  }
+  
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx;
+
+import java.time.Duration;
+import java.util.Arrays;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class ValidationPolicyTest {
+  
+  @Test
+  public void testDefault() {
+    ValidationPolicy policy = ValidationPolicy.DEFAULT;
+    assertThat(policy.getPermittedAlgorithms(), hasSize(11));
+    assertTrue(policy.isRequireExp());
+    assertTrue(policy.isRequireNbf());
+    assertEquals(0, policy.getTimeLeewayMilliseconds());
+    assertTrue(policy.isPermitted("RS256"));
+    assertTrue(policy.isPermitted("ES256K"));
+    assertFalse(policy.isPermitted("HS256"));
+    assertFalse(policy.isPermitted("none"));
+    assertFalse(policy.isPermitted("bob"));
+    assertFalse(policy.isPermitted(null));
+    assertThrows(UnsupportedOperationException.class, () -> policy.getPermittedAlgorithms().clear());
+  }
+  
+  @Test
+  public void testBuilder() {
+    ValidationPolicy policy = ValidationPolicy.builder()
+            .setPermittedAlgorithms(Arrays.asList(JsonWebAlgorithm.RS256))
+            .addPermittedAlgorithm(JsonWebAlgorithm.EdDSA)
+            .setRequireExp(false)
+            .setRequireNbf(false)
+            .setTimeLeeway(Duration.ofSeconds(5))
+            .build();
+    assertThat(policy.getPermittedAlgorithms(), hasSize(2));
+    assertTrue(policy.isPermitted("EdDSA"));
+    assertFalse(policy.isPermitted("ES256"));
+    assertFalse(policy.isRequireExp());
+    assertFalse(policy.isRequireNbf());
+    assertEquals(5000, policy.getTimeLeewayMilliseconds());
+    assertThat(policy.toString(), containsString("RS256"));
+    
+    ValidationPolicy modified = policy.toBuilder().setTimeLeeway(null).build();
+    assertEquals(0, modified.getTimeLeewayMilliseconds());
+    assertThat(modified.getPermittedAlgorithms(), hasSize(2));
+    assertFalse(modified.isRequireExp());
+    assertEquals(5000, policy.getTimeLeewayMilliseconds());
+    
+    assertThrows(IllegalArgumentException.class, () -> ValidationPolicy.builder().addPermittedAlgorithm(JsonWebAlgorithm.none));
+    assertThrows(IllegalArgumentException.class, () -> ValidationPolicy.builder().addPermittedAlgorithm(null));
+    assertThrows(IllegalArgumentException.class, () -> ValidationPolicy.builder().setPermittedAlgorithms(Arrays.asList(JsonWebAlgorithm.HS256, JsonWebAlgorithm.none)));
+    
+    // HMAC algorithms are supported, but not permitted by default
+    ValidationPolicy hmac = ValidationPolicy.builder().addPermittedAlgorithm(JsonWebAlgorithm.HS256).build();
+    assertTrue(hmac.isPermitted("HS256"));
+    assertFalse(hmac.isPermitted("HS384"));
+    assertThat(hmac.getPermittedAlgorithms(), hasSize(12));
+  }
+  
+  @Test
+  public void testAlgorithmForName() {
+    assertSame(JsonWebAlgorithm.PS384, ValidationPolicy.algorithmForName("PS384"));
+    assertSame(JsonWebAlgorithm.none, ValidationPolicy.algorithmForName("none"));
+    assertNull(ValidationPolicy.algorithmForName("NONE"));
+    assertNull(ValidationPolicy.algorithmForName(null));
+  }
+  
+}
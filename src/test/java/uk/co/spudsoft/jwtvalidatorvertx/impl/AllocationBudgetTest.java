@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.Future;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.AudienceMatcher;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.KeyPairPool;
+
+/**
+ * Guard against allocation regressions on the hot path.
+ * <p>
+ * The bytes allocated by the current thread are measured (using com.sun.management.ThreadMXBean) for each call to
+ * {@link Jwt#parseJws(java.lang.String)} and for each successful call to validateToken with the key already cached.
+ * The budgets are in allocation-budgets.properties, any of them can be overridden with a system property prefixed by "allocation-budget.".
+ * <p>
+ * The bytes allocated by the JDK in verifying the signature vary between algorithms and JDK versions, so they are measured separately
+ * and subtracted - the budget for validateToken is for the allocations made by this library.
+ * 
+ * @author jtalbut
+ */
+public class AllocationBudgetTest {
+  
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(AllocationBudgetTest.class);
+  
+  private static final String ISSUER = "http://localhost/";
+  private static final String AUDIENCE = "aud";
+  
+  /**
+   * Number of HS256 validations used to get the code shared by all algorithms compiled before anything is measured.
+   */
+  private static final int SHARED_WARMUP = 20000;
+  /**
+   * Number of calls to each operation before it is measured.
+   * This is small because the shared warm up has already compiled the library code, and verifying ECDSA and EdDSA signatures is slow.
+   */
+  private static final int WARMUP = 50;
+  private static final int BATCHES = 5;
+  private static final int BATCH_SIZE = 10;
+  
+  private static Properties budgets;
+  
+  private interface Operation {
+    void run() throws Exception;
+  }
+  
+  @BeforeAll
+  public static void loadBudgets() throws IOException {
+    budgets = new Properties();
+    try (InputStream stream = AllocationBudgetTest.class.getResourceAsStream("/allocation-budgets.properties")) {
+      assertNotNull(stream, "allocation-budgets.properties not found");
+      budgets.load(stream);
+    }
+  }
+  
+  private static long budget(String name, String fallback) {
+    String value = System.getProperty("allocation-budget." + name);
+    if (value == null) {
+      value = budgets.getProperty(name);
+    }
+    if (value == null && fallback != null) {
+      return budget(fallback, null);
+    }
+    assertNotNull(value, "No allocation budget configured for " + name);
+    return Long.parseLong(value.trim());
+  }
+  
+  private static com.sun.management.ThreadMXBean threadMXBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Thread allocation measurement is not available in this JVM");
+    com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+    assumeTrue(sunBean.isThreadAllocatedMemorySupported(), "Thread allocation measurement is not supported by this JVM");
+    if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+      sunBean.setThreadAllocatedMemoryEnabled(true);
+    }
+    return sunBean;
+  }
+  
+  /**
+   * Measure the bytes allocated by a single operation.
+   * <p>
+   * The result is the smallest of several batches, so that one off allocations (such as the resizing of a thread local map) are ignored.
+   */
+  private static long bytesPerOperation(com.sun.management.ThreadMXBean bean, Operation operation) throws Exception {
+    long threadId = Thread.currentThread().getId();
+    for (int i = 0; i < WARMUP; ++i) {
+      operation.run();
+    }
+    long best = Long.MAX_VALUE;
+    for (int batch = 0; batch < BATCHES; ++batch) {
+      long start = bean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < BATCH_SIZE; ++i) {
+        operation.run();
+      }
+      long bytes = (bean.getThreadAllocatedBytes(threadId) - start) / BATCH_SIZE;
+      best = Math.min(best, bytes);
+    }
+    return best;
+  }
+  
+  private static String buildToken(JdkTokenBuilder builder, JsonWebAlgorithm algorithm) throws Exception {
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    return builder.buildToken(algorithm, algorithm.getName(), ISSUER, "sub", Collections.singletonList(AUDIENCE), nowSeconds, nowSeconds + 86400, Collections.emptyMap());
+  }
+  
+  private static JWK jwkFor(JdkTokenBuilder builder, Cache<String, AlgorithmAndKeyPair> keyCache, JsonWebAlgorithm algorithm) throws Exception {
+    if ("HMAC".equals(algorithm.getFamilyName())) {
+      return JsonWebKeySetStaticKeysHandler.sharedSecret(algorithm.getName(), algorithm, builder.getSharedSecret(algorithm.getName(), algorithm));
+    }
+    PublicKey publicKey = keyCache.getIfPresent(algorithm.getName()).getKeyPair().getPublic();
+    return new JWK(JwkBuilder.get(publicKey).toJson(algorithm.getName(), algorithm.getName(), publicKey));
+  }
+  
+  private static List<JsonWebAlgorithm> algorithms() {
+    List<JsonWebAlgorithm> result = new ArrayList<>();
+    for (JsonWebAlgorithm algorithm : ValidationPolicy.SUPPORTED_ALGORITHMS) {
+      if ("HMAC".equals(algorithm.getFamilyName()) || (JdkSignatureVerifier.supports(algorithm) && canGenerateKeyPair(algorithm))) {
+        result.add(algorithm);
+      }
+    }
+    return result;
+  }
+  
+  /**
+   * ES256K can be verified by JDKs that cannot generate secp256k1 keys (such as JDK 17), so check that a key pair can be generated too.
+   * Every JDK can generate RSA keys, and generating them is slow, so they are not tried.
+   */
+  private static boolean canGenerateKeyPair(JsonWebAlgorithm algorithm) {
+    if ("RSA".equals(algorithm.getFamilyName())) {
+      return true;
+    }
+    try {
+      KeyPairPool.generate(algorithm);
+      return true;
+    } catch (GeneralSecurityException | IllegalArgumentException ex) {
+      return false;
+    }
+  }
+  
+  private static void validate(JwtValidator validator, String token, AudienceMatcher audience) {
+    Future<Jwt> future = validator.validateTokenForAudiences(null, token, audience, false);
+    if (!future.succeeded()) {
+      throw new IllegalStateException("Validation did not succeed synchronously", future.cause());
+    }
+  }
+  
+  @Test
+  public void testParseJws() throws Exception {
+    com.sun.management.ThreadMXBean bean = threadMXBean();
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    String token = buildToken(new JdkTokenBuilder(keyCache), JsonWebAlgorithm.RS256);
+    
+    for (int i = 0; i < SHARED_WARMUP; ++i) {
+      Jwt.parseJws(token);
+    }
+    long bytes = bytesPerOperation(bean, () -> Jwt.parseJws(token));
+    long budget = budget("parseJws", null);
+    logger.info("Jwt.parseJws allocates {} bytes per token (budget {})", bytes, budget);
+    assertTrue(bytes <= budget, "Jwt.parseJws allocates " + bytes + " bytes per token, which exceeds the budget of " + budget);
+  }
+  
+  @Test
+  public void testValidateToken() throws Exception {
+    com.sun.management.ThreadMXBean bean = threadMXBean();
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    List<JsonWebAlgorithm> algorithms = algorithms();
+    List<JWK> jwks = new ArrayList<>();
+    List<String> tokens = new ArrayList<>();
+    for (JsonWebAlgorithm algorithm : algorithms) {
+      tokens.add(buildToken(builder, algorithm));
+      jwks.add(jwkFor(builder, keyCache, algorithm));
+    }
+    
+    JwtValidator validator = JwtValidator.create(
+            JsonWebKeySetStaticKeysHandler.create(jwks)
+            , IssuerAcceptabilityHandler.create(Collections.singletonList(ISSUER), null, Duration.ofMinutes(1))
+    );
+    validator.setPolicy(ValidationPolicy.builder().setPermittedAlgorithms(ValidationPolicy.SUPPORTED_ALGORITHMS).build());
+    AudienceMatcher audience = AudienceMatcher.create(AUDIENCE);
+    
+    String sharedWarmupToken = tokens.get(algorithms.indexOf(JsonWebAlgorithm.HS256));
+    for (int i = 0; i < SHARED_WARMUP; ++i) {
+      validate(validator, sharedWarmupToken, audience);
+    }
+    
+    List<String> failures = new ArrayList<>();
+    for (int i = 0; i < algorithms.size(); ++i) {
+      JsonWebAlgorithm algorithm = algorithms.get(i);
+      String token = tokens.get(i);
+      JWK jwk = jwks.get(i);
+      Jwt jwt = Jwt.parseJws(token);
+      byte[] signature = Base64.getUrlDecoder().decode(jwt.getSignature());
+      byte[] signingInput = jwt.getSignatureBase().getBytes(StandardCharsets.UTF_8);
+      
+      Operation verify;
+      if ("HMAC".equals(algorithm.getFamilyName())) {
+        verify = () -> assertTrue(HmacVerifier.forJwk(jwk, algorithm).verify(signature, signingInput));
+      } else {
+        PublicKey publicKey = jwk.publicKey();
+        verify = () -> assertTrue(JdkSignatureVerifier.verify(algorithm, publicKey, signature, signingInput));
+      }
+      
+      long verifyBytes = bytesPerOperation(bean, verify);
+      long validateBytes = bytesPerOperation(bean, () -> validate(validator, token, audience));
+      long overhead = Math.max(0, validateBytes - verifyBytes);
+      long budget = budget("validateToken." + algorithm.getName(), "validateToken");
+      logger.info("{}: validateToken allocates {} bytes per token, {} bytes excluding signature verification (budget {})"
+              , algorithm.getName(), validateBytes, overhead, budget);
+      if (overhead > budget) {
+        failures.add(algorithm.getName() + " allocates " + overhead + " bytes per token excluding signature verification, which exceeds the budget of " + budget);
+      }
+    }
+    assertEquals(Collections.emptyList(), failures);
+  }
+  
+}
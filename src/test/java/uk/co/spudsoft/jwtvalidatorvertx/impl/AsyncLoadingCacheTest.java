@@ -19,8 +19,22 @@ package uk.co.spudsoft.jwtvalidatorvertx.impl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
-import uk.co.spudsoft.jwtvalidatorvertx.impl.AsyncLoadingCache.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.CacheLoadEvent;
 
 /**
  *
@@ -38,4 +52,93 @@ public class AsyncLoadingCacheTest {
     assertFalse(entry.expiredBefore(10));
     assertFalse(entry.expiredBefore(9));
   }
+  
+  private static class ManualClock extends Clock {
+    
+    private long millis;
+
+    ManualClock(long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+  
+  @Test
+  public void testExpiryUsesClock() throws Exception {
+    ManualClock clock = new ManualClock(1000);
+    AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<>(clock);
+    AtomicInteger calls = new AtomicInteger();
+    
+    assertEquals(1, cache.get("key", () -> Future.succeededFuture(cache.entry(calls.incrementAndGet(), 2000))).result());
+    assertEquals(1, cache.get("key", () -> Future.succeededFuture(cache.entry(calls.incrementAndGet(), 2000))).result());
+    assertEquals(1, calls.get());
+    
+    clock.millis = 1999;
+    assertEquals(1, cache.get("key", () -> Future.succeededFuture(cache.entry(calls.incrementAndGet(), 3000))).result());
+    
+    clock.millis = 2000;
+    assertEquals(2, cache.get("key", () -> Future.succeededFuture(cache.entry(calls.incrementAndGet(), 3000))).result());
+    assertEquals(2, calls.get());
+  }
+  
+  @Test
+  public void testJfrEvents() throws Exception {
+    AsyncLoadingCache<String, Integer> cache = new AsyncLoadingCache<>();
+    
+    // Not recorded
+    assertEquals(1, cache.get("before", () -> Future.succeededFuture(cache.entry(1, Long.MAX_VALUE))).result());
+    
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(CacheLoadEvent.NAME).withoutThreshold();
+      recording.start();
+      
+      Promise<TimedObject<Integer>> promise = Promise.promise();
+      Future<Integer> first = cache.get("jfr", () -> promise.future());
+      Future<Integer> second = cache.get("jfr", () -> Future.failedFuture("Should not be called"));
+      promise.complete(cache.entry(2, 1234567));
+      assertEquals(2, first.result());
+      assertEquals(2, second.result());
+      assertTrue(cache.get("failed", () -> Future.failedFuture("Failed")).failed());
+      assertTrue(cache.get("thrown", () -> {
+        throw new IllegalStateException("Thrown");
+      }).failed());
+      
+      recording.stop();
+      Path file = Files.createTempFile("AsyncLoadingCacheTest", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+      Files.delete(file);
+    }
+    
+    assertEquals(3, events.size());
+    assertEquals("jfr", events.get(0).getString("key"));
+    assertTrue(events.get(0).getBoolean("succeeded"));
+    assertEquals(2, events.get(0).getInt("waiters"));
+    assertEquals(1234567, events.get(0).getInstant("expiry").toEpochMilli());
+    assertEquals("failed", events.get(1).getString("key"));
+    assertFalse(events.get(1).getBoolean("succeeded"));
+    assertEquals(1, events.get(1).getInt("waiters"));
+    assertEquals("thrown", events.get(2).getString("key"));
+    assertFalse(events.get(2).getBoolean("succeeded"));
+  }
 }
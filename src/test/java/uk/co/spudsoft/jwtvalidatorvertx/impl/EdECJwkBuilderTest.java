@@ -16,9 +16,16 @@
  */
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
 
 
 /**
@@ -35,4 +42,23 @@ public class EdECJwkBuilderTest {
     });
   }
   
+  @Test
+  public void testRoundTrip() throws Exception {
+    EdECJwkBuilder builder = new EdECJwkBuilder();
+    byte[] input = "input".getBytes(StandardCharsets.UTF_8);
+    for (String curve : new String[] {"Ed25519", "Ed448"}) {
+      // Enough keys that some will have a y with leading zeros and some an odd x
+      for (int i = 0; i < 64; ++i) {
+        KeyPair keyPair = KeyPairGenerator.getInstance(curve).genKeyPair();
+        Signature signer = Signature.getInstance(curve);
+        signer.initSign(keyPair.getPrivate());
+        signer.update(input);
+        byte[] signature = signer.sign();
+        
+        JWK jwk = new JWK(builder.toJson("kid", "EdDSA", keyPair.getPublic()));
+        assertTrue(JdkSignatureVerifier.verify(JsonWebAlgorithm.EdDSA, jwk.publicKey(), signature, input), curve + " key " + i);
+      }
+    }
+  }
+  
 }
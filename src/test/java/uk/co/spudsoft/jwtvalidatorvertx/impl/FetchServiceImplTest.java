@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.FetchService;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetKnownJwksHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.TimedObject;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.HttpFetchEvent;
+
+/**
+ *
+ * @author jtalbut
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@ExtendWith(VertxExtension.class)
+public class FetchServiceImplTest {
+  
+  private static final Logger logger = LoggerFactory.getLogger(FetchServiceImplTest.class);
+  
+  private int port;
+  private ExecutorService exeSvc;
+  private HttpServer server;
+  private final AtomicInteger jsonCount = new AtomicInteger();
+  private final AtomicInteger jwksCount = new AtomicInteger();
+  private final AtomicInteger missingCount = new AtomicInteger();
+  
+  private static final String JWKS = new JsonObject()
+          .put("keys", new JsonArray()
+                  .add(new JsonObject()
+                          .put("kty", "EC")
+                          .put("kid", "key-1")
+                          .put("crv", "P-256")
+                          .put("x", "OvCytZ9aXtRyLPDvcqW4wxCcNoay3laYl5lmVnuZA6I")
+                          .put("y", "gh-UHTtdxKc8uCl63NDYVPH9EFlV39WxUtj13ojcKnE")
+                  )
+          ).encode();
+  
+  private void sendResponse(HttpExchange exchange, int responseCode, String body) throws IOException {
+    byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Cache-Control", "max-age=100");
+    exchange.sendResponseHeaders(responseCode, bodyBytes.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(bodyBytes);
+    }
+  }
+  
+  private static void pause(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException ex) {
+    }
+  }
+  
+  @BeforeAll
+  final void createServer() throws IOException {
+    try (ServerSocket s = new ServerSocket(0)) {
+      port = s.getLocalPort();
+    }
+    exeSvc = Executors.newFixedThreadPool(4);
+    server = HttpServer.create(new InetSocketAddress(port), 8);
+    server.setExecutor(exeSvc);
+    server.createContext("/json", exchange -> {
+      logger.debug("Got request to {}", exchange.getRequestURI());
+      jsonCount.incrementAndGet();
+      pause(200);
+      sendResponse(exchange, 200, "{\"value\":\"" + exchange.getRequestURI().getPath() + "\"}");
+    });
+    server.createContext("/jwks", exchange -> {
+      logger.debug("Got request to {}", exchange.getRequestURI());
+      jwksCount.incrementAndGet();
+      pause(200);
+      sendResponse(exchange, 200, JWKS);
+    });
+    server.createContext("/missing", exchange -> {
+      logger.debug("Got request to {}", exchange.getRequestURI());
+      missingCount.incrementAndGet();
+      sendResponse(exchange, 404, "Not found");
+    });
+    server.start();
+  }
+  
+  @AfterAll
+  final void shutdown() {
+    if (server != null) {
+      server.stop(1);
+    }
+    if (exeSvc != null) {
+      exeSvc.shutdownNow();
+    }
+  }
+  
+  @BeforeEach
+  void resetCounts() {
+    jsonCount.set(0);
+    jwksCount.set(0);
+    missingCount.set(0);
+  }
+  
+  @Test
+  public void testGetJsonCoalesced(Vertx vertx, VertxTestContext testContext) {
+    FetchService fetchService = FetchService.create(WebClient.create(vertx), Duration.ofMinutes(1));
+    String url = "http://localhost:" + port + "/json/coalesced";
+    
+    List<Future<TimedObject<JsonObject>>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; ++i) {
+      futures.add(fetchService.getJson(url));
+    }
+    Future.all(futures)
+            .compose(cf -> {
+              testContext.verify(() -> {
+                assertEquals(1, jsonCount.get());
+                for (Future<TimedObject<JsonObject>> future : futures) {
+                  assertEquals("/json/coalesced", future.result().getValue().getString("value"));
+                  assertTrue(future.result().getExpiryMs() > System.currentTimeMillis() + 90000);
+                }
+              });
+              return fetchService.getJson(url);
+            })
+            .onComplete(testContext.succeeding(tjo -> {
+              testContext.verify(() -> {
+                assertEquals(1, jsonCount.get());
+              });
+              fetchService.close();
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testGetJwkSet(Vertx vertx, VertxTestContext testContext) {
+    FetchService fetchService = FetchService.builder()
+            .setDefaultCacheDuration(Duration.ofMinutes(1))
+            .setConnectTimeout(Duration.ofSeconds(5))
+            .setRequestTimeout(Duration.ofSeconds(5))
+            .setMaxPoolSize(2)
+            .setUserAgent("test")
+            .build(vertx);
+    String url = "http://localhost:" + port + "/jwks";
+    
+    fetchService.getJwkSet(url, "key-1")
+            .compose(tjs -> {
+              testContext.verify(() -> {
+                assertEquals(1, jwksCount.get());
+                assertTrue(tjs.getValue().contains("key-1"));
+              });
+              return fetchService.getJwkSet(url, "key-1");
+            })
+            .compose(tjs -> {
+              testContext.verify(() -> {
+                assertEquals(1, jwksCount.get());
+              });
+              return fetchService.getJwkSet(url, null);
+            })
+            .compose(tjs -> {
+              testContext.verify(() -> {
+                assertEquals(1, jwksCount.get());
+              });
+              // An unknown kid always results in a new request, in case the keys have been rotated
+              return fetchService.getJwkSet(url, "key-2");
+            })
+            .onComplete(testContext.succeeding(tjs -> {
+              testContext.verify(() -> {
+                assertEquals(2, jwksCount.get());
+              });
+              fetchService.close();
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testValidationListener(Vertx vertx, VertxTestContext testContext) {
+    List<String> fetches = Collections.synchronizedList(new ArrayList<>());
+    FetchService fetchService = FetchService.builder()
+            .setValidationListener(new ValidationListener() {
+              @Override
+              public void fetchCompleted(Stage stage, String url, long durationNanos, boolean succeeded) {
+                fetches.add(stage + " " + url.substring(url.lastIndexOf('/')) + " " + succeeded);
+              }
+            })
+            .build(vertx);
+    String base = "http://localhost:" + port;
+    
+    fetchService.getJson(base + "/json/listener")
+            .compose(tjo -> fetchService.getJson(base + "/json/listener"))
+            .compose(tjo -> fetchService.getJwkSet(base + "/jwks", "key-1"))
+            .compose(tjs -> fetchService.getJson(base + "/missing"))
+            .onComplete(testContext.failing(ex -> {
+              testContext.verify(() -> {
+                // The second request for the JSON was satisfied from the cache, so is not reported
+                assertEquals(Arrays.asList("DISCOVERY /listener true", "JWKS_FETCH /jwks true", "DISCOVERY /missing false"), fetches);
+              });
+              fetchService.close();
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testJfrEvents(Vertx vertx, VertxTestContext testContext) throws Exception {
+    Recording recording = new Recording();
+    recording.enable(HttpFetchEvent.NAME).withoutThreshold();
+    recording.start();
+    
+    FetchService fetchService = FetchService.create(WebClient.create(vertx), Duration.ofMinutes(1));
+    String base = "http://localhost:" + port;
+    long start = System.currentTimeMillis();
+    
+    fetchService.getJson(base + "/json/jfr")
+            .compose(tjo -> fetchService.getJson(base + "/missing"))
+            .onComplete(testContext.failing(ex -> {
+              testContext.verify(() -> {
+                recording.stop();
+                Path file = Files.createTempFile("FetchServiceImplTest", ".jfr");
+                recording.dump(file);
+                recording.close();
+                List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                        .filter(event -> event.getString("url").startsWith(base))
+                        .collect(Collectors.toList());
+                Files.delete(file);
+                
+                assertEquals(2, events.size());
+                assertEquals(base + "/json/jfr", events.get(0).getString("url"));
+                assertEquals(200, events.get(0).getInt("statusCode"));
+                assertTrue(events.get(0).getLong("bytes") > 0);
+                assertTrue(events.get(0).getInstant("expiry").toEpochMilli() >= start + 100000);
+                assertEquals(base + "/missing", events.get(1).getString("url"));
+                assertEquals(404, events.get(1).getInt("statusCode"));
+                assertEquals("Request to " + base + "/missing returned 404", events.get(1).getString("failure"));
+              });
+              fetchService.close();
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testFailuresNotCached(Vertx vertx, VertxTestContext testContext) {
+    FetchService fetchService = FetchService.create(WebClient.create(vertx), Duration.ofMinutes(1));
+    String url = "http://localhost:" + port + "/missing";
+    
+    fetchService.getJson(url)
+            .recover(ex -> {
+              testContext.verify(() -> {
+                assertEquals(1, missingCount.get());
+              });
+              return fetchService.getJson(url);
+            })
+            .onComplete(testContext.failing(ex -> {
+              testContext.verify(() -> {
+                assertEquals(2, missingCount.get());
+              });
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testSharedBetweenHandlers(Vertx vertx, VertxTestContext testContext) {
+    FetchService fetchService = FetchService.create(WebClient.create(vertx), Duration.ofMinutes(1));
+    List<String> urls = Arrays.asList("http://localhost:" + port + "/jwks");
+    
+    JsonWebKeySetKnownJwksHandler handler1 = JsonWebKeySetKnownJwksHandler.create(fetchService, urls);
+    JsonWebKeySetKnownJwksHandler handler2 = JsonWebKeySetKnownJwksHandler.create(fetchService, urls);
+    
+    Future.all(handler1.findJwk(null, "key-1"), handler2.findJwk(null, "key-1"))
+            .onComplete(testContext.succeeding(cf -> {
+              testContext.verify(() -> {
+                assertEquals(1, jwksCount.get());
+              });
+              testContext.completeNow();
+            }));
+  }
+  
+}
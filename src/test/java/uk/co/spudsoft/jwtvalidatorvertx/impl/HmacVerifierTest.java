@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class HmacVerifierTest {
+  
+  private static final byte[] INPUT = "eyJhbGciOiJIUzI1NiJ9.eyJzdWIiOiJib2IifQ".getBytes(StandardCharsets.UTF_8);
+  
+  private static byte[] secret(int length) {
+    byte[] secret = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      secret[i] = (byte) i;
+    }
+    return secret;
+  }
+  
+  private static byte[] sign(JsonWebAlgorithm algorithm, byte[] secret, byte[] input) throws Exception {
+    Mac mac = Mac.getInstance(algorithm.getJdkAlgName());
+    mac.init(new SecretKeySpec(secret, algorithm.getJdkAlgName()));
+    return mac.doFinal(input);
+  }
+  
+  @Test
+  public void testVerify() throws Exception {
+    for (JsonWebAlgorithm algorithm : new JsonWebAlgorithm[] {JsonWebAlgorithm.HS256, JsonWebAlgorithm.HS384, JsonWebAlgorithm.HS512}) {
+      byte[] secret = secret(algorithm.getMinKeyLength() / 8);
+      HmacVerifier verifier = HmacVerifier.create(algorithm, secret);
+      assertSame(algorithm, verifier.getAlgorithm());
+      byte[] signature = sign(algorithm, secret, INPUT);
+      assertTrue(verifier.verify(signature, INPUT));
+      assertTrue(verifier.verify(signature, INPUT));
+      
+      byte[] tampered = signature.clone();
+      tampered[0] ^= 1;
+      assertFalse(verifier.verify(tampered, INPUT));
+      assertFalse(verifier.verify(new byte[3], INPUT));
+      assertFalse(verifier.verify(sign(algorithm, secret(secret.length + 1), INPUT), INPUT));
+    }
+  }
+  
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.create(JsonWebAlgorithm.RS256, secret(32)));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.create(null, secret(32)));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.create(JsonWebAlgorithm.HS256, null));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.create(JsonWebAlgorithm.HS256, secret(31)));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.create(JsonWebAlgorithm.HS512, secret(32)));
+  }
+  
+  private static JsonObject octJson(String alg, byte[] secret) {
+    JsonObject json = new JsonObject()
+            .put("kty", "oct")
+            .put("kid", "key")
+            .put("k", Base64.getUrlEncoder().withoutPadding().encodeToString(secret));
+    if (alg != null) {
+      json.put("alg", alg);
+    }
+    return json;
+  }
+  
+  @Test
+  public void testForJwk() throws Exception {
+    byte[] secret = secret(48);
+    JWK jwk = HmacVerifier.createJwk(octJson("HS384", secret));
+    HmacVerifier verifier = HmacVerifier.forJwk(jwk, JsonWebAlgorithm.HS384);
+    assertSame(JsonWebAlgorithm.HS384, verifier.getAlgorithm());
+    assertSame(verifier, HmacVerifier.forJwk(jwk, JsonWebAlgorithm.HS384));
+    assertTrue(verifier.verify(sign(JsonWebAlgorithm.HS384, secret, INPUT), INPUT));
+    
+    // The algorithm comes from the key, not from the first token seen
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.forJwk(jwk, JsonWebAlgorithm.HS256));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.forJwk(jwk, JsonWebAlgorithm.HS512));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.forJwk(jwk, JsonWebAlgorithm.RS384));
+    
+    // JWKs that have not been checked cannot be used
+    JWK unchecked = new JWK(octJson("HS256", secret(1)));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.forJwk(unchecked, JsonWebAlgorithm.HS256));
+  }
+  
+  @Test
+  public void testCreateJwkBadArguments() {
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson(null, secret(32))));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson("HS123", secret(32))));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson("RS256", secret(32))));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson("HS256", secret(31))));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson("HS512", secret(32))));
+    assertThrows(IllegalArgumentException.class, () -> HmacVerifier.createJwk(octJson("HS256", secret(32)).put("k", (String) null)));
+  }
+  
+  @Test
+  public void testConcurrentUse() throws Exception {
+    byte[] secret = secret(32);
+    HmacVerifier verifier = HmacVerifier.create(JsonWebAlgorithm.HS256, secret);
+    byte[] signature = sign(JsonWebAlgorithm.HS256, secret, INPUT);
+    AtomicInteger failures = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; ++t) {
+      Thread thread = new Thread(() -> {
+        try {
+          for (int i = 0; i < 10000; ++i) {
+            if (!verifier.verify(signature, INPUT)) {
+              failures.incrementAndGet();
+            }
+          }
+        } catch (Exception ex) {
+          failures.incrementAndGet();
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, failures.get());
+  }
+  
+}
@@ -20,6 +20,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -62,6 +68,78 @@ public class IssuerAcceptabilityHandlerImplTest {
     assertTrue(iah.isAcceptable("ted"));
     assertFalse(iah.isAcceptable("ringo"));
     
+    iah.close();
+  }
+  
+  @Test
+  public void testFileReloadedInBackground() throws Exception {
+    File file = new File("target/temp/issuers-background");
+    file.getParentFile().mkdirs();
+    try (FileOutputStream strm = new FileOutputStream(file)) {
+      strm.write("alice\n".getBytes(StandardCharsets.UTF_8));
+    }
+    file.setLastModified(System.currentTimeMillis() - 10000);
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("https://.*\\.example\\.com/"), file.toString(), Duration.ofMillis(50));
+    
+    assertTrue(iah.isAcceptable("alice"));
+    assertTrue(iah.isAcceptable("https://a.example.com/"));
+    assertFalse(iah.isAcceptable("bob"));
+    
+    try (FileOutputStream strm = new FileOutputStream(file)) {
+      strm.write("bob\n".getBytes(StandardCharsets.UTF_8));
+    }
+    await().atMost(Duration.ofSeconds(10)).until(() -> iah.isAcceptable("bob"));
+    assertFalse(iah.isAcceptable("alice"));
+    
+    file.delete();
+    await().atMost(Duration.ofSeconds(10)).until(() -> !iah.isAcceptable("bob"));
+    assertTrue(iah.isAcceptable("https://b.example.com/"));
+    
+    iah.close();
+  }
+  
+  @Test
+  public void testFileLoadedByConstructorAndClose() throws Exception {
+    File file = new File("target/temp/issuers-close");
+    file.getParentFile().mkdirs();
+    try (FileOutputStream strm = new FileOutputStream(file)) {
+      strm.write("alice\n".getBytes(StandardCharsets.UTF_8));
+    }
+    // Loaded immediately, even though the file has only just been written
+    Set<Thread> before = watcherThreads();
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(null, file.toString(), Duration.ofMillis(10));
+    assertTrue(iah.isAcceptable("alice"));
+    Set<Thread> watchers = watcherThreads();
+    watchers.removeAll(before);
+    assertEquals(1, watchers.size());
+    
+    iah.close();
+    await().atMost(Duration.ofSeconds(10)).until(() -> watchers.stream().noneMatch(Thread::isAlive));
+    try (FileOutputStream strm = new FileOutputStream(file)) {
+      strm.write("bob\n".getBytes(StandardCharsets.UTF_8));
+    }
+    file.setLastModified(System.currentTimeMillis() - 10000);
+    Thread.sleep(200);
+    assertTrue(iah.isAcceptable("alice"));
+    assertFalse(iah.isAcceptable("bob"));
+    
+    // Closing a handler without a file does nothing
+    IssuerAcceptabilityHandler.create(Arrays.asList("https://.*"), null, Duration.ofMillis(10)).close();
+  }
+  
+  private static Set<Thread> watcherThreads() {
+    return Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> "issuer-file-watcher".equals(t.getName()))
+            .collect(Collectors.toCollection(HashSet::new));
+  }
+  
+  @Test
+  public void testMissingDirectory() throws Exception {
+    File file = new File("target/temp/no-such-dir/issuers");
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("https://.*"), file.toString(), Duration.ofMillis(10));
+    assertFalse(iah.isAcceptable("alice"));
+    assertTrue(iah.isAcceptable("https://a.example.com/"));
+    iah.close();
   }
   
 }
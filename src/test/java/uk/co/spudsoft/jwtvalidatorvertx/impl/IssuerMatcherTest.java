@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class IssuerMatcherTest {
+  
+  private static final Logger logger = LoggerFactory.getLogger(IssuerMatcherTest.class);
+  
+  private static String prefix(String re) {
+    StringBuilder builder = new StringBuilder();
+    IssuerMatcher.literalPrefix(Pattern.compile(re), builder);
+    return builder.toString();
+  }
+  
+  private static boolean isLiteral(String re) {
+    return IssuerMatcher.literalPrefix(Pattern.compile(re), new StringBuilder());
+  }
+  
+  private static List<Pattern> compile(String... res) {
+    return Arrays.stream(res).map(Pattern::compile).collect(Collectors.toList());
+  }
+  
+  @Test
+  public void testLiteralPrefix() {
+    assertTrue(isLiteral("https://example\\.com/"));
+    assertEquals("https://example.com/", prefix("https://example\\.com/"));
+    assertEquals("https://example.com/", prefix("^https://example\\.com/"));
+    assertFalse(isLiteral("https://example.com/"));
+    assertEquals("https://example", prefix("https://example.com/"));
+    assertEquals("https://tenant", prefix("https://tenant\\d+\\.example\\.com/"));
+    assertEquals("https://tenant", prefix("https://tenant[0-9]+/"));
+    assertEquals("https://tenan", prefix("https://tenant?/"));
+    assertEquals("https://tenan", prefix("https://tenant*/"));
+    assertEquals("https://tenan", prefix("https://tenant{0,2}/"));
+    assertEquals("https://tenant", prefix("https://tenant+/"));
+    assertEquals("https://tenant", prefix("https://tenant\\.?/"));
+    assertEquals("https://a", prefix("https://a(b|c)/"));
+    assertEquals("abc", prefix("abc$"));
+    assertFalse(isLiteral("abc$"));
+    assertEquals("", prefix("https://a|https://b"));
+    assertEquals("", prefix("(?i)https://a"));
+    assertEquals("", prefix("\\Qhttps://a\\E"));
+    assertEquals("", prefix(".*"));
+    
+    StringBuilder builder = new StringBuilder();
+    assertFalse(IssuerMatcher.literalPrefix(Pattern.compile("abc", Pattern.CASE_INSENSITIVE), builder));
+    assertEquals("", builder.toString());
+  }
+  
+  @Test
+  public void testHasTopLevelAlternation() {
+    assertTrue(IssuerMatcher.hasTopLevelAlternation("a|b"));
+    assertFalse(IssuerMatcher.hasTopLevelAlternation("(a|b)"));
+    assertFalse(IssuerMatcher.hasTopLevelAlternation("a[|]b"));
+    assertFalse(IssuerMatcher.hasTopLevelAlternation("a\\|b"));
+    assertTrue(IssuerMatcher.hasTopLevelAlternation("(a)|b"));
+  }
+  
+  @Test
+  public void testMatches() {
+    IssuerMatcher matcher = IssuerMatcher.compile(compile(
+            "https://exact\\.example\\.com/"
+            , "https://tenant\\d+\\.example\\.com/"
+            , "https://(alpha|beta)\\.example\\.com/"
+            , "https://other\\.example\\.com/realms/.*"
+            , "(?i)https://SHOUTY\\.example\\.com/"
+            , "https://a|https://b"
+            , "https://x?y/"
+    ), 10);
+    assertEquals(6, matcher.getPatternCount());
+    for (int i = 0; i < 2; ++i) {
+      assertTrue(matcher.matches("https://exact.example.com/"));
+      assertTrue(matcher.matches("https://tenant17.example.com/"));
+      assertTrue(matcher.matches("https://beta.example.com/"));
+      assertTrue(matcher.matches("https://other.example.com/realms/bob"));
+      assertTrue(matcher.matches("https://shouty.example.com/"));
+      assertTrue(matcher.matches("https://b"));
+      assertTrue(matcher.matches("https://y/"));
+      assertTrue(matcher.matches("https://xy/"));
+      assertFalse(matcher.matches("https://exact.example.com"));
+      assertFalse(matcher.matches("https://tenant.example.com/"));
+      assertFalse(matcher.matches("https://gamma.example.com/"));
+      assertFalse(matcher.matches("https://"));
+      assertFalse(matcher.matches(""));
+      assertFalse(matcher.matches(null));
+    }
+  }
+  
+  @Test
+  public void testMatchesLiteralsOnly() {
+    IssuerMatcher matcher = IssuerMatcher.compile(compile("https://exact\\.example\\.com/"), 0);
+    assertEquals(0, matcher.getPatternCount());
+    assertTrue(matcher.matches("https://exact.example.com/"));
+    assertFalse(matcher.matches("https://other.example.com/"));
+  }
+  
+  private static List<Pattern> tenantPatterns(int count) {
+    List<Pattern> patterns = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      switch (i % 3) {
+        case 0:
+          patterns.add(Pattern.compile("https://login\\.tenant" + i + "\\.example\\.com/"));
+          break;
+        case 1:
+          patterns.add(Pattern.compile("https://idp" + i + "\\.example\\.com/realms/[a-z]+"));
+          break;
+        default:
+          patterns.add(Pattern.compile("https://sso\\.example\\.com/t" + i + "/.*"));
+          break;
+      }
+    }
+    return patterns;
+  }
+  
+  private static List<String> issuers(int count) {
+    List<String> issuers = new ArrayList<>();
+    for (int i = 0; i < count; i += 7) {
+      issuers.add("https://login.tenant" + i + ".example.com/");
+      issuers.add("https://idp" + i + ".example.com/realms/bob");
+      issuers.add("https://sso.example.com/t" + i + "/x");
+      issuers.add("https://unknown" + i + ".example.com/");
+    }
+    return issuers;
+  }
+  
+  private static boolean linear(List<Pattern> patterns, String issuer) {
+    for (Pattern pattern : patterns) {
+      if (pattern.matcher(issuer).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Check that an IssuerMatcher gives the same results as a linear search, with and without the memo.
+   * <p>
+   * The performance of the two approaches is compared by IssuerMatcherBenchmark.
+   */
+  @Test
+  public void testEquivalentToLinearSearch() {
+    for (int count : new int[] {10, 200, 1000}) {
+      List<Pattern> patterns = tenantPatterns(count);
+      IssuerMatcher unmemoised = IssuerMatcher.compile(patterns, 0);
+      IssuerMatcher memoised = IssuerMatcher.compile(patterns, IssuerMatcher.DEFAULT_MEMO_SIZE);
+      for (int pass = 0; pass < 2; ++pass) {
+        for (String issuer : issuers(count + 10)) {
+          boolean expected = linear(patterns, issuer);
+          assertEquals(expected, unmemoised.matches(issuer), issuer);
+          assertEquals(expected, memoised.matches(issuer), issuer);
+        }
+      }
+    }
+  }
+  
+}
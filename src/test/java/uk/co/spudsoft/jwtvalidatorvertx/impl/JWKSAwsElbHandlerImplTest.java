@@ -20,6 +20,7 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
@@ -35,7 +36,10 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.AfterAll;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.BeforeAll;
@@ -46,6 +50,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetAwsElbHandler;
 import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
 
 /**
  *
@@ -61,6 +66,13 @@ public class JWKSAwsElbHandlerImplTest {
   private ExecutorService exeSvc;
   private HttpServer server;
   private AtomicInteger getCount = new AtomicInteger();
+  private AtomicInteger regionCount = new AtomicInteger();
+  private AtomicInteger slowCount = new AtomicInteger();
+  
+  private static final String PEM = "-----BEGIN PUBLIC KEY-----\n" +
+                      "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEOvCytZ9aXtRyLPDvcqW4wxCcNoay\n" +
+                      "3laYl5lmVnuZA6KCH5QdO13Epzy4KXrc0NhU8f0QWVXf1bFS2PXeiNwqcQ==\n" +
+                      "-----END PUBLIC KEY-----";
   
   private void sendResponse(HttpExchange exchange, int responseCode, String body) throws IOException {
     byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
@@ -76,22 +88,32 @@ public class JWKSAwsElbHandlerImplTest {
       port = s.getLocalPort();
     }
     logger.debug("Starting ELB handler on {}", port);
-    exeSvc = Executors.newFixedThreadPool(2);
-    server = HttpServer.create(new InetSocketAddress(port), 2);
+    exeSvc = Executors.newFixedThreadPool(4);
+    server = HttpServer.create(new InetSocketAddress(port), 4);
     server.setExecutor(exeSvc);
     server.createContext("/keys", exchange -> {
       logger.debug("Got request to {}", exchange.getRequestURI());
       if ("/keys/8dcb467a-d467-4ba3-99de-5c77d15387f4".equals(exchange.getRequestURI().getPath())) {
-        String pem = "-----BEGIN PUBLIC KEY-----\n" +
-                      "MFkwEwYHKoZIzj0CAQYIKoZIzj0DAQcDQgAEOvCytZ9aXtRyLPDvcqW4wxCcNoay\n" +
-                      "3laYl5lmVnuZA6KCH5QdO13Epzy4KXrc0NhU8f0QWVXf1bFS2PXeiNwqcQ==\n" +
-                      "-----END PUBLIC KEY-----";
         getCount.incrementAndGet();
-        sendResponse(exchange, 200, pem);        
+        sendResponse(exchange, 200, PEM);        
       } else {
         sendResponse(exchange, 404, "Not found");
       }
     });
+    server.createContext("/eu-west-2", exchange -> {
+      logger.debug("Got request to {}", exchange.getRequestURI());
+      regionCount.incrementAndGet();
+      sendResponse(exchange, 200, PEM);        
+    });
+    server.createContext("/slow", exchange -> {
+      logger.debug("Got request to {}", exchange.getRequestURI());
+      slowCount.incrementAndGet();
+      try {
+        Thread.sleep(2000);
+      } catch (InterruptedException ex) {
+      }
+      sendResponse(exchange, 200, PEM);        
+    });
     server.start();
   }
   
@@ -148,4 +170,129 @@ public class JWKSAwsElbHandlerImplTest {
             .andThen(testContext.failingThenComplete());
   }
   
+  @Test
+  public void testRegionFromSigner() {
+    assertEquals("eu-west-2", JWKSAwsElbHandlerImpl.regionFromSigner("arn:aws:elasticloadbalancing:eu-west-2:123456789012:loadbalancer/app/my-lb/50dc6c495c0c9188"));
+    assertNull(JWKSAwsElbHandlerImpl.regionFromSigner(null));
+    assertNull(JWKSAwsElbHandlerImpl.regionFromSigner("bob"));
+    assertNull(JWKSAwsElbHandlerImpl.regionFromSigner("arn:aws:elasticloadbalancing::123456789012:loadbalancer"));
+  }
+  
+  @Test
+  public void testOrderForRegion() {
+    List<String> urls = Arrays.asList(
+            "https://public-keys.auth.elb.us-east-1.amazonaws.com/"
+            , "https://public-keys.auth.elb.eu-west-2.amazonaws.com/"
+            , "https://public-keys.auth.elb.eu-west-1.amazonaws.com/"
+    );
+    assertEquals(urls, JWKSAwsElbHandlerImpl.orderForRegion(urls, null));
+    assertEquals(urls, JWKSAwsElbHandlerImpl.orderForRegion(urls, "us-east-1"));
+    assertEquals(urls, JWKSAwsElbHandlerImpl.orderForRegion(urls, "ap-south-1"));
+    assertEquals(Arrays.asList(
+            "https://public-keys.auth.elb.eu-west-1.amazonaws.com/"
+            , "https://public-keys.auth.elb.us-east-1.amazonaws.com/"
+            , "https://public-keys.auth.elb.eu-west-2.amazonaws.com/"
+    ), JWKSAwsElbHandlerImpl.orderForRegion(urls, "eu-west-1"));
+  }
+  
+  @Test
+  public void testHedgedFindJwkUsesSignerRegion(Vertx vertx, VertxTestContext testContext) {
+    
+    WebClient webClient = WebClient.create(vertx);
+
+    List<String> urls = Arrays.asList(
+                    "http://localhost:" + port + "/slow"
+                    , "http://localhost:" + port + "/eu-west-2/"
+            );
+    
+    JsonWebKeySetHandler albHandler = JsonWebKeySetAwsElbHandler.create(vertx, webClient, urls, Duration.ofHours(1), Duration.ofSeconds(10));
+    Jwt jwt = new Jwt(
+            new JsonObject()
+                    .put("kid", "region-kid")
+                    .put("signer", "arn:aws:elasticloadbalancing:eu-west-2:123456789012:loadbalancer/app/my-lb/50dc6c495c0c9188")
+            , null, null, null);
+    
+    int slowBefore = slowCount.get();
+    int regionBefore = regionCount.get();
+    albHandler.findJwk(null, jwt)
+            .onComplete(testContext.succeeding(jwk -> {
+              testContext.verify(() -> {
+                assertNotNull(jwk);
+                assertEquals("ES256", jwk.getAlgorithm());
+                assertEquals(regionBefore + 1, regionCount.get());
+                assertEquals(slowBefore, slowCount.get());
+              });
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testHedgedFindJwkHedgesSlowPrimary(Vertx vertx, VertxTestContext testContext) {
+    
+    WebClient webClient = WebClient.create(vertx);
+
+    List<String> urls = Arrays.asList(
+                    "http://localhost:" + port + "/slow"
+                    , "http://localhost:" + port + "/eu-west-2/"
+            );
+    
+    JsonWebKeySetHandler albHandler = JsonWebKeySetAwsElbHandler.create(vertx, webClient, urls, Duration.ofHours(1), Duration.ofMillis(100));
+    
+    int slowBefore = slowCount.get();
+    int regionBefore = regionCount.get();
+    long start = System.currentTimeMillis();
+    albHandler.findJwk(null, "hedged-kid")
+            .onComplete(testContext.succeeding(jwk -> {
+              testContext.verify(() -> {
+                assertNotNull(jwk);
+                assertEquals(slowBefore + 1, slowCount.get());
+                assertEquals(regionBefore + 1, regionCount.get());
+                assertThat(System.currentTimeMillis() - start, lessThan(2000L));
+              });
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testHedgedFindJwkMovesOnAfterFailure(Vertx vertx, VertxTestContext testContext) {
+    
+    WebClient webClient = WebClient.create(vertx);
+
+    List<String> urls = Arrays.asList(
+                    "http://localhost:" + port + "/bad/"
+                    , "http://localhost:" + port + "/eu-west-2/"
+                    , "http://localhost:" + port + "/slow/"
+            );
+    
+    JsonWebKeySetHandler albHandler = JsonWebKeySetAwsElbHandler.create(vertx, webClient, urls, Duration.ofHours(1), Duration.ofSeconds(10));
+    
+    int slowBefore = slowCount.get();
+    int regionBefore = regionCount.get();
+    albHandler.findJwk(null, "failover-kid")
+            .onComplete(testContext.succeeding(jwk -> {
+              testContext.verify(() -> {
+                assertNotNull(jwk);
+                assertEquals(regionBefore + 1, regionCount.get());
+                assertEquals(slowBefore, slowCount.get());
+              });
+              testContext.completeNow();
+            }));
+  }
+  
+  @Test
+  public void testHedgedFindJwkFailsWhenAllFail(Vertx vertx, VertxTestContext testContext) {
+    
+    WebClient webClient = WebClient.create(vertx);
+
+    List<String> urls = Arrays.asList(
+                    "http://localhost:" + port + "/bad/"
+                    , "http://localhost:" + port + "/keys/"
+            );
+    
+    JsonWebKeySetHandler albHandler = JsonWebKeySetAwsElbHandler.create(vertx, webClient, urls, Duration.ofHours(1), Duration.ofMillis(50));
+    
+    albHandler.findJwk(null, "missing")
+            .andThen(testContext.failingThenComplete());
+  }
+  
 }
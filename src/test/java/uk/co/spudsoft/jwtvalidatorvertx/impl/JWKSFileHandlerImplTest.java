@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.read.ListAppender;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetFileHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JWKSFileHandlerImplTest {
+  
+  private static String jwks(String kid, String alg, PublicKey key) throws Exception {
+    JsonObject jwk = JwkBuilder.get(key).toJson(kid, alg, key);
+    return new JsonObject().put("keys", new JsonArray().add(jwk)).encode();
+  }
+  
+  private static String pem(PublicKey key) {
+    return "-----BEGIN PUBLIC KEY-----\n"
+            + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(key.getEncoded())
+            + "\n-----END PUBLIC KEY-----\n";
+  }
+  
+  private static void writeAtomically(Path target, String content) throws Exception {
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    Files.writeString(temp, content);
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  @Test
+  public void testClasspath() throws Exception {
+    try (JsonWebKeySetFileHandler handler = JsonWebKeySetFileHandler.create(
+            Arrays.asList("classpath:jwks/8dcb467a-d467-4ba3-99de-5c77d15387f4.pem", "classpath:jwks/missing.json")
+            , false
+    )) {
+      handler.optimize();
+      assertEquals("ES256", handler.findJwk(null, "8dcb467a-d467-4ba3-99de-5c77d15387f4").result().getAlgorithm());
+      assertTrue(handler.findJwk(null, "missing").failed());
+      assertTrue(handler.findJwk(null, (String) null).failed());
+    }
+  }
+  
+  @Test
+  public void testWatchedDirectory() throws Exception {
+    File dir = new File("target/temp/JWKSFileHandlerImplTest");
+    if (dir.exists()) {
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+    }
+    dir.mkdirs();
+    
+    KeyPairGenerator rsaGen = KeyPairGenerator.getInstance("RSA");
+    rsaGen.initialize(2048);
+    KeyPair rsa = rsaGen.genKeyPair();
+    
+    KeyPairGenerator ecGen = KeyPairGenerator.getInstance("EC");
+    ecGen.initialize(new ECGenParameterSpec("secp384r1"));
+    KeyPair ec = ecGen.genKeyPair();
+    
+    writeAtomically(dir.toPath().resolve("first.json"), jwks("first", "RS256", rsa.getPublic()));
+    
+    try (JsonWebKeySetFileHandler handler = JsonWebKeySetFileHandler.create(Collections.singletonList(dir.toString()), true)) {
+      assertEquals("RS256", handler.findJwk(null, "first").result().getAlgorithm());
+      assertTrue(handler.findJwk(null, "second").failed());
+      
+      writeAtomically(dir.toPath().resolve("second.ES384.pem"), pem(ec.getPublic()));
+      await().atMost(Duration.ofSeconds(20)).until(() -> handler.findJwk(null, "second").succeeded());
+      assertEquals("ES384", handler.findJwk(null, "second").result().getAlgorithm());
+      
+      Files.delete(dir.toPath().resolve("first.json"));
+      await().atMost(Duration.ofSeconds(20)).until(() -> handler.findJwk(null, "first").failed());
+      assertTrue(handler.findJwk(null, "second").succeeded());
+    }
+  }
+  
+  @Test
+  public void testUnparseableFileKeepsPreviousKeys() throws Exception {
+    File dir = new File("target/temp/JWKSFileHandlerImplTest-unparseable");
+    if (dir.exists()) {
+      for (File file : dir.listFiles()) {
+        file.delete();
+      }
+    }
+    dir.mkdirs();
+    
+    KeyPairGenerator gen = KeyPairGenerator.getInstance("Ed25519");
+    writeAtomically(dir.toPath().resolve("one.json"), jwks("one", "EdDSA", gen.genKeyPair().getPublic()));
+    writeAtomically(dir.toPath().resolve("two.json"), jwks("two", "EdDSA", gen.genKeyPair().getPublic()));
+    
+    try (JsonWebKeySetFileHandler handler = JsonWebKeySetFileHandler.create(Collections.singletonList(dir.toString()), false)) {
+      assertTrue(handler.findJwk(null, "one").succeeded());
+      assertTrue(handler.findJwk(null, "two").succeeded());
+      
+      // A partially written file keeps its previous keys, and does not prevent the other files being reloaded
+      writeAtomically(dir.toPath().resolve("one.json"), "{\"keys\":[");
+      writeAtomically(dir.toPath().resolve("two.json"), jwks("three", "EdDSA", gen.genKeyPair().getPublic()));
+      handler.reload();
+      assertTrue(handler.findJwk(null, "one").succeeded());
+      assertTrue(handler.findJwk(null, "two").failed());
+      assertTrue(handler.findJwk(null, "three").succeeded());
+      
+      writeAtomically(dir.toPath().resolve("one.json"), jwks("four", "EdDSA", gen.genKeyPair().getPublic()));
+      handler.reload();
+      assertTrue(handler.findJwk(null, "one").failed());
+      assertTrue(handler.findJwk(null, "four").succeeded());
+      
+      // A new file that cannot be parsed contributes nothing
+      writeAtomically(dir.toPath().resolve("five.json"), "not json");
+      handler.reload();
+      assertTrue(handler.findJwk(null, "three").succeeded());
+      assertTrue(handler.findJwk(null, "four").succeeded());
+    }
+  }
+  
+  @Test
+  public void testRejectedSharedSecretNotLogged() throws Exception {
+    File dir = new File("target/temp/JWKSFileHandlerImplTest-secret");
+    dir.mkdirs();
+    Path file = dir.toPath().resolve("keys.jwks");
+    
+    String secret = Base64.getUrlEncoder().withoutPadding().encodeToString("short-secret-value".getBytes(StandardCharsets.UTF_8));
+    JsonArray keys = new JsonArray()
+            .add(new JsonObject().put("kty", "oct").put("kid", "short").put("alg", "HS256").put("k", secret))
+            .add(new JsonObject().put("kty", "oct").put("kid", "noalg").put("k", secret))
+            .add(new JsonObject().put("kty", "oct").put("k", secret));
+    writeAtomically(file, new JsonObject().put("keys", keys).encode());
+    
+    Logger logger = (Logger) LoggerFactory.getLogger(JWKSFileHandlerImpl.class);
+    ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    appender.start();
+    logger.addAppender(appender);
+    try (JsonWebKeySetFileHandler handler = JsonWebKeySetFileHandler.create(Collections.singletonList(file.toString()), false)) {
+      assertTrue(handler.findJwk(null, "short").failed());
+      assertTrue(handler.findJwk(null, "noalg").failed());
+    } finally {
+      logger.detachAppender(appender);
+    }
+    
+    int rejected = 0;
+    for (ILoggingEvent event : appender.list) {
+      String logged = event.getFormattedMessage();
+      if (event.getThrowableProxy() != null) {
+        logged += ThrowableProxyUtil.asString(event.getThrowableProxy());
+      }
+      assertFalse(logged.contains(secret), logged);
+      if (logged.contains("(kty oct)")) {
+        ++rejected;
+      }
+    }
+    assertEquals(3, rejected);
+  }
+  
+  @Test
+  public void testWatchedFile() throws Exception {
+    File dir = new File("target/temp/JWKSFileHandlerImplTest-file");
+    dir.mkdirs();
+    Path file = dir.toPath().resolve("keys.jwks");
+    
+    KeyPairGenerator gen = KeyPairGenerator.getInstance("Ed25519");
+    writeAtomically(file, jwks("one", "EdDSA", gen.genKeyPair().getPublic()));
+    
+    try (JsonWebKeySetFileHandler handler = JsonWebKeySetFileHandler.create(Collections.singletonList(file.toString()), true)) {
+      assertTrue(handler.findJwk(null, "one").succeeded());
+      
+      writeAtomically(file, jwks("two", "EdDSA", gen.genKeyPair().getPublic()));
+      await().atMost(Duration.ofSeconds(20)).until(() -> handler.findJwk(null, "two").succeeded());
+      assertTrue(handler.findJwk(null, "one").failed());
+    }
+  }
+  
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetIssuerRoutingHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JWKSIssuerRoutingHandlerImplTest {
+  
+  private static class RecordingHandler implements JsonWebKeySetHandler {
+    
+    private final List<String> issuers = new ArrayList<>();
+    private int optimizeCount;
+
+    @Override
+    public void optimize() {
+      ++optimizeCount;
+    }
+
+    @Override
+    public Future<JWK> findJwk(String issuer, String kid) {
+      issuers.add(issuer);
+      return Future.succeededFuture();
+    }
+    
+  }
+  
+  @Test
+  public void testRoute() {
+    RecordingHandler keycloak = new RecordingHandler();
+    RecordingHandler partner = new RecordingHandler();
+    RecordingHandler partnerSpecial = new RecordingHandler();
+    RecordingHandler alb = new RecordingHandler();
+    RecordingHandler fallback = new RecordingHandler();
+    
+    JsonWebKeySetIssuerRoutingHandler router = JsonWebKeySetIssuerRoutingHandler.builder()
+            .addIssuer("https://keycloak.example.com/realms/one", keycloak)
+            .addIssuerPrefix("https://partner.example.com/", partner)
+            .addIssuerPrefix("https://partner.example.com/special/", partnerSpecial)
+            .addIssuerPattern("https://cognito-idp\\.[a-z0-9-]+\\.amazonaws\\.com/.*", alb)
+            .setDefaultHandler(fallback)
+            .build();
+    
+    assertSame(keycloak, router.route("https://keycloak.example.com/realms/one"));
+    assertSame(partner, router.route("https://partner.example.com/tenant"));
+    assertSame(partnerSpecial, router.route("https://partner.example.com/special/tenant"));
+    assertSame(alb, router.route("https://cognito-idp.eu-west-2.amazonaws.com/pool"));
+    assertSame(fallback, router.route("https://keycloak.example.com/realms/two"));
+    assertSame(fallback, router.route(null));
+    
+    router.optimize();
+    assertEquals(1, keycloak.optimizeCount);
+    assertEquals(1, fallback.optimizeCount);
+  }
+  
+  @Test
+  public void testPrefixLookalikeHost() {
+    RecordingHandler idp = new RecordingHandler();
+    RecordingHandler fallback = new RecordingHandler();
+    
+    JsonWebKeySetIssuerRoutingHandler router = JsonWebKeySetIssuerRoutingHandler.builder()
+            .addIssuerPrefix("https://idp.example.com", idp)
+            .setDefaultHandler(fallback)
+            .build();
+    
+    assertSame(idp, router.route("https://idp.example.com"));
+    assertSame(idp, router.route("https://idp.example.com/"));
+    assertSame(idp, router.route("https://idp.example.com/realms/one"));
+    assertSame(fallback, router.route("https://idp.example.com.attacker.net/"));
+    assertSame(fallback, router.route("https://idp.example.community/"));
+    assertSame(fallback, router.route("https://idp.example.com:8443/"));
+    
+    assertTrue(JWKSIssuerRoutingHandlerImpl.matchesPrefix("https://idp.example.com/realms/one", "https://idp.example.com/realms/"));
+    assertFalse(JWKSIssuerRoutingHandlerImpl.matchesPrefix("https://idp.example.com/realms-other", "https://idp.example.com/realms"));
+  }
+  
+  @Test
+  public void testFindJwk() {
+    RecordingHandler keycloak = new RecordingHandler();
+    RecordingHandler partner = new RecordingHandler();
+    
+    JsonWebKeySetIssuerRoutingHandler router = JsonWebKeySetIssuerRoutingHandler.builder()
+            .addIssuer("https://keycloak.example.com/realms/one", keycloak)
+            .addIssuerPrefix("https://partner.example.com/", partner)
+            .build();
+    
+    assertNull(router.route("https://other.example.com/"));
+    assertTrue(router.findJwk("https://other.example.com/", "kid").failed());
+    
+    router.findJwk("https://keycloak.example.com/realms/one", "kid");
+    assertEquals(1, keycloak.issuers.size());
+
+    // With no issuer passed in the iss claim from the token is used for routing
+    Jwt jwt = new Jwt(new JsonObject().put("kid", "kid"), new JsonObject().put("iss", "https://partner.example.com/a"), null, null);
+    router.findJwk(null, jwt);
+    assertEquals("https://partner.example.com/a", partner.issuers.get(0));
+    
+    Jwt noIssuer = new Jwt(new JsonObject().put("kid", "kid"), new JsonObject(), null, null);
+    assertTrue(router.findJwk(null, noIssuer).failed());
+  }
+  
+  @Test
+  public void testNoRoutes() {
+    assertThrows(IllegalArgumentException.class, () -> JsonWebKeySetIssuerRoutingHandler.builder().build());
+  }
+  
+}
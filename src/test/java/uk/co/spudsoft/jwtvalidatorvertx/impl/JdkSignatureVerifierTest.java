@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JdkSignatureVerifierTest {
+  
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(JdkSignatureVerifierTest.class);
+  
+  private static final byte[] INPUT = "eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJib2IifQ".getBytes(StandardCharsets.UTF_8);
+  
+  private static KeyPair generate(String type, Object parameter) throws Exception {
+    KeyPairGenerator generator = KeyPairGenerator.getInstance(type);
+    if (parameter instanceof Integer) {
+      generator.initialize((Integer) parameter);
+    } else if (parameter instanceof String) {
+      generator.initialize(new ECGenParameterSpec((String) parameter));
+    }
+    return generator.generateKeyPair();
+  }
+  
+  private static byte[] sign(String jdkName, JsonWebAlgorithm algorithm, KeyPair keyPair, byte[] input) throws Exception {
+    Signature signer = Signature.getInstance(jdkName);
+    if (algorithm.getParameter() != null) {
+      signer.setParameter(algorithm.getParameter());
+    }
+    signer.initSign(keyPair.getPrivate());
+    signer.update(input);
+    return signer.sign();
+  }
+  
+  private static void testAlgorithm(JsonWebAlgorithm algorithm, String jdkName, KeyPair keyPair, KeyPair otherKeyPair) throws Exception {
+    assertTrue(JdkSignatureVerifier.supports(algorithm));
+    byte[] signature = sign(jdkName, algorithm, keyPair, INPUT);
+    assertTrue(JdkSignatureVerifier.verify(algorithm, keyPair.getPublic(), signature, INPUT), algorithm.getName());
+    // Second use of the same thread local instance
+    assertTrue(JdkSignatureVerifier.verify(algorithm, keyPair.getPublic(), signature, INPUT), algorithm.getName());
+    assertFalse(JdkSignatureVerifier.verify(algorithm, otherKeyPair.getPublic(), signature, INPUT), algorithm.getName());
+    byte[] tampered = INPUT.clone();
+    tampered[tampered.length - 1] = 'x';
+    assertFalse(JdkSignatureVerifier.verify(algorithm, keyPair.getPublic(), signature, tampered), algorithm.getName());
+  }
+  
+  @Test
+  public void testRsa() throws Exception {
+    KeyPair keyPair = generate("RSA", 2048);
+    KeyPair otherKeyPair = generate("RSA", 2048);
+    for (JsonWebAlgorithm algorithm : new JsonWebAlgorithm[] {
+        JsonWebAlgorithm.RS256, JsonWebAlgorithm.RS384, JsonWebAlgorithm.RS512
+        , JsonWebAlgorithm.PS256, JsonWebAlgorithm.PS384, JsonWebAlgorithm.PS512
+    }) {
+      testAlgorithm(algorithm, algorithm.getJdkAlgName(), keyPair, otherKeyPair);
+    }
+  }
+  
+  @Test
+  public void testEc() throws Exception {
+    testAlgorithm(JsonWebAlgorithm.ES256, JsonWebAlgorithm.ES256.getJdkAlgName(), generate("EC", "secp256r1"), generate("EC", "secp256r1"));
+    testAlgorithm(JsonWebAlgorithm.ES384, JsonWebAlgorithm.ES384.getJdkAlgName(), generate("EC", "secp384r1"), generate("EC", "secp384r1"));
+    testAlgorithm(JsonWebAlgorithm.ES512, JsonWebAlgorithm.ES512.getJdkAlgName(), generate("EC", "secp521r1"), generate("EC", "secp521r1"));
+    
+    // P1363 signatures have a fixed length, anything else is rejected
+    KeyPair keyPair = generate("EC", "secp256r1");
+    assertFalse(JdkSignatureVerifier.verify(JsonWebAlgorithm.ES256, keyPair.getPublic(), new byte[10], INPUT));
+  }
+  
+  @Test
+  public void testEdDsa() throws Exception {
+    testAlgorithm(JsonWebAlgorithm.EdDSA, "Ed25519", generate("Ed25519", null), generate("Ed25519", null));
+    testAlgorithm(JsonWebAlgorithm.EdDSA, "Ed448", generate("Ed448", null), generate("Ed448", null));
+  }
+  
+  @Test
+  public void testUnsupported() throws Exception {
+    KeyPair keyPair = generate("RSA", 2048);
+    assertFalse(JdkSignatureVerifier.supports(null));
+    assertFalse(JdkSignatureVerifier.supports(JsonWebAlgorithm.none));
+    assertFalse(JdkSignatureVerifier.supports(JsonWebAlgorithm.HS256));
+    assertThrows(IllegalArgumentException.class, () -> JdkSignatureVerifier.verify(JsonWebAlgorithm.none, keyPair.getPublic(), new byte[0], INPUT));
+    assertThrows(IllegalArgumentException.class, () -> JdkSignatureVerifier.verify(null, keyPair.getPublic(), new byte[0], INPUT));
+    assertThrows(IllegalArgumentException.class, () -> JdkSignatureVerifier.verify(JsonWebAlgorithm.RS256, null, new byte[0], INPUT));
+    // Key of the wrong type
+    assertThrows(Exception.class, () -> JdkSignatureVerifier.verify(JsonWebAlgorithm.ES256, keyPair.getPublic(), new byte[64], INPUT));
+  }
+  
+  @Test
+  public void testBenchmark() throws Exception {
+    KeyPair keyPair = generate("EC", "secp256r1");
+    byte[] signature = sign(JsonWebAlgorithm.ES256.getJdkAlgName(), JsonWebAlgorithm.ES256, keyPair, INPUT);
+    int count = 2000;
+    long best = Long.MAX_VALUE;
+    for (int iteration = 0; iteration < 5; ++iteration) {
+      long start = System.nanoTime();
+      for (int i = 0; i < count; ++i) {
+        assertTrue(JdkSignatureVerifier.verify(JsonWebAlgorithm.ES256, keyPair.getPublic(), signature, INPUT));
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    logger.info("ES256 verification took {}us per signature", best / count / 1000);
+  }
+  
+}
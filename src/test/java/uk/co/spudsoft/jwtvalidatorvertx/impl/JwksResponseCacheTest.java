@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.json.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.KeyPairPool;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JwksResponseCacheTest {
+
+  @Test
+  public void testGet() throws Exception {
+    JwksResponseCache<byte[]> cache = new JwksResponseCache<>(Function.identity());
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+
+    JwksResponseCache.Response<byte[]> empty = cache.get(keyCache);
+    assertEquals("{\"keys\":[]}", new String(empty.getBody(), StandardCharsets.UTF_8));
+    assertSame(empty, cache.get(keyCache));
+
+    keyCache.put("one", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+    JwksResponseCache.Response<byte[]> one = cache.get(keyCache);
+    assertNotEquals(empty.getEtag(), one.getEtag());
+    assertEquals("one", new JsonObject(new String(one.getBody(), StandardCharsets.UTF_8)).getJsonArray("keys").getJsonObject(0).getString("kid"));
+    assertSame(one, cache.get(keyCache));
+
+    // Replacing a key with the same kid must still be noticed
+    keyCache.put("one", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+    JwksResponseCache.Response<byte[]> replaced = cache.get(keyCache);
+    assertNotEquals(one.getEtag(), replaced.getEtag());
+
+    keyCache.invalidate("one");
+    JwksResponseCache.Response<byte[]> removed = cache.get(keyCache);
+    assertEquals(empty.getEtag(), removed.getEtag());
+
+    cache.invalidate();
+    assertNotSame(removed, cache.get(keyCache));
+
+    // A different key cache must never be served from the old response
+    Cache<String, AlgorithmAndKeyPair> otherCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    assertNotSame(removed, cache.get(otherCache));
+  }
+
+  @Test
+  public void testGetUnversioned() throws Exception {
+    // Key caches that were not created by AlgorithmAndKeyPair.createCache are compared entry by entry
+    JwksResponseCache<byte[]> cache = new JwksResponseCache<>(Function.identity());
+    Cache<String, AlgorithmAndKeyPair> keyCache = CacheBuilder.newBuilder().build();
+
+    JwksResponseCache.Response<byte[]> empty = cache.get(keyCache);
+    assertSame(empty, cache.get(keyCache));
+
+    keyCache.put("one", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+    JwksResponseCache.Response<byte[]> one = cache.get(keyCache);
+    assertNotEquals(empty.getEtag(), one.getEtag());
+    assertSame(one, cache.get(keyCache));
+
+    keyCache.put("one", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+    assertNotEquals(one.getEtag(), cache.get(keyCache).getEtag());
+  }
+
+  @Test
+  public void testExpiredKeysRemoved() throws Exception {
+    AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+    JwksResponseCache<byte[]> cache = new JwksResponseCache<>(Function.identity());
+    Cache<String, AlgorithmAndKeyPair> keyCache = new VersionedCache<>(CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, TimeUnit.MINUTES));
+    JwksResponseCache.Response<byte[]> empty = cache.get(keyCache);
+
+    keyCache.put("one", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+    assertNotEquals(empty.getEtag(), cache.get(keyCache).getEtag());
+
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    assertEquals(empty.getEtag(), cache.get(keyCache).getEtag());
+  }
+
+  @Test
+  public void testMatches() {
+    String etag = JwksResponseCache.etag("{}".getBytes(StandardCharsets.UTF_8));
+    assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+    assertFalse(JwksResponseCache.matches(null, etag));
+    assertFalse(JwksResponseCache.matches("\"other\"", etag));
+    assertTrue(JwksResponseCache.matches(etag, etag));
+    assertTrue(JwksResponseCache.matches("W/" + etag, etag));
+    assertTrue(JwksResponseCache.matches("\"other\", " + etag, etag));
+    assertTrue(JwksResponseCache.matches("*", etag));
+  }
+
+  @Test
+  public void testCacheControl() {
+    assertEquals("max-age=0", JwksResponseCache.cacheControl(0));
+    assertEquals("max-age=3600", JwksResponseCache.cacheControl(3600));
+    assertThrows(IllegalArgumentException.class, () -> JwksResponseCache.cacheControl(-1));
+  }
+
+}
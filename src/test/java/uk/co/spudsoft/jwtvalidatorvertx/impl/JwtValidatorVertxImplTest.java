@@ -16,12 +16,53 @@
  */
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
+import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableSet;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+import uk.co.spudsoft.jwtvalidatorvertx.jdk.JdkTokenBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.jfr.TokenValidationEvent;
 
 /**
  *
@@ -61,4 +102,374 @@ public class JwtValidatorVertxImplTest {
     assertThat(instance.getPermittedAlgorithms(), hasSize(2));
   }
 
+  @Test
+  public void testPolicy() throws Exception {
+    JwtValidatorVertxImpl instance = new JwtValidatorVertxImpl(null, null);
+    assertSame(ValidationPolicy.DEFAULT, instance.getPolicy());
+    
+    instance.setRequireExp(false).setRequireNbf(false).setTimeLeeway(Duration.ofSeconds(3));
+    ValidationPolicy updated = instance.getPolicy();
+    assertFalse(updated.isRequireExp());
+    assertFalse(updated.isRequireNbf());
+    assertEquals(3000, updated.getTimeLeewayMilliseconds());
+    assertThat(updated.getPermittedAlgorithms(), hasSize(11));
+    
+    ValidationPolicy replacement = ValidationPolicy.builder().setPermittedAlgorithms(ImmutableSet.of(JsonWebAlgorithm.ES256)).build();
+    instance.setPolicy(replacement);
+    assertSame(replacement, instance.getPolicy());
+    assertThat(instance.getPermittedAlgorithms(), hasSize(1));
+    assertThrows(NullPointerException.class, () -> instance.setPolicy(null));
+  }
+
+  private static JWK toJwk(Cache<String, AlgorithmAndKeyPair> keyCache, String kid) throws Exception {
+    AlgorithmAndKeyPair akp = keyCache.getIfPresent(kid);
+    PublicKey publicKey = akp.getKeyPair().getPublic();
+    return new JWK(JwkBuilder.get(publicKey).toJson(kid, akp.getAlgorithm().getName(), publicKey));
+  }
+
+  @Test
+  public void testKeylessToken() throws Throwable {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache) {
+      @Override
+      protected JsonObject generateHeaderNode(String kid, JsonWebAlgorithm algorithm) {
+        JsonObject header = super.generateHeaderNode(kid, algorithm);
+        header.remove("kid");
+        return header;
+      }
+    };
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String token = builder.buildToken(JsonWebAlgorithm.ES256, "signer", "http://localhost/", "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, Collections.emptyMap());
+    String otherToken = builder.buildToken(JsonWebAlgorithm.ES256, "unknown", "http://localhost/", "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, Collections.emptyMap());
+    
+    List<JWK> decoys = new ArrayList<>();
+    for (int i = 0; i < JwtValidatorVertxImpl.MAX_CANDIDATES; ++i) {
+      builder.buildToken(JsonWebAlgorithm.ES256, "decoy" + i, "http://localhost/", "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, Collections.emptyMap());
+      decoys.add(toJwk(keyCache, "decoy" + i));
+    }
+    JWK signer = toJwk(keyCache, "signer");
+    List<JWK> manyCandidates = new ArrayList<>(decoys.subList(0, JwtValidatorVertxImpl.BLOCKING_CANDIDATE_THRESHOLD + 2));
+    manyCandidates.add(signer);
+    List<JWK> fewCandidates = Arrays.asList(manyCandidates.get(0), signer);
+    List<JWK> tooManyCandidates = new ArrayList<>(decoys);
+    tooManyCandidates.add(signer);
+    
+    List<List<JWK>> candidates = new ArrayList<>();
+    AtomicInteger calls = new AtomicInteger();
+    JsonWebKeySetHandler handler = new JsonWebKeySetHandler() {
+      @Override
+      public void optimize() {
+      }
+
+      @Override
+      public Future<JWK> findJwk(String issuer, String kid) {
+        return Future.failedFuture(new IllegalArgumentException("Not expected to be called"));
+      }
+
+      @Override
+      public Future<List<JWK>> findCandidateJwks(String issuer, Jwt jwt) {
+        calls.incrementAndGet();
+        return Future.succeededFuture(candidates.get(0));
+      }
+    };
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost/"), null, Duration.ofMinutes(1));
+    JwtValidatorVertxImpl instance = new JwtValidatorVertxImpl(handler, iah);
+    
+    // More candidates than the threshold, but no Vert.x context, so they are tried in turn on this thread
+    candidates.add(manyCandidates);
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    // Remembered key is tried first
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, otherToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    
+    // Fewer candidates, tried in turn
+    candidates.set(0, fewCandidates);
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, otherToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    
+    // No candidates
+    candidates.set(0, Collections.emptyList());
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    
+    // Too many candidates, rejected without trying any of them (even though the signer is one of them)
+    candidates.set(0, tooManyCandidates);
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(7, calls.get());
+    
+    // More candidates than the threshold on a Vert.x context, so they are tried in parallel on worker threads
+    JwtValidatorVertxImpl contextInstance = new JwtValidatorVertxImpl(handler, iah);
+    List<JWK> maxCandidates = new ArrayList<>(decoys.subList(0, JwtValidatorVertxImpl.MAX_CANDIDATES - 1));
+    maxCandidates.add(JwtValidatorVertxImpl.MAX_CANDIDATES / 2, signer);
+    Vertx vertx = Vertx.vertx();
+    try {
+      candidates.set(0, manyCandidates);
+      assertNotNull(validateOnContext(vertx, contextInstance, token).get(10, TimeUnit.SECONDS));
+      
+      candidates.set(0, maxCandidates);
+      assertNotNull(validateOnContext(vertx, new JwtValidatorVertxImpl(handler, iah), token).get(10, TimeUnit.SECONDS));
+      
+      // None of the candidates verify the token
+      assertThrows(ExecutionException.class, () -> {
+        validateOnContext(vertx, contextInstance, otherToken).get(10, TimeUnit.SECONDS);
+      });
+    } finally {
+      vertx.close();
+    }
+  }
+  
+  private static CompletableFuture<Jwt> validateOnContext(Vertx vertx, JwtValidatorVertxImpl instance, String token) {
+    CompletableFuture<Jwt> result = new CompletableFuture<>();
+    vertx.getOrCreateContext().runOnContext(v -> {
+      instance.validateToken(null, token, Arrays.asList("aud"), false)
+              .onSuccess(result::complete)
+              .onFailure(result::completeExceptionally);
+    });
+    return result;
+  }
+
+  private static String buildHmacToken(JsonWebAlgorithm algorithm, String kid, byte[] secret, long nowSeconds) throws Exception {
+    Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    String header = encoder.encodeToString(new JsonObject().put("typ", "JWT").put("alg", algorithm.getName()).put("kid", kid).encode().getBytes(StandardCharsets.UTF_8));
+    String payload = encoder.encodeToString(new JsonObject()
+            .put("iss", "http://localhost/")
+            .put("sub", "sub")
+            .put("aud", "aud")
+            .put("nbf", nowSeconds)
+            .put("exp", nowSeconds + 100)
+            .encode().getBytes(StandardCharsets.UTF_8));
+    Mac mac = Mac.getInstance(algorithm.getJdkAlgName());
+    mac.init(new SecretKeySpec(secret, algorithm.getJdkAlgName()));
+    String signature = encoder.encodeToString(mac.doFinal((header + "." + payload).getBytes(StandardCharsets.US_ASCII)));
+    return header + "." + payload + "." + signature;
+  }
+
+  @Test
+  public void testHmacToken() throws Throwable {
+    byte[] secret = "a-shared-secret-that-is-long-enough".getBytes(StandardCharsets.UTF_8);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String token = buildHmacToken(JsonWebAlgorithm.HS256, "shared", secret, nowSeconds);
+    String wrongSecretToken = buildHmacToken(JsonWebAlgorithm.HS256, "shared", "another-shared-secret-that-is-long-enough".getBytes(StandardCharsets.UTF_8), nowSeconds);
+    String wrongAlgToken = buildHmacToken(JsonWebAlgorithm.HS384, "shared", "a-shared-secret-that-is-long-enough-for-hs384-as-well".getBytes(StandardCharsets.UTF_8), nowSeconds);
+    
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+    new JdkTokenBuilder(keyCache).buildToken(JsonWebAlgorithm.RS256, "rsa", "http://localhost/", "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, Collections.emptyMap());
+    String rsaKidToken = buildHmacToken(JsonWebAlgorithm.HS256, "rsa", secret, nowSeconds);
+
+    JsonWebKeySetHandler handler = JsonWebKeySetStaticKeysHandler.create(Arrays.asList(
+            JsonWebKeySetStaticKeysHandler.sharedSecret("shared", JsonWebAlgorithm.HS256, secret)
+            , toJwk(keyCache, "rsa")
+    ));
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost/"), null, Duration.ofMinutes(1));
+    JwtValidatorVertxImpl instance = new JwtValidatorVertxImpl(handler, iah);
+    
+    // HMAC is not permitted by default
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    
+    instance.addPermittedAlgorithm("HS256");
+    instance.addPermittedAlgorithm("HS384");
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, wrongSecretToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    // The key is only for HS256
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, wrongAlgToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    // A public key must never be usable as an HMAC secret
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, rsaKidToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+  }
+
+  @Test
+  public void testValidationListener() throws Throwable {
+    byte[] secret = "a-shared-secret-that-is-long-enough".getBytes(StandardCharsets.UTF_8);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String token = buildHmacToken(JsonWebAlgorithm.HS256, "shared", secret, nowSeconds);
+    String badSignatureToken = buildHmacToken(JsonWebAlgorithm.HS256, "shared", "another-shared-secret-that-is-long-enough".getBytes(StandardCharsets.UTF_8), nowSeconds);
+    String unknownKidToken = buildHmacToken(JsonWebAlgorithm.HS256, "unknown", secret, nowSeconds);
+    
+    JsonWebKeySetHandler handler = JsonWebKeySetStaticKeysHandler.create(Arrays.asList(
+            JsonWebKeySetStaticKeysHandler.sharedSecret("shared", JsonWebAlgorithm.HS256, secret)
+    ));
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost/"), null, Duration.ofMinutes(1));
+    JwtValidatorVertxImpl instance = new JwtValidatorVertxImpl(handler, iah);
+    instance.addPermittedAlgorithm("HS256");
+    
+    List<String> events = new ArrayList<>();
+    ValidationListener recorder = new ValidationListener() {
+      @Override
+      public void stageCompleted(Stage stage, String issuer, JsonWebAlgorithm algorithm, long durationNanos, boolean succeeded) {
+        assertTrue(durationNanos >= 0);
+        events.add(stage + " " + issuer + " " + algorithm + " " + succeeded);
+      }
+
+      @Override
+      public void validationCompleted(String issuer, JsonWebAlgorithm algorithm, long durationNanos, Stage failedStage) {
+        assertTrue(durationNanos >= 0);
+        events.add("COMPLETED " + issuer + " " + algorithm + " " + failedStage);
+      }
+    };
+    instance.setValidationListener(recorder);
+    
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(
+            "PARSE null null true"
+            , "KEY_LOOKUP null null true"
+            , "SIGNATURE http://localhost/ HS256 true"
+            , "ISSUER http://localhost/ HS256 true"
+            , "CLAIMS http://localhost/ HS256 true"
+            , "COMPLETED http://localhost/ HS256 null"
+    ), events);
+    
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, badSignatureToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(Arrays.asList(
+            "PARSE null null true"
+            , "KEY_LOOKUP null null true"
+            , "SIGNATURE null null false"
+            , "COMPLETED null null SIGNATURE"
+    ), events);
+    
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, unknownKidToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(Arrays.asList(
+            "PARSE null null true"
+            , "KEY_LOOKUP null null false"
+            , "COMPLETED null null KEY_LOOKUP"
+    ), events);
+    
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, "a.b", Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(Arrays.asList(
+            "PARSE null null false"
+            , "COMPLETED null null PARSE"
+    ), events);
+    
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      instance.validateToken(null, token, Arrays.asList("other"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals("COMPLETED http://localhost/ HS256 CLAIMS", events.get(events.size() - 1));
+    
+    // The issuer is not reported if it is not acceptable
+    JwtValidatorVertxImpl elsewhere = new JwtValidatorVertxImpl(handler, IssuerAcceptabilityHandler.create(Arrays.asList("http://elsewhere/"), null, Duration.ofMinutes(1)));
+    elsewhere.addPermittedAlgorithm("HS256");
+    elsewhere.setValidationListener(recorder);
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      elsewhere.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(Arrays.asList(
+            "PARSE null null true"
+            , "KEY_LOOKUP null null true"
+            , "SIGNATURE null HS256 true"
+            , "ISSUER null HS256 false"
+            , "COMPLETED null HS256 ISSUER"
+    ), events);
+    
+    // An unsigned token cannot choose the issuer that is reported, even if it matches an acceptable regular expression
+    JwtValidatorVertxImpl pattern = new JwtValidatorVertxImpl(handler, IssuerAcceptabilityHandler.create(Arrays.asList("http://.*/"), null, Duration.ofMinutes(1)));
+    pattern.addPermittedAlgorithm("HS256");
+    pattern.setValidationListener(recorder);
+    events.clear();
+    assertThrows(ExecutionException.class, () -> {
+      pattern.validateToken(null, badSignatureToken, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    });
+    assertEquals(Arrays.asList(
+            "PARSE null null true"
+            , "KEY_LOOKUP null null true"
+            , "SIGNATURE null null false"
+            , "COMPLETED null null SIGNATURE"
+    ), events);
+    
+    // A listener that throws does not affect validation
+    instance.setValidationListener(new ValidationListener() {
+      @Override
+      public void stageCompleted(Stage stage, String issuer, JsonWebAlgorithm algorithm, long durationNanos, boolean succeeded) {
+        throw new IllegalStateException("Listener failed");
+      }
+    });
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+    
+    instance.setValidationListener(null);
+    assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+  }
+  
+  @Test
+  public void testJfrEvents() throws Throwable {
+    byte[] secret = "a-shared-secret-that-is-long-enough".getBytes(StandardCharsets.UTF_8);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    String token = buildHmacToken(JsonWebAlgorithm.HS256, "shared", secret, nowSeconds);
+    
+    JsonWebKeySetHandler handler = JsonWebKeySetStaticKeysHandler.create(Arrays.asList(
+            JsonWebKeySetStaticKeysHandler.sharedSecret("shared", JsonWebAlgorithm.HS256, secret)
+    ));
+    IssuerAcceptabilityHandler iah = IssuerAcceptabilityHandler.create(Arrays.asList("http://localhost/"), null, Duration.ofMinutes(1));
+    JwtValidatorVertxImpl instance = new JwtValidatorVertxImpl(handler, iah);
+    instance.addPermittedAlgorithm("HS256");
+    
+    List<RecordedEvent> events;
+    try (Recording recording = new Recording()) {
+      recording.enable(TokenValidationEvent.NAME).withoutThreshold();
+      recording.start();
+      
+      assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+      assertThrows(ExecutionException.class, () -> {
+        instance.validateToken(null, token, Arrays.asList("other"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+      });
+      assertThrows(ExecutionException.class, () -> {
+        instance.validateToken(null, "a.b", Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+      });
+      
+      recording.stop();
+      Path file = Files.createTempFile("JwtValidatorVertxImplTest", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+      Files.delete(file);
+    }
+    
+    assertEquals(3, events.size());
+    assertEquals("http://localhost/", events.get(0).getString("issuer"));
+    assertEquals("HS256", events.get(0).getString("algorithm"));
+    assertEquals("success", events.get(0).getString("outcome"));
+    assertNull(events.get(0).getString("failedStage"));
+    assertEquals("failure", events.get(1).getString("outcome"));
+    assertEquals("CLAIMS", events.get(1).getString("failedStage"));
+    assertNull(events.get(2).getString("issuer"));
+    assertNull(events.get(2).getString("algorithm"));
+    assertEquals("PARSE", events.get(2).getString("failedStage"));
+    
+    // A recording that has not enabled the event (so the Flight Recorder is initialized) does not record any validations
+    try (Recording recording = new Recording()) {
+      recording.start();
+      
+      assertNotNull(instance.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS));
+      
+      recording.stop();
+      Path file = Files.createTempFile("JwtValidatorVertxImplTest", ".jfr");
+      recording.dump(file);
+      events = RecordingFile.readAllEvents(file);
+      Files.delete(file);
+    }
+    assertTrue(events.stream().noneMatch(e -> TokenValidationEvent.NAME.equals(e.getEventType().getName())));
+  }
+
 }
@@ -16,7 +16,12 @@
  */
 package uk.co.spudsoft.jwtvalidatorvertx.impl;
 
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import org.junit.jupiter.api.Test;
 
@@ -35,4 +40,17 @@ public class RSAJwkBuilderTest {
     });
   }
   
+  @Test
+  public void testPssAlgorithms() throws Exception {
+    RSAJwkBuilder builder = new RSAJwkBuilder();
+    KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+    keyGen.initialize(2048);
+    PublicKey publicKey = keyGen.genKeyPair().getPublic();
+    for (String alg : new String[] {"PS256", "PS384", "PS512"}) {
+      JsonObject json = builder.toJson("kid", alg, publicKey);
+      assertEquals(alg, json.getString("alg"));
+      assertEquals(alg, new JWK(json).getAlgorithm());
+    }
+  }
+  
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.co.spudsoft.jwtvalidatorvertx.ReplayGuard;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class ReplayGuardImplTest {
+  
+  @SuppressWarnings("constantname")
+  private static final Logger logger = LoggerFactory.getLogger(ReplayGuardImplTest.class);
+  
+  private static class ManualClock extends Clock {
+    
+    private volatile long millis;
+
+    ManualClock(long millis) {
+      this.millis = millis;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+  
+  @Test
+  public void testBadArguments() {
+    Clock clock = Clock.systemUTC();
+    assertThrows(NullPointerException.class, () -> new ReplayGuardImpl(null, Duration.ofSeconds(1), Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> new ReplayGuardImpl(clock, Duration.ZERO, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class, () -> new ReplayGuardImpl(clock, Duration.ofSeconds(1), Duration.ZERO));
+    ReplayGuard guard = ReplayGuard.create(clock);
+    assertThrows(IllegalArgumentException.class, () -> guard.checkAndRecord("iss", null, 1000L));
+  }
+  
+  @Test
+  public void testReplay() {
+    ManualClock clock = new ManualClock(10000);
+    ReplayGuard guard = ReplayGuard.create(clock, Duration.ofSeconds(1), Duration.ofSeconds(60));
+    
+    assertTrue(guard.checkAndRecord("iss", "one", 15000L));
+    assertFalse(guard.checkAndRecord("iss", "one", 15000L));
+    assertFalse(guard.checkAndRecord("iss", "one", 20000L));
+    assertTrue(guard.checkAndRecord("other", "one", 15000L));
+    assertTrue(guard.checkAndRecord(null, "one", 15000L));
+    assertFalse(guard.checkAndRecord(null, "one", 15000L));
+    assertTrue(guard.checkAndRecord("iss", "two", null));
+    assertEquals(4, guard.size());
+    
+    // Still not expired
+    clock.millis = 15000;
+    assertFalse(guard.checkAndRecord("iss", "one", 15000L));
+    assertEquals(4, guard.size());
+    
+    // Expired entries are evicted at the end of their bucket
+    clock.millis = 16000;
+    assertTrue(guard.checkAndRecord("iss", "three", 30000L));
+    assertEquals(2, guard.size());
+    
+    // Entries without an expiry are retained for the maximum retention
+    clock.millis = 70000;
+    assertFalse(guard.checkAndRecord("iss", "two", null));
+    clock.millis = 71000;
+    assertTrue(guard.checkAndRecord("iss", "four", 80000L));
+    assertEquals(1, guard.size());
+  }
+  
+  @Test
+  public void testLaterBucketDoesNotDelayEviction() {
+    ManualClock clock = new ManualClock(0);
+    ReplayGuard guard = ReplayGuard.create(clock, Duration.ofSeconds(1), Duration.ofHours(1));
+    
+    assertTrue(guard.checkAndRecord("iss", "long", 3600000L));
+    clock.millis = 1000;
+    assertTrue(guard.checkAndRecord("iss", "short", 1500L));
+    assertEquals(2, guard.size());
+    clock.millis = 3000;
+    assertTrue(guard.checkAndRecord("iss", "another", 3600000L));
+    assertEquals(2, guard.size());
+  }
+  
+  @Test
+  public void testConcurrentUse() throws Exception {
+    ManualClock clock = new ManualClock(0);
+    ReplayGuard guard = ReplayGuard.create(clock, Duration.ofMillis(10), Duration.ofHours(1));
+    
+    int threadCount = 8;
+    int tokenCount = 20000;
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    AtomicInteger rejectedChurn = new AtomicInteger();
+    for (int t = 0; t < threadCount; ++t) {
+      String churnIssuer = "thread" + t;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          return;
+        }
+        for (int i = 0; i < tokenCount; ++i) {
+          // Every thread tries every shared token
+          if (guard.checkAndRecord("iss", Integer.toString(i), 1000000L + i)) {
+            accepted.incrementAndGet();
+          }
+          // Each thread also records short lived tokens of its own, which are evicted as the clock moves forwards
+          if (!guard.checkAndRecord(churnIssuer, Integer.toString(i), clock.millis + 5)) {
+            rejectedChurn.incrementAndGet();
+          }
+          if (i % 100 == 0) {
+            clock.millis = Math.max(clock.millis, i / 2);
+          }
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    long startNs = System.nanoTime();
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    long durationNs = System.nanoTime() - startNs;
+    logger.info("{} checks in {}ms ({}/s)", threadCount * tokenCount, durationNs / 1000000, (long) (threadCount * tokenCount * 1e9 / durationNs));
+    
+    assertEquals(tokenCount, accepted.get());
+    assertEquals(0, rejectedChurn.get());
+    
+    // Once everything has expired the next check evicts it all
+    clock.millis = 1000000L + tokenCount + 10;
+    assertTrue(guard.checkAndRecord("iss", "final", clock.millis + 1000));
+    assertEquals(1, guard.size());
+  }
+  
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.RevocationList;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class RevocationListImplTest {
+  
+  private static final String ISS = "https://issuer.example.com/";
+  private static final String OTHER_ISS = "https://other.example.com/";
+  
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, () -> RevocationList.create(0, 0.01));
+    assertThrows(IllegalArgumentException.class, () -> RevocationList.create(10, 0.0));
+    assertThrows(IllegalArgumentException.class, () -> RevocationList.create(10, 1.0));
+    RevocationList list = RevocationList.create();
+    assertThrows(IllegalArgumentException.class, () -> list.revokeJti(ISS, null));
+    assertThrows(IllegalArgumentException.class, () -> list.revokeSubject(ISS, null));
+    assertThrows(IllegalArgumentException.class, () -> list.revokeJti(null, "one"));
+    assertThrows(IllegalArgumentException.class, () -> list.revokeIssuedBefore(null, "alice", 1000));
+  }
+  
+  @Test
+  public void testJti() {
+    RevocationList list = RevocationList.create(4, 0.01);
+    assertFalse(list.isRevoked(ISS, "one", null, null));
+    list.revokeJti(ISS, "one");
+    assertTrue(list.isRevoked(ISS, "one", null, null));
+    assertTrue(list.isRevoked(ISS, "one", "sub", 1000L));
+    assertFalse(list.isRevoked(ISS, "two", "sub", 1000L));
+    assertFalse(list.isRevoked(ISS, null, "sub", 1000L));
+    
+    // Grow well beyond the initial capacity
+    for (int i = 0; i < 100; ++i) {
+      list.revokeJti(ISS, "jti" + i);
+    }
+    list.revokeJti(ISS, "one");
+    assertEquals(101, list.getRevokedJtiCount());
+    for (int i = 0; i < 100; ++i) {
+      assertTrue(list.isRevoked(ISS, "jti" + i, null, null));
+    }
+    assertTrue(list.isRevoked(ISS, "one", null, null));
+    assertFalse(list.isRevoked(ISS, "jti100", null, null));
+  }
+  
+  @Test
+  public void testSubject() {
+    RevocationList list = RevocationList.create();
+    list.revokeIssuedBefore(ISS, "alice", 1000);
+    assertTrue(list.isRevoked(ISS, null, "alice", 999L));
+    assertFalse(list.isRevoked(ISS, null, "alice", 1000L));
+    assertTrue(list.isRevoked(ISS, null, "alice", null));
+    
+    // Earlier times do not reduce the revocation
+    list.revokeIssuedBefore(ISS, "alice", 500);
+    assertTrue(list.isRevoked(ISS, null, "alice", 999L));
+    list.revokeIssuedBefore(ISS, "alice", 2000);
+    assertTrue(list.isRevoked(ISS, null, "alice", 1999L));
+    assertFalse(list.isRevoked(ISS, null, "alice", 2000L));
+    
+    list.revokeSubject(ISS, "bob");
+    assertTrue(list.isRevoked(ISS, null, "bob", Long.MAX_VALUE - 1));
+    assertFalse(list.isRevoked(ISS, null, "carol", 0L));
+    assertEquals(2, list.getRevokedSubjectCount());
+  }
+  
+  @Test
+  public void testLoad() throws Exception {
+    RevocationList list = RevocationList.create();
+    list.revokeJti(ISS, "before");
+    
+    Path file = Files.createTempFile("revocations", ".txt");
+    try {
+      Files.write(file, (
+              "# Revocations\n"
+              + "\n"
+              + "jti " + ISS + " one\n"
+              + "jti " + ISS + " two\n"
+              + "  sub " + ISS + " alice  \n"
+              + "sub " + ISS + " bob 1000\n"
+              + "sub " + ISS + " bob 500\n"
+              ).getBytes(StandardCharsets.UTF_8));
+      list.load(file);
+      assertEquals(2, list.getRevokedJtiCount());
+      assertEquals(2, list.getRevokedSubjectCount());
+      assertFalse(list.isRevoked(ISS, "before", null, null));
+      assertTrue(list.isRevoked(ISS, "one", null, null));
+      assertTrue(list.isRevoked(ISS, "two", null, null));
+      assertTrue(list.isRevoked(ISS, null, "alice", 123456789L));
+      assertTrue(list.isRevoked(ISS, null, "bob", 999L));
+      assertFalse(list.isRevoked(ISS, null, "bob", 1000L));
+      
+      Files.write(file, ("jti " + ISS + " three\nsub " + ISS + " bob later\n").getBytes(StandardCharsets.UTF_8));
+      assertThrows(IllegalArgumentException.class, () -> list.load(file));
+      Files.write(file, ("jti " + ISS + " three\nkid four\n").getBytes(StandardCharsets.UTF_8));
+      assertThrows(IllegalArgumentException.class, () -> list.load(file));
+      // A failed load does not change anything
+      assertTrue(list.isRevoked(ISS, "one", null, null));
+      assertFalse(list.isRevoked(ISS, "three", null, null));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testIssuerScoping() {
+    RevocationList list = RevocationList.create();
+    list.revokeJti(ISS, "one");
+    list.revokeSubject(ISS, "alice");
+    assertTrue(list.isRevoked(ISS, "one", null, null));
+    assertTrue(list.isRevoked(ISS, null, "alice", 1000L));
+    // The same values from another issuer are different tokens and different people
+    assertFalse(list.isRevoked(OTHER_ISS, "one", null, null));
+    assertFalse(list.isRevoked(OTHER_ISS, null, "alice", 1000L));
+    assertFalse(list.isRevoked(null, "one", "alice", 1000L));
+    
+    list.revokeSubject(OTHER_ISS, "alice");
+    assertTrue(list.isRevoked(OTHER_ISS, null, "alice", 1000L));
+    assertEquals(2, list.getRevokedSubjectCount());
+  }
+  
+  @Test
+  public void testManyUpdates() {
+    // Each update must be a single map operation, so many updates should take no time at all
+    int revoked = 100000;
+    RevocationList list = RevocationList.create(1000, 0.01);
+    for (int i = 0; i < revoked; ++i) {
+      list.revokeJti(ISS, "jti" + i);
+      list.revokeIssuedBefore(ISS, "user" + i, 1000);
+    }
+    assertEquals(revoked, list.getRevokedJtiCount());
+    assertEquals(revoked, list.getRevokedSubjectCount());
+    for (int i = 0; i < revoked; i += 997) {
+      assertTrue(list.isRevoked(ISS, "jti" + i, null, null));
+      assertTrue(list.isRevoked(ISS, null, "user" + i, 999L));
+      assertFalse(list.isRevoked(ISS, "other" + i, "user" + i, 1000L));
+    }
+  }
+  
+}
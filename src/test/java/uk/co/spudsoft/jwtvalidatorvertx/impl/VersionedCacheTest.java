@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.impl;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class VersionedCacheTest {
+
+  @Test
+  public void testVersion() throws Exception {
+    VersionedCache<String, String> cache = new VersionedCache<>(CacheBuilder.newBuilder());
+    long version = cache.getVersion();
+
+    cache.put("a", "1");
+    assertNotEquals(version, version = cache.getVersion());
+
+    // Reads do not change the version
+    assertEquals("1", cache.getIfPresent("a"));
+    assertEquals("1", cache.get("a", () -> "2"));
+    assertEquals(version, cache.getVersion());
+
+    assertEquals("2", cache.get("b", () -> "2"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.putAll(Collections.singletonMap("c", "3"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.invalidate("c");
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.invalidate("c");
+    assertEquals(version, cache.getVersion());
+  }
+
+  @Test
+  public void testAsMap() {
+    VersionedCache<String, String> cache = new VersionedCache<>(CacheBuilder.newBuilder());
+    long version = cache.getVersion();
+
+    assertNull(cache.asMap().put("a", "1"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    assertEquals("1", cache.asMap().putIfAbsent("a", "2"));
+    assertEquals(version, cache.getVersion());
+
+    assertNull(cache.asMap().putIfAbsent("b", "2"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    assertEquals("2", cache.asMap().replace("b", "3"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.asMap().replace("b", "4", "5");
+    assertEquals(version, cache.getVersion());
+    cache.asMap().replace("b", "3", "5");
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.asMap().putAll(Collections.singletonMap("c", "3"));
+    assertNotEquals(version, version = cache.getVersion());
+
+    cache.asMap().remove("c");
+    assertNotEquals(version, version = cache.getVersion());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testExpiry() {
+    AtomicLong nanos = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return nanos.get();
+      }
+    };
+    VersionedCache<String, String> cache = new VersionedCache<>(CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, TimeUnit.MINUTES));
+    cache.put("a", "1");
+    long version = cache.getVersion();
+
+    nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    cache.cleanUp();
+    assertNotEquals(version, cache.getVersion());
+    assertEquals(0, cache.size());
+  }
+
+}
@@ -17,9 +17,28 @@
 package uk.co.spudsoft.jwtvalidatorvertx.jdk;
 
 import static io.restassured.RestAssured.given;
+import com.google.common.cache.Cache;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
 
 
 /**
@@ -53,4 +72,159 @@ public class JdkJwksHandlerTest {
     }
   }
 
+  @Test
+  public void testJwksEtag() throws Exception {
+    try (JdkJwksHandler handler = JdkJwksHandler.create()) {
+      Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+      keyCache.put("first", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+      handler.setKeyCache(keyCache);
+      handler.setMaxAgeSeconds(60);
+      assertThrows(IllegalArgumentException.class, () -> handler.setMaxAgeSeconds(-1));
+      handler.start();
+
+      String etag = given()
+              .get(new URI(handler.getBaseUrl() + "/jwks"))
+              .then()
+              .log().all()
+              .statusCode(200)
+              .header("content-type", equalTo("application/json"))
+              .header("cache-control", equalTo("max-age=60"))
+              .body("keys[0].kid", equalTo("first"))
+              .extract().header("etag");
+
+      given()
+              .header("If-None-Match", etag)
+              .get(new URI(handler.getBaseUrl() + "/jwks"))
+              .then()
+              .log().all()
+              .statusCode(304)
+              .header("etag", equalTo(etag))
+              .header("cache-control", equalTo("max-age=60"))
+              ;
+
+      keyCache.put("second", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+
+      given()
+              .header("If-None-Match", etag)
+              .get(new URI(handler.getBaseUrl() + "/jwks"))
+              .then()
+              .log().all()
+              .statusCode(200)
+              .header("etag", not(equalTo(etag)))
+              .body("keys.size()", equalTo(2))
+              ;
+    }
+  }
+
+  @Test
+  public void testBuilder() throws Exception {
+    try (JdkJwksHandler handler = JdkJwksHandler.builder()
+            .setHost("127.0.0.1")
+            .setContextPath("issuer/")
+            .setBacklog(500)
+            .setThreadPoolSize(4)
+            .build()) {
+      assertTrue(handler.getBaseUrl().matches("http://127\\.0\\.0\\.1:[0-9]+/issuer"), handler.getBaseUrl());
+      handler.setKeyCache(AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1)));
+      handler.start();
+
+      given()
+              .get(new URI(handler.getBaseUrl() + "/.well-known/openid-configuration"))
+              .then()
+              .log().all()
+              .statusCode(200)
+              .header("content-type", equalTo("application/json"))
+              .body("jwks_uri", equalTo(handler.getBaseUrl() + "/jwks"))
+              ;
+
+      given()
+              .get(new URI(handler.getBaseUrl() + "/jwks"))
+              .then()
+              .log().all()
+              .statusCode(200)
+              .header("content-type", equalTo("application/json"))
+              .body("keys.size()", equalTo(0))
+              ;
+
+      given()
+              .get(new URI(handler.getBaseUrl().replace("/issuer", "") + "/jwks"))
+              .then()
+              .log().all()
+              .statusCode(404)
+              ;
+    }
+  }
+
+  @Test
+  public void testConcurrentRequests() throws Exception {
+    try (JdkJwksHandler handler = JdkJwksHandler.builder().setBacklog(1000).build()) {
+      Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofMinutes(1));
+      keyCache.put("first", new AlgorithmAndKeyPair(JsonWebAlgorithm.ES256, KeyPairPool.generate(JsonWebAlgorithm.ES256)));
+      handler.setKeyCache(keyCache);
+      handler.start();
+
+      HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+      HttpRequest request = HttpRequest.newBuilder(new URI(handler.getBaseUrl() + "/jwks")).timeout(Duration.ofSeconds(30)).build();
+      List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+      for (int i = 0; i < 200; ++i) {
+        responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+      }
+      for (CompletableFuture<HttpResponse<String>> response : responses) {
+        assertEquals(200, response.get().statusCode());
+      }
+    }
+  }
+
+  @Test
+  public void testCallerExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(1);
+    try {
+      try (JdkJwksHandler handler = JdkJwksHandler.builder().setExecutor(executor).build()) {
+        handler.start();
+        given()
+                .get(new URI(handler.getBaseUrl() + "/.well-known/openid-configuration"))
+                .then()
+                .statusCode(200)
+                ;
+      }
+      // The executor belongs to the caller, so closing the handler must not shut it down.
+      assertFalse(executor.isShutdown());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testVirtualThreads() throws Exception {
+    ExecutorService executor = JdkJwksHandler.newVirtualThreadExecutor();
+    if (Runtime.version().feature() >= 21) {
+      assertNotNull(executor);
+      executor.shutdownNow();
+    } else {
+      assertNull(executor);
+    }
+    try (JdkJwksHandler handler = JdkJwksHandler.builder().setThreadPoolSize(1).useVirtualThreads().build()) {
+      handler.start();
+      given()
+              .get(new URI(handler.getBaseUrl() + "/.well-known/openid-configuration"))
+              .then()
+              .statusCode(200)
+              ;
+    }
+  }
+
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, () -> JdkJwksHandler.builder().setPort(-1).build());
+    assertThrows(IllegalArgumentException.class, () -> JdkJwksHandler.builder().setPort(65536).build());
+    assertThrows(IllegalArgumentException.class, () -> JdkJwksHandler.builder().setThreadPoolSize(-1).build());
+  }
+
+  @Test
+  public void testCheckPath() {
+    assertEquals("/bob", JdkJwksHandler.checkPath("/bob"));
+    assertEquals("/bob", JdkJwksHandler.checkPath("bob"));
+    assertEquals("/bob", JdkJwksHandler.checkPath("bob/"));
+  }
+
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jdk;
+
+import com.google.common.cache.Cache;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JdkTokenBuilderTest {
+  
+  private static final String ISSUER = "http://localhost/";
+  
+  private static Jwt validate(JwtValidator validator, String token) throws Exception {
+    return validator.validateToken(null, token, Arrays.asList("aud"), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+  
+  @Test
+  public void testSharedSecrets() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    
+    List<JsonWebAlgorithm> algorithms = Arrays.asList(JsonWebAlgorithm.HS256, JsonWebAlgorithm.HS384, JsonWebAlgorithm.HS512);
+    List<String> tokens = new ArrayList<>();
+    List<JWK> jwks = new ArrayList<>();
+    for (JsonWebAlgorithm algorithm : algorithms) {
+      String kid = "kid-" + algorithm.getName();
+      tokens.add(builder.buildToken(algorithm, kid, ISSUER, "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, null));
+      byte[] secret = builder.getSharedSecret(kid, algorithm);
+      assertEquals(algorithm.getMinKeyLength() / 8, secret.length);
+      assertArrayEquals(secret, builder.getSharedSecret(kid, algorithm));
+      jwks.add(JsonWebKeySetStaticKeysHandler.sharedSecret(kid, algorithm, secret));
+    }
+    // Shared secrets must never be published
+    assertEquals(0, keyCache.size());
+    
+    JwtValidator validator = JwtValidator.create(
+            JsonWebKeySetStaticKeysHandler.create(jwks)
+            , IssuerAcceptabilityHandler.create(Collections.singletonList(ISSUER), null, Duration.ofMinutes(1))
+    );
+    validator.setPolicy(ValidationPolicy.builder().setPermittedAlgorithms(algorithms).build());
+    for (String token : tokens) {
+      assertEquals("sub", validate(validator, token).getSubject());
+    }
+    
+    // A different builder generates a different secret for the same kid
+    String other = new JdkTokenBuilder(keyCache).buildToken(JsonWebAlgorithm.HS256, "kid-HS256", ISSUER, "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, null);
+    assertThrows(ExecutionException.class, () -> validate(validator, other));
+    
+    assertThrows(IllegalArgumentException.class, () -> builder.getSharedSecret("kid", JsonWebAlgorithm.RS256));
+  }
+  
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jdk;
+
+import com.google.common.cache.Cache;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.auth.impl.jose.JWK;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.IssuerAcceptabilityHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebKeySetStaticKeysHandler;
+import uk.co.spudsoft.jwtvalidatorvertx.JwkBuilder;
+import uk.co.spudsoft.jwtvalidatorvertx.Jwt;
+import uk.co.spudsoft.jwtvalidatorvertx.JwtValidator;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationPolicy;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class JdkTokenMinterTest {
+  
+  private static final String ISSUER = "http://localhost/";
+  
+  private static JwtValidator validator(Cache<String, AlgorithmAndKeyPair> keyCache) throws Exception {
+    List<JWK> jwks = new ArrayList<>();
+    for (Map.Entry<String, AlgorithmAndKeyPair> entry : keyCache.asMap().entrySet()) {
+      PublicKey publicKey = entry.getValue().getKeyPair().getPublic();
+      jwks.add(new JWK(JwkBuilder.get(publicKey).toJson(entry.getKey(), entry.getValue().getAlgorithm().getName(), publicKey)));
+    }
+    JwtValidator validator = JwtValidator.create(
+            JsonWebKeySetStaticKeysHandler.create(jwks)
+            , IssuerAcceptabilityHandler.create(Collections.singletonList(ISSUER), null, Duration.ofMinutes(1))
+    );
+    validator.setPolicy(ValidationPolicy.builder().setPermittedAlgorithms(ValidationPolicy.SUPPORTED_ALGORITHMS).build());
+    return validator;
+  }
+  
+  private static Jwt validate(JwtValidator validator, String token, String aud) throws Exception {
+    return validator.validateToken(null, token, Arrays.asList(aud), false).toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+  
+  @Test
+  public void testMint() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    
+    List<JdkTokenMinter> minters = new ArrayList<>();
+    for (JsonWebAlgorithm algorithm : Arrays.asList(JsonWebAlgorithm.RS256, JsonWebAlgorithm.PS384, JsonWebAlgorithm.ES256, JsonWebAlgorithm.ES512, JsonWebAlgorithm.EdDSA)) {
+      minters.add(builder.minter(algorithm, "kid-" + algorithm.getName(), ISSUER, Arrays.asList("aud"), Collections.singletonMap("scope", "read write")));
+    }
+    // Constant claims of every length modulo three
+    minters.add(builder.minter(JsonWebAlgorithm.ES256, "kid-ES256", ISSUER, Arrays.asList("aud", "other"), null));
+    minters.add(builder.minter(JsonWebAlgorithm.ES256, "kid-ES256", ISSUER + "x", Arrays.asList("aud", "other"), null));
+    minters.add(builder.minter(JsonWebAlgorithm.ES256, "kid-ES256", ISSUER + "xy", Arrays.asList("aud", "other"), null));
+    
+    JwtValidator validator = validator(keyCache);
+    
+    for (JdkTokenMinter minter : minters) {
+      String token = minter.mint("bob \"the\" \\builder\\\n", nowSeconds, nowSeconds + 100, "jti-1");
+      Jwt jwt = Jwt.parseJws(token);
+      assertEquals(minter.getAlgorithm(), jwt.getJsonWebAlgorithm());
+      assertEquals(minter.getKid(), jwt.getKid());
+      assertEquals("bob \"the\" \\builder\\\n", jwt.getSubject());
+      assertEquals(nowSeconds, jwt.getNotBefore());
+      assertEquals(nowSeconds + 100, jwt.getExpiration());
+      assertEquals("jti-1", jwt.getJwtId());
+      if (jwt.getIssuer().equals(ISSUER)) {
+        assertEquals(minter.getKid(), validate(validator, token, "aud").getKid());
+      }
+    }
+    assertEquals("read write", Jwt.parseJws(minters.get(0).mint("sub", null, null, null)).getClaim("scope"));
+  }
+  
+  @Test
+  public void testMintWithoutClaims() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenMinter minter = new JdkTokenBuilder(keyCache).minter(JsonWebAlgorithm.ES256, "kid", null, null, null);
+    
+    Jwt jwt = Jwt.parseJws(minter.mint(null, null, null, null));
+    assertEquals(0, jwt.getPayloadSize());
+    
+    jwt = Jwt.parseJws(minter.mint(null, null, 17L, null));
+    assertEquals(1, jwt.getPayloadSize());
+    assertEquals(17L, jwt.getExpiration());
+    assertNull(jwt.getSubject());
+  }
+  
+  @Test
+  public void testBuildTokens() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    long nowSeconds = System.currentTimeMillis() / 1000;
+    
+    List<String> tokens = builder.buildTokens(500, JsonWebAlgorithm.ES256, "kid", ISSUER, "sub", Arrays.asList("aud"), nowSeconds, nowSeconds + 100, null);
+    assertEquals(500, tokens.size());
+    
+    JwtValidator validator = validator(keyCache);
+    Set<String> jtis = new HashSet<>();
+    for (String token : tokens) {
+      Jwt jwt = validate(validator, token, "aud");
+      assertEquals("sub", jwt.getSubject());
+      jtis.add(jwt.getJwtId());
+    }
+    assertEquals(500, jtis.size());
+    
+    assertTrue(builder.buildTokens(0, JsonWebAlgorithm.ES256, "kid", ISSUER, "sub", null, null, null, null).isEmpty());
+    assertThrows(IllegalArgumentException.class, () -> builder.buildTokens(-1, JsonWebAlgorithm.ES256, "kid", ISSUER, "sub", null, null, null, null));
+  }
+  
+  @Test
+  public void testBadArguments() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    JdkTokenBuilder builder = new JdkTokenBuilder(keyCache);
+    
+    assertThrows(IllegalArgumentException.class, () -> builder.minter(JsonWebAlgorithm.ES256, "kid", ISSUER, null, Collections.singletonMap("exp", 12)));
+    assertThrows(IllegalArgumentException.class, () -> builder.minter(JsonWebAlgorithm.none, "none", ISSUER, null, null));
+    
+    // The key for one algorithm cannot be used with another
+    builder.minter(JsonWebAlgorithm.ES256, "kid", ISSUER, null, null);
+    assertThrows(Exception.class, () -> builder.minter(JsonWebAlgorithm.RS256, "kid", ISSUER, null, null));
+    
+    JdkTokenMinter minter = builder.minter(JsonWebAlgorithm.ES256, "kid", ISSUER, null, new JsonObject().put("n", 1).getMap());
+    assertThrows(IllegalArgumentException.class, () -> new JdkTokenMinter(JsonWebAlgorithm.HS256, "kid", keyCache.getIfPresent("kid").getKeyPair().getPrivate(), ISSUER, null, null));
+    assertEquals(1, Jwt.parseJws(minter.mint(null, null, null, null)).getClaim("n"));
+  }
+  
+}
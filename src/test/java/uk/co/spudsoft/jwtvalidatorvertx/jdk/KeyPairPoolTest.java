@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.jdk;
+
+import com.google.common.cache.Cache;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.AlgorithmAndKeyPair;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class KeyPairPoolTest {
+  
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    long end = System.currentTimeMillis() + 60000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < end, "Timed out waiting for key generation");
+      Thread.sleep(10);
+    }
+  }
+  
+  @Test
+  public void testTake() throws Exception {
+    try (KeyPairPool pool = new KeyPairPool(2, 2, Arrays.asList(JsonWebAlgorithm.ES256, JsonWebAlgorithm.EdDSA))) {
+      await(() -> pool.getAvailable(JsonWebAlgorithm.ES256) == 2 && pool.getAvailable(JsonWebAlgorithm.EdDSA) == 2);
+      
+      KeyPair first = pool.take(JsonWebAlgorithm.ES256);
+      KeyPair second = pool.take(JsonWebAlgorithm.ES256);
+      assertNotSame(first, second);
+      assertEquals("EC", first.getPublic().getAlgorithm());
+      assertNotNull(pool.take(JsonWebAlgorithm.EdDSA));
+      assertEquals(0, pool.getMisses());
+      
+      // The pool is topped up in the background
+      await(() -> pool.getAvailable(JsonWebAlgorithm.ES256) == 2 && pool.getAvailable(JsonWebAlgorithm.EdDSA) == 2);
+      
+      // Pools for other key types are created on demand, the first key being generated on the calling thread
+      assertEquals(0, pool.getAvailable(JsonWebAlgorithm.ES384));
+      assertEquals("EC", pool.take(JsonWebAlgorithm.ES384).getPublic().getAlgorithm());
+      assertEquals(1, pool.getMisses());
+      await(() -> pool.getAvailable(JsonWebAlgorithm.ES384) == 2);
+      
+      assertNull(pool.take(JsonWebAlgorithm.none));
+      assertEquals(0, pool.getAvailable(JsonWebAlgorithm.none));
+      assertThrows(IllegalArgumentException.class, () -> pool.take(JsonWebAlgorithm.HS256));
+    }
+  }
+  
+  @Test
+  public void testKeyTypes() throws Exception {
+    assertEquals("RSA-2048", KeyPairPool.keyType(JsonWebAlgorithm.RS256));
+    assertEquals(KeyPairPool.keyType(JsonWebAlgorithm.RS256), KeyPairPool.keyType(JsonWebAlgorithm.PS512));
+    assertEquals("EC-secp384r1", KeyPairPool.keyType(JsonWebAlgorithm.ES384));
+    assertEquals("Ed25519", KeyPairPool.keyType(JsonWebAlgorithm.EdDSA));
+    assertNull(KeyPairPool.keyType(JsonWebAlgorithm.none));
+    assertThrows(IllegalArgumentException.class, () -> KeyPairPool.keyType(JsonWebAlgorithm.HS512));
+    
+    try (KeyPairPool pool = new KeyPairPool(1, 1, Collections.singletonList(JsonWebAlgorithm.PS256))) {
+      await(() -> pool.getAvailable(JsonWebAlgorithm.RS512) == 1);
+      assertEquals("RSA", pool.take(JsonWebAlgorithm.RS512).getPublic().getAlgorithm());
+      assertEquals(0, pool.getMisses());
+    }
+  }
+  
+  @Test
+  public void testClosed() throws Exception {
+    KeyPairPool pool = new KeyPairPool(1, 1, null);
+    pool.close();
+    assertNotNull(pool.take(JsonWebAlgorithm.ES256));
+    assertNotNull(pool.take(JsonWebAlgorithm.ES256));
+    assertEquals(2, pool.getMisses());
+    assertEquals(0, pool.getAvailable(JsonWebAlgorithm.ES256));
+  }
+  
+  @Test
+  public void testBadArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new KeyPairPool(0, 1, null));
+    assertThrows(IllegalArgumentException.class, () -> new KeyPairPool(1, 0, null));
+  }
+  
+  @Test
+  public void testTokenBuilder() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> keyCache = AlgorithmAndKeyPair.createCache(Duration.ofHours(1));
+    try (KeyPairPool pool = new KeyPairPool(1, 1, Collections.singletonList(JsonWebAlgorithm.ES256))) {
+      await(() -> pool.getAvailable(JsonWebAlgorithm.ES256) == 1);
+      JdkTokenBuilder builder = new JdkTokenBuilder(keyCache, pool);
+      
+      builder.buildToken(JsonWebAlgorithm.ES256, "kid", "iss", "sub", null, null, null, null);
+      assertEquals(0, pool.getMisses());
+      KeyPair keyPair = keyCache.getIfPresent("kid").getKeyPair();
+      
+      // The same kid keeps using the same key
+      builder.buildToken(JsonWebAlgorithm.ES256, "kid", "iss", "sub", null, null, null, null);
+      assertSame(keyPair, keyCache.getIfPresent("kid").getKeyPair());
+    }
+  }
+  
+}
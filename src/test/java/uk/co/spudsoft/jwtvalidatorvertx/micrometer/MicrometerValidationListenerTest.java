@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2025 jtalbut
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package uk.co.spudsoft.jwtvalidatorvertx.micrometer;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import uk.co.spudsoft.jwtvalidatorvertx.JsonWebAlgorithm;
+import uk.co.spudsoft.jwtvalidatorvertx.ValidationListener.Stage;
+
+/**
+ *
+ * @author jtalbut
+ */
+public class MicrometerValidationListenerTest {
+  
+  @Test
+  public void testTimers() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MicrometerValidationListener listener = new MicrometerValidationListener(registry);
+    
+    listener.stageCompleted(Stage.PARSE, "http://localhost/", JsonWebAlgorithm.RS256, 1000, true);
+    listener.stageCompleted(Stage.PARSE, "http://localhost/", JsonWebAlgorithm.RS256, 3000, true);
+    listener.stageCompleted(Stage.SIGNATURE, "http://localhost/", JsonWebAlgorithm.RS256, 5000, false);
+    listener.validationCompleted("http://localhost/", JsonWebAlgorithm.RS256, 9000, Stage.SIGNATURE);
+    listener.validationCompleted(null, null, 2000, Stage.PARSE);
+    listener.validationCompleted("http://localhost/", JsonWebAlgorithm.RS256, 7000, null);
+    listener.fetchCompleted(Stage.JWKS_FETCH, "http://localhost/jwks", 1000000, true);
+    
+    Timer parse = registry.find(MicrometerValidationListener.STAGE_TIMER)
+            .tag("stage", "parse").tag("issuer", "http://localhost/").tag("algorithm", "RS256").tag("outcome", "success").timer();
+    assertEquals(2, parse.count());
+    assertEquals(4000, parse.totalTime(TimeUnit.NANOSECONDS), 0.1);
+    
+    assertEquals(1, registry.find(MicrometerValidationListener.STAGE_TIMER)
+            .tag("stage", "signature").tag("outcome", "failure").timer().count());
+    
+    assertEquals(1, registry.find(MicrometerValidationListener.VALIDATION_TIMER)
+            .tag("outcome", "failure").tag("failed.stage", "signature").timer().count());
+    assertEquals(1, registry.find(MicrometerValidationListener.VALIDATION_TIMER)
+            .tag("issuer", "unknown").tag("algorithm", "unknown").tag("failed.stage", "parse").timer().count());
+    assertEquals(1, registry.find(MicrometerValidationListener.VALIDATION_TIMER)
+            .tag("outcome", "success").tag("failed.stage", "none").timer().count());
+    
+    Timer fetch = registry.find(MicrometerValidationListener.FETCH_TIMER).tag("stage", "jwks_fetch").tag("outcome", "success").timer();
+    assertEquals(1, fetch.count());
+    assertNull(fetch.getId().getTag("url"));
+  }
+  
+  @Test
+  public void testTimerLimit() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    MicrometerValidationListener listener = new MicrometerValidationListener(registry);
+    
+    for (int i = 0; i < MicrometerValidationListener.MAX_TIMERS + 100; ++i) {
+      listener.validationCompleted("http://issuer" + i + "/", JsonWebAlgorithm.RS256, 1000, null);
+    }
+    assertEquals(MicrometerValidationListener.MAX_TIMERS + 1, registry.find(MicrometerValidationListener.VALIDATION_TIMER).timers().size());
+    assertEquals(100, registry.find(MicrometerValidationListener.VALIDATION_TIMER).tag("issuer", "unknown").timer().count());
+    
+    // Existing timers continue to be used
+    listener.validationCompleted("http://issuer0/", JsonWebAlgorithm.RS256, 1000, null);
+    assertEquals(2, registry.find(MicrometerValidationListener.VALIDATION_TIMER).tag("issuer", "http://issuer0/").timer().count());
+  }
+  
+  @Test
+  public void testMeterKey() {
+    MicrometerValidationListener.MeterKey key = new MicrometerValidationListener.MeterKey("name", Stage.PARSE, "iss", JsonWebAlgorithm.ES256, true);
+    assertEquals(key, key);
+    assertEquals(key, new MicrometerValidationListener.MeterKey("name", Stage.PARSE, "iss", JsonWebAlgorithm.ES256, true));
+    assertEquals(key.hashCode(), new MicrometerValidationListener.MeterKey("name", Stage.PARSE, "iss", JsonWebAlgorithm.ES256, true).hashCode());
+    assertNotEquals(key, "name");
+    assertNotEquals(key, new MicrometerValidationListener.MeterKey("other", Stage.PARSE, "iss", JsonWebAlgorithm.ES256, true));
+    assertNotEquals(key, new MicrometerValidationListener.MeterKey("name", Stage.CLAIMS, "iss", JsonWebAlgorithm.ES256, true));
+    assertNotEquals(key, new MicrometerValidationListener.MeterKey("name", Stage.PARSE, null, JsonWebAlgorithm.ES256, true));
+    assertNotEquals(key, new MicrometerValidationListener.MeterKey("name", Stage.PARSE, "iss", JsonWebAlgorithm.ES384, true));
+    assertNotEquals(key, new MicrometerValidationListener.MeterKey("name", Stage.PARSE, "iss", JsonWebAlgorithm.ES256, false));
+  }
+  
+  @Test
+  public void testNullRegistry() {
+    assertThrows(NullPointerException.class, () -> new MicrometerValidationListener(null));
+  }
+  
+}
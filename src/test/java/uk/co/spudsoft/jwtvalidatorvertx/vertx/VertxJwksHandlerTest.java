@@ -111,6 +111,47 @@ public class VertxJwksHandlerTest {
         .body("keys[0].alg", Matchers.equalTo(entry.getValue().getAlgorithm().getName()));
   }
 
+  @Test
+  void testJwksEtag() throws Exception {
+    Cache<String, AlgorithmAndKeyPair> cache = emptyCache();
+    Map.Entry<String, AlgorithmAndKeyPair> entry = rsaKey("kid-rsa-1");
+    cache.put(entry.getKey(), entry.getValue());
+    handler.setKeyCache(cache);
+    handler.setMaxAgeSeconds(30);
+
+    String etag = RestAssured
+        .given()
+        .when()
+        .get(basePath + "/jwks")
+        .then()
+        .statusCode(200)
+        .header("cache-control", Matchers.equalTo("max-age=30"))
+        .header("etag", Matchers.notNullValue())
+        .extract().header("etag");
+
+    RestAssured
+        .given()
+        .header("If-None-Match", etag)
+        .when()
+        .get(basePath + "/jwks")
+        .then()
+        .statusCode(304)
+        .header("etag", Matchers.equalTo(etag));
+
+    entry = rsaKey("kid-rsa-2");
+    cache.put(entry.getKey(), entry.getValue());
+
+    RestAssured
+        .given()
+        .header("If-None-Match", etag)
+        .when()
+        .get(basePath + "/jwks")
+        .then()
+        .statusCode(200)
+        .header("etag", Matchers.not(Matchers.equalTo(etag)))
+        .body("keys", Matchers.hasSize(2));
+  }
+
   @Test
   void testNonMatchingPathFallsThrough() {
     RestAssured